@@ -26,6 +26,7 @@ import javax.inject.Inject;
 import org.commonjava.indy.audit.ChangeSummary;
 import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
+import org.commonjava.indy.data.StoreView;
 import org.commonjava.indy.mem.data.MemoryStoreDataManager;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.Group;
@@ -349,6 +350,15 @@ public abstract class AutoProxDataManagerDecorator
         }
     }
 
+    /**
+     * Views only cover stores that are already defined; looking one up doesn't create it.
+     */
+    @Override
+    public StoreView getStoreView( final StoreType type, final String name )
+    {
+        return dataManager.getStoreView( type, name );
+    }
+
     @Override
     public List<ArtifactStore> getOrderedConcreteStoresInGroup( final String groupName, final boolean enabledOnly )
             throws IndyDataException
@@ -15,20 +15,27 @@
  */
 package org.commonjava.indy.content.index;
 
-import javax.inject.Qualifier;
-import java.lang.annotation.Documented;
-import java.lang.annotation.ElementType;
-import java.lang.annotation.Retention;
-import java.lang.annotation.RetentionPolicy;
-import java.lang.annotation.Target;
+import java.io.IOException;
 
 /**
- * Qualifier used to supply "content-index" cache in infinispan.xml.
+ * Thrown when the {@link MappedContentIndex} table has reached its maximum capacity and can't take another path.
  */
-@Qualifier
-@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.METHOD})
-@Retention( RetentionPolicy.RUNTIME)
-@Documented
-public @interface ContentIndexCache
+public class ContentIndexFullException
+    extends IOException
 {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int size;
+
+    public ContentIndexFullException( final int size )
+    {
+        super( "Content index is full (" + size + " entries)" );
+        this.size = size;
+    }
+
+    public int getSize()
+    {
+        return size;
+    }
 }
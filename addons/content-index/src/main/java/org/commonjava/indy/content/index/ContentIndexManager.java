@@ -18,24 +18,26 @@ package org.commonjava.indy.content.index;
 import org.commonjava.cdi.util.weft.ExecutorConfig;
 import org.commonjava.cdi.util.weft.WeftManaged;
 import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.content.index.conf.ContentIndexConfig;
+import org.commonjava.indy.core.conf.MetricsConfig;
+import org.commonjava.indy.core.metrics.IndyMetric;
+import org.commonjava.indy.core.metrics.IndyMetrics;
 import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.model.core.Group;
 import org.commonjava.indy.model.core.StoreKey;
-import org.commonjava.indy.subsys.infinispan.CacheHandle;
+import org.commonjava.indy.subsys.datafile.conf.DataFileConfiguration;
 import org.commonjava.indy.util.LocationUtils;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.io.SpecialPathManager;
-import org.infinispan.cdi.ConfigureCache;
-import org.infinispan.query.Search;
-import org.infinispan.query.dsl.Query;
-import org.infinispan.query.dsl.QueryBuilder;
-import org.infinispan.query.dsl.QueryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -45,50 +47,161 @@ import java.util.function.Consumer;
 
 /**
  * Created by jdcasey on 5/2/16.
+ * <br/>
+ * Single-path lookups go to the {@link TieredContentIndex}. Store-wide and origin-wide operations (store deletion, group
+ * membership changes, expirations) walk the explicit secondary keys in {@link StorePathIndex} instead.
  */
 @ApplicationScoped
 public class ContentIndexManager
 {
+    private static final String STORE_PATHS_DIR = "content-index-keys";
+
+    private static final String MAPPED_DIR = "content-index-mapped";
+
     @Inject
     private StoreDataManager storeDataManager;
 
     @Inject
     private SpecialPathManager specialPathManager;
 
-    @ConfigureCache( "content-index" )
-    @ContentIndexCache
-    @Inject
-    private CacheHandle<IndexedStorePath, IndexedStorePath> contentIndex;
-
     @ExecutorConfig( named = "content-indexer", threads = 8, priority = 2, daemon = true )
     @WeftManaged
     @Inject
     private Executor executor;
 
+    @Inject
+    private IndyMetrics metrics;
+
+    @Inject
+    private DataFileConfiguration dataConfig;
+
+    @Inject
+    private ContentIndexConfig config;
+
+    private TieredContentIndex contentIndex;
+
+    private StorePathIndex storePaths;
+
+    protected ContentIndexManager()
+    {
+    }
+
+    public ContentIndexManager( final StoreDataManager storeDataManager, final SpecialPathManager specialPathManager,
+                                final TieredContentIndex contentIndex, final Executor executor )
+    {
+        this.storeDataManager = storeDataManager;
+        this.specialPathManager = specialPathManager;
+        this.contentIndex = contentIndex;
+        this.executor = executor;
+        this.metrics = new IndyMetrics( new MetricsConfig() );
+        this.storePaths = new StorePathIndex( null );
+        start();
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        contentIndex = new TieredContentIndex( dataConfig.getDataDir( MAPPED_DIR ), storeDataManager::canonicalKey,
+                                               config, metrics );
+        storePaths = new StorePathIndex( dataConfig.getDataDir( STORE_PATHS_DIR ), storeDataManager::canonicalKey );
+        start();
+    }
+
+    /**
+     * Open both halves of the index. Each can be recreated from the other, so if only one of them is found on disk
+     * (first start, an upgrade, or lost files), the other is rebuilt from it.
+     */
+    private void start()
+    {
+        Logger logger = LoggerFactory.getLogger( getClass() );
+
+        boolean indexLoaded = false;
+        try
+        {
+            indexLoaded = contentIndex.open();
+        }
+        catch ( IOException e )
+        {
+            logger.error( String.format( "Failed to map the content index. Only the on-heap tier will be used. Reason: %s",
+                                         e.getMessage() ), e );
+        }
+
+        boolean keysLoaded = false;
+        try
+        {
+            keysLoaded = storePaths.load();
+        }
+        catch ( IOException e )
+        {
+            logger.error( String.format( "Failed to load content-index secondary keys. Rebuilding them. Reason: %s",
+                                         e.getMessage() ), e );
+        }
+
+        if ( indexLoaded && !keysLoaded )
+        {
+            rebuildStorePaths();
+        }
+        else if ( keysLoaded && !indexLoaded )
+        {
+            storePaths.forEach( contentIndex::restore );
+            logger.info( "Rebuilt {} content-index entries from the secondary keys", contentIndex.size() );
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        try
+        {
+            storePaths.close();
+        }
+        catch ( IOException e )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.error( String.format( "Failed to write content-index secondary keys. Reason: %s", e.getMessage() ),
+                          e );
+        }
+
+        try
+        {
+            contentIndex.close();
+        }
+        catch ( IOException e )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.error( String.format( "Failed to flush the content index. Reason: %s", e.getMessage() ), e );
+        }
+    }
+
+    /**
+     * Walk the whole persistent tier of the content index to recreate the secondary keys.
+     */
+    private void rebuildStorePaths()
+    {
+        Logger logger = LoggerFactory.getLogger( getClass() );
+        try
+        {
+            storePaths.rebuild( contentIndex.iterator() );
+            logger.info( "Rebuilt {} content-index secondary entries", storePaths.size() );
+        }
+        catch ( IOException e )
+        {
+            logger.error( String.format( "Failed to write rebuilt content-index secondary keys. Reason: %s",
+                                         e.getMessage() ), e );
+        }
+    }
+
     public void removeAllOriginIndexedPathsForStore( StoreKey memberKey, Consumer<IndexedStorePath> pathConsumer )
     {
         Logger logger = LoggerFactory.getLogger( getClass() );
 
-        contentIndex.execute( (cache)->{
-            QueryFactory queryFactory = Search.getQueryFactory( cache );
-            QueryBuilder<Query> queryBuilder = queryFactory.from( IndexedStorePath.class )
-                                                           .having( "originStoreType" )
-                                                           .eq( memberKey.getType() )
-                                                           .and()
-                                                           .having( "originStoreName" )
-                                                           .eq( memberKey.getName() )
-                                                           .toBuilder();
-
-            List<IndexedStorePath> paths = queryBuilder.build().list();
-            paths.forEach( ( indexedStorePath ) -> {
-                logger.debug( "Removing {}", indexedStorePath );
-                contentIndex.remove( indexedStorePath );
-                if ( pathConsumer != null )
-                {
-                    pathConsumer.accept( indexedStorePath );
-                }
-            } );
-            return true;
+        storePaths.removeOriginEntries( memberKey ).forEach( ( indexedStorePath ) -> {
+            logger.debug( "Removing {}", indexedStorePath );
+            contentIndex.remove( indexedStorePath.getStoreKey(), indexedStorePath.getPath() );
+            if ( pathConsumer != null )
+            {
+                pathConsumer.accept( indexedStorePath );
+            }
         } );
     }
 
@@ -97,10 +210,10 @@ public class ContentIndexManager
         Logger logger = LoggerFactory.getLogger( getClass() );
 
         // invalidate indexes for the store itself
-        List<IndexedStorePath> paths = getAllIndexedPathsForStore( key );
+        List<IndexedStorePath> paths = storePaths.removeStore( key );
         paths.forEach( ( indexedStorePath ) -> {
             logger.debug( "Removing: {}", indexedStorePath );
-            contentIndex.remove( indexedStorePath );
+            contentIndex.remove( indexedStorePath.getStoreKey(), indexedStorePath.getPath() );
             if ( pathConsumer != null )
             {
                 pathConsumer.accept( indexedStorePath );
@@ -112,51 +225,24 @@ public class ContentIndexManager
 
     public List<IndexedStorePath> getAllIndexedPathsForStore( StoreKey key )
     {
-        return contentIndex.execute( cache->{
-            QueryFactory queryFactory = Search.getQueryFactory( cache );
-            QueryBuilder<Query> queryBuilder = queryFactory.from( IndexedStorePath.class )
-                                                           .having( "storeType" )
-                                                           .eq( key.getType() )
-                                                           .and()
-                                                           .having( "storeName" )
-                                                           .eq( key.getName() )
-                                                           .toBuilder();
-
-            List<IndexedStorePath> paths = queryBuilder.build().list();
-            return paths;
-        } );
+        return storePaths.getPaths( key );
     }
 
     public List<IndexedStorePath> removeOriginIndexedStorePath( String path, StoreKey key, Consumer<IndexedStorePath> pathConsumer )
     {
         Logger logger = LoggerFactory.getLogger( getClass() );
 
-        return contentIndex.execute( cache->{
-            QueryFactory queryFactory = Search.getQueryFactory( cache );
-
-            QueryBuilder<Query> queryBuilder = queryFactory.from( IndexedStorePath.class )
-                                                           .having( "originStoreType" )
-                                                           .eq( key.getType() )
-                                                           .and()
-                                                           .having( "originStoreName" )
-                                                           .eq( key.getName() )
-                                                           .and()
-                                                           .having( "path" )
-                                                           .eq( path )
-                                                           .toBuilder();
-
-            List<IndexedStorePath> paths = queryBuilder.build().list();
-            paths.forEach( ( indexedStorePath ) -> {
-                logger.debug( "Removing: {}", indexedStorePath );
-                contentIndex.remove( indexedStorePath );
-                if ( pathConsumer != null )
-                {
-                    pathConsumer.accept( indexedStorePath );
-                }
-            } );
-
-            return paths;
+        List<IndexedStorePath> paths = storePaths.removeOriginEntries( key, path );
+        paths.forEach( ( indexedStorePath ) -> {
+            logger.debug( "Removing: {}", indexedStorePath );
+            contentIndex.remove( indexedStorePath.getStoreKey(), indexedStorePath.getPath() );
+            if ( pathConsumer != null )
+            {
+                pathConsumer.accept( indexedStorePath );
+            }
         } );
+
+        return paths;
     }
 
     public void removeIndexedStorePath( String path, StoreKey key, Consumer<IndexedStorePath> pathConsumer )
@@ -164,7 +250,8 @@ public class ContentIndexManager
 //        Logger logger = LoggerFactory.getLogger( getClass() );
         IndexedStorePath topPath = new IndexedStorePath( key, path );
 //        logger.trace( "Attempting to remove indexed path: {}", topPath );
-        if ( contentIndex.remove( topPath ) != null && pathConsumer != null )
+        storePaths.remove( key, path );
+        if ( contentIndex.remove( key, path ) != null && pathConsumer != null )
         {
             pathConsumer.accept( topPath );
         }
@@ -230,8 +317,8 @@ public class ContentIndexManager
     public void deIndexStorePath( final StoreKey key, final String path )
     {
         executor.execute( () -> {
-            IndexedStorePath toRemove = new IndexedStorePath( key, path );
-            contentIndex.remove( toRemove );
+            storePaths.remove( key, path );
+            contentIndex.remove( key, path );
 
             // TODO: Can we really make this lazy?
 //            try
@@ -282,7 +369,12 @@ public class ContentIndexManager
     public IndexedStorePath getIndexedStorePath( final StoreKey key, final String path )
             throws IndyWorkflowException
     {
-        return contentIndex.get( new IndexedStorePath( key, path ) );
+        final long start = metrics.start();
+        final IndexedStorePath result = contentIndex.get( key, path );
+        metrics.time( IndyMetric.CONTENT_INDEX_LOOKUP, key, start );
+        metrics.count( result == null ? IndyMetric.CONTENT_INDEX_MISSES : IndyMetric.CONTENT_INDEX_HITS, key );
+
+        return result;
 
 //        List<IndexedStorePath> matches = lookupIndexedPathByTopKey( key, path );
 //        Logger logger = LoggerFactory.getLogger( getClass() );
@@ -310,13 +402,13 @@ public class ContentIndexManager
     public void indexPathInStores( String path, StoreKey originKey, StoreKey... topKeys )
     {
         executor.execute( () -> {
-            IndexedStorePath origin = new IndexedStorePath( originKey, path );
-            contentIndex.put( origin, origin );
+            contentIndex.put( originKey, originKey, path );
+            storePaths.add( originKey, originKey, path );
 
             Set<StoreKey> keySet = new HashSet<>( Arrays.asList( topKeys ) );
             keySet.forEach( (key)->{
-                IndexedStorePath isp = new IndexedStorePath( key, originKey, path );
-                contentIndex.put( isp, origin );
+                contentIndex.put( key, originKey, path );
+                storePaths.add( key, originKey, path );
             } );
         } );
     }
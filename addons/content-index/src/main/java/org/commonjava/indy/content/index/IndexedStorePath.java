@@ -41,11 +41,18 @@ public class IndexedStorePath
 
     private String path;
 
+    // the keys this was created with (usually the store manager's shared instances), or parsed back on first use after
+    // deserialization; they aren't serialized, since the type/name fields above carry the same information
+    private transient StoreKey storeKey;
+
+    private transient StoreKey originStoreKey;
+
     // this needs to be public for Infinispan to not throw InvalidClassException with the first httprox request
     public IndexedStorePath(){}
 
     public IndexedStorePath( StoreKey storeKey, String path )
     {
+        this.storeKey = storeKey;
         this.storeType = storeKey.getType();
         this.storeName = storeKey.getName();
 
@@ -54,6 +61,8 @@ public class IndexedStorePath
 
     public IndexedStorePath( StoreKey storeKey, StoreKey origin, String path )
     {
+        this.storeKey = storeKey;
+        this.originStoreKey = origin;
         this.storeType = storeKey.getType();
         this.storeName = storeKey.getName();
         this.originStoreType = origin.getType();
@@ -65,13 +74,23 @@ public class IndexedStorePath
     @JsonIgnore
     public StoreKey getStoreKey()
     {
-        return new StoreKey( storeType, storeName );
+        if ( storeKey == null )
+        {
+            storeKey = new StoreKey( storeType, storeName );
+        }
+
+        return storeKey;
     }
 
     @JsonIgnore
     public StoreKey getOriginStoreKey()
     {
-        return new StoreKey( originStoreType, originStoreName );
+        if ( originStoreKey == null )
+        {
+            originStoreKey = new StoreKey( originStoreType, originStoreName );
+        }
+
+        return originStoreKey;
     }
 
     public StoreType getStoreType()
@@ -84,6 +103,16 @@ public class IndexedStorePath
         return storeName;
     }
 
+    public StoreType getOriginStoreType()
+    {
+        return originStoreType;
+    }
+
+    public String getOriginStoreName()
+    {
+        return originStoreName;
+    }
+
     public String getPath()
     {
         return path;
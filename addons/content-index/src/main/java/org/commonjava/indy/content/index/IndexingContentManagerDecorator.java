@@ -17,8 +17,10 @@ package org.commonjava.indy.content.index;
 
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.content.ContentManager;
+import org.commonjava.indy.core.content.group.GroupMemberRetriever;
 import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
+import org.commonjava.indy.data.StoreView;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.Group;
 import org.commonjava.indy.model.core.StoreKey;
@@ -40,7 +42,6 @@ import javax.decorator.Delegate;
 import javax.enterprise.inject.Any;
 import javax.inject.Inject;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -70,6 +71,9 @@ public abstract class IndexingContentManagerDecorator
     @Inject
     private NotFoundCache nfc;
 
+    @Inject
+    private GroupMemberRetriever groupRetriever;
+
     protected IndexingContentManagerDecorator()
     {
     }
@@ -83,6 +87,7 @@ public abstract class IndexingContentManagerDecorator
         this.specialPathManager = specialPathManager;
         this.indexManager = indexManager;
         this.nfc = nfc;
+        this.groupRetriever = new GroupMemberRetriever( null, null );
     }
 
     @Override
@@ -97,17 +102,8 @@ public abstract class IndexingContentManagerDecorator
                                    final EventMetadata eventMetadata )
             throws IndyWorkflowException
     {
-        Transfer transfer = null;
-        for ( ArtifactStore store : stores )
-        {
-            transfer = retrieve( store, path, eventMetadata );
-            if ( transfer != null )
-            {
-                break;
-            }
-        }
-
-        return transfer;
+        return groupRetriever.retrieveFirst( GroupMemberRetriever.groupKey( eventMetadata ), stores,
+                                             ( store ) -> retrieve( store, path, eventMetadata ) );
     }
 
     @Override
@@ -122,8 +118,7 @@ public abstract class IndexingContentManagerDecorator
                                        final EventMetadata eventMetadata )
             throws IndyWorkflowException
     {
-        List<Transfer> results = new ArrayList<>();
-        stores.stream().map( ( store ) -> {
+        return groupRetriever.retrieveAll( GroupMemberRetriever.groupKey( eventMetadata ), stores, ( store ) -> {
             try
             {
                 return retrieve( store, path, eventMetadata );
@@ -137,14 +132,7 @@ public abstract class IndexingContentManagerDecorator
             }
 
             return null;
-        } ).filter( ( transfer ) -> transfer != null ).forEachOrdered( ( transfer ) -> {
-            if ( transfer != null )
-            {
-                results.add( transfer );
-            }
         } );
-
-        return results;
     }
 
     @Override
@@ -308,30 +296,21 @@ public abstract class IndexingContentManagerDecorator
         }
         else if ( StoreType.group == key.getType() )
         {
-            try
+            // only the membership is needed here, so use the store view rather than the full group definition
+            StoreView g = storeDataManager.getStoreView( StoreType.group, key.getName() );
+            if ( g != null )
             {
-                Group g = storeDataManager.getGroup( key.getName() );
-                if ( g != null )
+                for ( StoreKey memberKey : g.getConstituents() )
                 {
-                    for ( StoreKey memberKey : g.getConstituents() )
+                    transfer = getIndexedMemberTransfer( memberKey, topKey, path );
+                    if ( transfer != null )
                     {
-                        transfer = getIndexedMemberTransfer( memberKey, topKey, path );
-                        if ( transfer != null )
-                        {
-                            // the other keys' index will be added in the recursive call...but we need to add the intermediary here.
-                            indexManager.indexTransferIn( transfer, key );
-                            return transfer;
-                        }
+                        // the other keys' index will be added in the recursive call...but we need to add the intermediary here.
+                        indexManager.indexTransferIn( transfer, key );
+                        return transfer;
                     }
                 }
             }
-            catch ( IndyDataException e )
-            {
-                Logger logger = LoggerFactory.getLogger( getClass() );
-                logger.error(
-                        String.format( "Failed to lookup group: %s (in membership closure of: %s). Reason: %s", key,
-                                       topKey, e.getMessage() ), e );
-            }
         }
 
         return transfer;
@@ -0,0 +1,1014 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import org.commonjava.indy.model.core.StoreKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Persistent tier of the content index, holding every (store, path) &rarr; origin store entry in two memory-mapped
+ * files:
+ * <ul>
+ *     <li>a table of open-addressing (linear probing) slots, each holding the 64-bit hash of the entry's key and the
+ *     offset of its record in the log</li>
+ *     <li>an append-only log of (key, origin) records, mapped in fixed-size segments</li>
+ * </ul>
+ * Replacing or removing an entry leaves its old record behind as garbage. The table is rehashed into a new file when it
+ * fills up, and the log is rewritten (under a new generation number) once more than half of it is garbage; in both
+ * cases the new table is moved over the old one atomically, so a crash leaves either the old files or the new ones.
+ * <br/>
+ * Lookups share a read lock and go straight to the mapped pages, so they cost a few page reads at most, with no
+ * deserialization beyond the origin key. Changes are serialized by a separate writer lock, and only take the write lock
+ * for the few slot and log writes they make. Rehashing and log compaction build the new files while lookups keep reading
+ * the current ones, then take the write lock just to swap them in.
+ * <br/>
+ * Once the table can't grow any further, new paths are refused with a {@link ContentIndexFullException}.
+ */
+public class MappedContentIndex
+{
+    static final String TABLE_FILE = "content-index.table";
+
+    private static final String LOG_PREFIX = "content-index-";
+
+    private static final String LOG_SUFFIX = ".log";
+
+    private static final int MAGIC = 0x49434958;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 64;
+
+    private static final int SLOT_BYTES = 16;
+
+    private static final int H_MAGIC = 0;
+
+    private static final int H_VERSION = 4;
+
+    private static final int H_GENERATION = 8;
+
+    private static final int H_CAPACITY = 16;
+
+    private static final int H_SIZE = 20;
+
+    private static final int H_TOMBSTONES = 24;
+
+    private static final int H_SEGMENT_BYTES = 28;
+
+    private static final int H_LOG_END = 32;
+
+    private static final int H_GARBAGE = 40;
+
+    private static final long TOMBSTONE = -1;
+
+    private static final int DEFAULT_SEGMENT_BYTES = 1 << 26;
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    // keeps the table inside a single mapping (1GB), which still leaves room for ~50M entries
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // serializes changes, so writers can read the table and log without the read lock
+    private final ReentrantLock writerLock = new ReentrantLock();
+
+    private final File dir;
+
+    private final Function<String, StoreKey> keyParser;
+
+    private final int initialSegmentBytes;
+
+    private final int initialCapacity;
+
+    private final int maxCapacity;
+
+    private MappedByteBuffer table;
+
+    private Log log;
+
+    private long generation;
+
+    private int capacity;
+
+    private int mask;
+
+    private int size;
+
+    private int tombstones;
+
+    private long garbage;
+
+    private boolean open;
+
+    private boolean full;
+
+    public MappedContentIndex( final File dir )
+    {
+        this( dir, StoreKey::fromString );
+    }
+
+    /**
+     * @param keyParser turns the store keys read back from the index into {@link StoreKey}s; the content index manager
+     * passes the store manager's lookup, so lookups hand out the shared key instances rather than parsing new ones.
+     */
+    public MappedContentIndex( final File dir, final Function<String, StoreKey> keyParser )
+    {
+        this( dir, DEFAULT_SEGMENT_BYTES, DEFAULT_CAPACITY, MAX_CAPACITY, keyParser );
+    }
+
+    MappedContentIndex( final File dir, final int segmentBytes, final int initialCapacity )
+    {
+        this( dir, segmentBytes, initialCapacity, MAX_CAPACITY );
+    }
+
+    MappedContentIndex( final File dir, final int segmentBytes, final int initialCapacity, final int maxCapacity )
+    {
+        this( dir, segmentBytes, initialCapacity, maxCapacity, StoreKey::fromString );
+    }
+
+    MappedContentIndex( final File dir, final int segmentBytes, final int initialCapacity, final int maxCapacity,
+                        final Function<String, StoreKey> keyParser )
+    {
+        this.dir = dir;
+        this.keyParser = keyParser;
+        this.initialSegmentBytes = segmentBytes;
+        this.initialCapacity = Integer.highestOneBit( Math.max( 16, initialCapacity ) );
+        this.maxCapacity = Math.min( MAX_CAPACITY, Math.max( this.initialCapacity, maxCapacity ) );
+    }
+
+    /**
+     * Map the index files, creating empty ones if they don't exist or can't be used. Returns false if the index starts
+     * out empty that way, in which case the caller may want to repopulate it.
+     */
+    public boolean open()
+            throws IOException
+    {
+        writerLock.lock();
+        lock.writeLock().lock();
+        try
+        {
+            dir.mkdirs();
+            final File tableFile = new File( dir, TABLE_FILE );
+            boolean loaded = false;
+            if ( tableFile.exists() )
+            {
+                try
+                {
+                    loaded = load( tableFile );
+                }
+                catch ( final IOException e )
+                {
+                    logger.warn( String.format( "Cannot read content-index table: %s. Starting empty. Reason: %s",
+                                                tableFile, e.getMessage() ), e );
+                }
+            }
+
+            if ( !loaded )
+            {
+                closeLog();
+                generation = 1;
+                log = new Log( logFile( generation ), initialSegmentBytes, 0, true );
+                size = 0;
+                tombstones = 0;
+                garbage = 0;
+                table = createTable( tableFile, initialCapacity );
+            }
+
+            deleteStaleLogs();
+            open = true;
+
+            logger.info( "Mapped {} content-index entries ({} slots, {} log bytes) from: {}", size, capacity,
+                         log.end, dir );
+            return loaded;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Return the store the path was found in when it was indexed for the given store, or null.
+     */
+    public StoreKey get( final StoreKey key, final String path )
+    {
+        final byte[] keyBytes = keyBytes( key, path );
+        final long hash = hash( keyBytes );
+
+        lock.readLock().lock();
+        try
+        {
+            if ( !open )
+            {
+                return null;
+            }
+
+            final int slot = find( hash, keyBytes );
+            if ( slot < 0 )
+            {
+                return null;
+            }
+
+            final byte[] value = log.value( table.getLong( slotPosition( slot ) + 8 ) );
+            return value == null ? null : keyParser.apply( new String( value, StandardCharsets.UTF_8 ) );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index the path for the given store, returning false if it was already indexed with the same origin (or the
+     * index is closed).
+     *
+     * @throws ContentIndexFullException if the path is new and the table can't grow to hold it
+     */
+    public boolean put( final StoreKey key, final String path, final StoreKey origin )
+            throws IOException
+    {
+        final byte[] keyBytes = keyBytes( key, path );
+        final byte[] value = origin.toString().getBytes( StandardCharsets.UTF_8 );
+        final long hash = hash( keyBytes );
+
+        writerLock.lock();
+        try
+        {
+            if ( !open )
+            {
+                return false;
+            }
+
+            if ( !log.fits( keyBytes, value ) )
+            {
+                logger.warn( "Content-index entry for: {} in: {} is larger than a log segment; not indexing it.",
+                             path, key );
+                return false;
+            }
+
+            final int slot = find( hash, keyBytes );
+            if ( slot >= 0 )
+            {
+                final int position = slotPosition( slot ) + 8;
+                final long offset = table.getLong( position );
+                if ( Arrays.equals( log.value( offset ), value ) )
+                {
+                    return false;
+                }
+
+                lock.writeLock().lock();
+                try
+                {
+                    garbage += log.recordBytes( offset );
+                    table.putLong( position, log.append( keyBytes, value ) );
+                    writeCounters();
+                }
+                finally
+                {
+                    lock.writeLock().unlock();
+                }
+            }
+            else
+            {
+                ensureCapacity();
+
+                lock.writeLock().lock();
+                try
+                {
+                    insert( table, mask, hash, log.append( keyBytes, value ) );
+                    size++;
+                    writeCounters();
+                }
+                finally
+                {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            compactIfNecessary();
+            return true;
+        }
+        finally
+        {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Remove the path from the given store's entries, returning the origin store it was indexed with (or null if it
+     * wasn't indexed).
+     */
+    public StoreKey remove( final StoreKey key, final String path )
+            throws IOException
+    {
+        final byte[] keyBytes = keyBytes( key, path );
+        final long hash = hash( keyBytes );
+
+        writerLock.lock();
+        try
+        {
+            if ( !open )
+            {
+                return null;
+            }
+
+            final int slot = find( hash, keyBytes );
+            if ( slot < 0 )
+            {
+                return null;
+            }
+
+            final int position = slotPosition( slot ) + 8;
+            final long offset = table.getLong( position );
+            final byte[] value = log.value( offset );
+
+            lock.writeLock().lock();
+            try
+            {
+                garbage += log.recordBytes( offset );
+                table.putLong( position, TOMBSTONE );
+                size--;
+                tombstones++;
+                writeCounters();
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+
+            compactIfNecessary();
+
+            return value == null ? null : keyParser.apply( new String( value, StandardCharsets.UTF_8 ) );
+        }
+        finally
+        {
+            writerLock.unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walk all entries, e.g. to rebuild the secondary keys. Each step takes the read lock on its own, so this is only
+     * meant for startup, before anything else changes the index; entries moved by a concurrent rehash may be skipped or
+     * returned twice.
+     */
+    public Iterator<IndexedStorePath> iterator()
+    {
+        return new Iterator<IndexedStorePath>()
+        {
+            private int slot = -1;
+
+            private IndexedStorePath next = advance();
+
+            @Override
+            public boolean hasNext()
+            {
+                return next != null;
+            }
+
+            @Override
+            public IndexedStorePath next()
+            {
+                if ( next == null )
+                {
+                    throw new NoSuchElementException();
+                }
+
+                final IndexedStorePath result = next;
+                next = advance();
+                return result;
+            }
+
+            private IndexedStorePath advance()
+            {
+                lock.readLock().lock();
+                try
+                {
+                    while ( open && ++slot < capacity )
+                    {
+                        final IndexedStorePath entry = readEntry( slot );
+                        if ( entry != null )
+                        {
+                            return entry;
+                        }
+                    }
+
+                    return null;
+                }
+                finally
+                {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Flush the mapped pages to disk and stop serving lookups.
+     */
+    public void close()
+            throws IOException
+    {
+        writerLock.lock();
+        lock.writeLock().lock();
+        try
+        {
+            if ( !open )
+            {
+                return;
+            }
+
+            open = false;
+            writeCounters();
+            table.force();
+            closeLog();
+            table = null;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+            writerLock.unlock();
+        }
+    }
+
+    private boolean load( final File tableFile )
+            throws IOException
+    {
+        final MappedByteBuffer existing;
+        try (RandomAccessFile raf = new RandomAccessFile( tableFile, "rw" ))
+        {
+            if ( raf.length() < HEADER_BYTES )
+            {
+                logger.warn( "Content-index table is truncated: {}. Starting empty.", tableFile );
+                return false;
+            }
+
+            existing = raf.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, raf.length() );
+        }
+
+        final int cap = existing.getInt( H_CAPACITY );
+        if ( existing.getInt( H_MAGIC ) != MAGIC || existing.getInt( H_VERSION ) != VERSION
+                || Integer.bitCount( cap ) != 1 || cap > MAX_CAPACITY
+                || existing.capacity() != HEADER_BYTES + cap * SLOT_BYTES )
+        {
+            logger.warn( "Content-index table has an unknown format: {}. Starting empty.", tableFile );
+            return false;
+        }
+
+        final long gen = existing.getLong( H_GENERATION );
+        final long logEnd = existing.getLong( H_LOG_END );
+        final int segmentBytes = existing.getInt( H_SEGMENT_BYTES );
+        final File logFile = logFile( gen );
+        if ( segmentBytes < 1 || !logFile.exists() || logFile.length() < logEnd )
+        {
+            logger.warn( "Content-index log is missing or truncated: {}. Starting empty.", logFile );
+            return false;
+        }
+
+        log = new Log( logFile, segmentBytes, logEnd, false );
+        table = existing;
+        generation = gen;
+        capacity = cap;
+        mask = cap - 1;
+        size = existing.getInt( H_SIZE );
+        tombstones = existing.getInt( H_TOMBSTONES );
+        garbage = existing.getLong( H_GARBAGE );
+        return true;
+    }
+
+    /**
+     * Create an empty table of the given capacity for the current generation and log, and move it into place.
+     */
+    private MappedByteBuffer createTable( final File tableFile, final int newCapacity )
+            throws IOException
+    {
+        final MappedByteBuffer created = mapNewTable( newCapacity );
+        table = created;
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        writeCounters();
+        moveTableIntoPlace( created, tableFile );
+        return created;
+    }
+
+    private MappedByteBuffer mapNewTable( final int newCapacity )
+            throws IOException
+    {
+        final File tmp = new File( dir, TABLE_FILE + ".tmp" );
+        Files.deleteIfExists( tmp.toPath() );
+
+        final long length = HEADER_BYTES + (long) newCapacity * SLOT_BYTES;
+        try (RandomAccessFile raf = new RandomAccessFile( tmp, "rw" ))
+        {
+            raf.setLength( length );
+            final MappedByteBuffer mapped = raf.getChannel().map( FileChannel.MapMode.READ_WRITE, 0, length );
+            mapped.putInt( H_MAGIC, MAGIC );
+            mapped.putInt( H_VERSION, VERSION );
+            mapped.putInt( H_CAPACITY, newCapacity );
+            return mapped;
+        }
+    }
+
+    private void moveTableIntoPlace( final MappedByteBuffer newTable, final File tableFile )
+            throws IOException
+    {
+        newTable.force();
+        Files.move( new File( dir, TABLE_FILE + ".tmp" ).toPath(), tableFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Make room for one more entry, rehashing into a bigger table (or the same size, to purge tombstones) once three
+     * quarters of the slots are used. Callers hold the writer lock.
+     *
+     * @throws ContentIndexFullException if the table can't grow any further
+     */
+    private void ensureCapacity()
+            throws IOException
+    {
+        if ( ( size + tombstones + 1 ) * 4L <= capacity * 3L )
+        {
+            full = false;
+            return;
+        }
+
+        int newCapacity = capacity;
+        if ( ( size + 1 ) * 2L > capacity && capacity < maxCapacity )
+        {
+            newCapacity = capacity << 1;
+        }
+        else if ( ( size + 1 ) * 4L > capacity * 3L )
+        {
+            if ( !full )
+            {
+                full = true;
+                logger.error( "Content index is full ({} entries); not indexing any more paths.", size );
+            }
+
+            throw new ContentIndexFullException( size );
+        }
+
+        rehash( newCapacity, garbage * 2 > log.end );
+        full = false;
+    }
+
+    private void compactIfNecessary()
+            throws IOException
+    {
+        if ( garbage >= log.segmentBytes && garbage * 2 > log.end )
+        {
+            rehash( capacity, true );
+        }
+    }
+
+    /**
+     * Copy the live entries into a new table, and into a new log of the next generation if compacting, then swap them
+     * in. Callers hold the writer lock, so nothing changes the current table and log while they are copied; lookups
+     * keep using them until the write lock is taken for the swap.
+     */
+    private void rehash( final int newCapacity, final boolean compactLog )
+            throws IOException
+    {
+        final long start = System.currentTimeMillis();
+
+        final long newGeneration = compactLog ? generation + 1 : generation;
+        final Log newLog = compactLog ? new Log( logFile( newGeneration ), log.segmentBytes, 0, true ) : log;
+        final MappedByteBuffer newTable = mapNewTable( newCapacity );
+        final int newMask = newCapacity - 1;
+
+        try
+        {
+            for ( int slot = 0; slot < capacity; slot++ )
+            {
+                final int position = slotPosition( slot );
+                final long hash = table.getLong( position );
+                long offset = table.getLong( position + 8 );
+                if ( hash == 0 || offset == TOMBSTONE )
+                {
+                    continue;
+                }
+
+                if ( compactLog )
+                {
+                    final byte[] key = log.key( offset );
+                    final byte[] value = log.value( offset );
+                    if ( key == null || value == null )
+                    {
+                        continue;
+                    }
+
+                    offset = newLog.append( key, value );
+                }
+
+                insert( newTable, newMask, hash, offset );
+            }
+
+            if ( compactLog )
+            {
+                newLog.force();
+            }
+        }
+        catch ( final IOException | RuntimeException e )
+        {
+            if ( compactLog )
+            {
+                newLog.close();
+                Files.deleteIfExists( newLog.file.toPath() );
+            }
+
+            throw e;
+        }
+
+        final long newGarbage = compactLog ? 0 : garbage;
+        writeCounters( newTable, newGeneration, size, 0, newLog, newGarbage );
+        moveTableIntoPlace( newTable, new File( dir, TABLE_FILE ) );
+
+        final Log oldLog = log;
+        lock.writeLock().lock();
+        try
+        {
+            table = newTable;
+            capacity = newCapacity;
+            mask = newMask;
+            generation = newGeneration;
+            log = newLog;
+            tombstones = 0;
+            garbage = newGarbage;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+
+        if ( compactLog )
+        {
+            oldLog.close();
+            Files.deleteIfExists( oldLog.file.toPath() );
+        }
+
+        logger.info( "Rehashed {} content-index entries into {} slots{} in {}ms", size, newCapacity,
+                     compactLog ? " and compacted the log" : "", System.currentTimeMillis() - start );
+    }
+
+    private int find( final long hash, final byte[] keyBytes )
+    {
+        int slot = (int) hash & mask;
+        for ( int probes = 0; probes < capacity; probes++ )
+        {
+            final int position = slotPosition( slot );
+            final long slotHash = table.getLong( position );
+            if ( slotHash == 0 )
+            {
+                return -1;
+            }
+
+            if ( slotHash == hash )
+            {
+                final long offset = table.getLong( position + 8 );
+                if ( offset != TOMBSTONE && log.keyEquals( offset, keyBytes ) )
+                {
+                    return slot;
+                }
+            }
+
+            slot = ( slot + 1 ) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Put the record offset in the first empty or tombstoned slot for the hash. Only for keys that aren't in the table
+     * yet.
+     */
+    private void insert( final MappedByteBuffer target, final int targetMask, final long hash, final long offset )
+    {
+        int slot = (int) hash & targetMask;
+        while ( true )
+        {
+            final int position = slotPosition( slot );
+            final long slotHash = target.getLong( position );
+            if ( slotHash == 0 || target.getLong( position + 8 ) == TOMBSTONE )
+            {
+                if ( slotHash != 0 && target == table )
+                {
+                    tombstones--;
+                }
+
+                // the offset goes first, so a concurrent reader of the file never sees the hash without it
+                target.putLong( position + 8, offset );
+                target.putLong( position, hash );
+                return;
+            }
+
+            slot = ( slot + 1 ) & targetMask;
+        }
+    }
+
+    private IndexedStorePath readEntry( final int slot )
+    {
+        final int position = slotPosition( slot );
+        final long offset = table.getLong( position + 8 );
+        if ( table.getLong( position ) == 0 || offset == TOMBSTONE )
+        {
+            return null;
+        }
+
+        final byte[] key = log.key( offset );
+        final byte[] value = log.value( offset );
+        if ( key == null || value == null )
+        {
+            return null;
+        }
+
+        final String keyString = new String( key, StandardCharsets.UTF_8 );
+        final int tab = keyString.indexOf( '\t' );
+        final StoreKey storeKey = tab < 0 ? null : keyParser.apply( keyString.substring( 0, tab ) );
+        final StoreKey origin = keyParser.apply( new String( value, StandardCharsets.UTF_8 ) );
+        if ( storeKey == null || origin == null )
+        {
+            return null;
+        }
+
+        return new IndexedStorePath( storeKey, origin, keyString.substring( tab + 1 ) );
+    }
+
+    private void writeCounters()
+    {
+        writeCounters( table, generation, size, tombstones, log, garbage );
+    }
+
+    private static void writeCounters( final MappedByteBuffer target, final long generation, final int size,
+                                       final int tombstones, final Log log, final long garbage )
+    {
+        target.putLong( H_GENERATION, generation );
+        target.putInt( H_SIZE, size );
+        target.putInt( H_TOMBSTONES, tombstones );
+        target.putInt( H_SEGMENT_BYTES, log.segmentBytes );
+        target.putLong( H_LOG_END, log.end );
+        target.putLong( H_GARBAGE, garbage );
+    }
+
+    private void closeLog()
+            throws IOException
+    {
+        if ( log != null )
+        {
+            log.force();
+            log.close();
+            log = null;
+        }
+    }
+
+    private void deleteStaleLogs()
+    {
+        final String current = logFile( generation ).getName();
+        final File[] files = dir.listFiles(
+                ( d, name ) -> name.startsWith( LOG_PREFIX ) && name.endsWith( LOG_SUFFIX ) && !name.equals(
+                        current ) );
+
+        if ( files != null )
+        {
+            for ( final File file : files )
+            {
+                logger.debug( "Deleting stale content-index log: {}", file );
+                file.delete();
+            }
+        }
+    }
+
+    private File logFile( final long gen )
+    {
+        return new File( dir, LOG_PREFIX + gen + LOG_SUFFIX );
+    }
+
+    private static int slotPosition( final int slot )
+    {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static byte[] keyBytes( final StoreKey key, final String path )
+    {
+        return ( key.toString() + '\t' + path ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * FNV-1a, finished with the MurmurHash3 mixer so the low bits (which pick the slot) are well spread. Never 0, which
+     * marks an empty slot.
+     */
+    static long hash( final byte[] bytes )
+    {
+        long h = 0xcbf29ce484222325L;
+        for ( final byte b : bytes )
+        {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * The append-only record log: <code>[int key length][key][int value length][value]</code>, where the key is
+     * <code>store-key TAB path</code> and the value is the origin store key, both in UTF-8. Records never straddle a
+     * segment boundary.
+     */
+    private static final class Log
+    {
+        private final File file;
+
+        private final RandomAccessFile raf;
+
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+        private final int segmentBytes;
+
+        private long end;
+
+        private Log( final File file, final int segmentBytes, final long end, final boolean truncate )
+                throws IOException
+        {
+            this.file = file;
+            this.segmentBytes = segmentBytes;
+            this.end = end;
+            this.raf = new RandomAccessFile( file, "rw" );
+            if ( truncate )
+            {
+                raf.setLength( 0 );
+            }
+
+            final int lastSegment = (int) ( Math.max( 0, end - 1 ) / segmentBytes );
+            for ( int i = 0; i <= lastSegment; i++ )
+            {
+                segment( i );
+            }
+        }
+
+        private boolean fits( final byte[] key, final byte[] value )
+        {
+            return 8L + key.length + value.length <= segmentBytes;
+        }
+
+        private long append( final byte[] key, final byte[] value )
+                throws IOException
+        {
+            final int length = 8 + key.length + value.length;
+            long offset = end;
+            final int position = (int) ( offset % segmentBytes );
+            if ( position + length > segmentBytes )
+            {
+                offset += segmentBytes - position;
+            }
+
+            final ByteBuffer buf = segment( (int) ( offset / segmentBytes ) ).duplicate();
+            buf.position( (int) ( offset % segmentBytes ) );
+            buf.putInt( key.length ).put( key ).putInt( value.length ).put( value );
+
+            end = offset + length;
+            return offset;
+        }
+
+        private int recordBytes( final long offset )
+        {
+            final ByteBuffer segment = segments.get( (int) ( offset / segmentBytes ) );
+            final int position = (int) ( offset % segmentBytes );
+            final int keyLength = segment.getInt( position );
+            return 8 + keyLength + segment.getInt( position + 4 + keyLength );
+        }
+
+        private boolean keyEquals( final long offset, final byte[] key )
+        {
+            final ByteBuffer segment = segments.get( (int) ( offset / segmentBytes ) );
+            final int position = (int) ( offset % segmentBytes ) + 4;
+            if ( segment.getInt( position - 4 ) != key.length )
+            {
+                return false;
+            }
+
+            for ( int i = 0; i < key.length; i++ )
+            {
+                if ( segment.get( position + i ) != key[i] )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private byte[] key( final long offset )
+        {
+            return read( offset, 0 );
+        }
+
+        private byte[] value( final long offset )
+        {
+            final ByteBuffer segment = segments.get( (int) ( offset / segmentBytes ) );
+            final int keyLength = segment.getInt( (int) ( offset % segmentBytes ) );
+            return keyLength < 0 ? null : read( offset, 4 + keyLength );
+        }
+
+        /**
+         * Read the length-prefixed field at the given distance into the record, or null if it runs off the segment
+         * (which only a damaged file can cause).
+         */
+        private byte[] read( final long offset, final int field )
+        {
+            final ByteBuffer segment = segments.get( (int) ( offset / segmentBytes ) );
+            final int position = (int) ( offset % segmentBytes ) + field;
+            if ( position + 4 > segmentBytes )
+            {
+                return null;
+            }
+
+            final int length = segment.getInt( position );
+            if ( length < 0 || position + 4L + length > segmentBytes )
+            {
+                return null;
+            }
+
+            final byte[] bytes = new byte[length];
+            final ByteBuffer buf = segment.duplicate();
+            buf.position( position + 4 );
+            buf.get( bytes );
+            return bytes;
+        }
+
+        private MappedByteBuffer segment( final int index )
+                throws IOException
+        {
+            while ( segments.size() <= index )
+            {
+                segments.add( raf.getChannel()
+                                 .map( FileChannel.MapMode.READ_WRITE, (long) segments.size() * segmentBytes,
+                                       segmentBytes ) );
+            }
+
+            return segments.get( index );
+        }
+
+        private void force()
+        {
+            segments.forEach( MappedByteBuffer::force );
+        }
+
+        private void close()
+                throws IOException
+        {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,703 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import org.commonjava.indy.model.core.StoreKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Secondary keys for the content index, so that bulk operations on a store can walk its entries directly instead of
+ * querying a search index. Two maps are kept:
+ * <ul>
+ *     <li>store &rarr; (path &rarr; origin store), for every path indexed in a store</li>
+ *     <li>origin store &rarr; (store &rarr; paths), for the entries of <b>other</b> stores (groups) that resolved to
+ *     content in the origin store</li>
+ * </ul>
+ * When a directory is given, the index is persisted as a snapshot sorted by store and path, plus an append-only
+ * journal of the changes made since. The journal is folded into a new snapshot once it grows larger than the index
+ * itself (and on {@link #close()}).
+ * <br/>
+ * Callers should add to this index <b>after</b> adding to the primary index, and remove from it <b>before</b>
+ * removing from the primary index. That way, every primary entry is always reachable from here; the worst a race can
+ * leave behind is a secondary entry whose primary entry is already gone, which bulk removal simply skips.
+ */
+public class StorePathIndex
+{
+    static final String SNAPSHOT_FILE = "store-paths.sorted";
+
+    static final String JOURNAL_FILE = "store-paths.journal";
+
+    private static final String ADD = "+";
+
+    private static final String REMOVE = "-";
+
+    private static final String DROP = "*";
+
+    private static final long MIN_COMPACTION_RECORDS = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final ConcurrentHashMap<StoreKey, ConcurrentHashMap<String, StoreKey>> byStore = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<StoreKey, ConcurrentHashMap<StoreKey, Set<String>>> byOrigin =
+            new ConcurrentHashMap<>();
+
+    private final AtomicLong size = new AtomicLong();
+
+    // mutations share this lock; compaction takes it exclusively so the snapshot and the journal never disagree.
+    private final ReentrantReadWriteLock compactionLock = new ReentrantReadWriteLock();
+
+    private final File dir;
+
+    private Writer journal;
+
+    private volatile long journalRecords;
+
+    private final Function<String, StoreKey> keyParser;
+
+    /**
+     * @param dir directory to persist the index in, or null to keep it in memory only
+     */
+    public StorePathIndex( final File dir )
+    {
+        this( dir, StoreKey::fromString );
+    }
+
+    /**
+     * @param dir directory to persist the index in, or null to keep it in memory only
+     * @param keyParser turns store keys from the snapshot and journal into {@link StoreKey}s, so a reload can share the
+     * store manager's key instances instead of holding one parsed copy per record
+     */
+    public StorePathIndex( final File dir, final Function<String, StoreKey> keyParser )
+    {
+        this.dir = dir;
+        this.keyParser = keyParser;
+    }
+
+    /**
+     * Read the sorted snapshot and replay the journal, if there are any. Returns false if there was nothing on disk
+     * (first start, or persistence disabled), in which case the caller should {@link #rebuild(Iterator)} the index.
+     */
+    public boolean load()
+            throws IOException
+    {
+        if ( dir == null )
+        {
+            return false;
+        }
+
+        final File snapshot = new File( dir, SNAPSHOT_FILE );
+        final File journalFile = new File( dir, JOURNAL_FILE );
+        final boolean found = snapshot.exists() || journalFile.exists();
+
+        if ( snapshot.exists() )
+        {
+            readSnapshot( snapshot );
+        }
+
+        if ( journalFile.exists() )
+        {
+            journalRecords = replayJournal( journalFile );
+        }
+
+        logger.info( "Loaded {} content-index secondary entries ({} journal records) from: {}", size.get(),
+                     journalRecords, dir );
+
+        openJournal( true );
+        return found;
+    }
+
+    /**
+     * Replace the whole index with the given primary index entries (each carrying its origin store), and write them
+     * out as a fresh snapshot.
+     */
+    public void rebuild( final Iterator<IndexedStorePath> entries )
+            throws IOException
+    {
+        compactionLock.writeLock().lock();
+        try
+        {
+            byStore.clear();
+            byOrigin.clear();
+            size.set( 0 );
+
+            while ( entries.hasNext() )
+            {
+                final IndexedStorePath entry = entries.next();
+                put( entry.getStoreKey(), entry.getOriginStoreKey(), entry.getPath() );
+            }
+
+            compact();
+        }
+        finally
+        {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    public void add( final StoreKey key, final StoreKey origin, final String path )
+    {
+        compactionLock.readLock().lock();
+        try
+        {
+            // paths are re-indexed on every access, so most adds don't change anything
+            if ( put( key, origin, path ) )
+            {
+                append( ADD, key, path, origin );
+            }
+        }
+        finally
+        {
+            compactionLock.readLock().unlock();
+        }
+
+        compactIfNecessary();
+    }
+
+    /**
+     * Remove the path from the store's entries, returning the origin store it resolved to (or null if it wasn't
+     * indexed).
+     */
+    public StoreKey remove( final StoreKey key, final String path )
+    {
+        final StoreKey origin;
+        compactionLock.readLock().lock();
+        try
+        {
+            origin = delete( key, path );
+            if ( origin != null )
+            {
+                append( REMOVE, key, path, null );
+            }
+        }
+        finally
+        {
+            compactionLock.readLock().unlock();
+        }
+
+        compactIfNecessary();
+        return origin;
+    }
+
+    /**
+     * Return all entries indexed in the given store.
+     */
+    public List<IndexedStorePath> getPaths( final StoreKey key )
+    {
+        final Map<String, StoreKey> paths = byStore.get( key );
+        if ( paths == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<IndexedStorePath> result = new ArrayList<>( paths.size() );
+        paths.forEach( ( path, origin ) -> result.add( new IndexedStorePath( key, origin, path ) ) );
+        return result;
+    }
+
+    /**
+     * Remove and return all entries indexed in the given store.
+     */
+    public List<IndexedStorePath> removeStore( final StoreKey key )
+    {
+        final List<IndexedStorePath> removed = new ArrayList<>();
+        compactionLock.readLock().lock();
+        try
+        {
+            byStore.computeIfPresent( key, ( k, paths ) -> {
+                paths.forEach( ( path, origin ) -> {
+                    unlinkOrigin( key, origin, path );
+                    removed.add( new IndexedStorePath( key, origin, path ) );
+                } );
+                return null;
+            } );
+
+            if ( !removed.isEmpty() )
+            {
+                size.addAndGet( -removed.size() );
+                append( DROP, key, null, null );
+            }
+        }
+        finally
+        {
+            compactionLock.readLock().unlock();
+        }
+
+        compactIfNecessary();
+        return removed;
+    }
+
+    /**
+     * Pass every entry, with its origin store, to the consumer.
+     */
+    public void forEach( final Consumer<IndexedStorePath> consumer )
+    {
+        byStore.forEach( ( key, paths ) -> paths.forEach(
+                ( path, origin ) -> consumer.accept( new IndexedStorePath( key, origin, path ) ) ) );
+    }
+
+    /**
+     * Return the entries of other stores (groups) that resolved to content in the given origin store.
+     */
+    public List<IndexedStorePath> getOriginEntries( final StoreKey origin )
+    {
+        final Map<StoreKey, Set<String>> stores = byOrigin.get( origin );
+        if ( stores == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<IndexedStorePath> result = new ArrayList<>();
+        stores.forEach( ( key, paths ) -> paths.forEach(
+                path -> result.add( new IndexedStorePath( key, origin, path ) ) ) );
+        return result;
+    }
+
+    /**
+     * Remove and return the entries of other stores (groups) that resolved to content in the given origin store.
+     */
+    public List<IndexedStorePath> removeOriginEntries( final StoreKey origin )
+    {
+        return removeIfOrigin( getOriginEntries( origin ), origin );
+    }
+
+    /**
+     * Remove and return the entries of other stores (groups) that resolved to the given path in the given origin
+     * store.
+     */
+    public List<IndexedStorePath> removeOriginEntries( final StoreKey origin, final String path )
+    {
+        final Map<StoreKey, Set<String>> stores = byOrigin.get( origin );
+        if ( stores == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<IndexedStorePath> candidates = new ArrayList<>();
+        stores.forEach( ( key, paths ) -> {
+            if ( paths.contains( path ) )
+            {
+                candidates.add( new IndexedStorePath( key, origin, path ) );
+            }
+        } );
+
+        return removeIfOrigin( candidates, origin );
+    }
+
+    public long size()
+    {
+        return size.get();
+    }
+
+    /**
+     * Fold the journal into a new snapshot and stop journaling.
+     */
+    public void close()
+            throws IOException
+    {
+        if ( dir == null )
+        {
+            return;
+        }
+
+        compactionLock.writeLock().lock();
+        try
+        {
+            compact();
+            if ( journal != null )
+            {
+                journal.close();
+                journal = null;
+            }
+        }
+        finally
+        {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    private List<IndexedStorePath> removeIfOrigin( final List<IndexedStorePath> candidates, final StoreKey origin )
+    {
+        final List<IndexedStorePath> removed = new ArrayList<>( candidates.size() );
+        compactionLock.readLock().lock();
+        try
+        {
+            for ( final IndexedStorePath candidate : candidates )
+            {
+                final StoreKey key = candidate.getStoreKey();
+                final String path = candidate.getPath();
+
+                // the entry may have been re-resolved to another origin since we looked
+                final boolean[] matched = { false };
+                byStore.computeIfPresent( key, ( k, paths ) -> {
+                    if ( paths.remove( path, origin ) )
+                    {
+                        matched[0] = true;
+                        unlinkOrigin( key, origin, path );
+                    }
+                    return paths.isEmpty() ? null : paths;
+                } );
+
+                if ( matched[0] )
+                {
+                    size.decrementAndGet();
+                    append( REMOVE, key, path, null );
+                    removed.add( candidate );
+                }
+            }
+        }
+        finally
+        {
+            compactionLock.readLock().unlock();
+        }
+
+        compactIfNecessary();
+        return removed;
+    }
+
+    private boolean put( final StoreKey key, final StoreKey origin, final String path )
+    {
+        final boolean[] changed = { false };
+        byStore.compute( key, ( k, paths ) -> {
+            if ( paths == null )
+            {
+                paths = new ConcurrentHashMap<>();
+            }
+
+            final StoreKey old = paths.put( path, origin );
+            if ( old == null )
+            {
+                size.incrementAndGet();
+            }
+            else if ( !old.equals( origin ) )
+            {
+                unlinkOrigin( key, old, path );
+            }
+            else
+            {
+                return paths;
+            }
+
+            changed[0] = true;
+
+            if ( !key.equals( origin ) )
+            {
+                byOrigin.computeIfAbsent( origin, o -> new ConcurrentHashMap<>() )
+                        .computeIfAbsent( key, s -> ConcurrentHashMap.newKeySet() )
+                        .add( path );
+            }
+
+            return paths;
+        } );
+
+        return changed[0];
+    }
+
+    private StoreKey delete( final StoreKey key, final String path )
+    {
+        final StoreKey[] removed = { null };
+        byStore.computeIfPresent( key, ( k, paths ) -> {
+            removed[0] = paths.remove( path );
+            if ( removed[0] != null )
+            {
+                unlinkOrigin( key, removed[0], path );
+            }
+
+            return paths.isEmpty() ? null : paths;
+        } );
+
+        if ( removed[0] != null )
+        {
+            size.decrementAndGet();
+        }
+
+        return removed[0];
+    }
+
+    private void unlinkOrigin( final StoreKey key, final StoreKey origin, final String path )
+    {
+        if ( key.equals( origin ) )
+        {
+            return;
+        }
+
+        byOrigin.computeIfPresent( origin, ( o, stores ) -> {
+            stores.computeIfPresent( key, ( k, paths ) -> {
+                paths.remove( path );
+                return paths.isEmpty() ? null : paths;
+            } );
+
+            return stores.isEmpty() ? null : stores;
+        } );
+    }
+
+    private void drop( final StoreKey key )
+    {
+        final Map<String, StoreKey> paths = byStore.remove( key );
+        if ( paths != null )
+        {
+            paths.forEach( ( path, origin ) -> unlinkOrigin( key, origin, path ) );
+            size.addAndGet( -paths.size() );
+        }
+    }
+
+    private void append( final String op, final StoreKey key, final String path, final StoreKey origin )
+    {
+        if ( dir == null )
+        {
+            return;
+        }
+
+        final StringBuilder sb = new StringBuilder( op ).append( '\t' ).append( key );
+        if ( path != null )
+        {
+            sb.append( '\t' ).append( path );
+        }
+        if ( origin != null )
+        {
+            sb.append( '\t' ).append( origin );
+        }
+        sb.append( '\n' );
+
+        synchronized ( this )
+        {
+            try
+            {
+                if ( journal == null )
+                {
+                    openJournal( true );
+                }
+
+                journal.write( sb.toString() );
+                journal.flush();
+                journalRecords++;
+            }
+            catch ( final IOException e )
+            {
+                logger.error( String.format( "Failed to journal content-index change: %s. Reason: %s", sb,
+                                             e.getMessage() ), e );
+            }
+        }
+    }
+
+    private void compactIfNecessary()
+    {
+        if ( dir == null || journalRecords < Math.max( MIN_COMPACTION_RECORDS, size.get() ) )
+        {
+            return;
+        }
+
+        compactionLock.writeLock().lock();
+        try
+        {
+            // somebody else may have compacted while we waited for the lock
+            if ( journalRecords >= Math.max( MIN_COMPACTION_RECORDS, size.get() ) )
+            {
+                compact();
+            }
+        }
+        catch ( final IOException e )
+        {
+            logger.error( String.format( "Failed to compact content-index journal in: %s. Reason: %s", dir,
+                                         e.getMessage() ), e );
+        }
+        finally
+        {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write every entry, sorted by store and then path, to a new snapshot and start a new journal. Callers hold the
+     * compaction write lock.
+     */
+    private void compact()
+            throws IOException
+    {
+        if ( dir == null )
+        {
+            return;
+        }
+
+        dir.mkdirs();
+        final File snapshot = new File( dir, SNAPSHOT_FILE );
+        final File tmp = new File( dir, SNAPSHOT_FILE + ".tmp" );
+
+        final List<StoreKey> keys = new ArrayList<>( byStore.keySet() );
+        keys.sort( Comparator.comparing( StoreKey::toString ) );
+
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter( new FileOutputStream( tmp ), StandardCharsets.UTF_8 ) ))
+        {
+            for ( final StoreKey key : keys )
+            {
+                final Map<String, StoreKey> paths = byStore.get( key );
+                if ( paths == null )
+                {
+                    continue;
+                }
+
+                final List<String> sorted = new ArrayList<>( paths.keySet() );
+                Collections.sort( sorted );
+                for ( final String path : sorted )
+                {
+                    final StoreKey origin = paths.get( path );
+                    if ( origin == null )
+                    {
+                        continue;
+                    }
+
+                    writer.write( key.toString() );
+                    writer.write( '\t' );
+                    writer.write( path );
+                    writer.write( '\t' );
+                    // the store's own entries leave the origin out
+                    writer.write( key.equals( origin ) ? "" : origin.toString() );
+                    writer.write( '\n' );
+                }
+            }
+        }
+
+        Files.move( tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE );
+
+        synchronized ( this )
+        {
+            if ( journal != null )
+            {
+                journal.close();
+            }
+
+            openJournal( false );
+            journalRecords = 0;
+        }
+
+        logger.debug( "Compacted {} content-index secondary entries into: {}", size.get(), snapshot );
+    }
+
+    private synchronized void openJournal( final boolean append )
+            throws IOException
+    {
+        dir.mkdirs();
+        journal = new BufferedWriter(
+                new OutputStreamWriter( new FileOutputStream( new File( dir, JOURNAL_FILE ), append ),
+                                        StandardCharsets.UTF_8 ) );
+    }
+
+    private void readSnapshot( final File snapshot )
+            throws IOException
+    {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader( new FileInputStream( snapshot ), StandardCharsets.UTF_8 ) ))
+        {
+            // lines are grouped by store, so each store key only needs to be parsed once
+            String lastStore = null;
+            StoreKey key = null;
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                final String[] parts = line.split( "\t", -1 );
+                if ( parts.length != 3 )
+                {
+                    logger.warn( "Skipping malformed content-index snapshot line: '{}'", line );
+                    continue;
+                }
+
+                if ( !parts[0].equals( lastStore ) )
+                {
+                    lastStore = parts[0];
+                    key = keyParser.apply( parts[0] );
+                }
+
+                if ( key != null )
+                {
+                    put( key, parts[2].isEmpty() ? key : keyParser.apply( parts[2] ), parts[1] );
+                }
+            }
+        }
+    }
+
+    private long replayJournal( final File journalFile )
+            throws IOException
+    {
+        long records = 0;
+        try (BufferedReader reader = Files.newBufferedReader( journalFile.toPath(), StandardCharsets.UTF_8 ))
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                records++;
+                final String[] parts = line.split( "\t", -1 );
+                final StoreKey key = parts.length > 1 ? keyParser.apply( parts[1] ) : null;
+                if ( key == null )
+                {
+                    // most likely a partial write when the process died
+                    logger.warn( "Skipping malformed content-index journal line: '{}'", line );
+                    continue;
+                }
+
+                if ( ADD.equals( parts[0] ) && parts.length == 4 )
+                {
+                    final StoreKey origin = keyParser.apply( parts[3] );
+                    if ( origin != null )
+                    {
+                        put( key, origin, parts[2] );
+                    }
+                }
+                else if ( REMOVE.equals( parts[0] ) && parts.length == 3 )
+                {
+                    delete( key, parts[2] );
+                }
+                else if ( DROP.equals( parts[0] ) && parts.length == 2 )
+                {
+                    drop( key );
+                }
+                else
+                {
+                    logger.warn( "Skipping malformed content-index journal line: '{}'", line );
+                }
+            }
+        }
+
+        return records;
+    }
+}
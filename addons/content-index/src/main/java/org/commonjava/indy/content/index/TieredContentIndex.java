@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.commonjava.indy.content.index.conf.ContentIndexConfig;
+import org.commonjava.indy.core.metrics.IndyMetric;
+import org.commonjava.indy.core.metrics.IndyMetrics;
+import org.commonjava.indy.model.core.StoreKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The content index, in two tiers:
+ * <ol>
+ *     <li>an on-heap tier of recently used entries, bounded by their estimated size in bytes (a share of the maximum
+ *     heap) and evicted with W-TinyLFU, so entries hit often survive bursts of one-off lookups</li>
+ *     <li>a {@link MappedContentIndex} on disk, holding every entry</li>
+ * </ol>
+ * The heap tier is split in two: paths whose file name starts with one of the configured resident prefixes (by
+ * default maven-metadata*, which is re-read constantly) get their own share, so they never compete with the long tail
+ * of artifact lookups. Only positive results are kept on-heap; misses fall through to the mapped tier every time.
+ * <br/>
+ * Loading an entry into the heap tier, and changing or removing it, all run under that key's lock in the heap tier
+ * (via its map's compute methods), so a lookup racing a removal can't put the removed entry back on-heap afterward.
+ * Heap-tier hits don't lock.
+ */
+public class TieredContentIndex
+{
+    // IndexedStorePath key and value (sharing the path), plus the cache node holding them
+    private static final int ENTRY_OVERHEAD_BYTES = 184;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final MappedContentIndex mappedTier;
+
+    private final Cache<IndexedStorePath, IndexedStorePath> memoryTier;
+
+    private final Cache<IndexedStorePath, IndexedStorePath> residentTier;
+
+    private final List<String> residentPrefixes;
+
+    private final IndyMetrics metrics;
+
+    public TieredContentIndex( final File dir, final ContentIndexConfig config, final IndyMetrics metrics )
+    {
+        this( new MappedContentIndex( dir ), config, metrics );
+    }
+
+    public TieredContentIndex( final File dir, final Function<String, StoreKey> keyParser,
+                               final ContentIndexConfig config, final IndyMetrics metrics )
+    {
+        this( new MappedContentIndex( dir, keyParser ), config, metrics );
+    }
+
+    TieredContentIndex( final MappedContentIndex mappedTier, final ContentIndexConfig config,
+                        final IndyMetrics metrics )
+    {
+        this.mappedTier = mappedTier;
+        this.metrics = metrics;
+        this.residentPrefixes = config.getResidentPrefixes();
+
+        final long heapBytes = config.getHeapBytes();
+        final long residentBytes = heapBytes / 100 * config.getResidentPercent();
+        this.memoryTier = newTier( heapBytes - residentBytes );
+        this.residentTier = newTier( residentBytes );
+
+        logger.info( "Content index keeps up to {} bytes on-heap ({} reserved for paths starting with: {})",
+                     heapBytes, residentBytes, residentPrefixes );
+    }
+
+    /**
+     * Map the persistent tier. Returns false if it starts out empty. If it can't be mapped at all, the index works
+     * on-heap only until restarted.
+     */
+    public boolean open()
+            throws IOException
+    {
+        return mappedTier.open();
+    }
+
+    /**
+     * Return the origin entry (origin store and path) the path was indexed with for the given store, or null.
+     */
+    public IndexedStorePath get( final StoreKey key, final String path )
+    {
+        final IndexedStorePath lookup = new IndexedStorePath( key, path );
+        final Cache<IndexedStorePath, IndexedStorePath> tier = tierFor( path );
+
+        IndexedStorePath origin = tier.getIfPresent( lookup );
+        if ( origin != null )
+        {
+            metrics.count( IndyMetric.CONTENT_INDEX_MEMORY_HITS, key );
+            return origin;
+        }
+
+        metrics.count( IndyMetric.CONTENT_INDEX_MEMORY_MISSES, key );
+
+        return tier.asMap().computeIfAbsent( lookup, k -> {
+            final StoreKey originKey = mappedTier.get( key, path );
+            if ( originKey == null )
+            {
+                metrics.count( IndyMetric.CONTENT_INDEX_MAPPED_MISSES, key );
+                return null;
+            }
+
+            metrics.count( IndyMetric.CONTENT_INDEX_MAPPED_HITS, key );
+            return new IndexedStorePath( originKey, path );
+        } );
+    }
+
+    /**
+     * Index the path for the given store as found in the origin store. Returns false if it was already indexed that
+     * way, which is the common case: paths get re-indexed every time they're accessed.
+     */
+    public boolean put( final StoreKey key, final StoreKey origin, final String path )
+    {
+        final IndexedStorePath entry = new IndexedStorePath( key, path );
+        final Cache<IndexedStorePath, IndexedStorePath> tier = tierFor( path );
+
+        final IndexedStorePath cached = tier.getIfPresent( entry );
+        if ( cached != null && cached.getStoreKey().equals( origin ) )
+        {
+            return false;
+        }
+
+        final boolean[] changed = { true };
+        tier.asMap().compute( entry, ( k, v ) -> {
+            try
+            {
+                changed[0] = mappedTier.put( key, path, origin );
+            }
+            catch ( final ContentIndexFullException e )
+            {
+                // logged once by the mapped tier; the entry is still served from the heap tier while it stays there
+                metrics.count( IndyMetric.CONTENT_INDEX_MAPPED_REJECTED, key );
+            }
+            catch ( final IOException e )
+            {
+                logger.error( String.format( "Failed to write content-index entry for: %s in: %s. Reason: %s", path,
+                                             key, e.getMessage() ), e );
+            }
+
+            return new IndexedStorePath( origin, path );
+        } );
+
+        return changed[0];
+    }
+
+    /**
+     * Write an entry (carrying its origin store) to the persistent tier only, e.g. when repopulating it at startup.
+     */
+    public void restore( final IndexedStorePath entry )
+    {
+        try
+        {
+            mappedTier.put( entry.getStoreKey(), entry.getPath(), entry.getOriginStoreKey() );
+        }
+        catch ( final ContentIndexFullException e )
+        {
+            metrics.count( IndyMetric.CONTENT_INDEX_MAPPED_REJECTED, entry.getStoreKey() );
+        }
+        catch ( final IOException e )
+        {
+            logger.error( String.format( "Failed to restore content-index entry: %s. Reason: %s", entry,
+                                         e.getMessage() ), e );
+        }
+    }
+
+    /**
+     * Remove the path from the given store's entries, returning the origin entry it was indexed with (or null).
+     */
+    public IndexedStorePath remove( final StoreKey key, final String path )
+    {
+        final IndexedStorePath entry = new IndexedStorePath( key, path );
+        final Cache<IndexedStorePath, IndexedStorePath> tier = tierFor( path );
+
+        final StoreKey[] origin = new StoreKey[1];
+        final IndexedStorePath[] cached = new IndexedStorePath[1];
+        tier.asMap().compute( entry, ( k, v ) -> {
+            cached[0] = v;
+            try
+            {
+                origin[0] = mappedTier.remove( key, path );
+            }
+            catch ( final IOException e )
+            {
+                logger.error( String.format( "Failed to remove content-index entry for: %s in: %s. Reason: %s", path,
+                                             key, e.getMessage() ), e );
+            }
+
+            return null;
+        } );
+
+        if ( origin[0] != null )
+        {
+            return new IndexedStorePath( origin[0], path );
+        }
+
+        return cached[0];
+    }
+
+    /**
+     * Walk every entry in the persistent tier. Only meant for startup; see {@link MappedContentIndex#iterator()}.
+     */
+    public Iterator<IndexedStorePath> iterator()
+    {
+        return mappedTier.iterator();
+    }
+
+    public int size()
+    {
+        return mappedTier.size();
+    }
+
+    public CacheStats getMemoryStats()
+    {
+        return memoryTier.stats();
+    }
+
+    public CacheStats getResidentStats()
+    {
+        return residentTier.stats();
+    }
+
+    public void close()
+            throws IOException
+    {
+        logger.info( "Closing content index. On-heap: {}; resident: {}", memoryTier.stats(), residentTier.stats() );
+        memoryTier.invalidateAll();
+        residentTier.invalidateAll();
+        mappedTier.close();
+    }
+
+    private Cache<IndexedStorePath, IndexedStorePath> tierFor( final String path )
+    {
+        if ( !residentPrefixes.isEmpty() )
+        {
+            final String fileName = path.substring( path.lastIndexOf( '/' ) + 1 );
+            for ( final String prefix : residentPrefixes )
+            {
+                if ( fileName.startsWith( prefix ) )
+                {
+                    return residentTier;
+                }
+            }
+        }
+
+        return memoryTier;
+    }
+
+    private static Cache<IndexedStorePath, IndexedStorePath> newTier( final long maxBytes )
+    {
+        return Caffeine.newBuilder()
+                       .maximumWeight( maxBytes )
+                       .weigher( ( IndexedStorePath key, IndexedStorePath value ) -> ENTRY_OVERHEAD_BYTES
+                               + 2 * ( key.getPath().length() + key.getStoreName().length()
+                               + value.getStoreName().length() ) )
+                       .recordStats()
+                       .build();
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index.conf;
+
+import org.commonjava.indy.conf.IndyConfigInfo;
+import org.commonjava.web.config.annotation.ConfigName;
+import org.commonjava.web.config.annotation.SectionName;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sizes the on-heap tier of the content index, which sits in front of the memory-mapped tier on disk. The heap tier is
+ * bounded by an estimate of its entries' size in bytes, as a percentage of the JVM's maximum heap.
+ */
+@SectionName( ContentIndexConfig.SECTION_NAME )
+@ApplicationScoped
+public class ContentIndexConfig
+    implements IndyConfigInfo
+{
+
+    public static final String SECTION_NAME = "content-index";
+
+    public static final int DEFAULT_HEAP_PERCENT = 5;
+
+    public static final int DEFAULT_RESIDENT_PERCENT = 25;
+
+    public static final String DEFAULT_RESIDENT_PREFIXES = "maven-metadata";
+
+    private Integer heapPercent;
+
+    private Integer residentPercent;
+
+    private String residentPrefixes;
+
+    public ContentIndexConfig()
+    {
+    }
+
+    public int getHeapPercent()
+    {
+        return heapPercent == null || heapPercent < 1 || heapPercent > 50 ? DEFAULT_HEAP_PERCENT : heapPercent;
+    }
+
+    @ConfigName( "memory.heap.percent" )
+    public void setHeapPercent( final Integer heapPercent )
+    {
+        this.heapPercent = heapPercent;
+    }
+
+    public int getResidentPercent()
+    {
+        return residentPercent == null || residentPercent < 0 || residentPercent > 90 ?
+                DEFAULT_RESIDENT_PERCENT :
+                residentPercent;
+    }
+
+    @ConfigName( "memory.resident.percent" )
+    public void setResidentPercent( final Integer residentPercent )
+    {
+        this.residentPercent = residentPercent;
+    }
+
+    public List<String> getResidentPrefixes()
+    {
+        final String prefixes = residentPrefixes == null ? DEFAULT_RESIDENT_PREFIXES : residentPrefixes;
+        final List<String> result = new ArrayList<>();
+        for ( final String prefix : prefixes.split( "\\s*,\\s*" ) )
+        {
+            if ( !prefix.trim().isEmpty() )
+            {
+                result.add( prefix.trim() );
+            }
+        }
+
+        return Collections.unmodifiableList( result );
+    }
+
+    @ConfigName( "memory.resident.filename.prefixes" )
+    public void setResidentPrefixes( final String residentPrefixes )
+    {
+        this.residentPrefixes = residentPrefixes;
+    }
+
+    /**
+     * The on-heap budget in bytes: {@link #getHeapPercent()} of {@link Runtime#maxMemory()}.
+     */
+    public long getHeapBytes()
+    {
+        return Runtime.getRuntime().maxMemory() / 100 * getHeapPercent();
+    }
+
+    @Override
+    public String getDefaultConfigFileName()
+    {
+        return new File( IndyConfigInfo.CONF_INCLUDES_DIR, "content-index.conf" ).getPath();
+    }
+
+    @Override
+    public InputStream getDefaultConfig()
+    {
+        return Thread.currentThread()
+                     .getContextClassLoader()
+                     .getResourceAsStream( "default-content-index.conf" );
+    }
+
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MappedContentIndexTest
+{
+    private static final StoreKey GROUP = new StoreKey( StoreType.group, "public" );
+
+    private static final StoreKey CENTRAL = new StoreKey( StoreType.remote, "central" );
+
+    private static final StoreKey HOSTED = new StoreKey( StoreType.hosted, "local-deployments" );
+
+    private static final String POM = "org/foo/bar/1/bar-1.pom";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void putReplaceAndRemove()
+            throws Exception
+    {
+        final MappedContentIndex index = new MappedContentIndex( temp.newFolder() );
+        assertThat( index.open(), equalTo( false ) );
+
+        assertThat( index.put( GROUP, POM, CENTRAL ), equalTo( true ) );
+        assertThat( index.put( GROUP, POM, CENTRAL ), equalTo( false ) );
+        assertThat( index.get( GROUP, POM ), equalTo( CENTRAL ) );
+        assertThat( index.get( CENTRAL, POM ), nullValue() );
+
+        assertThat( index.put( GROUP, POM, HOSTED ), equalTo( true ) );
+        assertThat( index.get( GROUP, POM ), equalTo( HOSTED ) );
+        assertThat( index.size(), equalTo( 1 ) );
+
+        assertThat( index.remove( GROUP, POM ), equalTo( HOSTED ) );
+        assertThat( index.remove( GROUP, POM ), nullValue() );
+        assertThat( index.get( GROUP, POM ), nullValue() );
+        assertThat( index.size(), equalTo( 0 ) );
+
+        index.close();
+    }
+
+    @Test
+    public void entriesSurviveGrowthCompactionAndReopen()
+            throws Exception
+    {
+        final File dir = temp.newFolder();
+        final MappedContentIndex index = new MappedContentIndex( dir, 4096, 16 );
+        index.open();
+
+        for ( int i = 0; i < 2000; i++ )
+        {
+            index.put( GROUP, path( i ), CENTRAL );
+        }
+
+        // re-resolve and remove enough entries to leave most of the log as garbage
+        for ( int i = 0; i < 2000; i++ )
+        {
+            if ( i % 2 == 0 )
+            {
+                index.remove( GROUP, path( i ) );
+            }
+            else
+            {
+                index.put( GROUP, path( i ), HOSTED );
+            }
+        }
+
+        index.close();
+
+        final MappedContentIndex reopened = new MappedContentIndex( dir, 4096, 16 );
+        assertThat( reopened.open(), equalTo( true ) );
+        assertThat( reopened.size(), equalTo( 1000 ) );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            if ( i % 2 == 0 )
+            {
+                assertThat( reopened.get( GROUP, path( i ) ), nullValue() );
+            }
+            else
+            {
+                assertThat( reopened.get( GROUP, path( i ) ), equalTo( HOSTED ) );
+            }
+        }
+
+        final Set<String> paths = new HashSet<>();
+        final Iterator<IndexedStorePath> entries = reopened.iterator();
+        while ( entries.hasNext() )
+        {
+            final IndexedStorePath entry = entries.next();
+            assertThat( entry.getStoreKey(), equalTo( GROUP ) );
+            assertThat( entry.getOriginStoreKey(), equalTo( HOSTED ) );
+            paths.add( entry.getPath() );
+        }
+
+        assertThat( paths.size(), equalTo( 1000 ) );
+        reopened.close();
+
+        final File[] logs = dir.listFiles( ( d, name ) -> name.endsWith( ".log" ) );
+        assertThat( logs.length, equalTo( 1 ) );
+    }
+
+    @Test
+    public void lookupsKeepWorkingWhileTheTableIsRebuilt()
+            throws Exception
+    {
+        final MappedContentIndex index = new MappedContentIndex( temp.newFolder(), 4096, 16 );
+        index.open();
+        for ( int i = 0; i < 8; i++ )
+        {
+            index.put( GROUP, "stable/" + i, CENTRAL );
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger misses = new AtomicInteger();
+        final Thread reader = new Thread( () -> {
+            while ( !done.get() )
+            {
+                for ( int i = 0; i < 8; i++ )
+                {
+                    if ( !CENTRAL.equals( index.get( GROUP, "stable/" + i ) ) )
+                    {
+                        misses.incrementAndGet();
+                    }
+                }
+            }
+        } );
+        reader.start();
+
+        try
+        {
+            // grows the table several times, and compacts the log as the replaced records pile up
+            for ( int round = 0; round < 4; round++ )
+            {
+                for ( int i = 0; i < 500; i++ )
+                {
+                    index.put( GROUP, "churn/" + i, round % 2 == 0 ? HOSTED : CENTRAL );
+                }
+            }
+        }
+        finally
+        {
+            done.set( true );
+            reader.join();
+        }
+
+        assertThat( misses.get(), equalTo( 0 ) );
+        assertThat( index.size(), equalTo( 508 ) );
+        index.close();
+    }
+
+    @Test
+    public void fullTableRefusesNewPaths()
+            throws Exception
+    {
+        final MappedContentIndex index = new MappedContentIndex( temp.newFolder(), 4096, 16, 16 );
+        index.open();
+        for ( int i = 0; i < 12; i++ )
+        {
+            assertThat( index.put( GROUP, "path/" + i, CENTRAL ), equalTo( true ) );
+        }
+
+        try
+        {
+            index.put( GROUP, "path/12", CENTRAL );
+            fail( "Expected the full table to refuse a new path" );
+        }
+        catch ( final ContentIndexFullException e )
+        {
+            assertThat( e.getSize(), equalTo( 12 ) );
+        }
+
+        // existing paths can still change, and removing one makes room again
+        assertThat( index.put( GROUP, "path/0", HOSTED ), equalTo( true ) );
+        index.remove( GROUP, "path/1" );
+        assertThat( index.put( GROUP, "path/12", CENTRAL ), equalTo( true ) );
+        assertThat( index.get( GROUP, "path/12" ), equalTo( CENTRAL ) );
+        index.close();
+    }
+
+    @Test
+    public void unreadableTableStartsEmpty()
+            throws Exception
+    {
+        final File dir = temp.newFolder();
+        final MappedContentIndex index = new MappedContentIndex( dir );
+        index.open();
+        index.put( GROUP, POM, CENTRAL );
+        index.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile( new File( dir, MappedContentIndex.TABLE_FILE ), "rw" ))
+        {
+            raf.writeInt( 0 );
+        }
+
+        final MappedContentIndex reopened = new MappedContentIndex( dir );
+        assertThat( reopened.open(), equalTo( false ) );
+        assertThat( reopened.get( GROUP, POM ), nullValue() );
+
+        reopened.put( GROUP, POM, HOSTED );
+        assertThat( reopened.get( GROUP, POM ), equalTo( HOSTED ) );
+        reopened.close();
+    }
+
+    private static String path( final int i )
+    {
+        return "org/foo/bar/" + i + "/bar-" + i + ".jar";
+    }
+}
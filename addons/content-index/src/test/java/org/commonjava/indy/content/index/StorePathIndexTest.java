@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class StorePathIndexTest
+{
+    private static final StoreKey GROUP = new StoreKey( StoreType.group, "public" );
+
+    private static final StoreKey CENTRAL = new StoreKey( StoreType.remote, "central" );
+
+    private static final StoreKey HOSTED = new StoreKey( StoreType.hosted, "local-deployments" );
+
+    private static final String POM = "org/foo/bar/1/bar-1.pom";
+
+    private static final String JAR = "org/foo/bar/1/bar-1.jar";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void originEntriesAreTrackedApartFromOwnEntries()
+    {
+        final StorePathIndex index = new StorePathIndex( null );
+        index.add( CENTRAL, CENTRAL, POM );
+        index.add( CENTRAL, CENTRAL, JAR );
+        index.add( GROUP, CENTRAL, POM );
+        index.add( GROUP, HOSTED, JAR );
+
+        assertThat( paths( index.getPaths( CENTRAL ) ), equalTo( set( POM, JAR ) ) );
+        assertThat( paths( index.getPaths( GROUP ) ), equalTo( set( POM, JAR ) ) );
+        assertThat( paths( index.getOriginEntries( CENTRAL ) ), equalTo( set( POM ) ) );
+        assertThat( index.getOriginEntries( CENTRAL ).get( 0 ).getStoreKey(), equalTo( GROUP ) );
+
+        final List<IndexedStorePath> removed = index.removeOriginEntries( CENTRAL, POM );
+        assertThat( removed.size(), equalTo( 1 ) );
+        assertThat( paths( index.getPaths( GROUP ) ), equalTo( set( JAR ) ) );
+        assertThat( paths( index.getPaths( CENTRAL ) ), equalTo( set( POM, JAR ) ) );
+        assertThat( index.size(), equalTo( 3L ) );
+    }
+
+    @Test
+    public void reResolvedEntryMovesToItsNewOrigin()
+    {
+        final StorePathIndex index = new StorePathIndex( null );
+        index.add( GROUP, CENTRAL, POM );
+        index.add( GROUP, HOSTED, POM );
+
+        assertThat( index.getOriginEntries( CENTRAL ).isEmpty(), equalTo( true ) );
+        assertThat( index.removeOriginEntries( CENTRAL ).isEmpty(), equalTo( true ) );
+        assertThat( paths( index.removeOriginEntries( HOSTED ) ), equalTo( set( POM ) ) );
+        assertThat( index.getPaths( GROUP ).isEmpty(), equalTo( true ) );
+        assertThat( index.size(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void removingStoreUnlinksItsOriginEntries()
+    {
+        final StorePathIndex index = new StorePathIndex( null );
+        index.add( GROUP, CENTRAL, POM );
+        index.add( GROUP, HOSTED, JAR );
+
+        assertThat( paths( index.removeStore( GROUP ) ), equalTo( set( POM, JAR ) ) );
+        assertThat( index.getOriginEntries( CENTRAL ).isEmpty(), equalTo( true ) );
+        assertThat( index.getOriginEntries( HOSTED ).isEmpty(), equalTo( true ) );
+        assertThat( index.remove( GROUP, POM ), nullValue() );
+    }
+
+    @Test
+    public void journalAndSnapshotSurviveRestart()
+            throws Exception
+    {
+        final File dir = temp.newFolder( "keys" );
+
+        StorePathIndex index = new StorePathIndex( dir );
+        assertThat( index.load(), equalTo( false ) );
+        index.add( CENTRAL, CENTRAL, POM );
+        index.add( GROUP, CENTRAL, POM );
+        index.add( HOSTED, HOSTED, JAR );
+        index.add( GROUP, HOSTED, JAR );
+        index.remove( GROUP, JAR );
+        index.removeStore( HOSTED );
+
+        // no close(): the journal alone has to be enough
+        index = new StorePathIndex( dir );
+        assertThat( index.load(), equalTo( true ) );
+        assertThat( index.size(), equalTo( 2L ) );
+        assertThat( paths( index.getOriginEntries( CENTRAL ) ), equalTo( set( POM ) ) );
+        assertThat( index.getPaths( HOSTED ).isEmpty(), equalTo( true ) );
+
+        index.close();
+        assertThat( new File( dir, StorePathIndex.JOURNAL_FILE ).length(), equalTo( 0L ) );
+
+        index = new StorePathIndex( dir );
+        assertThat( index.load(), equalTo( true ) );
+        assertThat( index.size(), equalTo( 2L ) );
+        assertThat( paths( index.getPaths( GROUP ) ), equalTo( set( POM ) ) );
+        assertThat( index.getPaths( GROUP ).get( 0 ).getOriginStoreKey(), equalTo( CENTRAL ) );
+    }
+
+    @Test
+    public void partialJournalLineIsSkipped()
+            throws Exception
+    {
+        final File dir = temp.newFolder( "keys" );
+
+        StorePathIndex index = new StorePathIndex( dir );
+        index.load();
+        index.add( GROUP, CENTRAL, POM );
+
+        try (Writer writer = new FileWriter( new File( dir, StorePathIndex.JOURNAL_FILE ), true ))
+        {
+            writer.write( "+\tgroup:public\torg/foo" );
+        }
+
+        index = new StorePathIndex( dir );
+        index.load();
+        assertThat( index.size(), equalTo( 1L ) );
+    }
+
+    private static Set<String> paths( final List<IndexedStorePath> entries )
+    {
+        return entries.stream().map( IndexedStorePath::getPath ).collect( Collectors.toSet() );
+    }
+
+    private static Set<String> set( final String... paths )
+    {
+        return Arrays.stream( paths ).collect( Collectors.toSet() );
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import org.commonjava.indy.content.index.conf.ContentIndexConfig;
+import org.commonjava.indy.core.conf.MetricsConfig;
+import org.commonjava.indy.core.metrics.IndyMetric;
+import org.commonjava.indy.core.metrics.IndyMetrics;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class TieredContentIndexTest
+{
+    private static final StoreKey GROUP = new StoreKey( StoreType.group, "public" );
+
+    private static final StoreKey CENTRAL = new StoreKey( StoreType.remote, "central" );
+
+    private static final long HEAP_BYTES = 100_000;
+
+    // ENTRY_OVERHEAD_BYTES + 2 chars per char of path, store name and origin store name
+    private static final int ENTRY_BYTES = 184 + 2 * ( path( 0 ).length() + "public".length() + "central".length() );
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private IndyMetrics metrics;
+
+    private ContentIndexConfig config;
+
+    @Before
+    public void setup()
+    {
+        metrics = new IndyMetrics( new MetricsConfig() );
+        config = new ContentIndexConfig()
+        {
+            @Override
+            public long getHeapBytes()
+            {
+                return HEAP_BYTES;
+            }
+        };
+    }
+
+    @Test
+    public void heapTierIsBoundedByEntryBytes()
+            throws Exception
+    {
+        config.setResidentPercent( 0 );
+
+        // never opened, so entries only live on-heap
+        final TieredContentIndex index =
+                new TieredContentIndex( new MappedContentIndex( temp.newFolder() ), config, metrics );
+
+        final int count = 2000;
+        for ( int i = 0; i < count; i++ )
+        {
+            index.put( GROUP, CENTRAL, path( i ) );
+        }
+
+        // eviction runs asynchronously after the writes
+        int present = count;
+        for ( int wait = 0; wait < 500 && present * (long) ENTRY_BYTES > HEAP_BYTES; wait++ )
+        {
+            Thread.sleep( 10 );
+            present = countPresent( index, count );
+        }
+
+        assertThat( present > 0, equalTo( true ) );
+        assertThat( present * (long) ENTRY_BYTES <= HEAP_BYTES, equalTo( true ) );
+    }
+
+    @Test
+    public void residentPathsKeepTheirShareUnderArtifactChurn()
+            throws Exception
+    {
+        config.setResidentPercent( 50 );
+        config.setResidentPrefixes( "maven-metadata" );
+
+        final TieredContentIndex index =
+                new TieredContentIndex( new MappedContentIndex( temp.newFolder() ), config, metrics );
+
+        final String metadata = "org/foo/bar/maven-metadata.xml";
+        index.put( GROUP, CENTRAL, metadata );
+
+        for ( int i = 0; i < 2000; i++ )
+        {
+            index.put( GROUP, CENTRAL, path( i ) );
+        }
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertThat( index.get( GROUP, metadata ), notNullValue() );
+        }
+
+        assertThat( index.getResidentStats().hitCount(), equalTo( 10L ) );
+        assertThat( index.getMemoryStats().hitCount(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void hitsAndMissesAreCountedPerTier()
+            throws Exception
+    {
+        final MappedContentIndex mapped = new MappedContentIndex( temp.newFolder() );
+        final TieredContentIndex index = new TieredContentIndex( mapped, config, metrics );
+        index.open();
+
+        // only in the mapped tier, as after a restart
+        mapped.put( GROUP, path( 0 ), CENTRAL );
+
+        assertThat( index.get( GROUP, path( 0 ) ).getStoreKey(), equalTo( CENTRAL ) );
+        assertThat( metrics.getCount( IndyMetric.CONTENT_INDEX_MEMORY_MISSES, GROUP ), equalTo( 1L ) );
+        assertThat( metrics.getCount( IndyMetric.CONTENT_INDEX_MAPPED_HITS, GROUP ), equalTo( 1L ) );
+
+        assertThat( index.get( GROUP, path( 0 ) ).getStoreKey(), equalTo( CENTRAL ) );
+        assertThat( metrics.getCount( IndyMetric.CONTENT_INDEX_MEMORY_HITS, GROUP ), equalTo( 1L ) );
+
+        assertThat( index.get( GROUP, path( 1 ) ), nullValue() );
+        assertThat( metrics.getCount( IndyMetric.CONTENT_INDEX_MEMORY_MISSES, GROUP ), equalTo( 2L ) );
+        assertThat( metrics.getCount( IndyMetric.CONTENT_INDEX_MAPPED_MISSES, GROUP ), equalTo( 1L ) );
+
+        index.close();
+    }
+
+    @Test
+    public void lookupRacingRemovalDoesNotRecacheTheEntry()
+            throws Exception
+    {
+        final MappedContentIndex mapped = new MappedContentIndex( temp.newFolder() );
+        final TieredContentIndex index = new TieredContentIndex( mapped, config, metrics );
+        index.open();
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            for ( int i = 0; i < 500; i++ )
+            {
+                final String path = path( i );
+                mapped.put( GROUP, path, CENTRAL );
+
+                final CyclicBarrier barrier = new CyclicBarrier( 2 );
+                final Future<?> lookup = executor.submit( () -> {
+                    barrier.await();
+                    return index.get( GROUP, path );
+                } );
+                final Future<?> removal = executor.submit( () -> {
+                    barrier.await();
+                    return index.remove( GROUP, path );
+                } );
+
+                lookup.get();
+                removal.get();
+
+                assertThat( "re-cached after removal: " + path, index.get( GROUP, path ), nullValue() );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+            index.close();
+        }
+    }
+
+    private static int countPresent( final TieredContentIndex index, final int count )
+    {
+        int present = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( index.get( GROUP, path( i ) ) != null )
+            {
+                present++;
+            }
+        }
+
+        return present;
+    }
+
+    private static String path( final int i )
+    {
+        return String.format( "org/foo/bar/%04d/bar-%04d.jar", i, i );
+    }
+}
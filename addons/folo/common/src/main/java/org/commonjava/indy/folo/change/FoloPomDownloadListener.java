@@ -98,7 +98,7 @@ public class FoloPomDownloadListener
         }
 
         // trigger pom download by requesting it from the same repository as the original artifact
-        StoreKey storeKey = StoreKey.fromString( transfer.getLocation().getName() );
+        StoreKey storeKey = storeManager.canonicalKey( transfer.getLocation().getName() );
         ArtifactStore store;
         try
         {
@@ -31,8 +31,24 @@ public class FoloConfig
 
     public static final int DEFAULT_CACHE_TIMEOUT_SECONDS = 120;
 
+    public static final int DEFAULT_CACHE_MAX_RECORDS = 1000;
+
+    public static final boolean DEFAULT_REPO_ZIP_STREAMING = false;
+
+    public static final int DEFAULT_REPO_ZIP_PREFETCH = 64;
+
+    public static final boolean DEFAULT_REPO_ZIP_CACHE = false;
+
     private Integer cacheTimeoutSeconds;
 
+    private Integer cacheMaxRecords;
+
+    private Boolean repoZipStreaming;
+
+    private Integer repoZipPrefetch;
+
+    private Boolean repoZipCache;
+
     public FoloConfig()
     {
     }
@@ -53,6 +69,50 @@ public class FoloConfig
         this.cacheTimeoutSeconds = cacheTimeoutSeconds;
     }
 
+    public int getCacheMaxRecords()
+    {
+        return cacheMaxRecords == null ? DEFAULT_CACHE_MAX_RECORDS : cacheMaxRecords;
+    }
+
+    @ConfigName( "cache.max.records" )
+    public void setCacheMaxRecords( final Integer cacheMaxRecords )
+    {
+        this.cacheMaxRecords = cacheMaxRecords;
+    }
+
+    public boolean isRepoZipStreaming()
+    {
+        return repoZipStreaming == null ? DEFAULT_REPO_ZIP_STREAMING : repoZipStreaming;
+    }
+
+    @ConfigName( "repo.zip.streaming" )
+    public void setRepoZipStreaming( final Boolean repoZipStreaming )
+    {
+        this.repoZipStreaming = repoZipStreaming;
+    }
+
+    public int getRepoZipPrefetch()
+    {
+        return repoZipPrefetch == null ? DEFAULT_REPO_ZIP_PREFETCH : repoZipPrefetch;
+    }
+
+    @ConfigName( "repo.zip.prefetch" )
+    public void setRepoZipPrefetch( final Integer repoZipPrefetch )
+    {
+        this.repoZipPrefetch = repoZipPrefetch;
+    }
+
+    public boolean isRepoZipCache()
+    {
+        return repoZipCache == null ? DEFAULT_REPO_ZIP_CACHE : repoZipCache;
+    }
+
+    @ConfigName( "repo.zip.cache" )
+    public void setRepoZipCache( final Boolean repoZipCache )
+    {
+        this.repoZipCache = repoZipCache;
+    }
+
     @Override
     public String getDefaultConfigFileName()
     {
@@ -15,8 +15,12 @@
  */
 package org.commonjava.indy.folo.ctl;
 
+import org.apache.commons.io.output.TeeOutputStream;
+import org.commonjava.cdi.util.weft.ExecutorConfig;
+import org.commonjava.cdi.util.weft.WeftManaged;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.content.ContentManager;
+import org.commonjava.indy.folo.conf.FoloConfig;
 import org.commonjava.indy.folo.data.FoloContentException;
 import org.commonjava.indy.folo.data.FoloFiler;
 import org.commonjava.indy.folo.data.FoloRecordCache;
@@ -35,17 +39,37 @@ import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -56,6 +80,12 @@ import static org.apache.commons.io.IOUtils.copy;
 public class FoloAdminController
 {
 
+    /**
+     * Already-compressed formats; deflating them again costs CPU for no gain, so they are written without compression.
+     */
+    private static final Set<String> STORED_EXTENSIONS =
+            new HashSet<>( Arrays.asList( "jar", "war", "ear", "zip", "gz", "tgz" ) );
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Inject
@@ -67,6 +97,13 @@ public class FoloAdminController
     @Inject
     private ContentManager contentManager;
 
+    @Inject
+    private FoloConfig config;
+
+    @Inject
+    @WeftManaged
+    @ExecutorConfig( named = "folo-repo-zip", threads = 8, priority = 4, daemon = true )
+    private ExecutorService zipExecutor;
 
     protected FoloAdminController()
     {
@@ -74,10 +111,19 @@ public class FoloAdminController
 
     public FoloAdminController( final FoloRecordCache recordManager, final FoloFiler filer,
                                 final ContentManager contentManager )
+    {
+        this( recordManager, filer, contentManager, new FoloConfig(), null );
+    }
+
+    public FoloAdminController( final FoloRecordCache recordManager, final FoloFiler filer,
+                                final ContentManager contentManager, final FoloConfig config,
+                                final ExecutorService zipExecutor )
     {
         this.recordManager = recordManager;
         this.filer = filer;
         this.contentManager = contentManager;
+        this.config = config;
+        this.zipExecutor = zipExecutor;
     }
 
     public TrackedContentDTO seal( final String id )
@@ -86,13 +132,19 @@ public class FoloAdminController
         return constructContentDTO( recordManager.seal( tk ) );
     }
 
-    public File renderRepositoryZip( final String id )
+    public boolean isRepositoryZipStreaming()
+    {
+        return config.isRepoZipStreaming();
+    }
+
+    /**
+     * Return the sealed tracking record for the given id, or fail with NOT_FOUND. Callers that stream the repository
+     * zip use this to fail before any response is committed.
+     */
+    public TrackedContent getSealedRecord( final String id )
             throws IndyWorkflowException
     {
         final TrackingKey tk = new TrackingKey( id );
-
-        File file = filer.getRepositoryZipFile( tk ).getDetachedFile();
-        file.getParentFile().mkdirs();
         logger.debug( "Retrieving tracking record for: {}", tk );
         final TrackedContent record = recordManager.get( tk );
         logger.debug( "Got: {}", record );
@@ -103,74 +155,309 @@ public class FoloAdminController
                                               "No tracking record available for: %s. Maybe you forgot to seal it?", tk );
         }
 
-        final Set<String> seenPaths = new HashSet<>();
-        final List<Transfer> items = new ArrayList<>();
-
-        addTransfers(record.getUploads(), items, id, seenPaths);
-        addTransfers(record.getDownloads(), items, id, seenPaths);
+        return record;
+    }
 
-        logger.debug( "Retrieved {} files. Creating zip.", items.size() );
+    public File renderRepositoryZip( final String id )
+            throws IndyWorkflowException
+    {
+        final TrackingKey tk = new TrackingKey( id );
+        final TrackedContent record = getSealedRecord( id );
 
-        Collections.sort( items, ( f, s ) -> f.getPath().compareTo( s.getPath() ) );
+        final File file = getRepositoryZipFile( record );
+        file.getParentFile().mkdirs();
 
+        if ( config.isRepoZipCache() && file.isFile() )
+        {
+            logger.debug( "Returning cached repository zip for: {}", tk );
+            return file;
+        }
 
-        try (ZipOutputStream stream = new ZipOutputStream( new FileOutputStream( file ) ))
+        File tmp = null;
+        try
         {
-            for ( final Transfer item : items )
+            tmp = createTempFile( file );
+            try (OutputStream stream = new BufferedOutputStream( new FileOutputStream( tmp ) ))
             {
-                // logger.info( "Adding: {}", item );
-                if ( item != null )
-                {
-                    final String path = item.getPath();
-                    final ZipEntry ze = new ZipEntry( path );
-                    stream.putNextEntry( ze );
-
-                    InputStream itemStream = null;
-                    try
-                    {
-                        itemStream = item.openInputStream();
-                        copy( itemStream, stream );
-                    }
-                    finally
-                    {
-                        closeQuietly( itemStream );
-                    }
-                }
+                writeRepositoryZip( record, stream );
             }
+
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            tmp = null;
         }
         catch ( final IOException e )
         {
             throw new IndyWorkflowException( "Failed to generate repository zip from tracking record: {}. Reason: {}",
                                               e, id, e.getMessage() );
         }
+        finally
+        {
+            if ( tmp != null )
+            {
+                tmp.delete();
+            }
+        }
 
+        filer.deleteRepositoryZipFiles( tk, file.getName() );
         return file;
     }
 
-    private void addTransfers( final Set<TrackedContentEntry> entries, final List<Transfer> items, final String trackingId,
-                               final Set<String> seenPaths )
+    /**
+     * Write the repository zip for the given sealed record straight to the given stream (normally the HTTP response).
+     * If caching is enabled, a previously rendered zip is copied instead, and a freshly rendered one is kept for next
+     * time.
+     */
+    public void streamRepositoryZip( final TrackedContent record, final OutputStream out )
+            throws IndyWorkflowException, IOException
+    {
+        if ( !config.isRepoZipCache() )
+        {
+            writeRepositoryZip( record, out );
+            return;
+        }
+
+        final File file = getRepositoryZipFile( record );
+        if ( file.isFile() )
+        {
+            logger.debug( "Streaming cached repository zip for: {}", record.getKey() );
+            try (InputStream in = new FileInputStream( file ))
+            {
+                copy( in, out );
+            }
+            return;
+        }
+
+        file.getParentFile().mkdirs();
+        final File tmp = createTempFile( file );
+        boolean complete = false;
+        try
+        {
+            try (OutputStream cached = new BufferedOutputStream( new FileOutputStream( tmp ) ))
+            {
+                writeRepositoryZip( record, new TeeOutputStream( out, cached ) );
+            }
+
+            Files.move( tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+            complete = true;
+        }
+        finally
+        {
+            if ( !complete )
+            {
+                tmp.delete();
+            }
+        }
+
+        filer.deleteRepositoryZipFiles( record.getKey(), file.getName() );
+    }
+
+    /**
+     * Cache file for the given record's zip, named after a fingerprint of the record's entries so that a zip rendered
+     * from an older version of the record (for instance, one that was cleared and tracked again) is never served.
+     */
+    private File getRepositoryZipFile( final TrackedContent record )
             throws IndyWorkflowException
     {
-        if(entries!=null && !entries.isEmpty()){
-            for(final TrackedContentEntry entry: entries){
-                final String path = entry.getPath();
-                if ( path == null || seenPaths.contains( path ) )
+        return filer.getRepositoryZipFile( record.getKey(), fingerprint( record ) ).getDetachedFile();
+    }
+
+    private static String fingerprint( final TrackedContent record )
+            throws IndyWorkflowException
+    {
+        final List<String> lines = new ArrayList<>();
+        addFingerprintLines( "U", record.getUploads(), lines );
+        addFingerprintLines( "D", record.getDownloads(), lines );
+        Collections.sort( lines );
+
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( "SHA-1" );
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            throw new IndyWorkflowException( "Cannot fingerprint tracking record: %s. Reason: %s", e,
+                                              record.getKey(), e.getMessage() );
+        }
+
+        for ( final String line : lines )
+        {
+            digest.update( line.getBytes( StandardCharsets.UTF_8 ) );
+            digest.update( (byte) '\n' );
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        final byte[] hash = digest.digest();
+        for ( int i = 0; i < 8; i++ )
+        {
+            sb.append( String.format( "%02x", hash[i] ) );
+        }
+
+        return sb.toString();
+    }
+
+    private static void addFingerprintLines( final String prefix, final Set<TrackedContentEntry> entries,
+                                             final List<String> lines )
+    {
+        if ( entries != null )
+        {
+            for ( final TrackedContentEntry entry : entries )
+            {
+                lines.add( String.join( "|", prefix, String.valueOf( entry.getStoreKey() ), entry.getPath(),
+                                        String.valueOf( entry.getSha256() ), String.valueOf( entry.getSize() ) ) );
+            }
+        }
+    }
+
+    /**
+     * Unique temp file next to the target, so concurrent renders of the same zip don't write over each other and the
+     * final move stays on one filesystem.
+     */
+    private static File createTempFile( final File target )
+            throws IOException
+    {
+        return File.createTempFile( target.getName() + ".", ".tmp", target.getParentFile() );
+    }
+
+    /**
+     * Resolve the record's paths (uploads first, then downloads; the first store that still has a path wins), then
+     * write them in path order. Resolution runs on the zip executor up to {@link FoloConfig#getRepoZipPrefetch()}
+     * entries ahead of the writer. Already-compressed files are deflated at level 0, which frames them as stored
+     * blocks while still letting each one be read only once.
+     */
+    private void writeRepositoryZip( final TrackedContent record, final OutputStream out )
+            throws IndyWorkflowException, IOException
+    {
+        final String id = record.getKey().getId();
+
+        final Map<String, List<StoreKey>> candidates = new TreeMap<>();
+        addCandidates( record.getUploads(), candidates );
+        addCandidates( record.getDownloads(), candidates );
+
+        logger.debug( "Writing repository zip for: {} with up to {} files.", id, candidates.size() );
+
+        final int prefetch = Math.max( 1, config.getRepoZipPrefetch() );
+        final Deque<Future<Transfer>> window = new ArrayDeque<>( prefetch );
+        final Iterator<Map.Entry<String, List<StoreKey>>> pending = candidates.entrySet().iterator();
+
+        final ZipOutputStream stream = new ZipOutputStream( out );
+        try
+        {
+            while ( pending.hasNext() || !window.isEmpty() )
+            {
+                while ( pending.hasNext() && window.size() < prefetch )
+                {
+                    final Map.Entry<String, List<StoreKey>> next = pending.next();
+                    window.add( submit( () -> prepare( id, next.getKey(), next.getValue() ) ) );
+                }
+
+                final Transfer item = await( window.poll() );
+                if ( item == null )
                 {
                     continue;
                 }
-                final StoreKey sk = entry.getStoreKey();
-                Transfer transfer = contentManager.getTransfer( sk, path, TransferOperation.DOWNLOAD );
-                if ( transfer == null )
+
+                final String path = item.getPath();
+                final String ext = path.substring( path.lastIndexOf( '.' ) + 1 ).toLowerCase();
+                stream.setLevel( STORED_EXTENSIONS.contains( ext ) ?
+                                         Deflater.NO_COMPRESSION :
+                                         Deflater.DEFAULT_COMPRESSION );
+                stream.putNextEntry( new ZipEntry( path ) );
+
+                InputStream itemStream = null;
+                try
                 {
-                    Logger logger = LoggerFactory.getLogger( getClass() );
-                    logger.warn( "While creating Folo repo zip for: {}, cannot find: {} in: {}", trackingId, path, sk );
+                    itemStream = item.openInputStream();
+                    copy( itemStream, stream );
                 }
-                else
+                finally
                 {
-                    seenPaths.add( path );
-                    items.add( transfer );
+                    closeQuietly( itemStream );
                 }
+
+                stream.closeEntry();
             }
+
+            stream.finish();
+            stream.flush();
+        }
+        finally
+        {
+            window.forEach( f -> f.cancel( true ) );
+        }
+    }
+
+    private void addCandidates( final Set<TrackedContentEntry> entries, final Map<String, List<StoreKey>> candidates )
+    {
+        if ( entries != null )
+        {
+            for ( final TrackedContentEntry entry : entries )
+            {
+                final String path = entry.getPath();
+                if ( path != null )
+                {
+                    candidates.computeIfAbsent( path, p -> new ArrayList<>( 1 ) ).add( entry.getStoreKey() );
+                }
+            }
+        }
+    }
+
+    private Transfer prepare( final String trackingId, final String path, final List<StoreKey> stores )
+            throws IndyWorkflowException
+    {
+        for ( final StoreKey sk : stores )
+        {
+            Transfer transfer = contentManager.getTransfer( sk, path, TransferOperation.DOWNLOAD );
+            if ( transfer == null )
+            {
+                logger.warn( "While creating Folo repo zip for: {}, cannot find: {} in: {}", trackingId, path, sk );
+                continue;
+            }
+
+            return transfer;
+        }
+
+        return null;
+    }
+
+    private Future<Transfer> submit( final Callable<Transfer> task )
+    {
+        if ( zipExecutor == null )
+        {
+            final FutureTask<Transfer> future = new FutureTask<>( task );
+            future.run();
+            return future;
+        }
+
+        return zipExecutor.submit( task );
+    }
+
+    private Transfer await( final Future<Transfer> future )
+            throws IndyWorkflowException, IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IndyWorkflowException( "Interrupted while creating repository zip." );
+        }
+        catch ( final ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IndyWorkflowException )
+            {
+                throw (IndyWorkflowException) cause;
+            }
+            else if ( cause instanceof IOException )
+            {
+                throw (IOException) cause;
+            }
+
+            throw new IndyWorkflowException( "Failed to prepare repository zip entry. Reason: %s", cause,
+                                              cause.getMessage() );
         }
     }
 
@@ -225,6 +512,7 @@ public class FoloAdminController
     {
         final TrackingKey tk = new TrackingKey( id );
         recordManager.delete( tk );
+        filer.deleteRepositoryZipFiles( tk, null );
     }
 
     private TrackedContentDTO constructContentDTO( final TrackedContent content )
@@ -21,6 +21,7 @@ import org.commonjava.indy.subsys.datafile.DataFileManager;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.util.regex.Pattern;
 
 /**
  * Created by jdcasey on 9/9/15.
@@ -57,6 +58,34 @@ public class FoloFiler
         return getDataFile( key, FoloFileTypes.REPO_ZIP );
     }
 
+    /**
+     * Repository zip rendered from the version of the record with the given fingerprint. Each version gets its own
+     * file, so a cached zip can't be served for a record that has changed since.
+     */
+    public DataFile getRepositoryZipFile( final TrackingKey key, final String fingerprint )
+    {
+        return getDataFile( key, fingerprint + "." + FoloFileTypes.REPO_ZIP );
+    }
+
+    /**
+     * Delete the cached repository zips for the given key, except the one named <code>keep</code> (may be null).
+     */
+    public void deleteRepositoryZipFiles( final TrackingKey key, final String keep )
+    {
+        final File dir = getRepositoryZipFile( key ).getDetachedFile().getParentFile();
+        final Pattern names = Pattern.compile(
+                Pattern.quote( key.getId() ) + "(\\.[0-9a-f]{16})?\\." + Pattern.quote( FoloFileTypes.REPO_ZIP ) );
+
+        final File[] files = dir.listFiles( ( d, name ) -> !name.equals( keep ) && names.matcher( name ).matches() );
+        if ( files != null )
+        {
+            for ( final File f : files )
+            {
+                f.delete();
+            }
+        }
+    }
+
     public void deleteFiles( TrackingKey key )
     {
         for ( String ext : FoloFileTypes.TYPES )
@@ -67,6 +96,8 @@ public class FoloFiler
                 f.delete();
             }
         }
+
+        deleteRepositoryZipFiles( key, null );
     }
 
 }
@@ -16,6 +16,7 @@
 package org.commonjava.indy.folo.data;
 
 import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.folo.conf.FoloConfig;
 import org.commonjava.indy.folo.model.StoreEffect;
 import org.commonjava.indy.folo.model.TrackedContent;
 import org.commonjava.indy.folo.model.TrackedContentEntry;
@@ -24,7 +25,6 @@ import org.commonjava.indy.subsys.infinispan.CacheHandle;
 import org.infinispan.Cache;
 import org.infinispan.cdi.ConfigureCache;
 import org.infinispan.query.Search;
-import org.infinispan.query.dsl.Query;
 import org.infinispan.query.dsl.QueryBuilder;
 import org.infinispan.query.dsl.QueryFactory;
 import org.slf4j.Logger;
@@ -32,11 +32,35 @@ import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
 
+/**
+ * Holds in-progress and sealed tracking records.
+ * <br/>
+ * In-progress entries are indexed in memory per {@link TrackingKey}, and each key has its own locks, so concurrent
+ * tracked builds never contend with each other. Writes into the in-progress cache are group-committed per key: each
+ * recording thread queues its entry and then flushes whatever is queued for that key in one putAll, so concurrent
+ * downloads in the same build share cache writes. The index for a key is loaded with one query the first time the key
+ * is recorded (picking up entries persisted before a restart), after which {@link #seal(TrackingKey)} drains it
+ * without querying.
+ * <br/>
+ * The in-memory index is bounded: indexes idle for longer than {@link FoloConfig#getCacheTimeoutSeconds()} are dropped,
+ * as are the least-recently used ones once there are more than {@link FoloConfig#getCacheMaxRecords()}. Only indexes
+ * whose entries have all been written can be dropped, so a dropped index is simply reloaded from the in-progress cache
+ * the next time its key is used.
+ */
 @ApplicationScoped
 public class FoloRecordCache
 {
@@ -52,15 +76,31 @@ public class FoloRecordCache
     @Inject
     private CacheHandle<TrackingKey, TrackedContent> sealedRecordCache;
 
+    @Inject
+    private FoloConfig config;
+
+    private final Map<TrackingKey, InProgressRecord> inProgressRecords = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private volatile long nextEviction;
+
     protected FoloRecordCache()
     {
     }
 
     public FoloRecordCache( final Cache<TrackedContentEntry, TrackedContentEntry> inProgressRecordCache,
                             final Cache<TrackingKey, TrackedContent> sealedRecordCache )
+    {
+        this( inProgressRecordCache, sealedRecordCache, new FoloConfig() );
+    }
+
+    public FoloRecordCache( final Cache<TrackedContentEntry, TrackedContentEntry> inProgressRecordCache,
+                            final Cache<TrackingKey, TrackedContent> sealedRecordCache, final FoloConfig config )
     {
         this.inProgressRecordCache = new CacheHandle("folo-in-progress", inProgressRecordCache);
         this.sealedRecordCache = new CacheHandle( "folo-sealed", sealedRecordCache );
+        this.config = config;
     }
 
     /**
@@ -69,54 +109,114 @@ public class FoloRecordCache
      * @param entry The TrackedContentEntry which will be cached
      * @return True if a new record was stored, otherwise false
      */
-    public synchronized boolean recordArtifact( final TrackedContentEntry entry )
+    public boolean recordArtifact( final TrackedContentEntry entry )
             throws FoloContentException,IndyWorkflowException
     {
-        if ( sealedRecordCache.containsKey( entry.getTrackingKey() ) )
-        {
-            throw new FoloContentException( "Tracking record: {} is already sealed!", entry.getTrackingKey() );
-        }
-
-        Logger logger = LoggerFactory.getLogger( getClass() );
+        final TrackingKey trackingKey = entry.getTrackingKey();
         logger.debug( "Trying to add tracking entry: {}", entry );
-        if ( !inProgressRecordCache.containsKey( entry ) )
+
+        InProgressRecord record;
+        boolean added;
+        do
         {
-            logger.debug( "Adding: {}", entry );
-            inProgressRecordCache.put( entry, entry );
-            return true;
+            if ( sealedRecordCache.containsKey( trackingKey ) )
+            {
+                throw new FoloContentException( "Tracking record: {} is already sealed!", trackingKey );
+            }
+
+            record = loadInProgressRecord( trackingKey );
+            synchronized ( record )
+            {
+                if ( record.closed )
+                {
+                    // sealed or deleted concurrently; re-check the sealed cache
+                    continue;
+                }
+
+                added = record.entries.add( entry );
+                if ( added )
+                {
+                    record.pending.add( entry );
+                }
+            }
+
+            break;
         }
-        else
+        while ( true );
+
+        if ( !added )
         {
-            logger.debug( "record already contains entry: {} (existing: {})", entry, inProgressRecordCache.get( entry ) );
+            logger.debug( "record already contains entry: {}", entry );
+            return false;
         }
-        return false;
+
+        logger.debug( "Adding: {}", entry );
+        flush( record );
+        return true;
     }
 
-    public synchronized void delete( final TrackingKey key )
+    public void delete( final TrackingKey key )
     {
         sealedRecordCache.remove( key );
-        inProgressByTrackingKey( key, (qb, ch)->{
-            qb.build().list().forEach( item -> ch.execute( cache -> cache.remove( item ) ) );
-            return false;
-        } );
+
+        final InProgressRecord record = inProgressRecords.remove( key );
+        if ( record != null )
+        {
+            record.writeLock.lock();
+            try
+            {
+                synchronized ( record )
+                {
+                    record.closed = true;
+                    record.pending.clear();
+                }
+
+                removeInProgress( key );
+            }
+            finally
+            {
+                record.writeLock.unlock();
+            }
+        }
+        else
+        {
+            removeInProgress( key );
+        }
     }
 
-    public synchronized boolean hasRecord( final TrackingKey key )
+    public boolean hasRecord( final TrackingKey key )
     {
         return hasSealedRecord( key ) || hasInProgressRecord( key );
     }
 
-    public synchronized boolean hasSealedRecord( final TrackingKey key )
+    public boolean hasSealedRecord( final TrackingKey key )
     {
         return sealedRecordCache.containsKey( key );
     }
 
-    public synchronized boolean hasInProgressRecord( final TrackingKey key )
+    public boolean hasInProgressRecord( final TrackingKey key )
     {
-        return !sealedRecordCache.containsKey( key ) && inProgressByTrackingKey( key, (qb, cacheHandle)->qb.build().getResultSize() > 0);
+        if ( sealedRecordCache.containsKey( key ) )
+        {
+            return false;
+        }
+
+        final InProgressRecord record = inProgressRecords.get( key );
+        if ( record != null )
+        {
+            synchronized ( record )
+            {
+                if ( record.loaded && !record.closed )
+                {
+                    return !record.entries.isEmpty();
+                }
+            }
+        }
+
+        return inProgressByTrackingKey( key, (qb, cacheHandle)->qb.build().getResultSize() > 0);
     }
 
-    public synchronized TrackedContent get( final TrackingKey key )
+    public TrackedContent get( final TrackingKey key )
     {
         return sealedRecordCache.get( key );
     }
@@ -132,35 +232,238 @@ public class FoloRecordCache
             return record;
         }
 
-        logger.debug( "Listing unsealed tracking record entries for: {}...", trackingKey );
-        return inProgressByTrackingKey( trackingKey, (qb, cacheHandle)-> {
-            Query query = qb.build();
-            List<TrackedContentEntry> results = query.list();
-            TrackedContent created = null;
-            if ( results != null )
+        logger.debug( "Draining unsealed tracking record entries for: {}...", trackingKey );
+        InProgressRecord inProgress;
+        final List<TrackedContentEntry> results = new ArrayList<>();
+        do
+        {
+            inProgress = loadInProgressRecord( trackingKey );
+
+            // wait out any in-flight batch for this key, so nothing lands in the in-progress cache after we clear it
+            inProgress.writeLock.lock();
+            synchronized ( inProgress )
             {
-                logger.debug( "Adding {} entries to record: {}", results.size(), trackingKey );
-                Set<TrackedContentEntry> uploads = new TreeSet<>();
-                Set<TrackedContentEntry> downloads = new TreeSet<>();
-                results.forEach( ( result ) -> {
-                    if ( StoreEffect.DOWNLOAD == result.getEffect() )
-                    {
-                        downloads.add( result );
-                    }
-                    else if ( StoreEffect.UPLOAD == result.getEffect() )
-                    {
-                        uploads.add( result );
-                    }
-                    logger.debug( "Removing in-progress entry: {}", result );
-                    inProgressRecordCache.remove( result );
-                } );
-                created = new TrackedContent( trackingKey, uploads, downloads );
+                if ( !inProgress.closed )
+                {
+                    inProgress.closed = true;
+                    inProgress.pending.clear();
+                    results.addAll( inProgress.entries );
+                    break;
+                }
             }
 
+            // dropped from the index (or sealed/deleted) concurrently; reload it
+            inProgress.writeLock.unlock();
+            record = sealedRecordCache.get( trackingKey );
+            if ( record != null )
+            {
+                return record;
+            }
+        }
+        while ( true );
+
+        try
+        {
+            record = sealedRecordCache.get( trackingKey );
+            if ( record != null )
+            {
+                return record;
+            }
+
+            logger.debug( "Adding {} entries to record: {}", results.size(), trackingKey );
+            Set<TrackedContentEntry> uploads = new TreeSet<>();
+            Set<TrackedContentEntry> downloads = new TreeSet<>();
+            results.forEach( ( result ) -> {
+                if ( StoreEffect.DOWNLOAD == result.getEffect() )
+                {
+                    downloads.add( result );
+                }
+                else if ( StoreEffect.UPLOAD == result.getEffect() )
+                {
+                    uploads.add( result );
+                }
+            } );
+
+            final TrackedContent created = new TrackedContent( trackingKey, uploads, downloads );
+
             logger.debug( "Sealing record for: {}", trackingKey );
             sealedRecordCache.put( trackingKey, created );
+
+            logger.debug( "Removing {} in-progress entries for: {}", results.size(), trackingKey );
+            inProgressRecordCache.execute( cache -> {
+                results.forEach( cache::remove );
+                return null;
+            } );
+
             return created;
-        });
+        }
+        finally
+        {
+            inProgressRecords.remove( trackingKey, inProgress );
+            inProgress.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Return the in-memory index of in-progress entries for the given key, loading it from the in-progress cache on
+     * first use. The query runs under the record's write lock rather than its monitor, so readers of other state aren't
+     * held up by it, and the record is only marked loaded once the query has succeeded.
+     */
+    private InProgressRecord loadInProgressRecord( final TrackingKey key )
+    {
+        evictIfNecessary();
+
+        final InProgressRecord record = inProgressRecords.computeIfAbsent( key, k -> new InProgressRecord() );
+        record.lastAccess = System.currentTimeMillis();
+        if ( !record.loaded )
+        {
+            record.writeLock.lock();
+            try
+            {
+                if ( !record.loaded )
+                {
+                    final List<TrackedContentEntry> existing =
+                            inProgressByTrackingKey( key, ( qb, cacheHandle ) -> qb.build().list() );
+
+                    synchronized ( record )
+                    {
+                        if ( existing != null )
+                        {
+                            record.entries.addAll( existing );
+                        }
+
+                        record.loaded = true;
+                    }
+                }
+            }
+            finally
+            {
+                record.writeLock.unlock();
+            }
+        }
+
+        return record;
+    }
+
+    /**
+     * Drop in-memory indexes that have been idle past the cache timeout, then the least-recently used ones while there
+     * are more than the configured maximum. Runs at most once per second unless over the maximum, and on one thread at
+     * a time.
+     */
+    private void evictIfNecessary()
+    {
+        final long now = System.currentTimeMillis();
+        final int max = config.getCacheMaxRecords();
+        final boolean over = max > 0 && inProgressRecords.size() > max;
+        if ( ( !over && now < nextEviction ) || !evicting.compareAndSet( false, true ) )
+        {
+            return;
+        }
+
+        try
+        {
+            nextEviction = now + TimeUnit.SECONDS.toMillis( 1 );
+            final long idleBefore = now - TimeUnit.SECONDS.toMillis( config.getCacheTimeoutSeconds() );
+
+            final List<Map.Entry<TrackingKey, InProgressRecord>> candidates =
+                    new ArrayList<>( inProgressRecords.entrySet() );
+            candidates.sort( Comparator.comparingLong( e -> e.getValue().lastAccess ) );
+
+            int size = inProgressRecords.size();
+            for ( final Map.Entry<TrackingKey, InProgressRecord> e : candidates )
+            {
+                final InProgressRecord record = e.getValue();
+                if ( record.lastAccess >= idleBefore && ( max < 1 || size <= max ) )
+                {
+                    break;
+                }
+
+                if ( evict( e.getKey(), record ) )
+                {
+                    size--;
+                }
+            }
+        }
+        finally
+        {
+            evicting.set( false );
+        }
+    }
+
+    /**
+     * Drop the given index if nothing is queued or being written for it; everything it holds is then in the
+     * in-progress cache, and will be reloaded from there. Closing it makes threads still holding it start over.
+     */
+    private boolean evict( final TrackingKey key, final InProgressRecord record )
+    {
+        if ( !record.writeLock.tryLock() )
+        {
+            return false;
+        }
+
+        try
+        {
+            synchronized ( record )
+            {
+                if ( record.closed || !record.pending.isEmpty() )
+                {
+                    return false;
+                }
+
+                record.closed = true;
+            }
+
+            logger.debug( "Dropping in-memory index of in-progress record: {}", key );
+            return inProgressRecords.remove( key, record );
+        }
+        finally
+        {
+            record.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Write everything queued for the given key in one batch. Whoever holds the key's write lock drains the queue,
+     * so threads arriving meanwhile usually find their entries already written once they get the lock.
+     */
+    private void flush( final InProgressRecord record )
+    {
+        record.writeLock.lock();
+        try
+        {
+            final List<TrackedContentEntry> batch;
+            synchronized ( record )
+            {
+                if ( record.pending.isEmpty() )
+                {
+                    return;
+                }
+
+                batch = record.pending;
+                record.pending = new ArrayList<>();
+            }
+
+            final Map<TrackedContentEntry, TrackedContentEntry> entries = new HashMap<>( batch.size() * 2 );
+            batch.forEach( e -> entries.put( e, e ) );
+
+            logger.debug( "Writing {} in-progress tracking entries", batch.size() );
+            inProgressRecordCache.execute( cache -> {
+                cache.putAll( entries );
+                return null;
+            } );
+        }
+        finally
+        {
+            record.writeLock.unlock();
+        }
+    }
+
+    private void removeInProgress( final TrackingKey key )
+    {
+        inProgressByTrackingKey( key, (qb, ch)->{
+            qb.build().list().forEach( item -> ch.execute( cache -> cache.remove( item ) ) );
+            return false;
+        } );
     }
 
     private <R> R inProgressByTrackingKey( final TrackingKey key, final BiFunction<QueryBuilder, CacheHandle<TrackedContentEntry, TrackedContentEntry>, R> operation )
@@ -178,4 +481,23 @@ public class FoloRecordCache
         } );
     }
 
+    /**
+     * In-memory state of one tracking key's in-progress record. The instance monitor guards the fields; writeLock
+     * serializes batched writes (and seal/delete) against the in-progress cache.
+     */
+    private static final class InProgressRecord
+    {
+        private final Set<TrackedContentEntry> entries = new HashSet<>();
+
+        private final ReentrantLock writeLock = new ReentrantLock();
+
+        private List<TrackedContentEntry> pending = new ArrayList<>();
+
+        private volatile boolean loaded;
+
+        private volatile long lastAccess;
+
+        private boolean closed;
+    }
+
 }
@@ -0,0 +1,374 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.folo.ctl;
+
+import org.apache.commons.io.IOUtils;
+import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.core.content.DefaultContentManager;
+import org.commonjava.indy.folo.conf.FoloConfig;
+import org.commonjava.indy.folo.data.FoloFiler;
+import org.commonjava.indy.folo.data.FoloRecordCache;
+import org.commonjava.indy.folo.model.StoreEffect;
+import org.commonjava.indy.folo.model.TrackedContent;
+import org.commonjava.indy.folo.model.TrackedContentEntry;
+import org.commonjava.indy.folo.model.TrackingKey;
+import org.commonjava.indy.model.core.AccessChannel;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.HostedRepository;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.subsys.datafile.DataFileManager;
+import org.commonjava.indy.subsys.datafile.change.DataFileEventManager;
+import org.commonjava.indy.util.ApplicationStatus;
+import org.commonjava.indy.util.LocationUtils;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.HashedLocationPathGenerator;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
+import org.commonjava.maven.galley.spi.cache.CacheProvider;
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class FoloAdminControllerTest
+{
+
+    private static final String POM = "org/foo/bar/1/bar-1.pom";
+
+    private static final String JAR = "org/foo/bar/1/bar-1.jar";
+
+    private static final String README = "org/foo/bar/1/README.txt";
+
+    private static final String MISSING = "org/foo/bar/1/bar-1-sources.jar";
+
+    private static final String EXTRA = "org/foo/bar/1/bar-1.pom.sha1";
+
+    private static EmbeddedCacheManager cacheManager;
+
+    private static Cache<TrackingKey, TrackedContent> sealed;
+
+    private static Cache<TrackedContentEntry, TrackedContentEntry> inProgress;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final HostedRepository build = new HostedRepository( "build" );
+
+    private final RemoteRepository central = new RemoteRepository( "central", "http://repo.maven.apache.org/maven2/" );
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private CacheProvider cacheProvider;
+
+    private FoloRecordCache recordCache;
+
+    private FoloFiler filer;
+
+    private FoloConfig config;
+
+    private ExecutorService executor;
+
+    private FoloAdminController controller;
+
+    @BeforeClass
+    public static void setupClass()
+    {
+        cacheManager = new DefaultCacheManager( new ConfigurationBuilder().simpleCache( true ).build() );
+
+        sealed = cacheManager.getCache( "sealed", true );
+        inProgress = cacheManager.getCache( "in-progress", true );
+    }
+
+    @AfterClass
+    public static void teardownClass()
+    {
+        cacheManager.stop();
+    }
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        cacheProvider = new FileCacheProvider( temp.newFolder( "storage" ), new HashedLocationPathGenerator(),
+                                               new NoOpFileEventManager(), new NoOpTransferDecorator(), false );
+
+        recordCache = new FoloRecordCache( inProgress, sealed );
+        filer = new FoloFiler( new DataFileManager( temp.newFolder( "data" ), new DataFileEventManager() ) );
+
+        config = new FoloConfig();
+        config.setRepoZipPrefetch( 2 );
+
+        executor = Executors.newFixedThreadPool( 2 );
+
+        final DefaultContentManager contentManager = new DefaultContentManager( null, null, null, null )
+        {
+            @Override
+            public Transfer getTransfer( final StoreKey store, final String path, final TransferOperation op )
+            {
+                lookups.incrementAndGet();
+                final ArtifactStore target = store.equals( build.getKey() ) ? build : central;
+                final Transfer transfer = transfer( target, path );
+                return transfer.exists() ? transfer : null;
+            }
+        };
+
+        controller = new FoloAdminController( recordCache, filer, contentManager, config, executor );
+
+        write( build, POM, "<project>uploaded</project>" );
+        write( central, POM, "<project>downloaded</project>" );
+        write( central, JAR, repeat( 'j', 8192 ) );
+        write( central, README, repeat( 'r', 8192 ) );
+    }
+
+    @After
+    public void teardown()
+    {
+        executor.shutdownNow();
+        inProgress.clear();
+        sealed.clear();
+    }
+
+    @Test
+    public void renderedZipHasOneEntryPerPathInPathOrder()
+            throws Exception
+    {
+        final TrackingKey key = new TrackingKey( "render" );
+        seal( key, entry( key, build, POM, StoreEffect.UPLOAD ),
+              entry( key, central, POM, StoreEffect.DOWNLOAD ), entry( key, central, JAR, StoreEffect.DOWNLOAD ),
+              entry( key, central, README, StoreEffect.DOWNLOAD ),
+              entry( key, central, MISSING, StoreEffect.DOWNLOAD ) );
+
+        final File zip = controller.renderRepositoryZip( key.getId() );
+        assertZipContents( zip );
+
+        final File streamed = temp.newFile( "streamed.zip" );
+        try (OutputStream out = new FileOutputStream( streamed ))
+        {
+            controller.streamRepositoryZip( controller.getSealedRecord( key.getId() ), out );
+        }
+
+        assertZipContents( streamed );
+    }
+
+    @Test
+    public void cachedZipIsReusedUntilTheRecordChanges()
+            throws Exception
+    {
+        config.setRepoZipCache( true );
+
+        final TrackingKey key = new TrackingKey( "cached" );
+        final TrackedContentEntry pom = entry( key, central, POM, StoreEffect.DOWNLOAD );
+        final TrackedContentEntry jar = entry( key, central, JAR, StoreEffect.DOWNLOAD );
+        seal( key, pom, jar );
+
+        final byte[] first = stream( key );
+        final int firstLookups = lookups.get();
+        assertThat( firstLookups > 0, equalTo( true ) );
+        assertThat( zipFiles( key ).size(), equalTo( 1 ) );
+
+        final byte[] second = stream( key );
+        assertThat( "second stream should come from the cached zip", lookups.get(), equalTo( firstLookups ) );
+        assertThat( Arrays.equals( first, second ), equalTo( true ) );
+
+        final File rendered = controller.renderRepositoryZip( key.getId() );
+        assertThat( "render should reuse the streamed zip", lookups.get(), equalTo( firstLookups ) );
+        assertThat( Arrays.equals( Files.readAllBytes( rendered.toPath() ), first ), equalTo( true ) );
+
+        write( central, EXTRA, "0123456789abcdef" );
+        seal( key, pom, jar, entry( key, central, EXTRA, StoreEffect.DOWNLOAD ) );
+
+        final File changed = controller.renderRepositoryZip( key.getId() );
+        assertThat( "changed record should not be served from the old zip", lookups.get() > firstLookups,
+                    equalTo( true ) );
+        assertThat( changed.equals( rendered ), equalTo( false ) );
+        assertThat( zipFiles( key ), equalTo( Collections.singletonList( changed.getName() ) ) );
+
+        try (ZipFile zf = new ZipFile( changed ))
+        {
+            assertThat( names( zf ), equalTo( Arrays.asList( JAR, POM, EXTRA ) ) );
+        }
+    }
+
+    @Test
+    public void missingRecordIsNotFound()
+            throws Exception
+    {
+        try
+        {
+            controller.getSealedRecord( "missing" );
+            fail( "Expected NOT_FOUND for a record that was never sealed" );
+        }
+        catch ( final IndyWorkflowException e )
+        {
+            assertThat( e.getStatus(), equalTo( ApplicationStatus.NOT_FOUND.code() ) );
+        }
+
+        try
+        {
+            controller.renderRepositoryZip( "missing" );
+            fail( "Expected NOT_FOUND for a record that was never sealed" );
+        }
+        catch ( final IndyWorkflowException e )
+        {
+            assertThat( e.getStatus(), equalTo( ApplicationStatus.NOT_FOUND.code() ) );
+        }
+
+        assertThat( lookups.get(), equalTo( 0 ) );
+    }
+
+    private void assertZipContents( final File zip )
+            throws IOException
+    {
+        try (ZipFile zf = new ZipFile( zip ))
+        {
+            assertThat( names( zf ), equalTo( Arrays.asList( README, JAR, POM ) ) );
+            assertThat( zf.getEntry( MISSING ), nullValue() );
+
+            assertThat( "upload should win over download of the same path", read( zf, POM ),
+                        equalTo( "<project>uploaded</project>" ) );
+            assertThat( read( zf, JAR ), equalTo( repeat( 'j', 8192 ) ) );
+            assertThat( read( zf, README ), equalTo( repeat( 'r', 8192 ) ) );
+
+            final ZipEntry jar = zf.getEntry( JAR );
+            assertThat( "jar should be written at level 0", jar.getCompressedSize() >= jar.getSize(),
+                        equalTo( true ) );
+
+            final ZipEntry readme = zf.getEntry( README );
+            assertThat( "text should be compressed", readme.getCompressedSize() < readme.getSize() / 10,
+                        equalTo( true ) );
+        }
+    }
+
+    private byte[] stream( final TrackingKey key )
+            throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        controller.streamRepositoryZip( controller.getSealedRecord( key.getId() ), out );
+        return out.toByteArray();
+    }
+
+    private List<String> zipFiles( final TrackingKey key )
+    {
+        final File dir = filer.getRepositoryZipFile( key ).getDetachedFile().getParentFile();
+        final List<String> names = new ArrayList<>();
+        final String[] listing = dir.list();
+        if ( listing != null )
+        {
+            for ( final String name : listing )
+            {
+                if ( name.startsWith( key.getId() + "." ) )
+                {
+                    names.add( name );
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private static List<String> names( final ZipFile zf )
+    {
+        final List<String> names = new ArrayList<>();
+        Collections.list( zf.entries() ).forEach( e -> names.add( e.getName() ) );
+        return names;
+    }
+
+    private static String read( final ZipFile zf, final String path )
+            throws IOException
+    {
+        try (InputStream in = zf.getInputStream( zf.getEntry( path ) ))
+        {
+            return IOUtils.toString( in );
+        }
+    }
+
+    private void seal( final TrackingKey key, final TrackedContentEntry... entries )
+    {
+        final Set<TrackedContentEntry> uploads = new HashSet<>();
+        final Set<TrackedContentEntry> downloads = new HashSet<>();
+        for ( final TrackedContentEntry entry : entries )
+        {
+            ( entry.getEffect() == StoreEffect.UPLOAD ? uploads : downloads ).add( entry );
+        }
+
+        sealed.put( key, new TrackedContent( key, uploads, downloads ) );
+    }
+
+    private static TrackedContentEntry entry( final TrackingKey key, final ArtifactStore store, final String path,
+                                              final StoreEffect effect )
+    {
+        return new TrackedContentEntry( key, store.getKey(), AccessChannel.MAVEN_REPO, "", path, effect, 1L, "", "",
+                                        store.getName() + ":" + path );
+    }
+
+    private Transfer transfer( final ArtifactStore store, final String path )
+    {
+        return cacheProvider.getTransfer( new ConcreteResource( LocationUtils.toLocation( store ), path ) );
+    }
+
+    private void write( final ArtifactStore store, final String path, final String content )
+            throws IOException
+    {
+        try (OutputStream out = transfer( store, path ).openOutputStream( TransferOperation.UPLOAD ))
+        {
+            out.write( content.getBytes() );
+        }
+    }
+
+    private static String repeat( final char c, final int count )
+    {
+        final char[] chars = new char[count];
+        Arrays.fill( chars, c );
+        return new String( chars );
+    }
+
+}
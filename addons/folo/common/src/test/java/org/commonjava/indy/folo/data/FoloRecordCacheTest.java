@@ -15,6 +15,7 @@
  */
 package org.commonjava.indy.folo.data;
 
+import org.commonjava.indy.folo.conf.FoloConfig;
 import org.commonjava.indy.folo.model.StoreEffect;
 import org.commonjava.indy.folo.model.TrackedContent;
 import org.commonjava.indy.folo.model.TrackedContentEntry;
@@ -31,7 +32,12 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -147,6 +153,104 @@ public class FoloRecordCacheTest
         assertThat( cache.get( key ), nullValue() );
     }
 
+    @Test
+    public void concurrentRecordingKeepsEveryEntryPerKey()
+            throws Exception
+    {
+        final TrackingKey first = new TrackingKey( "first" );
+        final TrackingKey second = new TrackingKey( "second" );
+        final int count = 200;
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for ( int i = 0; i < count; i++ )
+            {
+                final String path = "/path/" + i;
+                for ( final TrackingKey key : new TrackingKey[] { first, second } )
+                {
+                    final StoreKey store = new StoreKey( StoreType.remote, key.getId() );
+                    results.add( executor.submit( () -> cache.recordArtifact(
+                            new TrackedContentEntry( key, store, AccessChannel.MAVEN_REPO, "", path,
+                                                     StoreEffect.DOWNLOAD, 1L, "", "", "" ) ) ) );
+                }
+            }
+
+            for ( final Future<Boolean> result : results )
+            {
+                assertThat( result.get(), equalTo( true ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertThat( cache.seal( first ).getDownloads().size(), equalTo( count ) );
+        assertThat( cache.hasInProgressRecord( second ), equalTo( true ) );
+        assertThat( cache.seal( second ).getDownloads().size(), equalTo( count ) );
+        assertThat( inProgress.isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void droppedIndexesAreReloadedFromTheInProgressCache()
+            throws Exception
+    {
+        final FoloConfig config = new FoloConfig();
+        config.setCacheMaxRecords( 1 );
+        cache = new FoloRecordCache( inProgress, sealed, config );
+
+        final TrackingKey[] keys = { new TrackingKey( "a" ), new TrackingKey( "b" ), new TrackingKey( "c" ) };
+        final int count = 100;
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for ( int i = 0; i < count; i++ )
+            {
+                final String path = "/path/" + i;
+                for ( final TrackingKey key : keys )
+                {
+                    final StoreKey store = new StoreKey( StoreType.remote, key.getId() );
+                    results.add( executor.submit( () -> cache.recordArtifact(
+                            new TrackedContentEntry( key, store, AccessChannel.MAVEN_REPO, "", path,
+                                                     StoreEffect.DOWNLOAD, 1L, "", "", "" ) ) ) );
+                }
+            }
+
+            for ( final Future<Boolean> result : results )
+            {
+                assertThat( result.get(), equalTo( true ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        for ( final TrackingKey key : keys )
+        {
+            assertThat( cache.hasInProgressRecord( key ), equalTo( true ) );
+            assertThat( cache.seal( key ).getDownloads().size(), equalTo( count ) );
+        }
+
+        assertThat( inProgress.isEmpty(), equalTo( true ) );
+    }
+
+    @Test( expected = FoloContentException.class )
+    public void recordAfterSealFails()
+            throws Exception
+    {
+        final TrackingKey key = newKey();
+        cache.seal( key );
+
+        cache.recordArtifact( new TrackedContentEntry( key, new StoreKey( StoreType.remote, "foo" ),
+                                                       AccessChannel.MAVEN_REPO, "", "/path",
+                                                       StoreEffect.DOWNLOAD, 1L, "", "", "" ) );
+    }
+
     @Test
     public void getRecordReturnsNullIfNoneExists()
             throws Exception
@@ -0,0 +1,125 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.folo.ftest.content.admin;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpStatus;
+import org.commonjava.indy.client.core.IndyClientException;
+import org.commonjava.indy.folo.client.IndyFoloAdminClientModule;
+import org.commonjava.indy.folo.client.IndyFoloContentClientModule;
+import org.commonjava.indy.folo.ftest.content.AbstractFoloContentManagementTest;
+import org.commonjava.indy.ftest.core.category.EventDependent;
+import org.commonjava.indy.test.fixture.core.CoreServerFixture;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.commonjava.indy.model.core.StoreType.hosted;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * With <code>repo.zip.streaming</code> enabled, the repository zip is written straight to the response. Check that the
+ * streamed zip holds every tracked upload in path order, and that an unknown record is still a 404 rather than a
+ * broken stream.
+ */
+@Category( EventDependent.class )
+public class StreamRepoZipForUploadsTest
+        extends AbstractFoloContentManagementTest
+{
+
+    @Override
+    protected void initTestConfig( CoreServerFixture fixture )
+            throws IOException
+    {
+        super.initTestConfig( fixture );
+        writeConfigFile( "conf.d/folo.conf", "[folo]\nrepo.zip.streaming=true\nrepo.zip.cache=true" );
+    }
+
+    @Test
+    public void run()
+            throws Exception
+    {
+        final String trackingId = newName();
+        final String pomPath = "org/foo/bar/1/bar-1.pom";
+        final String jarPath = "org/foo/bar/1/bar-1.jar";
+        final String pom = "<project><artifactId>bar</artifactId></project>";
+        final String jar = "This is not really a jar: " + System.nanoTime();
+
+        final IndyFoloContentClientModule content = client.module( IndyFoloContentClientModule.class );
+        content.store( trackingId, hosted, STORE, pomPath, new ByteArrayInputStream( pom.getBytes() ) );
+        content.store( trackingId, hosted, STORE, jarPath, new ByteArrayInputStream( jar.getBytes() ) );
+
+        final IndyFoloAdminClientModule module = client.module( IndyFoloAdminClientModule.class );
+        assertThat( module.sealTrackingRecord( trackingId ), equalTo( true ) );
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            final File f = getTemp().newFile( "streamed-" + i + ".zip" );
+            try (InputStream result = module.getTrackingRepoZip( trackingId );
+                 FileOutputStream fos = new FileOutputStream( f ))
+            {
+                assertThat( result, notNullValue() );
+                IOUtils.copy( result, fos );
+            }
+
+            try (ZipFile zf = new ZipFile( f ))
+            {
+                final List<String> names = new ArrayList<>();
+                Collections.list( zf.entries() ).forEach( e -> names.add( e.getName() ) );
+                assertThat( names, equalTo( Arrays.asList( jarPath, pomPath ) ) );
+
+                assertThat( read( zf, pomPath ), equalTo( pom ) );
+                assertThat( read( zf, jarPath ), equalTo( jar ) );
+            }
+        }
+
+        try
+        {
+            module.getTrackingRepoZip( newName() );
+            fail( "Expected 404 for a tracking record that doesn't exist" );
+        }
+        catch ( final IndyClientException e )
+        {
+            assertThat( e.getStatusCode(), equalTo( HttpStatus.SC_NOT_FOUND ) );
+        }
+    }
+
+    private static String read( final ZipFile zf, final String path )
+            throws IOException
+    {
+        final ZipEntry entry = zf.getEntry( path );
+        assertThat( entry, notNullValue() );
+        try (InputStream stream = zf.getInputStream( entry ))
+        {
+            return IOUtils.toString( stream );
+        }
+    }
+
+}
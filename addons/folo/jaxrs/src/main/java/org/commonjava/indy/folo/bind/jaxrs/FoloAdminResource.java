@@ -26,6 +26,7 @@ import org.commonjava.indy.core.ctl.ContentController;
 import org.commonjava.indy.folo.ctl.FoloAdminController;
 import org.commonjava.indy.folo.data.FoloContentException;
 import org.commonjava.indy.folo.dto.TrackedContentDTO;
+import org.commonjava.indy.folo.model.TrackedContent;
 import org.commonjava.indy.model.core.io.IndyObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,8 +43,10 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import java.io.File;
+import java.io.IOException;
 
 import static org.commonjava.indy.bind.jaxrs.util.ResponseUtils.formatOkResponseWithJsonEntity;
 import static org.commonjava.indy.bind.jaxrs.util.ResponseUtils.formatResponse;
@@ -76,12 +79,32 @@ public class FoloAdminResource
     @Path( "/{id}/repo/zip" )
     @GET
     @Produces( application_zip )
-    public File getZipRepository( @ApiParam( "User-assigned tracking session key" ) @PathParam( "id" ) String id )
+    public Response getZipRepository( @ApiParam( "User-assigned tracking session key" ) @PathParam( "id" ) String id )
     {
         try
         {
+            if ( controller.isRepositoryZipStreaming() )
+            {
+                // resolve the record first, so a missing record is still a 404 rather than a broken stream
+                final TrackedContent record = controller.getSealedRecord( id );
+                final StreamingOutput zip = out -> {
+                    try
+                    {
+                        controller.streamRepositoryZip( record, out );
+                    }
+                    catch ( final IndyWorkflowException e )
+                    {
+                        logger.error( String.format( "Failed to stream repository zip for: %s. Reason: %s", id,
+                                                     e.getMessage() ), e );
+                        throw new IOException( e.getMessage(), e );
+                    }
+                };
+
+                return Response.ok( zip, application_zip ).build();
+            }
+
             File zip = controller.renderRepositoryZip( id );
-            return zip;
+            return Response.ok( zip, application_zip ).build();
             //
             //            final Response.ResponseBuilder builder = Response.ok( zip );
             //            return setInfoHeaders( builder, zip, false, application_zip ).build();
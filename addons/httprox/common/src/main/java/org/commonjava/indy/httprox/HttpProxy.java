@@ -25,6 +25,7 @@ import org.commonjava.indy.httprox.handler.ProxyAcceptHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.OptionMap;
+import org.xnio.Options;
 import org.xnio.StreamConnection;
 import org.xnio.Xnio;
 import org.xnio.XnioWorker;
@@ -51,6 +52,8 @@ public class HttpProxy
     @Inject
     private ProxyAcceptHandler acceptHandler;
 
+    private XnioWorker worker;
+
     private AcceptingChannel<StreamConnection> server;
 
     protected HttpProxy()
@@ -86,11 +89,19 @@ public class HttpProxy
 
         logger.info( "Starting HTTProx proxy on: {}:{}", bind, config.getPort() );
 
-        XnioWorker worker;
         try
         {
+            // I/O threads only parse requests and push bytes; request handling runs on the worker's task threads
             worker = Xnio.getInstance()
-                         .createWorker( OptionMap.EMPTY );
+                         .createWorker( OptionMap.builder()
+                                                 .set( Options.WORKER_NAME, "httprox" )
+                                                 .set( Options.WORKER_IO_THREADS, config.getIoThreads() )
+                                                 .set( Options.WORKER_TASK_CORE_THREADS, config.getWorkerThreads() )
+                                                 .set( Options.WORKER_TASK_MAX_THREADS, config.getWorkerThreads() )
+                                                 .getMap() );
+
+            logger.info( "HTTProx using {} I/O threads and {} worker threads", config.getIoThreads(),
+                         config.getWorkerThreads() );
 
             final InetSocketAddress addr;
             if ( config.getPort() < 1 )
@@ -142,6 +153,11 @@ public class HttpProxy
                 logger.error( "Failed to stop: " + e.getMessage(), e );
             }
         }
+
+        if ( worker != null )
+        {
+            worker.shutdown();
+        }
     }
 
     @Override
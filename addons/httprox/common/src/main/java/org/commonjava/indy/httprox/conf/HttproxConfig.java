@@ -41,6 +41,16 @@ public class HttproxConfig
 
     private static final String DEFAULT_TRACKING_TYPE = TrackingType.SUFFIX.name();
 
+    private static final int DEFAULT_IO_THREADS = Math.max( 2, Runtime.getRuntime().availableProcessors() );
+
+    private static final int DEFAULT_WORKER_THREADS = Math.max( 16, Runtime.getRuntime().availableProcessors() * 8 );
+
+    private static final int DEFAULT_BUFFER_SIZE = 16384;
+
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+
+    private static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 100;
+
     private String proxyRealm;
 
     private Boolean enabled;
@@ -51,6 +61,16 @@ public class HttproxConfig
 
     private String trackingType;
 
+    private Integer ioThreads;
+
+    private Integer workerThreads;
+
+    private Integer bufferSize;
+
+    private Integer idleTimeoutSeconds;
+
+    private Integer maxRequestsPerConnection;
+
     public TrackingType getTrackingType()
     {
         Logger logger = LoggerFactory.getLogger( getClass() );
@@ -113,6 +133,63 @@ public class HttproxConfig
         this.proxyRealm = proxyRealm;
     }
 
+    public int getIoThreads()
+    {
+        return ioThreads == null || ioThreads < 1 ? DEFAULT_IO_THREADS : ioThreads;
+    }
+
+    @ConfigName( "io.threads" )
+    public void setIoThreads( final Integer ioThreads )
+    {
+        this.ioThreads = ioThreads;
+    }
+
+    public int getWorkerThreads()
+    {
+        return workerThreads == null || workerThreads < 1 ? DEFAULT_WORKER_THREADS : workerThreads;
+    }
+
+    @ConfigName( "worker.threads" )
+    public void setWorkerThreads( final Integer workerThreads )
+    {
+        this.workerThreads = workerThreads;
+    }
+
+    public int getBufferSize()
+    {
+        return bufferSize == null || bufferSize < 1024 ? DEFAULT_BUFFER_SIZE : bufferSize;
+    }
+
+    @ConfigName( "buffer.size" )
+    public void setBufferSize( final Integer bufferSize )
+    {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getIdleTimeoutSeconds()
+    {
+        return idleTimeoutSeconds == null || idleTimeoutSeconds < 1 ? DEFAULT_IDLE_TIMEOUT_SECONDS : idleTimeoutSeconds;
+    }
+
+    @ConfigName( "idle.timeout.seconds" )
+    public void setIdleTimeoutSeconds( final Integer idleTimeoutSeconds )
+    {
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    public int getMaxRequestsPerConnection()
+    {
+        return maxRequestsPerConnection == null || maxRequestsPerConnection < 1 ?
+                DEFAULT_MAX_REQUESTS_PER_CONNECTION :
+                maxRequestsPerConnection;
+    }
+
+    @ConfigName( "max.requests.per.connection" )
+    public void setMaxRequestsPerConnection( final Integer maxRequestsPerConnection )
+    {
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+    }
+
     @Override
     public String getDefaultConfigFileName()
     {
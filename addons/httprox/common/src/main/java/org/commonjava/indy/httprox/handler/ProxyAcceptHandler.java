@@ -24,15 +24,18 @@ import org.commonjava.indy.subsys.template.ScriptEngine;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnio.BufferAllocator;
+import org.xnio.ByteBufferSlicePool;
 import org.xnio.ChannelListener;
+import org.xnio.Pool;
 import org.xnio.StreamConnection;
 import org.xnio.channels.AcceptingChannel;
 import org.xnio.conduits.ConduitStreamSinkChannel;
-import org.xnio.conduits.ConduitStreamSourceChannel;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Created by jdcasey on 8/13/15.
@@ -64,6 +67,8 @@ public class ProxyAcceptHandler
 
     private ProxyRepositoryCreator creator;
 
+    private Pool<ByteBuffer> bufferPool;
+
     protected ProxyAcceptHandler()
     {
     }
@@ -84,6 +89,10 @@ public class ProxyAcceptHandler
     @PostConstruct
     public void init()
     {
+        // direct buffers shared by all connections, carved out of regions of 64 buffers each
+        bufferPool = new ByteBufferSlicePool( BufferAllocator.DIRECT_BYTE_BUFFER_ALLOCATOR, config.getBufferSize(),
+                                              config.getBufferSize() * 64 );
+
         try
         {
             creator = scriptEngine.parseStandardScriptInstance( ScriptEngine.StandardScriptType.store_creators,
@@ -121,23 +130,17 @@ public class ProxyAcceptHandler
 
         logger.debug( "accepted {}", accepted.getPeerAddress() );
 
-        final ConduitStreamSourceChannel source = accepted.getSourceChannel();
         final ConduitStreamSinkChannel sink = accepted.getSinkChannel();
 
-        final ProxyResponseWriter writer =
-                new ProxyResponseWriter( config, storeManager, contentController, proxyAuthenticator, cacheProvider,
-                                         creator );
-
-        logger.debug( "Setting writer: {}", writer );
-        sink.getWriteSetter().set( writer );
-
-        final ProxyRequestReader reader = new ProxyRequestReader( writer, sink );
+        final ProxyRequestReader reader = new ProxyRequestReader( accepted, config,
+                                                                  () -> new ProxyResponseWriter( config, storeManager,
+                                                                                                 contentController,
+                                                                                                 proxyAuthenticator,
+                                                                                                 cacheProvider, creator,
+                                                                                                 sink, bufferPool ) );
 
         logger.debug( "Setting reader: {}", reader );
-        source.getReadSetter().set( reader );
-
-        source.resumeReads();
-
+        reader.start();
     }
 
 }
@@ -15,9 +15,11 @@
  */
 package org.commonjava.indy.httprox.handler;
 
+import org.apache.http.Header;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestFactory;
+import org.apache.http.HttpVersion;
 import org.apache.http.config.MessageConstraints;
 import org.apache.http.impl.DefaultHttpRequestFactory;
 import org.apache.http.impl.io.DefaultHttpRequestParser;
@@ -25,163 +27,329 @@ import org.apache.http.impl.io.HttpTransportMetricsImpl;
 import org.apache.http.impl.io.SessionInputBufferImpl;
 import org.apache.http.message.BasicLineParser;
 import org.apache.http.message.LineParser;
+import org.commonjava.indy.httprox.conf.HttproxConfig;
 import org.commonjava.indy.util.ApplicationHeader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.ChannelListener;
-import org.xnio.conduits.ConduitStreamSinkChannel;
+import org.xnio.IoUtils;
+import org.xnio.StreamConnection;
+import org.xnio.XnioExecutor;
 import org.xnio.conduits.ConduitStreamSourceChannel;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+/**
+ * Reads requests from a proxy connection on its I/O thread, and hands each parsed request to a new
+ * {@link ProxyResponseWriter} on one of the XNIO worker's task threads.
+ * <br/>
+ * Connections are persistent unless the client asks otherwise (<code>Connection: close</code>, or an HTTP/1.0 request
+ * without <code>keep-alive</code>), or the connection reaches its request limit. Requests are answered one at a time,
+ * in order: reads are suspended while a request is being handled, and anything the client pipelined behind it stays
+ * buffered until its response is out. Connections that sit idle between requests for longer than the configured
+ * timeout are closed.
+ */
 public final class ProxyRequestReader
         implements ChannelListener<ConduitStreamSourceChannel>
 {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private static final int MAX_HEAD_SIZE = 65536;
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
-    private ByteArrayOutputStream req = new ByteArrayOutputStream();
+    private final StreamConnection connection;
+
+    private final HttproxConfig config;
+
+    private final Supplier<ProxyResponseWriter> writers;
 
-    private char lastChar = 0;
+    // in write mode: holds the bytes read but not yet parsed
+    private ByteBuffer buffer = ByteBuffer.allocate( INITIAL_BUFFER_SIZE );
 
-    private boolean headDone = false;
+    private int requests;
 
-    private final ProxyResponseWriter writer;
+    private boolean busy;
 
-    private final ConduitStreamSinkChannel sinkChannel;
+    private boolean eof;
 
-    public ProxyRequestReader( final ProxyResponseWriter writer, final ConduitStreamSinkChannel sinkChannel )
+    private XnioExecutor.Key idleTimer;
+
+    public ProxyRequestReader( final StreamConnection connection, final HttproxConfig config,
+                               final Supplier<ProxyResponseWriter> writers )
+    {
+        this.connection = connection;
+        this.config = config;
+        this.writers = writers;
+    }
+
+    /**
+     * Start waiting for the first request.
+     */
+    public void start()
     {
-        this.writer = writer;
-        this.sinkChannel = sinkChannel;
+        final ConduitStreamSourceChannel source = connection.getSourceChannel();
+        source.getReadSetter().set( this );
+        scheduleIdleTimeout();
+        source.resumeReads();
     }
 
-    // TODO: May need to tune this to preserve request body.
     // TODO: NONE of the request headers (except authorization) are passed through!
     @Override
     public void handleEvent( final ConduitStreamSourceChannel channel )
     {
-        boolean sendResponse = false;
         try
         {
-            final int read = doRead( channel );
-
-            logger.debug( "Request in progress is:\n\n'{}'", new String( req.toByteArray() ) );
-
-            if ( read < 0 || headDone )
+            int read;
+            while ( ( read = channel.read( buffer ) ) > 0 )
             {
-                logger.debug( "request done. parsing." );
-                MessageConstraints mc = MessageConstraints.DEFAULT;
-                SessionInputBufferImpl inbuf = new SessionInputBufferImpl( new HttpTransportMetricsImpl(), 1024 );
-                HttpRequestFactory requestFactory = new DefaultHttpRequestFactory();
-                LineParser lp = new BasicLineParser();
-
-                DefaultHttpRequestParser requestParser = new DefaultHttpRequestParser( inbuf, lp, requestFactory, mc );
-
-                inbuf.bind( new ByteArrayInputStream( req.toByteArray() ) );
-
-                try
-                {
-                    logger.debug( "Passing parsed http request off to response writer." );
-                    HttpRequest request = requestParser.parse();
-                    logger.debug( "Request contains {} header: '{}'", ApplicationHeader.authorization.key(),
-                                  request.getHeaders( ApplicationHeader.authorization.key() ) );
-
-                    writer.setHttpRequest( request );
-                    sendResponse = true;
-                }
-                catch ( HttpException e )
+                if ( !buffer.hasRemaining() && !grow() )
                 {
-                    logger.error( "Failed to parse http request: " + e.getMessage(), e );
-                    writer.setError( e );
+                    break;
                 }
             }
-            else
-            {
-                logger.debug( "request not finished. Pausing until more reads are available.'" );
 
-                channel.resumeReads();
+            if ( read < 0 )
+            {
+                eof = true;
             }
         }
         catch ( final IOException e )
         {
-            writer.setError( e );
-            sendResponse = true;
+            logger.debug( "Failed to read from httprox connection: " + e.getMessage(), e );
+            close();
+            return;
         }
 
-        if ( sendResponse )
+        processNext();
+    }
+
+    /**
+     * Dispatch the next buffered request, if a complete one is there and none is in progress. Otherwise wait for more
+     * input, or close the connection if the client is done.
+     */
+    private void processNext()
+    {
+        if ( busy )
         {
-            sinkChannel.resumeWrites();
-            try
+            return;
+        }
+
+        final int headEnd = findHeadEnd();
+        if ( headEnd < 0 )
+        {
+            if ( eof )
             {
-                channel.shutdownReads();
+                logger.debug( "Client closed httprox connection ({} unparsed bytes).", buffer.position() );
+                close();
             }
-            catch ( final IOException e )
+            else if ( buffer.position() >= MAX_HEAD_SIZE )
+            {
+                dispatch( null, new IOException( "Request head is larger than " + MAX_HEAD_SIZE + " bytes." ),
+                          false );
+            }
+            else
             {
-                logger.debug( "failed to shutdown proxy request reads.", e );
+                connection.getSourceChannel().resumeReads();
             }
-            //            IOUtils.closeQuietly( channel );
+
+            return;
+        }
+
+        final byte[] head = new byte[headEnd];
+        buffer.flip();
+        buffer.get( head );
+        buffer.compact();
+
+        requests++;
+
+        HttpRequest request = null;
+        Throwable error = null;
+        try
+        {
+            request = parse( head );
+            logger.debug( "Request #{} on connection from {}: {}", requests, connection.getPeerAddress(),
+                          request.getRequestLine() );
+            logger.debug( "Request contains {} header: '{}'", ApplicationHeader.authorization.key(),
+                          request.getHeaders( ApplicationHeader.authorization.key() ) );
+        }
+        catch ( final HttpException | IOException e )
+        {
+            logger.error( "Failed to parse http request: " + e.getMessage(), e );
+            error = e;
+        }
+
+        final boolean keepAlive = request != null && !eof && requests < config.getMaxRequestsPerConnection()
+                && isKeepAlive( request ) && !hasBody( request );
+
+        dispatch( request, error, keepAlive );
+    }
+
+    private void dispatch( final HttpRequest request, final Throwable error, final boolean keepAlive )
+    {
+        busy = true;
+        cancelIdleTimeout();
+        connection.getSourceChannel().suspendReads();
+
+        final ProxyResponseWriter writer = writers.get();
+        writer.setHttpRequest( request );
+        writer.setError( error );
+        writer.setConnectionState( keepAlive,
+                                   () -> connection.getIoThread().execute( () -> responseSent( keepAlive ) ) );
+
+        connection.getWorker().execute( writer );
+    }
+
+    /**
+     * Runs on the connection's I/O thread once a response has been written out (or failed).
+     */
+    private void responseSent( final boolean keepAlive )
+    {
+        busy = false;
+        if ( !keepAlive || !connection.getSinkChannel().isOpen() )
+        {
+            close();
+            return;
         }
+
+        scheduleIdleTimeout();
+
+        // the client may have pipelined the next request already
+        processNext();
     }
 
-    private int doRead( final ConduitStreamSourceChannel channel )
-            throws IOException
+    private void scheduleIdleTimeout()
     {
-        int read = -1;
-        if ( headDone )
+        cancelIdleTimeout();
+        idleTimer = connection.getIoThread().executeAfter( () -> {
+            if ( !busy )
+            {
+                logger.debug( "Closing idle httprox connection from: {}", connection.getPeerAddress() );
+                close();
+            }
+        }, config.getIdleTimeoutSeconds(), TimeUnit.SECONDS );
+    }
+
+    private void cancelIdleTimeout()
+    {
+        if ( idleTimer != null )
         {
-            return read;
+            idleTimer.remove();
+            idleTimer = null;
         }
+    }
 
-        final ByteBuffer buf = ByteBuffer.allocate( 256 );
-        logger.debug( "Starting read: {}", channel );
+    private void close()
+    {
+        cancelIdleTimeout();
+        IoUtils.safeClose( connection );
+    }
 
-        PrintWriter printer = new PrintWriter( new OutputStreamWriter( req ) );
+    /**
+     * Return the length of the request head at the start of the buffer (through the blank line ending it), or -1 if
+     * it isn't complete yet. Blank lines ahead of a request are dropped.
+     */
+    private int findHeadEnd()
+    {
+        final byte[] bytes = buffer.array();
+        final int end = buffer.position();
 
-        readLoop:
-        while ( ( read = channel.read( buf ) ) > 0 )
+        int start = 0;
+        while ( start < end && ( bytes[start] == '\r' || bytes[start] == '\n' ) )
         {
-            logger.debug( "Read {} bytes", read );
+            start++;
+        }
 
-            buf.flip();
-            final byte[] bbuf = new byte[buf.limit()];
-            buf.get( bbuf );
+        if ( start > 0 )
+        {
+            buffer.flip();
+            buffer.position( start );
+            buffer.compact();
+            return findHeadEnd();
+        }
 
-            //            req.write( bbuf );
-            // inefficient, but allows us to stop after header read...
-            final String part = new String( bbuf );
-//            logger.debug( part );
-            for ( final char c : part.toCharArray() )
+        for ( int i = 0; i < end; i++ )
+        {
+            if ( bytes[i] == '\n' )
             {
-                switch ( c )
+                if ( i + 1 < end && bytes[i + 1] == '\n' )
                 {
-                    case '\r':
-                    {
-                        // check: \r\N\R\n
-                        if ( lastChar == '\n' && req.size() > 0 )
-                        {
-                            // end of request head
-                            logger.debug( "Detected end of request head. Breaking read loop." );
-                            headDone = true;
-                            break readLoop;
-                        }
-                    }
-                    default:
-                    {
-                        req.write( (byte) c & 0x00FF );
-                    }
+                    return i + 2;
                 }
 
-                lastChar = c;
+                if ( i + 2 < end && bytes[i + 1] == '\r' && bytes[i + 2] == '\n' )
+                {
+                    return i + 3;
+                }
             }
         }
 
-        logger.debug( "Processed {} bytes", read );
-        return read;
+        return -1;
     }
 
-}
\ No newline at end of file
+    private boolean grow()
+    {
+        if ( buffer.capacity() >= MAX_HEAD_SIZE )
+        {
+            return false;
+        }
+
+        final ByteBuffer bigger = ByteBuffer.allocate( Math.min( MAX_HEAD_SIZE, buffer.capacity() * 2 ) );
+        buffer.flip();
+        bigger.put( buffer );
+        buffer = bigger;
+        return true;
+    }
+
+    private HttpRequest parse( final byte[] head )
+            throws HttpException, IOException
+    {
+        MessageConstraints mc = MessageConstraints.DEFAULT;
+        SessionInputBufferImpl inbuf = new SessionInputBufferImpl( new HttpTransportMetricsImpl(), 1024 );
+        HttpRequestFactory requestFactory = new DefaultHttpRequestFactory();
+        LineParser lp = new BasicLineParser();
+
+        DefaultHttpRequestParser requestParser = new DefaultHttpRequestParser( inbuf, lp, requestFactory, mc );
+
+        inbuf.bind( new ByteArrayInputStream( head ) );
+
+        return requestParser.parse();
+    }
+
+    private static boolean isKeepAlive( final HttpRequest request )
+    {
+        Header header = request.getFirstHeader( "Connection" );
+        if ( header == null )
+        {
+            header = request.getFirstHeader( "Proxy-Connection" );
+        }
+
+        final String value = header == null ? "" : header.getValue().toLowerCase();
+        if ( value.contains( "close" ) )
+        {
+            return false;
+        }
+
+        if ( request.getProtocolVersion().lessEquals( HttpVersion.HTTP_1_0 ) )
+        {
+            return value.contains( "keep-alive" );
+        }
+
+        return true;
+    }
+
+    /**
+     * Proxied requests (GET, HEAD, OPTIONS) don't carry bodies. If one does anyway, we don't read it, so the
+     * connection can't be reused after the response.
+     */
+    private static boolean hasBody( final HttpRequest request )
+    {
+        final Header length = request.getFirstHeader( "Content-Length" );
+        return request.containsHeader( "Transfer-Encoding" ) || ( length != null && !"0".equals(
+                length.getValue().trim() ) );
+    }
+}
@@ -42,11 +42,12 @@ import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xnio.ChannelListener;
+import org.xnio.Pool;
 import org.xnio.conduits.ConduitStreamSinkChannel;
 
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
 import static org.commonjava.indy.httprox.util.HttpProxyConstants.ALLOW_HEADER_VALUE;
 import static org.commonjava.indy.httprox.util.HttpProxyConstants.GET_METHOD;
@@ -55,8 +56,13 @@ import static org.commonjava.indy.httprox.util.HttpProxyConstants.OPTIONS_METHOD
 import static org.commonjava.indy.httprox.util.HttpProxyConstants.PROXY_AUTHENTICATE_FORMAT;
 import static org.commonjava.indy.httprox.util.HttpProxyConstants.PROXY_REPO_PREFIX;
 
+/**
+ * Handles a parsed proxy request. This runs on one of the XNIO worker's task threads (see
+ * {@link ProxyRequestReader}), since upstream retrieval may take a long time; the response it collects is written out
+ * by the connection's I/O thread. Each request on a connection gets its own writer.
+ */
 public final class ProxyResponseWriter
-                implements ChannelListener<ConduitStreamSinkChannel>
+                implements Runnable
 {
 
     private static final String TRACKED_USER_SUFFIX = "+tracking";
@@ -77,14 +83,24 @@ public final class ProxyResponseWriter
 
     private ProxyRepositoryCreator repoCreator;
 
+    private final ConduitStreamSinkChannel sinkChannel;
+
+    private final Pool<ByteBuffer> bufferPool;
+
     private boolean transferred;
 
     private HttpRequest httpRequest;
 
+    private boolean keepAlive;
+
+    private Runnable onComplete = () -> {
+    };
+
     public ProxyResponseWriter( final HttproxConfig config, final StoreDataManager storeManager,
                                 final ContentController contentController,
                                 KeycloakProxyAuthenticator proxyAuthenticator, CacheProvider cacheProvider,
-                                ProxyRepositoryCreator repoCreator )
+                                ProxyRepositoryCreator repoCreator, final ConduitStreamSinkChannel sinkChannel,
+                                final Pool<ByteBuffer> bufferPool )
     {
         this.config = config;
         this.contentController = contentController;
@@ -92,12 +108,37 @@ public final class ProxyResponseWriter
         this.proxyAuthenticator = proxyAuthenticator;
         this.cacheProvider = cacheProvider;
         this.repoCreator = repoCreator;
+        this.sinkChannel = sinkChannel;
+        this.bufferPool = bufferPool;
     }
 
     @Override
-    public void handleEvent( final ConduitStreamSinkChannel channel )
+    public void run()
+    {
+        final HttpConduitWrapper http =
+                new HttpConduitWrapper( sinkChannel, httpRequest, contentController, cacheProvider, bufferPool,
+                                        keepAlive, onComplete );
+        final String oldThreadName = Thread.currentThread().getName();
+        try
+        {
+            handleRequest( http );
+        }
+        finally
+        {
+            Thread.currentThread().setName( oldThreadName );
+            try
+            {
+                http.close();
+            }
+            catch ( final IOException e )
+            {
+                logger.error( "Failed to flush/shutdown response.", e );
+            }
+        }
+    }
+
+    private void handleRequest( final HttpConduitWrapper http )
     {
-        HttpConduitWrapper http = new HttpConduitWrapper( channel, httpRequest, contentController, cacheProvider );
         if ( httpRequest == null )
         {
             if ( error != null )
@@ -121,16 +162,9 @@ public final class ProxyResponseWriter
             return;
         }
 
-        // TODO: Can we handle this?
-        final String oldThreadName = Thread.currentThread().getName();
         Thread.currentThread().setName( httpRequest.getRequestLine().toString() );
-        channel.getCloseSetter().set( ( sinkChannel ) ->
-        {
-            logger.debug("sink channel closing.");
-            Thread.currentThread().setName( oldThreadName );
-        } );
 
-        logger.info( "\n\n\n>>>>>>> Handle write\n\n\n\n\n" );
+        logger.debug( "Handling HTTProx request: {}", httpRequest.getRequestLine() );
         if ( error == null )
         {
             try
@@ -197,15 +231,6 @@ public final class ProxyResponseWriter
         {
             handleError( error, http );
         }
-
-        try
-        {
-            http.close();
-        }
-        catch ( final IOException e )
-        {
-            logger.error( "Failed to flush/shutdown response.", e );
-        }
     }
 
     private void handleError( final Throwable error, final HttpWrapper http )
@@ -392,4 +417,14 @@ public final class ProxyResponseWriter
     {
         this.httpRequest = request;
     }
+
+    /**
+     * @param keepAlive whether the connection stays open for another request after this response
+     * @param onComplete called once the response is out (or failed)
+     */
+    public void setConnectionState( final boolean keepAlive, final Runnable onComplete )
+    {
+        this.keepAlive = keepAlive;
+        this.onComplete = onComplete;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.httprox.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.ChannelListener;
+import org.xnio.IoUtils;
+import org.xnio.Pooled;
+import org.xnio.conduits.ConduitStreamSinkChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sends a buffered response head (and any small in-memory body) followed by an optional file body, as the sink channel
+ * becomes writable. It runs on the connection's I/O thread and never blocks: when the socket buffer is full, it returns
+ * and waits for the next write-readiness event. File bodies go through
+ * {@link ConduitStreamSinkChannel#transferFrom(FileChannel, long, long)}, which lets the kernel copy straight from the
+ * page cache to the socket.
+ * <br/>
+ * On a persistent connection, writes stay open for the next response; either way, the completion callback runs once
+ * this one is flushed (or has failed and closed the channel).
+ */
+public final class ConduitResponseSender
+        implements ChannelListener<ConduitStreamSinkChannel>
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final ByteBuffer head;
+
+    private final Pooled<ByteBuffer> pooledHead;
+
+    private final FileChannel body;
+
+    private final long bodyEnd;
+
+    private final boolean shutdownWrites;
+
+    private final Runnable onComplete;
+
+    private long bodyPosition;
+
+    private boolean shutdown;
+
+    private boolean released;
+
+    /**
+     * @param head bytes to send first (already flipped)
+     * @param pooledHead the pooled buffer holding the head, to free once sent, or null
+     * @param body file to send after the head, or null; closed once sent
+     * @param bodyLength number of bytes of the file to send
+     * @param shutdownWrites whether to shut down writes after the response (i.e. the connection isn't kept alive)
+     * @param onComplete called on the I/O thread once the response is out, or has failed
+     */
+    public ConduitResponseSender( final ByteBuffer head, final Pooled<ByteBuffer> pooledHead, final FileChannel body,
+                                  final long bodyLength, final boolean shutdownWrites, final Runnable onComplete )
+    {
+        this.head = head;
+        this.pooledHead = pooledHead;
+        this.body = body;
+        this.bodyEnd = body == null ? 0 : bodyLength;
+        this.shutdownWrites = shutdownWrites;
+        this.onComplete = onComplete;
+    }
+
+    /**
+     * Take over the channel's write events and start sending.
+     */
+    public void send( final ConduitStreamSinkChannel channel )
+    {
+        channel.getWriteSetter().set( this );
+        channel.getCloseSetter().set( ( c ) -> release() );
+        channel.resumeWrites();
+    }
+
+    @Override
+    public void handleEvent( final ConduitStreamSinkChannel channel )
+    {
+        try
+        {
+            while ( head.hasRemaining() )
+            {
+                if ( channel.write( head ) < 1 )
+                {
+                    return;
+                }
+            }
+
+            while ( bodyPosition < bodyEnd )
+            {
+                final long written = channel.transferFrom( body, bodyPosition, bodyEnd - bodyPosition );
+                if ( written < 1 )
+                {
+                    if ( body.size() < bodyEnd )
+                    {
+                        throw new IOException( "File body shrank while being sent; expected " + bodyEnd + " bytes." );
+                    }
+
+                    return;
+                }
+
+                bodyPosition += written;
+            }
+
+            if ( shutdownWrites && !shutdown )
+            {
+                channel.shutdownWrites();
+                shutdown = true;
+            }
+
+            if ( !channel.flush() )
+            {
+                return;
+            }
+
+            channel.suspendWrites();
+            release();
+            logger.debug( "Response sent." );
+        }
+        catch ( final IOException e )
+        {
+            logger.error( "Failed to send HTTProx response: " + e.getMessage(), e );
+            release();
+            IoUtils.safeClose( channel );
+        }
+
+        onComplete.run();
+    }
+
+    private synchronized void release()
+    {
+        if ( released )
+        {
+            return;
+        }
+
+        released = true;
+        if ( pooledHead != null )
+        {
+            pooledHead.free();
+        }
+
+        IoUtils.safeClose( body );
+    }
+}
@@ -15,10 +15,10 @@
  */
 package org.commonjava.indy.httprox.util;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpRequest;
+import org.apache.http.HttpVersion;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.core.ctl.ContentController;
 import org.commonjava.indy.model.core.RemoteRepository;
@@ -31,25 +31,51 @@ import org.commonjava.maven.galley.spi.cache.CacheProvider;
 import org.commonjava.maven.galley.transport.htcli.model.HttpExchangeMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xnio.IoUtils;
+import org.xnio.Pool;
+import org.xnio.Pooled;
 import org.xnio.channels.Channels;
 import org.xnio.conduits.ConduitStreamSinkChannel;
 
-import java.io.FileInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by jdcasey on 9/1/15.
+ * <br/>
+ * Collects the response on the worker thread handling the request, then hands it to a {@link ConduitResponseSender}
+ * on {@link #close()}, which writes it from the connection's I/O thread as the socket becomes writable. Content that
+ * exists as a local file is sent from the file directly; anything else is copied through a pooled direct buffer with
+ * blocking writes, on the worker thread.
+ * <br/>
+ * Every response is framed so the connection can carry another request after it: collected bodies and files get a
+ * <code>Content-Length</code>, and streamed content is chunked (or, for HTTP/1.0 clients, ends the connection). The
+ * <code>Connection</code> header tells the client which way it went, and the completion callback tells the request
+ * reader once the response is out.
  */
 public class HttpConduitWrapper
         implements org.commonjava.indy.subsys.http.HttpWrapper
 {
 
+    /**
+     * Upstream headers that describe the upstream connection or body rather than ours, so they aren't passed through.
+     */
+    private static final Set<String> UNFORWARDED_HEADERS = new HashSet<>(
+            Arrays.asList( "content-length", "transfer-encoding", "connection", "keep-alive", "proxy-connection" ) );
+
     private final ConduitStreamSinkChannel sinkChannel;
 
     private HttpRequest httpRequest;
@@ -58,12 +84,39 @@ public class HttpConduitWrapper
 
     private CacheProvider cacheProvider;
 
-    public HttpConduitWrapper( ConduitStreamSinkChannel channel, HttpRequest httpRequest, ContentController contentController, CacheProvider cacheProvider )
+    private final Pool<ByteBuffer> bufferPool;
+
+    private boolean keepAlive;
+
+    private final Runnable onComplete;
+
+    private final StringBuilder head = new StringBuilder();
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private FileChannel fileBody;
+
+    private long fileBodyLength;
+
+    private boolean contentLength;
+
+    private boolean sent;
+
+    /**
+     * @param keepAlive whether the connection stays open for another request after this response
+     * @param onComplete called once the response is out (or failed), from whichever thread finished it
+     */
+    public HttpConduitWrapper( ConduitStreamSinkChannel channel, HttpRequest httpRequest,
+                               ContentController contentController, CacheProvider cacheProvider,
+                               Pool<ByteBuffer> bufferPool, boolean keepAlive, Runnable onComplete )
     {
         this.sinkChannel = channel;
         this.httpRequest = httpRequest;
         this.contentController = contentController;
         this.cacheProvider = cacheProvider;
+        this.bufferPool = bufferPool;
+        this.keepAlive = keepAlive;
+        this.onComplete = onComplete;
     }
 
     @Override
@@ -73,40 +126,53 @@ public class HttpConduitWrapper
         final String message =
                 String.format( "%s:\n  %s", e.getMessage(), StringUtils.join( e.getStackTrace(), "\n  " ) );
 
-        sinkChannel.write( ByteBuffer.wrap( message.getBytes() ) );
+        body.write( message.getBytes( StandardCharsets.UTF_8 ) );
     }
 
     @Override
     public void writeHeader( final ApplicationHeader header, final String value )
             throws IOException
     {
-        final ByteBuffer b = ByteBuffer.wrap( String.format( "%s: %s\r\n", header.key(), value ).getBytes() );
-        sinkChannel.write( b );
+        writeHeader( header.key(), value );
     }
 
     @Override
     public void writeHeader( final String header, final String value )
             throws IOException
     {
-        final ByteBuffer b = ByteBuffer.wrap( String.format( "%s: %s\r\n", header, value ).getBytes() );
-        sinkChannel.write( b );
+        if ( ApplicationHeader.content_length.key().equalsIgnoreCase( header ) )
+        {
+            contentLength = true;
+        }
+
+        head.append( header ).append( ": " ).append( value ).append( "\r\n" );
     }
 
     @Override
     public void writeStatus( final ApplicationStatus status )
             throws IOException
     {
-        final ByteBuffer b =
-                ByteBuffer.wrap( String.format( "HTTP/1.1 %d %s\r\n", status.code(), status.message() ).getBytes() );
-        sinkChannel.write( b );
+        writeStatus( status.code(), status.message() );
     }
 
+    /**
+     * Start the response over with the given status line, discarding anything collected so far (e.g. the headers of a
+     * response that failed part way).
+     */
     @Override
     public void writeStatus( final int code, final String message )
             throws IOException
     {
-        final ByteBuffer b = ByteBuffer.wrap( String.format( "HTTP/1.1 %d %s\r\n", code, message ).getBytes() );
-        sinkChannel.write( b );
+        head.setLength( 0 );
+        body.reset();
+        contentLength = false;
+        if ( fileBody != null )
+        {
+            IoUtils.safeClose( fileBody );
+            fileBody = null;
+        }
+
+        head.append( "HTTP/1.1 " ).append( code ).append( ' ' ).append( message ).append( "\r\n" );
     }
 
     public void writeNotFoundTransfer( RemoteRepository repo, String path )
@@ -138,7 +204,8 @@ public class HttpConduitWrapper
             for ( final Map.Entry<String, List<String>> headerSet : metadata.getResponseHeaders().entrySet() )
             {
                 final String key = headerSet.getKey();
-                if ( ApplicationHeader.content_type.upperKey().equals( key ) )
+                if ( ApplicationHeader.content_type.upperKey().equals( key ) || UNFORWARDED_HEADERS.contains(
+                        key.toLowerCase() ) )
                 {
                     continue;
                 }
@@ -156,33 +223,31 @@ public class HttpConduitWrapper
     {
         Logger logger = LoggerFactory.getLogger( getClass() );
         logger.debug( "Valid transfer found." );
+
+        // opening the stream takes the read lock and fires the access event (tracking); both end on this thread
         try(InputStream in = txfr.openInputStream( true, eventMetadata ))
         {
             writeStatus( ApplicationStatus.OK );
-            writeHeader( ApplicationHeader.content_length, Long.toString( txfr.length() ) );
             writeHeader( ApplicationHeader.content_type, contentController.getContentType( path ) );
             writeHeader( ApplicationHeader.last_modified, HttpUtils.formatDateHeader( txfr.lastModified() ) );
 
-            if ( writeBody )
+            final File file = writeBody ? txfr.getDetachedFile() : null;
+            if ( !writeBody )
             {
-                sinkChannel.write( ByteBuffer.wrap( "\r\n".getBytes() ) );
+                writeHeader( ApplicationHeader.content_length, Long.toString( txfr.length() ) );
+            }
+            else if ( file != null && file.isFile() && file.length() == txfr.length() )
+            {
+                writeHeader( ApplicationHeader.content_length, Long.toString( file.length() ) );
 
-                int capacity = 16384;
-                ByteBuffer bbuf = ByteBuffer.allocate( capacity );
-                byte[] buf = new byte[capacity];
-                int read = -1;
-                while ( ( read = in.read( buf ) ) > -1 )
-                {
-                    bbuf.clear();
-                    bbuf.put( buf, 0, read );
-                    bbuf.flip();
-                    int written = 0;
-                    do
-                    {
-                        written += sinkChannel.write( bbuf );
-                    }
-                    while ( written < read );
-                }
+                // our own handle keeps the content readable after the transfer's stream and lock are released
+                fileBody = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+                fileBodyLength = file.length();
+            }
+            else
+            {
+                logger.debug( "No local file for: {}. Copying the stream.", txfr );
+                sendStream( in );
             }
         }
         finally
@@ -210,29 +275,148 @@ public class HttpConduitWrapper
         return result;
     }
 
+    /**
+     * Send the collected response (unless it was already streamed). Writes are shut down once it's out, unless the
+     * connection is kept alive for another request.
+     */
     public void close()
             throws IOException
     {
-        Logger logger = LoggerFactory.getLogger( getClass() );
+        if ( sent )
+        {
+            try
+            {
+                if ( !keepAlive )
+                {
+                    sinkChannel.shutdownWrites();
+                }
+
+                Channels.flushBlocking( sinkChannel );
+            }
+            finally
+            {
+                onComplete.run();
+            }
+
+            return;
+        }
+
+        sent = true;
+
+        if ( !contentLength )
+        {
+            writeHeader( ApplicationHeader.content_length, Integer.toString( body.size() ) );
+        }
+
+        // a HEAD response describes the body without sending it
+        final byte[] bodyBytes = isHeadRequest() ? new byte[0] : body.toByteArray();
+        final byte[] headBytes = headBytes();
+        final int length = headBytes.length + bodyBytes.length;
 
-        boolean flushed = false;
-        while ( !flushed )
+        Pooled<ByteBuffer> pooled = bufferPool.allocate();
+        ByteBuffer buf = pooled.getResource();
+        buf.clear();
+        if ( buf.remaining() < length )
         {
-            flushed = sinkChannel.flush();
-            if ( !flushed )
+            // unusually large head or error body
+            pooled.free();
+            pooled = null;
+            buf = ByteBuffer.allocate( length );
+        }
+
+        buf.put( headBytes ).put( bodyBytes );
+        buf.flip();
+
+        new ConduitResponseSender( buf, pooled, fileBody, fileBodyLength, !keepAlive, onComplete ).send( sinkChannel );
+        fileBody = null;
+    }
+
+    /**
+     * Copy content of unknown length to the client: chunked for HTTP/1.1 clients, and delimited by closing the
+     * connection for older ones.
+     */
+    void sendStream( final InputStream in )
+            throws IOException
+    {
+        final boolean chunked = !httpRequest.getProtocolVersion().lessEquals( HttpVersion.HTTP_1_0 );
+        final boolean persistent = keepAlive && chunked;
+        if ( chunked )
+        {
+            writeHeader( "Transfer-Encoding", "chunked" );
+        }
+
+        // if the copy fails part way, the client can't tell where this response ends
+        keepAlive = false;
+        sent = true;
+        Channels.writeBlocking( sinkChannel, ByteBuffer.wrap( headBytes( persistent ) ) );
+
+        final Pooled<ByteBuffer> pooled = bufferPool.allocate();
+        try
+        {
+            final ByteBuffer buf = pooled.getResource();
+            final ReadableByteChannel source = java.nio.channels.Channels.newChannel( in );
+            buf.clear();
+            while ( source.read( buf ) > -1 )
             {
-                try
+                buf.flip();
+                if ( !buf.hasRemaining() )
+                {
+                    buf.clear();
+                    continue;
+                }
+
+                if ( chunked )
                 {
-                    logger.debug( "Waiting for sink channel to flush..." );
-                    wait( 100 );
+                    // size line, data and trailing CRLF go out in one gathering write
+                    final ByteBuffer[] chunk = { ascii( Integer.toHexString( buf.remaining() ) + "\r\n" ), buf,
+                            ascii( "\r\n" ) };
+                    Channels.writeBlocking( sinkChannel, chunk, 0, chunk.length );
                 }
-                catch ( InterruptedException e )
+                else
                 {
-                    e.printStackTrace();
+                    Channels.writeBlocking( sinkChannel, buf );
                 }
+
+                buf.clear();
+            }
+
+            if ( chunked )
+            {
+                writeAscii( "0\r\n\r\n" );
             }
         }
+        finally
+        {
+            pooled.free();
+        }
+
+        keepAlive = persistent;
+    }
 
-        sinkChannel.shutdownWrites();
+    private void writeAscii( final String s )
+            throws IOException
+    {
+        Channels.writeBlocking( sinkChannel, ascii( s ) );
+    }
+
+    private static ByteBuffer ascii( final String s )
+    {
+        return ByteBuffer.wrap( s.getBytes( StandardCharsets.US_ASCII ) );
+    }
+
+    private boolean isHeadRequest()
+    {
+        return httpRequest != null && "HEAD".equalsIgnoreCase( httpRequest.getRequestLine().getMethod() );
+    }
+
+    private byte[] headBytes()
+    {
+        return headBytes( keepAlive );
+    }
+
+    private byte[] headBytes( final boolean persistent )
+    {
+        head.append( "Connection: " ).append( persistent ? "keep-alive" : "close" ).append( "\r\n" );
+        return head.append( "\r\n" ).toString().getBytes( StandardCharsets.UTF_8 );
     }
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.httprox.util;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xnio.OptionMap;
+import org.xnio.Options;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class ConduitResponseSenderTest
+{
+
+    private static final String HOST = "127.0.0.1";
+
+    private static final int SOCKET_BUFFER_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private XnioWorker worker;
+
+    private ServerSocket server;
+
+    private StreamConnection connection;
+
+    private Socket client;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        worker = Xnio.getInstance().createWorker( OptionMap.EMPTY );
+
+        server = new ServerSocket();
+        server.setReceiveBufferSize( SOCKET_BUFFER_SIZE );
+        server.bind( new InetSocketAddress( HOST, 0 ) );
+
+        connection = worker.openStreamConnection( new InetSocketAddress( HOST, server.getLocalPort() ), null,
+                                                  OptionMap.create( Options.SEND_BUFFER, SOCKET_BUFFER_SIZE ) )
+                           .get();
+
+        client = server.accept();
+    }
+
+    @After
+    public void teardown()
+            throws Exception
+    {
+        IOUtils.closeQuietly( client );
+        IOUtils.closeQuietly( server );
+        IOUtils.closeQuietly( connection );
+        worker.shutdown();
+    }
+
+    @Test
+    public void fileBodyLargerThanTheSocketBufferWaitsForTheClient()
+            throws Exception
+    {
+        final byte[] content = new byte[4 * 1024 * 1024];
+        new Random( 42 ).nextBytes( content );
+
+        final File file = temp.newFile( "body.bin" );
+        FileUtils.writeByteArrayToFile( file, content );
+
+        final String head = "HTTP/1.1 200 OK\r\nContent-Length: " + content.length + "\r\nConnection: close\r\n\r\n";
+
+        final AtomicInteger completions = new AtomicInteger();
+        final CountDownLatch completed = new CountDownLatch( 1 );
+        new ConduitResponseSender( ByteBuffer.wrap( head.getBytes( StandardCharsets.US_ASCII ) ), null,
+                                   FileChannel.open( file.toPath(), StandardOpenOption.READ ), content.length, true,
+                                   () -> {
+                                       completions.incrementAndGet();
+                                       completed.countDown();
+                                   } ).send( connection.getSinkChannel() );
+
+        // the socket fills up long before the body is out, so the sender has to wait for the client to read
+        assertThat( completed.await( 500, TimeUnit.MILLISECONDS ), equalTo( false ) );
+
+        final DataInputStream in = new DataInputStream( new BufferedInputStream( client.getInputStream() ) );
+        final byte[] receivedHead = new byte[head.length()];
+        in.readFully( receivedHead );
+        assertThat( new String( receivedHead, StandardCharsets.US_ASCII ), equalTo( head ) );
+
+        final byte[] received = new byte[content.length];
+        in.readFully( received );
+        assertThat( received, equalTo( content ) );
+
+        // writes are shut down after the response
+        assertThat( in.read(), equalTo( -1 ) );
+
+        assertThat( completed.await( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( completions.get(), equalTo( 1 ) );
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.httprox.util;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.commonjava.indy.util.ApplicationStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xnio.BufferAllocator;
+import org.xnio.ByteBufferSlicePool;
+import org.xnio.ChannelPipe;
+import org.xnio.OptionMap;
+import org.xnio.StreamConnection;
+import org.xnio.Xnio;
+import org.xnio.XnioWorker;
+import org.xnio.streams.ChannelInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class HttpConduitWrapperTest
+{
+
+    private static final int BUFFER_SIZE = 1024;
+
+    private XnioWorker worker;
+
+    private ChannelPipe<StreamConnection, StreamConnection> pipe;
+
+    private ExecutorService writer;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        worker = Xnio.getInstance().createWorker( OptionMap.EMPTY );
+        pipe = worker.createFullDuplexPipeConnection();
+        writer = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void teardown()
+            throws Exception
+    {
+        writer.shutdownNow();
+        pipe.getLeftSide().close();
+        pipe.getRightSide().close();
+        worker.shutdown();
+    }
+
+    @Test
+    public void streamedContentIsChunkedAndKeepsTheConnection()
+            throws Exception
+    {
+        final byte[] content = content( BUFFER_SIZE * 2 + 100 );
+        final CountDownLatch completed = new CountDownLatch( 1 );
+        final Future<?> sending = send( HttpVersion.HTTP_1_1, content, completed );
+
+        final InputStream in = new ChannelInputStream( pipe.getRightSide().getSourceChannel() );
+        assertThat( readLine( in ), equalTo( "HTTP/1.1 200 OK" ) );
+
+        final String head = readHead( in );
+        assertThat( head, head.contains( "Transfer-Encoding: chunked\n" ), equalTo( true ) );
+        assertThat( head, head.contains( "Connection: keep-alive\n" ), equalTo( true ) );
+
+        // one chunk per buffer of content, then the empty last chunk
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for ( final int size : new int[] { BUFFER_SIZE, BUFFER_SIZE, 100 } )
+        {
+            assertThat( readLine( in ), equalTo( Integer.toHexString( size ) ) );
+            for ( int i = 0; i < size; i++ )
+            {
+                body.write( in.read() );
+            }
+            assertThat( readLine( in ), equalTo( "" ) );
+        }
+        assertThat( readLine( in ), equalTo( "0" ) );
+        assertThat( readLine( in ), equalTo( "" ) );
+
+        sending.get( 10, TimeUnit.SECONDS );
+        assertThat( completed.await( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( body.toByteArray(), equalTo( content ) );
+    }
+
+    @Test
+    public void streamedContentForHttp10EndsTheConnection()
+            throws Exception
+    {
+        final byte[] content = content( BUFFER_SIZE * 2 + 100 );
+        final CountDownLatch completed = new CountDownLatch( 1 );
+        final Future<?> sending = send( HttpVersion.HTTP_1_0, content, completed );
+
+        final InputStream in = new ChannelInputStream( pipe.getRightSide().getSourceChannel() );
+        assertThat( readLine( in ), equalTo( "HTTP/1.1 200 OK" ) );
+
+        final String head = readHead( in );
+        assertThat( head, head.contains( "Transfer-Encoding" ), equalTo( false ) );
+        assertThat( head, head.contains( "Connection: close\n" ), equalTo( true ) );
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int read;
+        while ( ( read = in.read() ) > -1 )
+        {
+            body.write( read );
+        }
+
+        sending.get( 10, TimeUnit.SECONDS );
+        assertThat( completed.await( 10, TimeUnit.SECONDS ), equalTo( true ) );
+        assertThat( body.toByteArray(), equalTo( content ) );
+    }
+
+    private Future<?> send( final ProtocolVersion version, final byte[] content, final CountDownLatch completed )
+    {
+        final HttpConduitWrapper http =
+                new HttpConduitWrapper( pipe.getLeftSide().getSinkChannel(),
+                                        new BasicHttpRequest( "GET", "http://127.0.0.1/path/to/content.bin", version ),
+                                        null, null,
+                                        new ByteBufferSlicePool( BufferAllocator.BYTE_BUFFER_ALLOCATOR, BUFFER_SIZE,
+                                                                 BUFFER_SIZE * 4 ), true, completed::countDown );
+
+        return writer.submit( () -> {
+            http.writeStatus( ApplicationStatus.OK );
+            http.sendStream( new ByteArrayInputStream( content ) );
+            http.close();
+            return null;
+        } );
+    }
+
+    private byte[] content( final int size )
+    {
+        final byte[] content = new byte[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            content[i] = (byte) ( 'a' + i % 26 );
+        }
+
+        return content;
+    }
+
+    /**
+     * The header lines after the status line, each ending in a newline.
+     */
+    private String readHead( final InputStream in )
+            throws IOException
+    {
+        final StringBuilder head = new StringBuilder();
+        String line;
+        while ( !( line = readLine( in ) ).isEmpty() )
+        {
+            head.append( line ).append( '\n' );
+        }
+
+        return head.toString();
+    }
+
+    private String readLine( final InputStream in )
+            throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        int c;
+        while ( ( c = in.read() ) != '\n' )
+        {
+            if ( c < 0 )
+            {
+                throw new IOException( "Stream ended in the middle of a line" );
+            }
+            if ( c != '\r' )
+            {
+                sb.append( (char) c );
+            }
+        }
+
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.httprox;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Several requests over one proxy connection, written and read on a raw socket so the connection handling is visible:
+ * sequential and pipelined HTTP/1.1 requests share the connection, and an HTTP/1.0 request without keep-alive ends it.
+ */
+public class KeepAliveConnectionTest
+        extends AbstractHttproxFunctionalTest
+{
+
+    private static final String REPO = "test";
+
+    @Test
+    public void sequentialRequestsShareTheConnection()
+            throws Exception
+    {
+        final String first = expect( "org/test/first/1/first-1.pom", "first content" );
+        final String second = expect( "org/test/second/1/second-1.pom", "second content" );
+
+        try (Socket socket = new Socket( HOST, proxyPort ))
+        {
+            final OutputStream out = socket.getOutputStream();
+            final InputStream in = new BufferedInputStream( socket.getInputStream() );
+
+            out.write( request( first, "HTTP/1.1", null ) );
+            out.flush();
+            assertResponse( readResponse( in ), "first content", "keep-alive" );
+
+            out.write( request( second, "HTTP/1.1", null ) );
+            out.flush();
+            assertResponse( readResponse( in ), "second content", "keep-alive" );
+        }
+    }
+
+    @Test
+    public void pipelinedRequestsAreAnsweredInOrder()
+            throws Exception
+    {
+        final String first = expect( "org/test/first/1/first-1.pom", "first content" );
+        final String second = expect( "org/test/second/1/second-1.pom", "second content" );
+        final String third = expect( "org/test/third/1/third-1.pom", "third content" );
+
+        try (Socket socket = new Socket( HOST, proxyPort ))
+        {
+            final OutputStream out = socket.getOutputStream();
+            final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+            requests.write( request( first, "HTTP/1.1", null ) );
+            requests.write( request( second, "HTTP/1.1", null ) );
+            requests.write( request( third, "HTTP/1.1", "close" ) );
+
+            // all three in one write, before reading anything back
+            out.write( requests.toByteArray() );
+            out.flush();
+
+            final InputStream in = new BufferedInputStream( socket.getInputStream() );
+            assertResponse( readResponse( in ), "first content", "keep-alive" );
+            assertResponse( readResponse( in ), "second content", "keep-alive" );
+            assertResponse( readResponse( in ), "third content", "close" );
+            assertThat( in.read(), equalTo( -1 ) );
+        }
+    }
+
+    @Test
+    public void http10RequestWithoutKeepAliveClosesTheConnection()
+            throws Exception
+    {
+        final String url = expect( "org/test/first/1/first-1.pom", "first content" );
+
+        try (Socket socket = new Socket( HOST, proxyPort ))
+        {
+            final OutputStream out = socket.getOutputStream();
+            out.write( request( url, "HTTP/1.0", null ) );
+            out.flush();
+
+            final InputStream in = new BufferedInputStream( socket.getInputStream() );
+            assertResponse( readResponse( in ), "first content", "close" );
+            assertThat( in.read(), equalTo( -1 ) );
+        }
+    }
+
+    private String expect( final String path, final String content )
+            throws Exception
+    {
+        final String url = server.formatUrl( REPO, path );
+        server.expect( url, 200, content );
+        return url;
+    }
+
+    private void assertResponse( final Response response, final String content, final String connection )
+    {
+        assertThat( response.status, equalTo( 200 ) );
+        assertThat( response.body, equalTo( content ) );
+        assertThat( response.headers.get( "connection" ), equalTo( connection ) );
+    }
+
+    private byte[] request( final String url, final String version, final String connection )
+            throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append( "GET " ).append( url ).append( ' ' ).append( version ).append( "\r\n" );
+        sb.append( "Host: " ).append( new URL( url ).getAuthority() ).append( "\r\n" );
+        if ( connection != null )
+        {
+            sb.append( "Connection: " ).append( connection ).append( "\r\n" );
+        }
+
+        return sb.append( "\r\n" ).toString().getBytes( StandardCharsets.US_ASCII );
+    }
+
+    /**
+     * Read one response, using its Content-Length or chunked framing to find where it ends (or reading to the end of
+     * the stream if it has neither).
+     */
+    static Response readResponse( final InputStream in )
+            throws IOException
+    {
+        final Response response = new Response();
+        response.status = Integer.parseInt( readLine( in ).split( " " )[1] );
+
+        String line;
+        while ( !( line = readLine( in ) ).isEmpty() )
+        {
+            final int idx = line.indexOf( ':' );
+            response.headers.put( line.substring( 0, idx ).trim().toLowerCase(), line.substring( idx + 1 ).trim() );
+        }
+
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final String length = response.headers.get( "content-length" );
+        if ( "chunked".equalsIgnoreCase( response.headers.get( "transfer-encoding" ) ) )
+        {
+            int size;
+            while ( ( size = Integer.parseInt( readLine( in ).trim(), 16 ) ) > 0 )
+            {
+                copy( in, body, size );
+                assertThat( readLine( in ), equalTo( "" ) );
+            }
+            assertThat( readLine( in ), equalTo( "" ) );
+        }
+        else if ( length != null )
+        {
+            copy( in, body, Long.parseLong( length ) );
+        }
+        else
+        {
+            int read;
+            while ( ( read = in.read() ) > -1 )
+            {
+                body.write( read );
+            }
+        }
+
+        response.body = new String( body.toByteArray(), StandardCharsets.UTF_8 );
+        return response;
+    }
+
+    private static void copy( final InputStream in, final OutputStream out, final long count )
+            throws IOException
+    {
+        final byte[] buf = new byte[8192];
+        long remaining = count;
+        while ( remaining > 0 )
+        {
+            final int read = in.read( buf, 0, (int) Math.min( buf.length, remaining ) );
+            if ( read < 0 )
+            {
+                throw new IOException( "Connection closed with " + remaining + " bytes of the body left to read" );
+            }
+            out.write( buf, 0, read );
+            remaining -= read;
+        }
+    }
+
+    private static String readLine( final InputStream in )
+            throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        int c;
+        while ( ( c = in.read() ) != '\n' )
+        {
+            if ( c < 0 )
+            {
+                throw new IOException( "Connection closed in the middle of a response head" );
+            }
+            if ( c != '\r' )
+            {
+                sb.append( (char) c );
+            }
+        }
+
+        return sb.toString();
+    }
+
+    static final class Response
+    {
+        int status;
+
+        final Map<String, String> headers = new HashMap<>();
+
+        String body;
+    }
+
+}
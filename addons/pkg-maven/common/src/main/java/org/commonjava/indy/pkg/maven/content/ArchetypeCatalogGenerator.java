@@ -16,6 +16,7 @@
 package org.commonjava.indy.pkg.maven.content;
 
 import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.content.ContentManager;
 import org.commonjava.indy.content.DirectContentAccess;
 import org.commonjava.indy.content.StoreResource;
 import org.commonjava.indy.core.content.AbstractMergedContentGenerator;
@@ -110,7 +111,9 @@ public class ArchetypeCatalogGenerator
                 toMergePath = normalize( normalize( parentPath( toMergePath ) ), ArchetypeCatalogMerger.CATALOG_NAME );
             }
 
-            final List<Transfer> sources = fileManager.retrieveAllRaw( members, toMergePath, new EventMetadata() );
+            final EventMetadata memberMetadata =
+                    new EventMetadata().set( ContentManager.ENTRY_POINT_STORE, group.getKey() );
+            final List<Transfer> sources = fileManager.retrieveAllRaw( members, toMergePath, memberMetadata );
             final byte[] merged = merger.merge( sources, group, toMergePath );
             if ( merged != null )
             {
@@ -16,14 +16,22 @@
 package org.commonjava.indy.pkg.maven.content;
 
 import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.content.ContentManager;
 import org.commonjava.indy.content.DirectContentAccess;
 import org.commonjava.indy.content.StoreResource;
+import org.commonjava.indy.core.conf.MetricsConfig;
 import org.commonjava.indy.core.content.AbstractMergedContentGenerator;
 import org.commonjava.indy.core.content.group.GroupMergeHelper;
+import org.commonjava.indy.core.metrics.IndyMetric;
+import org.commonjava.indy.core.metrics.IndyMetrics;
 import org.commonjava.indy.pkg.maven.content.group.MavenMetadataMerger;
+import org.commonjava.indy.pkg.maven.content.group.MergedMetadataCache;
+import org.commonjava.indy.pkg.maven.content.group.MergedMetadataState;
+import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.indy.model.core.StoreType;
 import org.commonjava.indy.util.LocationUtils;
 import org.commonjava.maven.atlas.ident.ref.SimpleTypeAndClassifier;
@@ -55,6 +63,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.commonjava.maven.galley.util.PathUtils.normalize;
@@ -115,6 +124,12 @@ public class MavenMetadataGenerator
     @Inject
     private MavenMetadataMerger merger;
 
+    @Inject
+    private MergedMetadataCache mergedCache;
+
+    @Inject
+    private IndyMetrics metrics;
+
     protected MavenMetadataGenerator()
     {
     }
@@ -127,6 +142,16 @@ public class MavenMetadataGenerator
         this.xml = xml;
         this.typeMapper = typeMapper;
         this.merger = merger;
+        this.metrics = new IndyMetrics( new MetricsConfig() );
+    }
+
+    public MavenMetadataGenerator( final DirectContentAccess fileManager, final StoreDataManager storeManager,
+                                   final XMLInfrastructure xml, final TypeMapper typeMapper,
+                                   final MavenMetadataMerger merger, final GroupMergeHelper mergeHelper,
+                                   final MergedMetadataCache mergedCache )
+    {
+        this( fileManager, storeManager, xml, typeMapper, merger, mergeHelper );
+        this.mergedCache = mergedCache;
     }
 
     @Override
@@ -294,34 +319,14 @@ public class MavenMetadataGenerator
 
         if ( !target.exists() )
         {
-            String toMergePath = path;
-            if ( !path.endsWith( MavenMetadataMerger.METADATA_NAME ) )
+            final long start = metrics.start();
+            try
             {
-                toMergePath = normalize( normalize( parentPath( toMergePath ) ), MavenMetadataMerger.METADATA_NAME );
+                mergeGroupFileContent( group, members, path, target, eventMetadata );
             }
-
-            final List<Transfer> sources = fileManager.retrieveAllRaw( members, toMergePath, new EventMetadata() );
-            final byte[] merged = merger.merge( sources, group, toMergePath );
-            if ( merged != null )
+            finally
             {
-                OutputStream fos = null;
-                try
-                {
-                    fos = target.openOutputStream( TransferOperation.GENERATE, true, eventMetadata );
-                    fos.write( merged );
-
-                }
-                catch ( final IOException e )
-                {
-                    throw new IndyWorkflowException( "Failed to write merged metadata to: {}.\nError: {}", e, target,
-                                                      e.getMessage() );
-                }
-                finally
-                {
-                    closeQuietly( fos );
-                }
-
-                helper.writeMergeInfo( merged, sources, group, toMergePath );
+                metrics.time( IndyMetric.GROUP_METADATA_MERGE, group.getKey(), start );
             }
         }
 
@@ -333,6 +338,60 @@ public class MavenMetadataGenerator
         return null;
     }
 
+    private void mergeGroupFileContent( final Group group, final List<ArtifactStore> members, final String path,
+                                        final Transfer target, final EventMetadata eventMetadata )
+        throws IndyWorkflowException
+    {
+        String toMergePath = path;
+        if ( !path.endsWith( MavenMetadataMerger.METADATA_NAME ) )
+        {
+            toMergePath = normalize( normalize( parentPath( toMergePath ) ), MavenMetadataMerger.METADATA_NAME );
+        }
+
+        final EventMetadata memberMetadata =
+                new EventMetadata().set( ContentManager.ENTRY_POINT_STORE, group.getKey() );
+        final List<Transfer> sources = fileManager.retrieveAllRaw( members, toMergePath, memberMetadata );
+        final byte[] merged;
+        if ( isIncremental() )
+        {
+            final List<StoreKey> memberKeys =
+                    members.stream().map( ArtifactStore::getKey ).collect( Collectors.toList() );
+
+            final MergedMetadataState state = merger.mergeIncremental( sources, memberKeys, group, toMergePath );
+            merged = merger.render( state, group, toMergePath );
+            if ( merged != null )
+            {
+                mergedCache.put( group.getKey(), toMergePath, state );
+            }
+        }
+        else
+        {
+            merged = merger.merge( sources, group, toMergePath );
+        }
+
+        if ( merged != null )
+        {
+            OutputStream fos = null;
+            try
+            {
+                fos = target.openOutputStream( TransferOperation.GENERATE, true, eventMetadata );
+                fos.write( merged );
+
+            }
+            catch ( final IOException e )
+            {
+                throw new IndyWorkflowException( "Failed to write merged metadata to: {}.\nError: {}", e, target,
+                                                  e.getMessage() );
+            }
+            finally
+            {
+                closeQuietly( fos );
+            }
+
+            helper.writeMergeInfo( merged, sources, group, toMergePath );
+        }
+    }
+
     @Override
     public boolean canProcess( final String path )
     {
@@ -361,6 +420,127 @@ public class MavenMetadataGenerator
         return MavenMetadataMerger.METADATA_NAME;
     }
 
+    /**
+     * In incremental mode, apply a member's metadata change to the merged metadata of every group that (transitively)
+     * contains it, instead of deleting the merged files. Groups whose merged state isn't tracked, or whose membership
+     * changed since it was built, fall back to delete-and-regenerate.
+     */
+    @Override
+    protected void clearAllMerged( final ArtifactStore store, final String path )
+        throws IndyWorkflowException
+    {
+        if ( !isIncremental() || StoreType.group == store.getKey().getType() )
+        {
+            super.clearAllMerged( store, path );
+            return;
+        }
+
+        final Set<Group> groups;
+        try
+        {
+            groups = storeManager.getGroupsAffectedBy( store.getKey() );
+        }
+        catch ( final IndyDataException e )
+        {
+            throw new IndyWorkflowException(
+                    "Failed to lookup groups whose membership contains: {} (to update merged metadata: {}. Error: {}", e,
+                    store.getKey(), path, e.getMessage() );
+        }
+
+        if ( groups == null || groups.isEmpty() )
+        {
+            return;
+        }
+
+        final Transfer source = fileManager.getTransfer( store, path );
+        for ( final Group group : groups )
+        {
+            if ( !updateMerged( group, store, path, source ) )
+            {
+                mergedCache.remove( group.getKey(), path );
+                clearMergedFile( group, path );
+            }
+        }
+    }
+
+    private boolean updateMerged( final Group group, final ArtifactStore member, final String path,
+                                  final Transfer source )
+        throws IndyWorkflowException
+    {
+        final MergedMetadataState state = mergedCache.get( group.getKey(), path );
+        if ( state == null || !state.contains( member.getKey() ) )
+        {
+            return false;
+        }
+
+        final List<StoreKey> current;
+        try
+        {
+            current = storeManager.getOrderedConcreteStoresInGroup( group.getName(), true )
+                                  .stream()
+                                  .map( ArtifactStore::getKey )
+                                  .collect( Collectors.toList() );
+        }
+        catch ( final IndyDataException e )
+        {
+            throw new IndyWorkflowException( "Failed to lookup concrete members of: %s. Reason: %s", e, group,
+                                              e.getMessage() );
+        }
+
+        if ( !current.equals( state.getMembers() ) )
+        {
+            logger.debug( "Membership of: {} changed since merged metadata: {} was built; regenerating.",
+                          group.getKey(), path );
+            return false;
+        }
+
+        // serialize delta application and rewrite per group/path, so concurrent member changes can't interleave
+        synchronized ( state )
+        {
+            merger.updateIncremental( state, member.getKey(), source );
+
+            final byte[] merged = merger.render( state, group, path );
+            if ( merged == null )
+            {
+                return false;
+            }
+
+            final Transfer target = fileManager.getTransfer( group, path );
+            logger.debug( "Applying metadata change from: {} to merged file: {}", member.getKey(), target );
+            try (OutputStream out = target.openOutputStream( TransferOperation.GENERATE, true, new EventMetadata() ))
+            {
+                out.write( merged );
+            }
+            catch ( final IOException e )
+            {
+                throw new IndyWorkflowException( "Failed to write merged metadata to: {}.\nError: {}", e, target,
+                                                  e.getMessage() );
+            }
+
+            try
+            {
+                helper.deleteChecksumsAndMergeInfo( group, path );
+            }
+            catch ( final IOException e )
+            {
+                throw new IndyWorkflowException( "Failed to delete stale checksums for: {}.\nError: {}", e, target,
+                                                  e.getMessage() );
+            }
+
+            helper.writeMergeInfo( group, path, state.getSources() );
+
+            // re-weigh the mutated state
+            mergedCache.put( group.getKey(), path, state );
+        }
+
+        return true;
+    }
+
+    private boolean isIncremental()
+    {
+        return mergedCache != null && mergedCache.isEnabled();
+    }
+
     private boolean writeVersionMetadata( final List<StoreResource> firstLevelFiles, final ArtifactStore store,
                                           final String path, final EventMetadata eventMetadata )
         throws IndyWorkflowException
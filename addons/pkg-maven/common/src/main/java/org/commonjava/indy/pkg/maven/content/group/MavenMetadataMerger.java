@@ -15,19 +15,12 @@
  */
 package org.commonjava.indy.pkg.maven.content.group;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.maven.artifact.repository.metadata.Metadata;
 import org.apache.maven.artifact.repository.metadata.SnapshotVersion;
-import org.apache.maven.artifact.repository.metadata.Versioning;
-import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
-import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Writer;
-import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.core.content.group.MetadataMerger;
 import org.commonjava.indy.model.core.Group;
 import org.commonjava.indy.model.core.StoreKey;
-import org.commonjava.maven.atlas.ident.util.VersionUtils;
-import org.commonjava.maven.atlas.ident.version.SingleVersion;
 import org.commonjava.maven.galley.model.Transfer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,19 +29,15 @@ import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import javax.xml.stream.XMLStreamException;
 import java.io.ByteArrayOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
-import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.commonjava.indy.util.LocationUtils.getKey;
 
 @ApplicationScoped
@@ -111,13 +100,9 @@ public class MavenMetadataMerger
         Logger logger = LoggerFactory.getLogger( getClass() );
         logger.debug( "Generating merged metadata in: {}:{}", group.getKey(), path );
 
-        final Metadata master = new Metadata();
-        final MetadataXpp3Reader reader = new MetadataXpp3Reader();
-        final FileReader fr = null;
-        InputStream stream = null;
+        final StreamingMetadataMerger merger = new StreamingMetadataMerger();
 
         boolean merged = false;
-        Transfer snapshotProvider = null;
         for ( final Transfer src : sources )
         {
             if ( !src.exists() )
@@ -125,73 +110,10 @@ public class MavenMetadataMerger
                 continue;
             }
 
-            try
+            try (InputStream stream = src.openInputStream())
             {
-                stream = src.openInputStream();
-                String content = IOUtils.toString( stream );
-                logger.debug( "Adding in metadata content from: {}\n\n{}\n\n", src, content );
-
-                // there is a lot of junk in here to make up for Metadata's anemic merge() method.
-                final Metadata md = reader.read( new StringReader( content ), false );
-
-                if ( md.getGroupId() != null )
-                {
-                    master.setGroupId( md.getGroupId() );
-                }
-
-                if ( md.getArtifactId() != null )
-                {
-                    master.setArtifactId( md.getArtifactId() );
-                }
-
-                if ( md.getVersion() != null )
-                {
-                    master.setVersion( md.getVersion() );
-                }
-
-                master.merge( md );
-
-                Versioning versioning = master.getVersioning();
-                if ( versioning == null )
-                {
-                    master.setVersioning( new Versioning() );
-                }
-                else
-                {
-                    Versioning mdVersioning = md.getVersioning();
-
-                    // FIXME: Should we try to merge snapshot lists instead of using the first one we encounter??
-                    if ( versioning.getSnapshot() == null )
-                    {
-                        logger.info( "INCLUDING snapshot information from: {} in: {}:{}", src, group.getKey(), path );
-                        snapshotProvider = src;
-
-                        versioning.setSnapshot( mdVersioning.getSnapshot() );
-
-                        final List<SnapshotVersion> snapshotVersions = versioning
-                                .getSnapshotVersions();
-                        boolean added = false;
-                        for ( final SnapshotVersion snap : mdVersioning
-                                .getSnapshotVersions() )
-                        {
-                            if ( !snapshotVersions.contains( snap ) )
-                            {
-                                snapshotVersions.add( snap );
-                                added = true;
-                            }
-                        }
-
-                        if ( added )
-                        {
-                            Collections.sort( snapshotVersions, new SnapshotVersionComparator() );
-                        }
-                    }
-                    else
-                    {
-                        logger.warn( "SKIPPING snapshot information from: {} in: {}:{} (obscured by: {})", src, group.getKey(), path, snapshotProvider );
-                    }
-                }
-
+                logger.debug( "Adding in metadata content from: {}", src );
+                merger.add( stream, src );
                 merged = true;
             }
             catch ( final IOException e )
@@ -199,47 +121,31 @@ public class MavenMetadataMerger
                 final StoreKey key = getKey( src );
                 logger.error( String.format( "Cannot read metadata: %s from artifact-store: %s. Reason: %s", src.getPath(), key, e.getMessage() ), e );
             }
-            catch ( final XmlPullParserException e )
+            catch ( final XMLStreamException e )
             {
                 final StoreKey key = getKey( src );
                 logger.error( String.format( "Cannot parse metadata: %s from artifact-store: %s. Reason: %s", src.getPath(), key, e.getMessage() ), e );
             }
-            finally
-            {
-                closeQuietly( fr );
-                closeQuietly( stream );
-            }
         }
 
-        Versioning versioning = master.getVersioning();
-        if ( versioning != null && versioning.getVersions() != null )
+        if ( merger.hasVersioning() && metadataProviders != null )
         {
-            if ( metadataProviders != null )
+            for ( MavenMetadataProvider provider : metadataProviders )
             {
-                for ( MavenMetadataProvider provider : metadataProviders )
+                try
                 {
-                    try
+                    Metadata toMerge = provider.getMetadata( group.getKey(), path );
+                    if ( toMerge != null )
                     {
-                        Metadata toMerge = provider.getMetadata( group.getKey(), path );
-                        if ( toMerge != null )
-                        {
-                            merged = master.merge( toMerge ) || merged;
-                        }
-                    }
-                    catch ( IndyWorkflowException e )
-                    {
-                        logger.error( String.format( "Cannot read metadata: %s from metadata provider: %s. Reason: %s", path, provider.getClass().getSimpleName(), e.getMessage() ), e );
+                        merger.add( toMerge, provider.getClass().getSimpleName() );
+                        merged = true;
                     }
                 }
+                catch ( IndyWorkflowException e )
+                {
+                    logger.error( String.format( "Cannot read metadata: %s from metadata provider: %s. Reason: %s", path, provider.getClass().getSimpleName(), e.getMessage() ), e );
+                }
             }
-
-            List<SingleVersion> versionObjects =
-                    versioning.getVersions().stream().map( v -> VersionUtils.createSingleVersion( v ) ).collect( Collectors.toList() );
-
-            Collections.sort( versionObjects );
-
-            versioning.setVersions(
-                    versionObjects.stream().map( sv -> sv.renderStandard() ).collect( Collectors.toList() ) );
         }
 
         if ( merged )
@@ -247,11 +153,11 @@ public class MavenMetadataMerger
             final ByteArrayOutputStream baos = new ByteArrayOutputStream();
             try
             {
-                new MetadataXpp3Writer().write( baos, master );
+                merger.write( baos );
 
                 return baos.toByteArray();
             }
-            catch ( final IOException e )
+            catch ( final XMLStreamException e )
             {
                 logger.error( String.format( "Cannot write consolidated metadata: %s to: %s. Reason: %s", path, group.getKey(), e.getMessage() ), e );
             }
@@ -260,4 +166,98 @@ public class MavenMetadataMerger
         return null;
     }
 
+    /**
+     * Like {@link #merge(Collection, Group, String)}, but keep the result in structured form, so later member changes
+     * can be applied as deltas via {@link #updateIncremental(MergedMetadataState, StoreKey, Transfer)}.
+     */
+    public MergedMetadataState mergeIncremental( final List<Transfer> sources, final List<StoreKey> members,
+                                                 final Group group, final String path )
+    {
+        Logger logger = LoggerFactory.getLogger( getClass() );
+        logger.debug( "Generating incrementally maintained merged metadata in: {}:{}", group.getKey(), path );
+
+        final MergedMetadataState state = new MergedMetadataState( members );
+        for ( final Transfer src : sources )
+        {
+            final MetadataContribution contribution = read( src );
+            if ( contribution != null )
+            {
+                state.put( getKey( src ), contribution );
+            }
+        }
+
+        if ( state.hasVersioning() && metadataProviders != null )
+        {
+            for ( MavenMetadataProvider provider : metadataProviders )
+            {
+                try
+                {
+                    Metadata toMerge = provider.getMetadata( group.getKey(), path );
+                    if ( toMerge != null )
+                    {
+                        state.addProvided( MetadataContribution.from( toMerge, provider.getClass().getSimpleName() ) );
+                    }
+                }
+                catch ( IndyWorkflowException e )
+                {
+                    logger.error( String.format( "Cannot read metadata: %s from metadata provider: %s. Reason: %s", path, provider.getClass().getSimpleName(), e.getMessage() ), e );
+                }
+            }
+        }
+
+        return state;
+    }
+
+    /**
+     * Replace the given member's contribution with the current content of its metadata file. A missing or unreadable
+     * file removes the member's contribution, as a full merge would skip it.
+     */
+    public void updateIncremental( final MergedMetadataState state, final StoreKey member, final Transfer source )
+    {
+        final MetadataContribution contribution = source == null ? null : read( source );
+        state.put( member, contribution );
+    }
+
+    /**
+     * Serialize the given state, or return null if nothing contributes to it or it cannot be written.
+     */
+    public byte[] render( final MergedMetadataState state, final Group group, final String path )
+    {
+        try
+        {
+            return state.render();
+        }
+        catch ( final XMLStreamException e )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.error( String.format( "Cannot write consolidated metadata: %s to: %s. Reason: %s", path, group.getKey(), e.getMessage() ), e );
+        }
+
+        return null;
+    }
+
+    private MetadataContribution read( final Transfer src )
+    {
+        if ( !src.exists() )
+        {
+            return null;
+        }
+
+        try (InputStream stream = src.openInputStream())
+        {
+            return MetadataContribution.parse( stream, src );
+        }
+        catch ( final IOException e )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.error( String.format( "Cannot read metadata: %s from artifact-store: %s. Reason: %s", src.getPath(), getKey( src ), e.getMessage() ), e );
+        }
+        catch ( final XMLStreamException e )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.error( String.format( "Cannot parse metadata: %s from artifact-store: %s. Reason: %s", src.getPath(), getKey( src ), e.getMessage() ), e );
+        }
+
+        return null;
+    }
 }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.pkg.maven.content.group;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.commonjava.indy.conf.IndyConfiguration;
+import org.commonjava.indy.model.core.StoreKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Holds the {@link MergedMetadataState} of each group/path whose merged metadata is maintained incrementally (see
+ * {@link IndyConfiguration#isIncrementalGroupMetadata()}). The cache is bounded by the estimated heap footprint of its
+ * states ({@link IndyConfiguration#getIncrementalGroupMetadataMaxMemoryMb()}); past that, the least-recently and
+ * least-frequently used group/paths are evicted and fall back to delete-and-regenerate until they are merged again.
+ * <p>
+ * A state's weight is taken when it is put, so callers that mutate a cached state in place should put it again
+ * afterward to have its new size accounted for.
+ */
+@ApplicationScoped
+public class MergedMetadataCache
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private IndyConfiguration config;
+
+    private Cache<String, MergedMetadataState> states;
+
+    protected MergedMetadataCache()
+    {
+    }
+
+    public MergedMetadataCache( final IndyConfiguration config )
+    {
+        this.config = config;
+        init();
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        final long maxBytes = config.getIncrementalGroupMetadataMaxMemoryMb() * 1024L * 1024L;
+        // evict on the writing thread; it's cheap, and keeps the bound exact for the next put
+        final Caffeine<Object, Object> builder = Caffeine.newBuilder().executor( Runnable::run );
+        if ( maxBytes > 0 )
+        {
+            builder.maximumWeight( maxBytes )
+                   .weigher( ( String key, MergedMetadataState state ) -> weigh( key, state ) );
+        }
+
+        states = builder.build();
+    }
+
+    public boolean isEnabled()
+    {
+        return config != null && config.isIncrementalGroupMetadata();
+    }
+
+    public MergedMetadataState get( final StoreKey group, final String path )
+    {
+        return states.getIfPresent( key( group, path ) );
+    }
+
+    public void put( final StoreKey group, final String path, final MergedMetadataState state )
+    {
+        states.put( key( group, path ), state );
+    }
+
+    public void remove( final StoreKey group, final String path )
+    {
+        states.invalidate( key( group, path ) );
+    }
+
+    private int weigh( final String key, final MergedMetadataState state )
+    {
+        final long size = 2L * key.length() + state.estimateSize();
+        if ( size > Integer.MAX_VALUE )
+        {
+            logger.debug( "Merged metadata: {} is too large to keep in memory ({} bytes)", key, size );
+            return Integer.MAX_VALUE;
+        }
+
+        return (int) size;
+    }
+
+    private static String key( final StoreKey group, final String path )
+    {
+        return group + "#" + path;
+    }
+}
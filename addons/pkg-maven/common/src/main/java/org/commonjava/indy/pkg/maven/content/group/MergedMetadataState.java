@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.pkg.maven.content.group;
+
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Structured form of one group's merged maven-metadata.xml: each member's parsed contribution, plus a reference-counted,
+ * sorted version set over all of them. Replacing or removing a single member's contribution adjusts the version set by
+ * that member's delta only; scalar fields (latest, release, lastUpdated, snapshot) are re-derived from the per-member
+ * contributions in membership order when rendering, which is cheap since no I/O or parsing is involved.
+ */
+public final class MergedMetadataState
+{
+    private final List<StoreKey> members;
+
+    private final Map<StoreKey, MetadataContribution> contributions = new HashMap<>();
+
+    private final List<MetadataContribution> provided = new ArrayList<>();
+
+    private final TreeMap<SingleVersion, Integer> versions = new TreeMap<>( StreamingMetadataMerger.VERSION_ORDER );
+
+    MergedMetadataState( final List<StoreKey> members )
+    {
+        this.members = Collections.unmodifiableList( new ArrayList<>( members ) );
+    }
+
+    /**
+     * The ordered membership this state was built from. If the group's membership changes, the state is no longer
+     * valid.
+     */
+    public List<StoreKey> getMembers()
+    {
+        return members;
+    }
+
+    public boolean contains( final StoreKey member )
+    {
+        return members.contains( member );
+    }
+
+    /**
+     * Members currently contributing metadata, in membership order.
+     */
+    public synchronized List<StoreKey> getSources()
+    {
+        final List<StoreKey> sources = new ArrayList<>();
+        for ( final StoreKey member : members )
+        {
+            if ( contributions.containsKey( member ) )
+            {
+                sources.add( member );
+            }
+        }
+
+        return sources;
+    }
+
+    /**
+     * Replace the contribution of the given member; a null contribution removes it.
+     */
+    synchronized void put( final StoreKey member, final MetadataContribution contribution )
+    {
+        final MetadataContribution old =
+                contribution == null ? contributions.remove( member ) : contributions.put( member, contribution );
+
+        if ( old != null && old.hasVersioning )
+        {
+            old.versions.forEach( this::release );
+        }
+
+        if ( contribution != null && contribution.hasVersioning )
+        {
+            contribution.versions.forEach( this::retain );
+        }
+    }
+
+    synchronized void addProvided( final MetadataContribution contribution )
+    {
+        provided.add( contribution );
+        if ( contribution.hasVersioning )
+        {
+            contribution.versions.forEach( this::retain );
+        }
+    }
+
+    synchronized boolean hasVersioning()
+    {
+        return contributions.values().stream().anyMatch( c -> c.hasVersioning );
+    }
+
+    /**
+     * Serialize the current state, or return null if nothing contributes to it.
+     */
+    synchronized byte[] render()
+            throws XMLStreamException
+    {
+        if ( contributions.isEmpty() && provided.isEmpty() )
+        {
+            return null;
+        }
+
+        final StreamingMetadataMerger merger = new StreamingMetadataMerger();
+        for ( final StoreKey member : members )
+        {
+            final MetadataContribution contribution = contributions.get( member );
+            if ( contribution != null )
+            {
+                merger.addScalars( contribution, member );
+            }
+        }
+
+        for ( final MetadataContribution contribution : provided )
+        {
+            merger.addScalars( contribution, "provider" );
+        }
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        merger.write( baos, versions.keySet() );
+        return baos.toByteArray();
+    }
+
+    /**
+     * Approximate heap footprint of this state, see {@link MergedMetadataCache}.
+     */
+    synchronized long estimateSize()
+    {
+        long size = 128 + 32L * members.size() + 48L * versions.size();
+        for ( final MetadataContribution contribution : contributions.values() )
+        {
+            size += 48 + contribution.estimateSize();
+        }
+
+        for ( final MetadataContribution contribution : provided )
+        {
+            size += contribution.estimateSize();
+        }
+
+        return size;
+    }
+
+    private void retain( final SingleVersion version )
+    {
+        versions.merge( version, 1, Integer::sum );
+    }
+
+    private void release( final SingleVersion version )
+    {
+        versions.computeIfPresent( version, ( v, count ) -> count > 1 ? count - 1 : null );
+    }
+}
@@ -0,0 +1,394 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.pkg.maven.content.group;
+
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Plugin;
+import org.apache.maven.artifact.repository.metadata.Snapshot;
+import org.apache.maven.artifact.repository.metadata.SnapshotVersion;
+import org.apache.maven.artifact.repository.metadata.Versioning;
+import org.commonjava.maven.atlas.ident.util.VersionUtils;
+import org.commonjava.maven.atlas.ident.version.InvalidVersionSpecificationException;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything one maven-metadata.xml source contributes to a merge, read straight off its stream with StAX. Instances
+ * are only handed out once the whole document has parsed, so an invalid source never contributes partial content.
+ */
+final class MetadataContribution
+{
+    private static final XMLInputFactory INPUT_FACTORY;
+
+    static
+    {
+        INPUT_FACTORY = XMLInputFactory.newInstance();
+        INPUT_FACTORY.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+        INPUT_FACTORY.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+        INPUT_FACTORY.setProperty( XMLInputFactory.IS_COALESCING, true );
+    }
+
+    String groupId;
+
+    String artifactId;
+
+    String version;
+
+    boolean hasVersioning;
+
+    String latest;
+
+    String release;
+
+    String lastUpdated;
+
+    final List<SingleVersion> versions = new ArrayList<>();
+
+    Snapshot snapshot;
+
+    final List<SnapshotVersion> snapshotVersions = new ArrayList<>();
+
+    final List<Plugin> plugins = new ArrayList<>();
+
+    private SnapshotVersion currentSnapshotVersion;
+
+    private Plugin currentPlugin;
+
+    private MetadataContribution()
+    {
+    }
+
+    /**
+     * Parse the given maven-metadata.xml stream.
+     *
+     * @param source used for logging only
+     */
+    static MetadataContribution parse( final InputStream stream, final Object source )
+            throws XMLStreamException
+    {
+        final MetadataContribution md = new MetadataContribution();
+        final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader( stream );
+        try
+        {
+            md.read( reader, source );
+        }
+        finally
+        {
+            reader.close();
+        }
+
+        return md;
+    }
+
+    /**
+     * Wrap metadata that was already materialized, as handed to us by a {@link MavenMetadataProvider}.
+     */
+    static MetadataContribution from( final Metadata metadata, final Object source )
+    {
+        final MetadataContribution md = new MetadataContribution();
+        md.groupId = metadata.getGroupId();
+        md.artifactId = metadata.getArtifactId();
+        md.version = metadata.getVersion();
+
+        final Versioning versioning = metadata.getVersioning();
+        if ( versioning != null )
+        {
+            md.hasVersioning = true;
+            md.latest = versioning.getLatest();
+            md.release = versioning.getRelease();
+            md.lastUpdated = versioning.getLastUpdated();
+            versioning.getVersions().forEach( v -> md.addVersion( v, source ) );
+            md.snapshot = versioning.getSnapshot();
+            md.snapshotVersions.addAll( versioning.getSnapshotVersions() );
+        }
+
+        md.plugins.addAll( metadata.getPlugins() );
+        return md;
+    }
+
+    /**
+     * Rough heap footprint of this contribution, used to weigh {@link MergedMetadataState}s in the
+     * {@link MergedMetadataCache}. It only needs to be proportional, not exact.
+     */
+    long estimateSize()
+    {
+        long size = 64 + chars( groupId ) + chars( artifactId ) + chars( version ) + chars( latest ) + chars( release )
+                + chars( lastUpdated );
+
+        for ( final SingleVersion v : versions )
+        {
+            size += 96 + chars( v.renderStandard() );
+        }
+
+        size += snapshot == null ? 0 : 64 + chars( snapshot.getTimestamp() );
+        for ( final SnapshotVersion sv : snapshotVersions )
+        {
+            size += 64 + chars( sv.getClassifier() ) + chars( sv.getExtension() ) + chars( sv.getVersion() ) + chars(
+                    sv.getUpdated() );
+        }
+
+        for ( final Plugin p : plugins )
+        {
+            size += 48 + chars( p.getName() ) + chars( p.getPrefix() ) + chars( p.getArtifactId() );
+        }
+
+        return size;
+    }
+
+    private static long chars( final String value )
+    {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+    private void addVersion( final String value, final Object source )
+    {
+        try
+        {
+            versions.add( VersionUtils.createSingleVersion( value ) );
+        }
+        catch ( final InvalidVersionSpecificationException e )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.warn( "Skipping invalid version: {} in metadata from: {}. Reason: {}", value, source,
+                         e.getMessage() );
+        }
+    }
+
+    private void read( final XMLStreamReader reader, final Object source )
+            throws XMLStreamException
+    {
+        // container elements only; leaf values are read whole via getElementText()
+        final List<String> path = new ArrayList<>( 4 );
+        while ( reader.hasNext() )
+        {
+            final int event = reader.next();
+            if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                path.remove( path.size() - 1 );
+            }
+            else if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                final String parent = path.isEmpty() ? null : path.get( path.size() - 1 );
+                final String name = reader.getLocalName();
+
+                if ( isContainer( parent, name ) )
+                {
+                    path.add( name );
+                    start( name );
+                }
+                else if ( accept( parent, name ) )
+                {
+                    leaf( parent, name, reader.getElementText().trim(), source );
+                }
+                else
+                {
+                    skipElement( reader );
+                }
+            }
+        }
+    }
+
+    private static boolean isContainer( final String parent, final String name )
+    {
+        if ( parent == null )
+        {
+            return "metadata".equals( name );
+        }
+
+        switch ( parent )
+        {
+            case "metadata":
+                return "versioning".equals( name ) || "plugins".equals( name );
+            case "versioning":
+                return "snapshot".equals( name ) || "versions".equals( name ) || "snapshotVersions".equals( name );
+            case "snapshotVersions":
+                return "snapshotVersion".equals( name );
+            case "plugins":
+                return "plugin".equals( name );
+            default:
+                return false;
+        }
+    }
+
+    private static boolean accept( final String parent, final String name )
+    {
+        if ( parent == null )
+        {
+            return false;
+        }
+
+        switch ( parent )
+        {
+            case "metadata":
+                return "groupId".equals( name ) || "artifactId".equals( name ) || "version".equals( name );
+            case "versioning":
+                return "latest".equals( name ) || "release".equals( name ) || "lastUpdated".equals( name );
+            case "versions":
+                return "version".equals( name );
+            case "snapshot":
+                return "timestamp".equals( name ) || "buildNumber".equals( name ) || "localCopy".equals( name );
+            case "snapshotVersion":
+                return "classifier".equals( name ) || "extension".equals( name ) || "value".equals( name )
+                        || "updated".equals( name );
+            case "plugin":
+                return "name".equals( name ) || "prefix".equals( name ) || "artifactId".equals( name );
+            default:
+                return false;
+        }
+    }
+
+    private static void skipElement( final XMLStreamReader reader )
+            throws XMLStreamException
+    {
+        int depth = 1;
+        while ( depth > 0 && reader.hasNext() )
+        {
+            final int event = reader.next();
+            if ( event == XMLStreamConstants.START_ELEMENT )
+            {
+                depth++;
+            }
+            else if ( event == XMLStreamConstants.END_ELEMENT )
+            {
+                depth--;
+            }
+        }
+    }
+
+    private void start( final String name )
+    {
+        switch ( name )
+        {
+            case "versioning":
+                hasVersioning = true;
+                break;
+            case "snapshot":
+                snapshot = new Snapshot();
+                break;
+            case "snapshotVersion":
+                currentSnapshotVersion = new SnapshotVersion();
+                snapshotVersions.add( currentSnapshotVersion );
+                break;
+            case "plugin":
+                currentPlugin = new Plugin();
+                plugins.add( currentPlugin );
+                break;
+            default:
+        }
+    }
+
+    private void leaf( final String parent, final String name, final String value, final Object source )
+            throws XMLStreamException
+    {
+        switch ( parent )
+        {
+            case "metadata":
+                if ( "groupId".equals( name ) )
+                {
+                    groupId = value;
+                }
+                else if ( "artifactId".equals( name ) )
+                {
+                    artifactId = value;
+                }
+                else
+                {
+                    version = value;
+                }
+                break;
+            case "versioning":
+                if ( "latest".equals( name ) )
+                {
+                    latest = value;
+                }
+                else if ( "release".equals( name ) )
+                {
+                    release = value;
+                }
+                else
+                {
+                    lastUpdated = value;
+                }
+                break;
+            case "versions":
+                addVersion( value, source );
+                break;
+            case "snapshot":
+                if ( "timestamp".equals( name ) )
+                {
+                    snapshot.setTimestamp( value );
+                }
+                else if ( "buildNumber".equals( name ) )
+                {
+                    try
+                    {
+                        snapshot.setBuildNumber( Integer.parseInt( value ) );
+                    }
+                    catch ( final NumberFormatException e )
+                    {
+                        throw new XMLStreamException( "Invalid buildNumber: " + value, e );
+                    }
+                }
+                else
+                {
+                    snapshot.setLocalCopy( Boolean.parseBoolean( value ) );
+                }
+                break;
+            case "snapshotVersion":
+                if ( "classifier".equals( name ) )
+                {
+                    currentSnapshotVersion.setClassifier( value );
+                }
+                else if ( "extension".equals( name ) )
+                {
+                    currentSnapshotVersion.setExtension( value );
+                }
+                else if ( "value".equals( name ) )
+                {
+                    currentSnapshotVersion.setVersion( value );
+                }
+                else
+                {
+                    currentSnapshotVersion.setUpdated( value );
+                }
+                break;
+            case "plugin":
+                if ( "name".equals( name ) )
+                {
+                    currentPlugin.setName( value );
+                }
+                else if ( "prefix".equals( name ) )
+                {
+                    currentPlugin.setPrefix( value );
+                }
+                else
+                {
+                    currentPlugin.setArtifactId( value );
+                }
+                break;
+            default:
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.pkg.maven.content.group;
+
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Plugin;
+import org.apache.maven.artifact.repository.metadata.Snapshot;
+import org.apache.maven.artifact.repository.metadata.SnapshotVersion;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Single-use, streaming merge of maven-metadata.xml documents. Each source is read with StAX straight off its stream
+ * (see {@link MetadataContribution}), versions are kept in a sorted, de-duplicating set so no re-sort or list
+ * containment scan is needed, and the result is written in a single pass.
+ * <br/>
+ * Merge rules follow what {@link Metadata#merge(Metadata)} did for us before: groupId/artifactId/version from the last
+ * source declaring them; latest/release/lastUpdated from the source with the newest lastUpdated (later sources win
+ * ties, and a blank lastUpdated counts as a tie); plugins merged by prefix, first one wins; snapshot and
+ * snapshotVersions from the first source declaring a snapshot.
+ */
+public final class StreamingMetadataMerger
+{
+    static final Comparator<SingleVersion> VERSION_ORDER = ( first, second ) -> {
+        int comp = first.compareTo( second );
+        if ( comp == 0 )
+        {
+            comp = first.renderStandard().compareTo( second.renderStandard() );
+        }
+
+        return comp;
+    };
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private String groupId;
+
+    private String artifactId;
+
+    private String version;
+
+    private boolean hasVersioning;
+
+    private String latest;
+
+    private String release;
+
+    private String lastUpdated;
+
+    private final NavigableSet<SingleVersion> versions = new TreeSet<>( VERSION_ORDER );
+
+    private Snapshot snapshot;
+
+    private List<SnapshotVersion> snapshotVersions;
+
+    private Object snapshotSource;
+
+    private final Map<String, Plugin> plugins = new LinkedHashMap<>();
+
+    /**
+     * Parse the given maven-metadata.xml stream and fold it into the result. On a parse error nothing from this
+     * source is merged.
+     *
+     * @param source used for logging only
+     */
+    public void add( final InputStream stream, final Object source )
+            throws XMLStreamException
+    {
+        add( MetadataContribution.parse( stream, source ), source );
+    }
+
+    /**
+     * Fold in metadata that was already materialized, as handed to us by a {@link MavenMetadataProvider}.
+     */
+    public void add( final Metadata metadata, final Object source )
+    {
+        add( MetadataContribution.from( metadata, source ), source );
+    }
+
+    void add( final MetadataContribution md, final Object source )
+    {
+        addScalars( md, source );
+        if ( md.hasVersioning )
+        {
+            versions.addAll( md.versions );
+        }
+    }
+
+    /**
+     * Fold in everything except the version list, for callers that maintain the version set themselves.
+     */
+    void addScalars( final MetadataContribution md, final Object source )
+    {
+        if ( md.groupId != null )
+        {
+            groupId = md.groupId;
+        }
+
+        if ( md.artifactId != null )
+        {
+            artifactId = md.artifactId;
+        }
+
+        if ( md.version != null )
+        {
+            version = md.version;
+        }
+
+        for ( final Plugin plugin : md.plugins )
+        {
+            plugins.putIfAbsent( plugin.getPrefix(), plugin );
+        }
+
+        if ( !md.hasVersioning )
+        {
+            return;
+        }
+
+        hasVersioning = true;
+
+        final String mdLastUpdated = isBlank( md.lastUpdated ) ? lastUpdated : md.lastUpdated;
+        if ( isBlank( lastUpdated ) || ( mdLastUpdated != null && mdLastUpdated.compareTo( lastUpdated ) >= 0 ) )
+        {
+            lastUpdated = mdLastUpdated;
+            if ( md.release != null )
+            {
+                release = md.release;
+            }
+
+            if ( md.latest != null )
+            {
+                latest = md.latest;
+            }
+        }
+
+        if ( md.snapshot != null )
+        {
+            if ( snapshot == null )
+            {
+                logger.debug( "INCLUDING snapshot information from: {}", source );
+                snapshot = md.snapshot;
+                snapshotSource = source;
+                snapshotVersions = md.snapshotVersions;
+                snapshotVersions.sort( new MavenMetadataMerger.SnapshotVersionComparator() );
+            }
+            else
+            {
+                logger.debug( "SKIPPING snapshot information from: {} (obscured by: {})", source, snapshotSource );
+            }
+        }
+    }
+
+    public boolean hasVersioning()
+    {
+        return hasVersioning;
+    }
+
+    public void write( final OutputStream out )
+            throws XMLStreamException
+    {
+        write( out, versions );
+    }
+
+    void write( final OutputStream out, final Iterable<SingleVersion> versions )
+            throws XMLStreamException
+    {
+        final XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter( out, "UTF-8" );
+        try
+        {
+            writer.writeStartDocument( "UTF-8", "1.0" );
+            writer.writeCharacters( "\n" );
+            writer.writeStartElement( "metadata" );
+
+            leaf( writer, 1, "groupId", groupId );
+            leaf( writer, 1, "artifactId", artifactId );
+            leaf( writer, 1, "version", version );
+
+            if ( hasVersioning )
+            {
+                start( writer, 1, "versioning" );
+                leaf( writer, 2, "latest", latest );
+                leaf( writer, 2, "release", release );
+
+                if ( snapshot != null )
+                {
+                    start( writer, 2, "snapshot" );
+                    leaf( writer, 3, "timestamp", snapshot.getTimestamp() );
+                    if ( snapshot.getBuildNumber() != 0 )
+                    {
+                        leaf( writer, 3, "buildNumber", Integer.toString( snapshot.getBuildNumber() ) );
+                    }
+                    if ( snapshot.isLocalCopy() )
+                    {
+                        leaf( writer, 3, "localCopy", "true" );
+                    }
+                    end( writer, 2 );
+                }
+
+                boolean started = false;
+                for ( final SingleVersion v : versions )
+                {
+                    if ( !started )
+                    {
+                        start( writer, 2, "versions" );
+                        started = true;
+                    }
+                    leaf( writer, 3, "version", v.renderStandard() );
+                }
+
+                if ( started )
+                {
+                    end( writer, 2 );
+                }
+
+                leaf( writer, 2, "lastUpdated", lastUpdated );
+
+                if ( snapshotVersions != null && !snapshotVersions.isEmpty() )
+                {
+                    start( writer, 2, "snapshotVersions" );
+                    for ( final SnapshotVersion sv : snapshotVersions )
+                    {
+                        start( writer, 3, "snapshotVersion" );
+                        leaf( writer, 4, "classifier", sv.getClassifier() );
+                        leaf( writer, 4, "extension", sv.getExtension() );
+                        leaf( writer, 4, "value", sv.getVersion() );
+                        leaf( writer, 4, "updated", sv.getUpdated() );
+                        end( writer, 3 );
+                    }
+                    end( writer, 2 );
+                }
+
+                end( writer, 1 );
+            }
+
+            if ( !plugins.isEmpty() )
+            {
+                start( writer, 1, "plugins" );
+                for ( final Plugin plugin : plugins.values() )
+                {
+                    start( writer, 2, "plugin" );
+                    leaf( writer, 3, "name", plugin.getName() );
+                    leaf( writer, 3, "prefix", plugin.getPrefix() );
+                    leaf( writer, 3, "artifactId", plugin.getArtifactId() );
+                    end( writer, 2 );
+                }
+                end( writer, 1 );
+            }
+
+            end( writer, 0 );
+            writer.writeEndDocument();
+            writer.flush();
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    private static void start( final XMLStreamWriter writer, final int indent, final String name )
+            throws XMLStreamException
+    {
+        indent( writer, indent );
+        writer.writeStartElement( name );
+    }
+
+    private static void end( final XMLStreamWriter writer, final int indent )
+            throws XMLStreamException
+    {
+        indent( writer, indent );
+        writer.writeEndElement();
+    }
+
+    private static void leaf( final XMLStreamWriter writer, final int indent, final String name, final String value )
+            throws XMLStreamException
+    {
+        if ( value == null )
+        {
+            return;
+        }
+
+        indent( writer, indent );
+        writer.writeStartElement( name );
+        writer.writeCharacters( value );
+        writer.writeEndElement();
+    }
+
+    private static void indent( final XMLStreamWriter writer, final int depth )
+            throws XMLStreamException
+    {
+        writer.writeCharacters( "\n" );
+        for ( int i = 0; i < depth; i++ )
+        {
+            writer.writeCharacters( "  " );
+        }
+    }
+
+    private static boolean isBlank( final String value )
+    {
+        return value == null || value.isEmpty() || "null".equals( value );
+    }
+}
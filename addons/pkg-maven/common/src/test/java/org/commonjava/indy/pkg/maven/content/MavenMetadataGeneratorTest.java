@@ -16,17 +16,24 @@
 package org.commonjava.indy.pkg.maven.content;
 
 import org.apache.commons.lang.StringUtils;
+import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.audit.ChangeSummary;
 import org.commonjava.indy.content.DownloadManager;
 import org.commonjava.indy.content.IndyLocationExpander;
 import org.commonjava.indy.content.StoreResource;
 import org.commonjava.indy.core.content.DefaultDirectContentAccess;
 import org.commonjava.indy.core.content.DefaultDownloadManager;
+import org.commonjava.indy.core.conf.GroupRetrievalConfig;
+import org.commonjava.indy.core.content.group.GroupMemberRetriever;
 import org.commonjava.indy.core.content.group.GroupMergeHelper;
 import org.commonjava.indy.mem.data.MemoryStoreDataManager;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.HostedRepository;
 import org.commonjava.indy.model.core.RemoteRepository;
 import org.commonjava.indy.model.galley.KeyedLocation;
 import org.commonjava.indy.pkg.maven.content.group.MavenMetadataMerger;
+import org.commonjava.indy.util.ApplicationStatus;
 import org.commonjava.indy.util.LocationUtils;
 import org.commonjava.maven.atlas.ident.ref.SimpleProjectVersionRef;
 import org.commonjava.maven.atlas.ident.util.SnapshotUtils;
@@ -45,6 +52,7 @@ import org.commonjava.maven.galley.maven.spi.type.TypeMapper;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.ListingResult;
 import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
 import org.commonjava.maven.galley.spi.transport.LocationExpander;
 import org.commonjava.maven.galley.testing.core.transport.job.TestListing;
 import org.commonjava.maven.galley.testing.maven.GalleyMavenFixture;
@@ -52,8 +60,12 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
@@ -72,6 +84,16 @@ public class MavenMetadataGeneratorTest
 
     private MavenMetadataReader metadataReader;
 
+    private DownloadManager downloads;
+
+    private XMLInfrastructure xml;
+
+    private TypeMapper types;
+
+    private MavenMetadataMerger merger;
+
+    private GroupMergeHelper helper;
+
     private final ChangeSummary summary = new ChangeSummary( "test-user", "test" );
 
     @Before
@@ -82,12 +104,12 @@ public class MavenMetadataGeneratorTest
 
         final LocationExpander locations = new IndyLocationExpander( stores );
 
-        final DownloadManager downloads = new DefaultDownloadManager( stores, fixture.getTransferManager(), locations );
+        downloads = new DefaultDownloadManager( stores, fixture.getTransferManager(), locations );
 
-        final XMLInfrastructure xml = new XMLInfrastructure();
-        final TypeMapper types = new StandardTypeMapper();
-        final MavenMetadataMerger merger = new MavenMetadataMerger( Collections.emptyList() );
-        final GroupMergeHelper helper = new GroupMergeHelper( downloads );
+        xml = new XMLInfrastructure();
+        types = new StandardTypeMapper();
+        merger = new MavenMetadataMerger( Collections.emptyList() );
+        helper = new GroupMergeHelper( downloads );
 
         DefaultDirectContentAccess contentAccess = new DefaultDirectContentAccess( downloads );
 
@@ -208,6 +230,85 @@ public class MavenMetadataGeneratorTest
                               .renderStandard(), equalTo( "1.1" ) );
     }
 
+    @Test
+    public void groupMetadataMergeFailsInsteadOfDroppingTimedOutMember()
+        throws Exception
+    {
+        final HostedRepository fast = new HostedRepository( "fast" );
+        final HostedRepository slow = new HostedRepository( "slow" );
+        stores.storeArtifactStore( fast, summary, new EventMetadata() );
+        stores.storeArtifactStore( slow, summary, new EventMetadata() );
+
+        final Group group = new Group( "public", fast.getKey(), slow.getKey() );
+        stores.storeArtifactStore( group, summary, new EventMetadata() );
+
+        final String path = "org/group/artifact/maven-metadata.xml";
+        final String metadata =
+            "<metadata><groupId>org.group</groupId><artifactId>artifact</artifactId><versioning><versions>"
+                + "<version>1.0</version></versions></versioning></metadata>";
+
+        final DefaultDirectContentAccess plainAccess = new DefaultDirectContentAccess( downloads );
+        try (OutputStream out = plainAccess.getTransfer( fast, path ).openOutputStream( TransferOperation.UPLOAD ))
+        {
+            out.write( metadata.getBytes() );
+        }
+
+        final Properties props = new Properties();
+        props.setProperty( GroupRetrievalConfig.ENABLED_PROP, "true" );
+        props.setProperty( GroupRetrievalConfig.TIMEOUT_MILLIS_PROP, "200" );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( 2 );
+        try
+        {
+            final GroupMemberRetriever retriever =
+                new GroupMemberRetriever( new GroupRetrievalConfig( props ), executor );
+
+            final DefaultDirectContentAccess contentAccess = new DefaultDirectContentAccess( downloads, retriever )
+            {
+                @Override
+                public Transfer retrieveRaw( final ArtifactStore store, final String path,
+                                             final EventMetadata eventMetadata )
+                    throws IndyWorkflowException
+                {
+                    if ( slow.getKey().equals( store.getKey() ) )
+                    {
+                        try
+                        {
+                            Thread.sleep( 2000 );
+                        }
+                        catch ( final InterruptedException e )
+                        {
+                            Thread.currentThread().interrupt();
+                            return null;
+                        }
+                    }
+
+                    return super.retrieveRaw( store, path, eventMetadata );
+                }
+            };
+
+            final MavenMetadataGenerator timedGenerator =
+                new MavenMetadataGenerator( contentAccess, stores, xml, types, merger, helper );
+
+            try
+            {
+                timedGenerator.generateGroupFileContent( group, stores.getOrderedConcreteStoresInGroup( "public", true ),
+                                                         path, new EventMetadata() );
+                fail( "Group metadata should not be merged without the member that timed out" );
+            }
+            catch ( final IndyWorkflowException e )
+            {
+                assertThat( e.getStatus(), equalTo( ApplicationStatus.BAD_GATEWAY.code() ) );
+            }
+
+            assertThat( plainAccess.getTransfer( group, path ).exists(), equalTo( false ) );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void generateDirContent_VersionsMetadataWith2Versions()
         throws Exception
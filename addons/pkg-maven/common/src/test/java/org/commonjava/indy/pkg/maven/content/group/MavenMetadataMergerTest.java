@@ -161,6 +161,81 @@ public class MavenMetadataMergerTest
         assertThat( versions.get( idx ), equalTo( "1.2" ) );
     }
 
+    @Test
+    public void mergeDeduplicatesOverlappingVersions()
+            throws Exception
+    {
+        String path = "org/foo/bar/maven-metadata.xml";
+        HostedRepository h1 = new HostedRepository( "test-hosted-1" );
+        HostedRepository h2 = new HostedRepository( "test-hosted-2" );
+        HostedRepository h3 = new HostedRepository( "test-hosted-3" );
+
+        Transfer t1 = cacheProvider.getTransfer( new ConcreteResource( LocationUtils.toLocation( h1 ), path ) );
+        initTestData( t1, VERSION_META + "simple-skip.xml" );
+
+        Transfer t2 = cacheProvider.getTransfer( new ConcreteResource( LocationUtils.toLocation( h2 ), path ) );
+        initTestData( t2, VERSION_META + "simple-1.xml" );
+
+        Transfer t3 = cacheProvider.getTransfer( new ConcreteResource( LocationUtils.toLocation( h3 ), path ) );
+        initTestData( t3, VERSION_META + "simple-2.xml" );
+
+        Group g = new Group( "test-group", h1.getKey(), h2.getKey(), h3.getKey() );
+
+        List<Transfer> sources = Arrays.asList( t1, t2, t3 );
+
+        byte[] output =
+                new MavenMetadataMerger( Collections.emptyList() ).merge( sources, g, path );
+
+        Metadata merged = new MetadataXpp3Reader().read( new ByteArrayInputStream( output ) );
+
+        Versioning versioning = merged.getVersioning();
+        assertThat( versioning.getVersions(), equalTo( Arrays.asList( "1.0", "1.1", "1.2" ) ) );
+
+        // simple-skip.xml has the newest lastUpdated, so its release wins even though it comes first
+        assertThat( versioning.getRelease(), equalTo( "1.2" ) );
+        assertThat( versioning.getLastUpdated(), equalTo( "20161024203141" ) );
+    }
+
+    @Test
+    public void incrementalMergeAppliesMemberDeltas()
+            throws Exception
+    {
+        String path = "org/foo/bar/maven-metadata.xml";
+        HostedRepository h1 = new HostedRepository( "test-hosted-1" );
+        HostedRepository h2 = new HostedRepository( "test-hosted-2" );
+
+        Transfer t1 = cacheProvider.getTransfer( new ConcreteResource( LocationUtils.toLocation( h1 ), path ) );
+        initTestData( t1, VERSION_META + "simple-1.xml" );
+
+        Transfer t2 = cacheProvider.getTransfer( new ConcreteResource( LocationUtils.toLocation( h2 ), path ) );
+        initTestData( t2, VERSION_META + "simple-2.xml" );
+
+        Group g = new Group( "test-group", h1.getKey(), h2.getKey() );
+
+        MavenMetadataMerger merger = new MavenMetadataMerger( Collections.emptyList() );
+        MergedMetadataState state =
+                merger.mergeIncremental( Arrays.asList( t1, t2 ), Arrays.asList( h1.getKey(), h2.getKey() ), g,
+                                         path );
+
+        Metadata merged = new MetadataXpp3Reader().read( new ByteArrayInputStream( merger.render( state, g, path ) ) );
+        assertThat( merged.getVersioning().getVersions(), equalTo( Arrays.asList( "1.0", "1.1" ) ) );
+
+        // h2 now publishes 1.0 and 1.2; 1.1 goes away, and 1.0 is still held by h1 too
+        initTestData( t2, VERSION_META + "simple-skip.xml" );
+        merger.updateIncremental( state, h2.getKey(), t2 );
+
+        merged = new MetadataXpp3Reader().read( new ByteArrayInputStream( merger.render( state, g, path ) ) );
+        assertThat( merged.getVersioning().getVersions(), equalTo( Arrays.asList( "1.0", "1.2" ) ) );
+        assertThat( merged.getVersioning().getRelease(), equalTo( "1.2" ) );
+
+        t1.delete();
+        merger.updateIncremental( state, h1.getKey(), t1 );
+
+        merged = new MetadataXpp3Reader().read( new ByteArrayInputStream( merger.render( state, g, path ) ) );
+        assertThat( merged.getVersioning().getVersions(), equalTo( Arrays.asList( "1.0", "1.2" ) ) );
+        assertThat( state.getSources(), equalTo( Arrays.asList( h2.getKey() ) ) );
+    }
+
     @Test
     public void mergeWhenOneTransferIsMissing()
             throws Exception
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.pkg.maven.content.group;
+
+import org.commonjava.indy.conf.DefaultIndyConfiguration;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MergedMetadataCacheTest
+{
+    private static final StoreKey MEMBER = new StoreKey( StoreType.hosted, "member" );
+
+    private MergedMetadataCache cache;
+
+    @Before
+    public void setup()
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        config.setIncrementalGroupMetadata( true );
+        config.setIncrementalGroupMetadataMaxMemoryMb( 1 );
+        cache = new MergedMetadataCache( config );
+    }
+
+    @Test
+    public void boundedInBytesWithoutRefusingNewPaths()
+            throws Exception
+    {
+        final long weight = state( 500 ).estimateSize();
+        final int count = (int) ( 4 * 1024 * 1024 / weight );
+
+        for ( int i = 0; i < count; i++ )
+        {
+            cache.put( group( i ), path( i ), state( 500 ) );
+        }
+
+        int present = 0;
+        for ( int i = 0; i < count; i++ )
+        {
+            if ( cache.get( group( i ), path( i ) ) != null )
+            {
+                present++;
+            }
+        }
+
+        assertThat( present > 1, equalTo( true ) );
+        assertThat( present * weight <= 1024 * 1024, equalTo( true ) );
+
+        // a path past the limit is tracked once it's in use, not refused for good
+        final StoreKey group = group( count );
+        final String path = path( count );
+        for ( int i = 0; i < 10 && cache.get( group, path ) == null; i++ )
+        {
+            cache.put( group, path, state( 500 ) );
+        }
+
+        assertThat( cache.get( group, path ), notNullValue() );
+    }
+
+    @Test
+    public void reputRefreshesTheEntry()
+            throws Exception
+    {
+        final MergedMetadataState state = state( 10 );
+        cache.put( group( 0 ), path( 0 ), state );
+        cache.put( group( 0 ), path( 0 ), state );
+        assertThat( cache.get( group( 0 ), path( 0 ) ), sameInstance( state ) );
+
+        cache.remove( group( 0 ), path( 0 ) );
+        assertThat( cache.get( group( 0 ), path( 0 ) ), nullValue() );
+    }
+
+    private static StoreKey group( final int i )
+    {
+        return new StoreKey( StoreType.group, "group-" + i );
+    }
+
+    private static String path( final int i )
+    {
+        return "org/foo/bar-" + i + "/maven-metadata.xml";
+    }
+
+    private static MergedMetadataState state( final int versions )
+            throws Exception
+    {
+        final StringBuilder xml = new StringBuilder(
+                "<metadata><groupId>org.foo</groupId><artifactId>bar</artifactId><versioning><versions>" );
+        for ( int i = 0; i < versions; i++ )
+        {
+            xml.append( "<version>1.0." ).append( i ).append( "</version>" );
+        }
+        xml.append( "</versions></versioning></metadata>" );
+
+        final MergedMetadataState state = new MergedMetadataState( Collections.singletonList( MEMBER ) );
+        state.put( MEMBER, MetadataContribution.parse( new ByteArrayInputStream( xml.toString().getBytes() ),
+                                                        MEMBER ) );
+        return state;
+    }
+}
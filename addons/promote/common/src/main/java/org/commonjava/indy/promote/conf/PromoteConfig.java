@@ -18,6 +18,8 @@ package org.commonjava.indy.promote.conf;
 import org.commonjava.indy.conf.IndyConfigInfo;
 import org.commonjava.web.config.annotation.ConfigName;
 import org.commonjava.web.config.annotation.SectionName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
 import java.io.InputStream;
@@ -39,12 +41,35 @@ public class PromoteConfig
 
     public static final long DEFAULT_LOCK_TIMEOUT_SECONDS = 30;
 
+    private static final String PATHS_TRANSFER_MODE_PARAM = "paths.transfer.mode";
+
+    public static final PathsTransferMode DEFAULT_PATHS_TRANSFER_MODE = PathsTransferMode.copy;
+
+    private static final String PATHS_PARALLELISM_PARAM = "paths.parallelism";
+
+    public static final int DEFAULT_PATHS_PARALLELISM = 8;
+
+    /**
+     * How path promotion puts each file into the target store.
+     */
+    public enum PathsTransferMode
+    {
+        /** stream the content into the target store */
+        copy,
+        /** rename the file into the target store when the source is purged; copy otherwise */
+        move
+    }
+
     private String basedir;
 
     private boolean enabled = true;
 
     private Long lockTimeoutSeconds;
 
+    private PathsTransferMode pathsTransferMode;
+
+    private Integer pathsParallelism;
+
     public PromoteConfig()
     {
     }
@@ -88,6 +113,49 @@ public class PromoteConfig
         this.lockTimeoutSeconds = lockTimeoutSeconds;
     }
 
+    public PathsTransferMode getPathsTransferMode()
+    {
+        return pathsTransferMode == null ? DEFAULT_PATHS_TRANSFER_MODE : pathsTransferMode;
+    }
+
+    @ConfigName( PromoteConfig.PATHS_TRANSFER_MODE_PARAM )
+    public void setPathsTransferMode( final String pathsTransferMode )
+    {
+        if ( pathsTransferMode == null )
+        {
+            this.pathsTransferMode = null;
+            return;
+        }
+
+        try
+        {
+            this.pathsTransferMode = PathsTransferMode.valueOf( pathsTransferMode.trim().toLowerCase() );
+        }
+        catch ( final IllegalArgumentException e )
+        {
+            Logger logger = LoggerFactory.getLogger( getClass() );
+            logger.warn( "Invalid {}: '{}'. Falling back to: {}", PATHS_TRANSFER_MODE_PARAM, pathsTransferMode,
+                         DEFAULT_PATHS_TRANSFER_MODE );
+            this.pathsTransferMode = null;
+        }
+    }
+
+    public void setPathsTransferMode( final PathsTransferMode pathsTransferMode )
+    {
+        this.pathsTransferMode = pathsTransferMode;
+    }
+
+    public int getPathsParallelism()
+    {
+        return pathsParallelism == null || pathsParallelism < 1 ? DEFAULT_PATHS_PARALLELISM : pathsParallelism;
+    }
+
+    @ConfigName( PromoteConfig.PATHS_PARALLELISM_PARAM )
+    public void setPathsParallelism( final Integer pathsParallelism )
+    {
+        this.pathsParallelism = pathsParallelism;
+    }
+
     @Override
     public String getDefaultConfigFileName()
     {
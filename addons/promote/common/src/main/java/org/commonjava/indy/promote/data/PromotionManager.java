@@ -16,8 +16,12 @@
 package org.commonjava.indy.promote.data;
 
 import org.apache.commons.lang.StringUtils;
+import org.commonjava.cdi.util.weft.ExecutorConfig;
+import org.commonjava.cdi.util.weft.WeftManaged;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigestStore;
 import org.commonjava.indy.content.ContentManager;
 import org.commonjava.indy.content.DownloadManager;
 import org.commonjava.indy.data.IndyDataException;
@@ -26,6 +30,7 @@ import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.Group;
 import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.indy.promote.conf.PromoteConfig;
+import org.commonjava.indy.promote.conf.PromoteConfig.PathsTransferMode;
 import org.commonjava.indy.promote.model.GroupPromoteRequest;
 import org.commonjava.indy.promote.model.GroupPromoteResult;
 import org.commonjava.indy.promote.model.PathsPromoteRequest;
@@ -33,24 +38,45 @@ import org.commonjava.indy.promote.model.PathsPromoteResult;
 import org.commonjava.indy.promote.model.ValidationResult;
 import org.commonjava.indy.promote.validate.PromotionValidator;
 import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.FileDeletionEvent;
+import org.commonjava.maven.galley.event.FileStorageEvent;
+import org.commonjava.maven.galley.model.SpecialPathInfo;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.model.TransferOperation;
+import org.commonjava.maven.galley.spi.event.FileEventManager;
+import org.commonjava.maven.galley.spi.io.SpecialPathManager;
+import org.commonjava.maven.galley.transport.htcli.model.HttpExchangeMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -64,6 +90,8 @@ import static org.apache.commons.io.IOUtils.closeQuietly;
 public class PromotionManager
 {
 
+    private static final String MAVEN_METADATA_NAME = "maven-metadata.xml";
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Inject
@@ -81,20 +109,69 @@ public class PromotionManager
     @Inject
     private PromotionValidator validator;
 
+    @Inject
+    private FileEventManager fileEventManager;
+
+    @Inject
+    private SpecialPathManager specialPathManager;
+
+    @Inject
+    private Instance<ContentDigestStore> digestStoreInstance;
+
+    private ContentDigestStore digestStore;
+
+    @Inject
+    @WeftManaged
+    @ExecutorConfig( named = "promote-paths", threads = 16, priority = 5, daemon = true )
+    private ExecutorService pathsExecutor;
+
     private Map<StoreKey, ReentrantLock> byPathTargetLocks = new WeakHashMap<>();
 
+    private final Map<StoreKey, PathsProgress> pathsProgress = new ConcurrentHashMap<>();
+
     protected PromotionManager()
     {
     }
 
     public PromotionManager( PromotionValidator validator, final ContentManager contentManager,
                              final DownloadManager downloadManager, final StoreDataManager storeManager, PromoteConfig config )
+    {
+        this( validator, contentManager, downloadManager, storeManager, config, null, null, null );
+    }
+
+    public PromotionManager( PromotionValidator validator, final ContentManager contentManager,
+                             final DownloadManager downloadManager, final StoreDataManager storeManager,
+                             PromoteConfig config, final FileEventManager fileEventManager,
+                             final SpecialPathManager specialPathManager )
+    {
+        this( validator, contentManager, downloadManager, storeManager, config, fileEventManager,
+              specialPathManager, null );
+    }
+
+    public PromotionManager( PromotionValidator validator, final ContentManager contentManager,
+                             final DownloadManager downloadManager, final StoreDataManager storeManager,
+                             PromoteConfig config, final FileEventManager fileEventManager,
+                             final SpecialPathManager specialPathManager, final ExecutorService pathsExecutor )
     {
         this.validator = validator;
         this.contentManager = contentManager;
         this.downloadManager = downloadManager;
         this.storeManager = storeManager;
         this.config = config;
+        this.fileEventManager = fileEventManager;
+        this.specialPathManager = specialPathManager;
+        this.pathsExecutor = pathsExecutor;
+    }
+
+    public PromotionManager( PromotionValidator validator, final ContentManager contentManager,
+                             final DownloadManager downloadManager, final StoreDataManager storeManager,
+                             PromoteConfig config, final FileEventManager fileEventManager,
+                             final SpecialPathManager specialPathManager, final ExecutorService pathsExecutor,
+                             final ContentDigestStore digestStore )
+    {
+        this( validator, contentManager, downloadManager, storeManager, config, fileEventManager, specialPathManager,
+              pathsExecutor );
+        this.digestStore = digestStore;
     }
 
     public GroupPromoteResult promoteToGroup( GroupPromoteRequest request, String user, String baseUrl )
@@ -433,10 +510,10 @@ public class PromotionManager
             }
         }
 
-        final Set<String> complete = prevComplete == null ? new HashSet<>() : new HashSet<>( prevComplete );
-        final Set<String> skipped = prevSkipped == null ? new HashSet<>() : new HashSet<>( prevSkipped );
+        // paths are promoted from several threads at once, and read by getPathsPromoteProgress() meanwhile
+        final PathsProgress progress = new PathsProgress( request, pending, prevComplete, prevSkipped, validation );
 
-        List<String> errors = new ArrayList<>();
+        List<String> errors = Collections.synchronizedList( new ArrayList<>() );
         ArtifactStore sourceStore = null;
         ArtifactStore targetStore = null;
         try
@@ -472,62 +549,30 @@ public class PromotionManager
                 logger.info( "Running promotions from: {} (key: {})\n  to: {} (key: {})", sourceStore, request.getSource(),
                              targetStore, request.getTarget() );
 
-                final boolean purgeSource = request.isPurgeSource();
+                pathsProgress.put( targetKey, progress );
+
+                // metadata goes last, once per path, so merged group metadata is invalidated after the content it
+                // describes is in place rather than over and over while that content is still arriving
+                final List<Transfer> content = new ArrayList<>( contents.size() );
+                final Map<String, Transfer> metadata = new LinkedHashMap<>();
                 for ( final Transfer transfer : contents )
                 {
-                    try
+                    if ( isMetadata( transfer ) )
                     {
-                        final String path = transfer.getPath();
-
-                        Transfer target = contentManager.getTransfer( targetStore, path, TransferOperation.UPLOAD );
-                        //                        synchronized ( target )
-                        //                        {
-                        // TODO: Should the request object have an overwrite attribute? Is that something the user is qualified to decide?
-                        if ( target != null && target.exists() )
-                        {
-                            logger.warn( "NOT promoting: {} from: {} to: {}. Target file already exists.", path,
-                                         request.getSource(), request.getTarget() );
-
-                            // TODO: There's no guarantee that the pre-existing content is the same!
-                            pending.remove( path );
-                            skipped.add( path );
-
-                            continue;
-                        }
-
-                        try (InputStream stream = transfer.openInputStream( true ))
-                        {
-                            contentManager.store( targetStore, path, stream, TransferOperation.UPLOAD,
-                                                  new EventMetadata() );
-
-                            pending.remove( path );
-                            complete.add( path );
-
-                            stream.close();
-
-                            if ( purgeSource )
-                            {
-                                contentManager.delete( sourceStore, path, new EventMetadata() );
-                            }
-                        }
-                        catch ( final IOException e )
-                        {
-                            String msg = String.format( "Failed to open input stream for: %s. Reason: %s", transfer,
-                                                        e.getMessage() );
-                            errors.add( msg );
-                            logger.error( msg, e );
-                        }
-                        //                        }
+                        metadata.put( transfer.getPath(), transfer );
                     }
-                    catch ( final IndyWorkflowException e )
+                    else
                     {
-                        String msg =
-                                String.format( "Failed to promote path: %s to: %s. Reason: %s", transfer, targetStore,
-                                               e.getMessage() );
-                        errors.add( msg );
-                        logger.error( msg, e );
+                        content.add( transfer );
                     }
                 }
+
+                final ArtifactStore src = sourceStore;
+                final ArtifactStore tgt = targetStore;
+                runAll( content, transfer -> promotePath( request, src, tgt, transfer, progress, errors ), errors );
+
+                logger.debug( "Promoting {} metadata paths to: {}", metadata.size(), targetKey );
+                metadata.values().forEach( transfer -> promotePath( request, src, tgt, transfer, progress, errors ) );
             }
 
         }
@@ -539,7 +584,11 @@ public class PromotionManager
         }
         finally
         {
-            lock.unlock();
+            pathsProgress.remove( targetKey, progress );
+            if ( lock.isHeldByCurrentThread() )
+            {
+                lock.unlock();
+            }
         }
 
         String error = null;
@@ -549,27 +598,341 @@ public class PromotionManager
             error = StringUtils.join( errors, "\n" );
         }
 
-        return new PathsPromoteResult( request, pending, complete, skipped, error, validation );
+        return progress.toResult( error );
+    }
+
+    /**
+     * Return a checkpoint of the paths promotion currently running into the given target store, or null if there is
+     * none. Paths promoted so far are listed as completed (or skipped), and the rest as pending, so the result can be
+     * handed to {@link #resumePathsPromote(PathsPromoteResult)} if the running promotion doesn't finish.
+     */
+    public PathsPromoteResult getPathsPromoteProgress( final StoreKey target )
+    {
+        final PathsProgress progress = pathsProgress.get( target );
+        return progress == null ? null : progress.toResult( null );
+    }
+
+    private void promotePath( final PathsPromoteRequest request, final ArtifactStore sourceStore,
+                              final ArtifactStore targetStore, final Transfer transfer, final PathsProgress progress,
+                              final List<String> errors )
+    {
+        final boolean purgeSource = request.isPurgeSource();
+        try
+        {
+            final String path = transfer.getPath();
+
+            Transfer target = contentManager.getTransfer( targetStore, path, TransferOperation.UPLOAD );
+            // TODO: Should the request object have an overwrite attribute? Is that something the user is qualified to decide?
+            if ( target != null && target.exists() )
+            {
+                logger.warn( "NOT promoting: {} from: {} to: {}. Target file already exists.", path,
+                             request.getSource(), request.getTarget() );
+
+                // TODO: There's no guarantee that the pre-existing content is the same!
+                progress.skipped( path );
+                return;
+            }
+
+            if ( promoteFile( transfer, target, purgeSource ) )
+            {
+                progress.completed( path );
+                return;
+            }
+
+            try (InputStream stream = transfer.openInputStream( true ))
+            {
+                contentManager.store( targetStore, path, stream, TransferOperation.UPLOAD, new EventMetadata() );
+
+                progress.completed( path );
+
+                stream.close();
+
+                if ( purgeSource )
+                {
+                    contentManager.delete( sourceStore, path, new EventMetadata() );
+                }
+            }
+            catch ( final IOException e )
+            {
+                String msg = String.format( "Failed to open input stream for: %s. Reason: %s", transfer,
+                                            e.getMessage() );
+                errors.add( msg );
+                logger.error( msg, e );
+            }
+        }
+        catch ( final IndyWorkflowException e )
+        {
+            String msg = String.format( "Failed to promote path: %s to: %s. Reason: %s", transfer, targetStore,
+                                        e.getMessage() );
+            errors.add( msg );
+            logger.error( msg, e );
+        }
+    }
+
+    /**
+     * Run the action for every item, on up to {@link PromoteConfig#getPathsParallelism()} threads: the calling thread
+     * plus tasks on the promotion executor, all pulling from one queue. Returns once every item is done.
+     */
+    private <T> void runAll( final Collection<T> items, final Consumer<T> action, final List<String> errors )
+    {
+        final Queue<T> queue = new ConcurrentLinkedQueue<>( items );
+        final Runnable worker = () -> {
+            T item;
+            while ( ( item = queue.poll() ) != null )
+            {
+                action.accept( item );
+            }
+        };
+
+        final int helpers = pathsExecutor == null ? 0 : Math.min( config.getPathsParallelism(), items.size() ) - 1;
+        final List<Future<?>> futures = new ArrayList<>();
+        for ( int i = 0; i < helpers; i++ )
+        {
+            futures.add( pathsExecutor.submit( worker ) );
+        }
+
+        worker.run();
+
+        // Helpers are still writing into the target, which stays locked until we return. On interrupt, stop handing
+        // out new paths and let each helper finish the one it's on; unstarted paths stay pending in the result.
+        boolean interrupted = false;
+        for ( final Future<?> future : futures )
+        {
+            while ( true )
+            {
+                try
+                {
+                    future.get();
+                    break;
+                }
+                catch ( final InterruptedException e )
+                {
+                    if ( !interrupted )
+                    {
+                        interrupted = true;
+                        queue.clear();
+                        errors.add( "Interrupted waiting for path promotions to finish." );
+                    }
+                }
+                catch ( final ExecutionException e )
+                {
+                    String msg = String.format( "Path promotion failed: %s", e.getCause().getMessage() );
+                    errors.add( msg );
+                    logger.error( msg, e.getCause() );
+                    break;
+                }
+            }
+        }
+
+        if ( interrupted )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isMetadata( final Transfer transfer )
+    {
+        if ( specialPathManager != null )
+        {
+            final SpecialPathInfo info = specialPathManager.getSpecialPathInfo( transfer );
+            if ( info != null )
+            {
+                return info.isMetadata();
+            }
+        }
+
+        final String path = transfer.getPath();
+        return path.substring( path.lastIndexOf( '/' ) + 1 ).startsWith( MAVEN_METADATA_NAME );
+    }
+
+    /**
+     * Path sets of a running paths promotion, safe to update from the worker threads while being read for a checkpoint.
+     */
+    private static final class PathsProgress
+    {
+        private final PathsPromoteRequest request;
+
+        private final ValidationResult validation;
+
+        private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+        private final Set<String> complete = ConcurrentHashMap.newKeySet();
+
+        private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+
+        PathsProgress( final PathsPromoteRequest request, final Set<String> pending, final Set<String> complete,
+                       final Set<String> skipped, final ValidationResult validation )
+        {
+            this.request = request;
+            this.validation = validation;
+            this.pending.addAll( pending );
+            if ( complete != null )
+            {
+                this.complete.addAll( complete );
+            }
+            if ( skipped != null )
+            {
+                this.skipped.addAll( skipped );
+            }
+        }
+
+        void completed( final String path )
+        {
+            complete.add( path );
+            pending.remove( path );
+        }
+
+        void skipped( final String path )
+        {
+            skipped.add( path );
+            pending.remove( path );
+        }
+
+        PathsPromoteResult toResult( final String error )
+        {
+            return new PathsPromoteResult( request, new HashSet<>( pending ), new HashSet<>( complete ),
+                                           new HashSet<>( skipped ), error, validation );
+        }
+    }
+
+    /**
+     * If {@link PromoteConfig#getPathsTransferMode()} is move and the request purges the source, rename the source file
+     * into the target store instead of copying its content. This only works when both files are on the same
+     * filesystem, and isn't used for metadata files, since merged metadata relies on the content generators that run
+     * when content is stored normally.
+     * <p>
+     * A rename bypasses {@link ContentManager#store}, so what that would do for the target is done here, under the
+     * target's write lock: the size / digest record written with the source moves to the target (if there was none,
+     * digests are computed on first request, as for any unrecorded file), stale HTTP exchange metadata next to the
+     * target is removed, and the storage and deletion events a copy would fire are fired, so indexes, tracking and
+     * metadata stay in step. Checksum files are only generated for generated content, not uploads, so a copy wouldn't
+     * have written any either.
+     *
+     * @return true if the file was moved; false if it needs to be copied instead
+     */
+    private boolean promoteFile( final Transfer source, final Transfer target, final boolean purgeSource )
+    {
+        if ( !purgeSource || config.getPathsTransferMode() != PathsTransferMode.move || fileEventManager == null
+                || target == null )
+        {
+            return false;
+        }
+
+        if ( isMetadata( source ) )
+        {
+            return false;
+        }
+
+        final File sourceFile = source.getDetachedFile();
+        final File targetFile = target.getDetachedFile();
+        if ( sourceFile == null || targetFile == null || !sourceFile.isFile() )
+        {
+            return false;
+        }
+
+        final Path sourcePath = sourceFile.toPath();
+        final Path targetPath = targetFile.toPath();
+        final ContentDigestStore digests = getDigestStore();
+
+        target.lockWrite();
+        try
+        {
+            if ( target.exists() )
+            {
+                return false;
+            }
+
+            Files.createDirectories( targetPath.getParent() );
+            if ( !Files.getFileStore( sourcePath ).equals( Files.getFileStore( targetPath.getParent() ) ) )
+            {
+                return false;
+            }
+
+            final ArtifactData recorded = digests == null ? null : digests.get( source );
+
+            Files.move( sourcePath, targetPath, StandardCopyOption.ATOMIC_MOVE );
+
+            if ( digests != null )
+            {
+                digests.remove( source );
+                if ( recorded != null )
+                {
+                    digests.put( target, recorded );
+                }
+            }
+
+            final Transfer meta = target.getSiblingMeta( HttpExchangeMetadata.FILE_EXTENSION );
+            if ( meta != null && meta.exists() )
+            {
+                meta.delete( false );
+            }
+        }
+        catch ( final IOException | UnsupportedOperationException e )
+        {
+            logger.debug( "Cannot move {} to {}. Copying instead. Reason: {}", sourcePath, targetPath,
+                          e.getMessage() );
+            return false;
+        }
+        finally
+        {
+            target.unlock();
+        }
+
+        logger.debug( "Promoted {} to {} by move.", source, target );
+
+        fileEventManager.fire( new FileStorageEvent( TransferOperation.UPLOAD, target, new EventMetadata() ) );
+        fileEventManager.fire( new FileDeletionEvent( source, new EventMetadata() ) );
+
+        return true;
+    }
+
+    private ContentDigestStore getDigestStore()
+    {
+        if ( digestStore == null && digestStoreInstance != null && !digestStoreInstance.isUnsatisfied() )
+        {
+            digestStore = digestStoreInstance.get();
+        }
+
+        return digestStore;
     }
 
     private List<Transfer> getTransfersForPaths( final StoreKey source, final Set<String> paths )
             throws IndyWorkflowException
     {
-        final List<Transfer> contents = new ArrayList<Transfer>();
-        for ( final String path : paths )
-        {
-            final Transfer txfr = downloadManager.getStorageReference( source, path );
-            if ( txfr == null || !txfr.exists() )
+        final List<Transfer> contents = Collections.synchronizedList( new ArrayList<>( paths.size() ) );
+        final List<String> errors = Collections.synchronizedList( new ArrayList<>() );
+        final AtomicReference<IndyWorkflowException> failure = new AtomicReference<>();
+        runAll( paths, path -> {
+            try
+            {
+                final Transfer txfr = downloadManager.getStorageReference( source, path );
+                if ( txfr == null || !txfr.exists() )
+                {
+                    logger.warn( "Cannot promote path: '{}' from source: '{}'. It does not exist!", path, source );
+                    // TODO: Fail??
+                    return;
+                }
+
+                contents.add( txfr );
+            }
+            catch ( final IndyWorkflowException e )
             {
-                logger.warn( "Cannot promote path: '{}' from source: '{}'. It does not exist!", path, source );
-                // TODO: Fail??
-                continue;
+                failure.compareAndSet( null, e );
             }
+        }, errors );
+
+        if ( failure.get() != null )
+        {
+            throw failure.get();
+        }
 
-            contents.add( txfr );
+        if ( !errors.isEmpty() )
+        {
+            throw new IndyWorkflowException( "Failed to look up paths to promote from: %s. Reason: %s", source,
+                                             StringUtils.join( errors, "\n" ) );
         }
 
-        return contents;
+        return new ArrayList<>( contents );
     }
 
 }
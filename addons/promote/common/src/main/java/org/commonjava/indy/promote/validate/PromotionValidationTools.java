@@ -145,7 +145,7 @@ public class PromotionValidationTools
         else
         {
             List<StoreKey> extras = Stream.of( verifyStores.split( "\\s*,\\s*" ) )
-                  .map( StoreKey::fromString )
+                  .map( storeDataManager::canonicalKey )
                   .filter( item -> item != null ).collect( Collectors.toList());
 
             if ( extras.isEmpty() )
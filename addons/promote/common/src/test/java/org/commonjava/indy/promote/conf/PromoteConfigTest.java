@@ -31,4 +31,15 @@ public class PromoteConfigTest
     {
         assertThat( new PromoteConfig().isEnabled(), equalTo( true ) );
     }
+
+    @Test
+    public void invalidPathsTransferModeFallsBackToCopy()
+    {
+        PromoteConfig config = new PromoteConfig();
+        config.setPathsTransferMode( "lnik" );
+        assertThat( config.getPathsTransferMode(), equalTo( PromoteConfig.PathsTransferMode.copy ) );
+
+        config.setPathsTransferMode( " Move " );
+        assertThat( config.getPathsTransferMode(), equalTo( PromoteConfig.PathsTransferMode.move ) );
+    }
 }
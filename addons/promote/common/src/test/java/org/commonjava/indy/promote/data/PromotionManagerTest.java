@@ -18,6 +18,9 @@ package org.commonjava.indy.promote.data;
 import org.apache.commons.io.IOUtils;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigest;
+import org.commonjava.indy.content.ContentDigestStore;
 import org.commonjava.indy.content.ContentGenerator;
 import org.commonjava.indy.content.ContentManager;
 import org.commonjava.indy.content.DownloadManager;
@@ -43,6 +46,8 @@ import org.commonjava.indy.subsys.template.ScriptEngine;
 import org.commonjava.indy.test.fixture.core.MockContentAdvisor;
 import org.commonjava.indy.test.fixture.core.MockInstance;
 import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
 import org.commonjava.maven.galley.maven.rel.MavenModelProcessor;
 import org.commonjava.maven.galley.model.Transfer;
 import org.commonjava.maven.galley.model.TransferOperation;
@@ -56,11 +61,15 @@ import org.junit.rules.TemporaryFolder;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.Collections;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -69,6 +78,7 @@ import java.util.stream.Stream;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 public class PromotionManagerTest
@@ -487,6 +497,173 @@ public class PromotionManagerTest
         assertThat( ref.exists(), equalTo( false ) );
     }
 
+    @Test
+    public void promoteAllByPath_LinkModeRejected_TargetIndependentOfSource()
+            throws Exception
+    {
+        final HostedRepository source = new HostedRepository( "source" );
+        storeManager.storeArtifactStore( source, new ChangeSummary( ChangeSummary.SYSTEM_USER, "test setup" ),
+                                         new EventMetadata() );
+
+        final String path = "/org/foo/bar/1/bar-1.jar";
+        contentManager.store( source, path, new ByteArrayInputStream( "This is a test".getBytes() ),
+                              TransferOperation.UPLOAD, new EventMetadata() );
+
+        final HostedRepository target = new HostedRepository( "target" );
+        storeManager.storeArtifactStore( target, new ChangeSummary( ChangeSummary.SYSTEM_USER, "test setup" ),
+                                         new EventMetadata() );
+
+        // hard links aren't offered: stored files are rewritten in place, which would change the promoted copy too
+        final PromoteConfig config = new PromoteConfig();
+        config.setPathsTransferMode( "link" );
+        assertThat( config.getPathsTransferMode(), equalTo( PromoteConfig.PathsTransferMode.copy ) );
+
+        manager = new PromotionManager( validator, contentManager, downloadManager, storeManager, config,
+                                        new NoOpFileEventManager(), new SpecialPathManagerImpl() );
+
+        final PathsPromoteResult result =
+                manager.promotePaths( new PathsPromoteRequest( source.getKey(), target.getKey() ), FAKE_BASE_URL );
+
+        assertThat( result.getError(), nullValue() );
+        assertThat( result.getCompletedPaths().size(), equalTo( 1 ) );
+
+        final Transfer sourceRef = downloadManager.getStorageReference( source, path );
+        final Transfer targetRef = downloadManager.getStorageReference( target, path );
+        assertThat( Files.isSameFile( sourceRef.getDetachedFile().toPath(), targetRef.getDetachedFile().toPath() ),
+                    equalTo( false ) );
+
+        contentManager.store( source, path, new ByteArrayInputStream( "Rewritten".getBytes() ),
+                              TransferOperation.UPLOAD, new EventMetadata() );
+
+        try (InputStream in = targetRef.openInputStream())
+        {
+            assertThat( IOUtils.toString( in ), equalTo( "This is a test" ) );
+        }
+    }
+
+    @Test
+    public void promoteAllByPath_MoveMode_PurgeSource_MovesFiles()
+            throws Exception
+    {
+        final HostedRepository source = new HostedRepository( "source" );
+        storeManager.storeArtifactStore( source, new ChangeSummary( ChangeSummary.SYSTEM_USER, "test setup" ),
+                                         new EventMetadata() );
+
+        final String path = "/org/foo/bar/1/bar-1.jar";
+        contentManager.store( source, path, new ByteArrayInputStream( "This is a test".getBytes() ),
+                              TransferOperation.UPLOAD, new EventMetadata() );
+
+        final HostedRepository target = new HostedRepository( "target" );
+        storeManager.storeArtifactStore( target, new ChangeSummary( ChangeSummary.SYSTEM_USER, "test setup" ),
+                                         new EventMetadata() );
+
+        final Transfer sourceRef = downloadManager.getStorageReference( source, path );
+        final ArtifactData recorded =
+                new ArtifactData( Collections.singletonMap( ContentDigest.SHA_256, "abc123" ), sourceRef.length() );
+
+        final Map<String, ArtifactData> digests = new ConcurrentHashMap<>();
+        final ContentDigestStore digestStore = new ContentDigestStore()
+        {
+            @Override
+            public ArtifactData get( final Transfer transfer )
+            {
+                return digests.get( transfer.toString() );
+            }
+
+            @Override
+            public void put( final Transfer transfer, final ArtifactData data )
+            {
+                digests.put( transfer.toString(), data );
+            }
+
+            @Override
+            public void remove( final Transfer transfer )
+            {
+                digests.remove( transfer.toString() );
+            }
+        };
+        digestStore.put( sourceRef, recorded );
+
+        final PromoteConfig config = new PromoteConfig();
+        config.setPathsTransferMode( PromoteConfig.PathsTransferMode.move );
+        manager = new PromotionManager( validator, contentManager, downloadManager, storeManager, config,
+                                        new NoOpFileEventManager(), new SpecialPathManagerImpl(), null,
+                                        digestStore );
+
+        final PathsPromoteResult result = manager.promotePaths(
+                new PathsPromoteRequest( source.getKey(), target.getKey() ).setPurgeSource( true ), FAKE_BASE_URL );
+
+        assertThat( result.getError(), nullValue() );
+        assertThat( result.getCompletedPaths().size(), equalTo( 1 ) );
+
+        assertThat( downloadManager.getStorageReference( source, path ).exists(), equalTo( false ) );
+
+        final Transfer targetRef = downloadManager.getStorageReference( target, path );
+        try (InputStream in = targetRef.openInputStream())
+        {
+            assertThat( IOUtils.toString( in ), equalTo( "This is a test" ) );
+        }
+
+        // the digests recorded when the source was stored follow the file
+        assertThat( digestStore.get( targetRef ), sameInstance( recorded ) );
+        assertThat( digestStore.get( sourceRef ), nullValue() );
+    }
+
+    @Test
+    public void promoteAllByPath_Parallel_PromotesContentAndMetadata()
+            throws Exception
+    {
+        final HostedRepository source = new HostedRepository( "source" );
+        storeManager.storeArtifactStore( source, new ChangeSummary( ChangeSummary.SYSTEM_USER, "test setup" ),
+                                         new EventMetadata() );
+
+        final int count = 50;
+        for ( int i = 0; i < count; i++ )
+        {
+            contentManager.store( source, "/org/foo/bar/" + i + "/bar-" + i + ".jar",
+                                  new ByteArrayInputStream( ( "jar " + i ).getBytes() ), TransferOperation.UPLOAD,
+                                  new EventMetadata() );
+        }
+
+        final String metadataPath = "/org/foo/bar/maven-metadata.xml";
+        contentManager.store( source, metadataPath, new ByteArrayInputStream( "<metadata/>".getBytes() ),
+                              TransferOperation.UPLOAD, new EventMetadata() );
+
+        final HostedRepository target = new HostedRepository( "target" );
+        storeManager.storeArtifactStore( target, new ChangeSummary( ChangeSummary.SYSTEM_USER, "test setup" ),
+                                         new EventMetadata() );
+
+        final PromoteConfig config = new PromoteConfig();
+        config.setPathsParallelism( 4 );
+        final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+        final PathsPromoteResult result;
+        try
+        {
+            manager = new PromotionManager( validator, contentManager, downloadManager, storeManager, config, null,
+                                            null, executor );
+
+            result = manager.promotePaths( new PathsPromoteRequest( source.getKey(), target.getKey() ),
+                                           FAKE_BASE_URL );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertThat( result.getError(), nullValue() );
+        assertThat( result.getPendingPaths().isEmpty(), equalTo( true ) );
+        assertThat( result.getCompletedPaths().size(), equalTo( count + 1 ) );
+        assertThat( manager.getPathsPromoteProgress( target.getKey() ), nullValue() );
+
+        for ( int i = 0; i < count; i++ )
+        {
+            assertThat( downloadManager.getStorageReference( target, "/org/foo/bar/" + i + "/bar-" + i + ".jar" )
+                                       .exists(), equalTo( true ) );
+        }
+
+        assertThat( downloadManager.getStorageReference( target, metadataPath ).exists(), equalTo( true ) );
+    }
+
     @Test
     public void rollback_PushTwoArtifactsToHostedRepo_PromoteSuccessThenRollback()
             throws Exception
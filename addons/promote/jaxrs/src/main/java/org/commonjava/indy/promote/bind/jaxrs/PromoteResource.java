@@ -23,11 +23,14 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiImplicitParam;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
 import org.apache.commons.io.IOUtils;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.bind.jaxrs.IndyResources;
 import org.commonjava.indy.bind.jaxrs.SecurityManager;
 import org.commonjava.indy.core.bind.jaxrs.ContentAccessResource;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
 import org.commonjava.indy.promote.data.PromotionException;
 import org.commonjava.indy.promote.data.PromotionManager;
 import org.commonjava.indy.promote.model.GroupPromoteRequest;
@@ -41,11 +44,14 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
@@ -270,4 +276,28 @@ public class PromoteResource
         return response;
     }
 
+    @ApiOperation( "Get a checkpoint of the paths promotion currently running into the given target store. If that "
+                           + "promotion fails or is cut off, the checkpoint can be POSTed to /paths/resume." )
+    @ApiResponses( { @ApiResponse( code = 200, message = "Paths promoted so far (completed/skipped) and still pending.",
+                                   response = PathsPromoteResult.class ),
+                           @ApiResponse( code = 404, message = "No paths promotion is running into that store." ) } )
+    @Path( "/paths/progress/{type}/{name}" )
+    @GET
+    public Response getPathsProgress( final @PathParam( "type" ) String type, final @PathParam( "name" ) String name )
+    {
+        final StoreType storeType = StoreType.get( type );
+        if ( storeType == null )
+        {
+            return Response.status( Status.BAD_REQUEST ).entity( "Invalid store type: " + type ).build();
+        }
+
+        final PathsPromoteResult result = manager.getPathsPromoteProgress( new StoreKey( storeType, name ) );
+        if ( result == null )
+        {
+            return Response.status( Status.NOT_FOUND ).build();
+        }
+
+        return formatOkResponseWithJsonEntity( result, mapper );
+    }
+
 }
@@ -0,0 +1,358 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.revisions;
+
+import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.revisions.conf.RevisionsConfig;
+import org.commonjava.indy.subsys.datafile.change.DataFileEvent;
+import org.commonjava.indy.subsys.datafile.change.DataFileEventType;
+import org.commonjava.indy.subsys.git.GitManager;
+import org.commonjava.indy.subsys.git.GitSubsystemException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commits data-file changes to git on a dedicated thread, one commit per batch. A batch starts with the first queued
+ * change and closes once the configured window has elapsed or it holds the maximum number of changes; the commit
+ * message lists the summary of every change in it. The queue is bounded, so callers block (instead of piling up
+ * changes in memory) when the committer falls behind. A batch whose commit fails is retried with backoff; if it still
+ * can't be committed, its files stay modified in the working tree and go into the catch-up commit at next startup.
+ */
+final class RevisionsCommitBatcher
+{
+
+    private static final Change FLUSH = new Change( null, null, null );
+
+    private static final int MAX_COMMIT_ATTEMPTS = 5;
+
+    private static final long RETRY_BASE_DELAY_MILLIS = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final GitManager git;
+
+    private final RevisionsConfig config;
+
+    private final BlockingQueue<Change> queue;
+
+    private final Future<?> worker;
+
+    private final CountDownLatch done = new CountDownLatch( 1 );
+
+    private volatile boolean stopped;
+
+    private long submitted;
+
+    private long committed;
+
+    RevisionsCommitBatcher( final GitManager git, final RevisionsConfig config, final ExecutorService executor )
+    {
+        this.git = git;
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>( Math.max( 1, config.getCommitQueueSize() ) );
+        this.worker = executor.submit( this::run );
+    }
+
+    /**
+     * Queue a change for the next batch, blocking while the queue is full. Once the batcher has been stopped, the
+     * change is committed directly on the calling thread.
+     */
+    void submit( final DataFileEvent event )
+    {
+        final Change change = new Change( event.getFile(), event.getType(), event.getSummary() );
+        if ( stopped )
+        {
+            commit( Collections.singletonList( change ) );
+            return;
+        }
+
+        synchronized ( this )
+        {
+            submitted++;
+        }
+
+        try
+        {
+            queue.put( change );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            logger.warn( "Interrupted while queueing data-file change; committing it directly: {}", event );
+            synchronized ( this )
+            {
+                submitted--;
+            }
+            commit( Collections.singletonList( change ) );
+        }
+    }
+
+    /**
+     * Close the current batch and wait until every change submitted before this call has been committed.
+     */
+    void flush()
+            throws InterruptedException
+    {
+        final long target;
+        synchronized ( this )
+        {
+            target = submitted;
+            if ( committed >= target )
+            {
+                return;
+            }
+        }
+
+        queue.put( FLUSH );
+
+        synchronized ( this )
+        {
+            while ( committed < target && done.getCount() > 0 )
+            {
+                wait( 1000 );
+            }
+        }
+    }
+
+    /**
+     * Commit everything still queued, then stop the committer task. The executor is managed elsewhere and stays up.
+     * Changes submitted afterward are committed synchronously.
+     */
+    void stop()
+            throws InterruptedException
+    {
+        if ( stopped )
+        {
+            return;
+        }
+
+        flush();
+
+        stopped = true;
+        worker.cancel( true );
+        done.await( 30, TimeUnit.SECONDS );
+
+        // anything that slipped in between the flush and the shutdown
+        final List<Change> remaining = new ArrayList<>();
+        queue.drainTo( remaining );
+        remaining.remove( FLUSH );
+        if ( !remaining.isEmpty() )
+        {
+            commit( remaining );
+        }
+    }
+
+    private void run()
+    {
+        final List<Change> batch = new ArrayList<>();
+        try
+        {
+            while ( !stopped )
+            {
+                try
+                {
+                    final Change first = queue.take();
+                    if ( first != FLUSH )
+                    {
+                        batch.add( first );
+                        fillBatch( batch );
+                    }
+                }
+                catch ( final InterruptedException e )
+                {
+                    if ( batch.isEmpty() )
+                    {
+                        return;
+                    }
+                }
+
+                if ( !batch.isEmpty() )
+                {
+                    commitWithRetry( batch );
+                    synchronized ( this )
+                    {
+                        committed += batch.size();
+                        notifyAll();
+                    }
+                    batch.clear();
+                }
+            }
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                done.countDown();
+                notifyAll();
+            }
+        }
+    }
+
+    private void commitWithRetry( final List<Change> batch )
+    {
+        for ( int attempt = 1; !commit( batch ); attempt++ )
+        {
+            if ( attempt >= MAX_COMMIT_ATTEMPTS || stopped )
+            {
+                logger.error( "Giving up on batch of {} data-file changes after {} attempts. The files stay modified in "
+                                      + "the working tree and will be committed at next startup.", batch.size(),
+                              attempt );
+                return;
+            }
+
+            final long delay = RETRY_BASE_DELAY_MILLIS << ( attempt - 1 );
+            logger.warn( "Retrying commit of {} data-file changes in {}ms (attempt {} of {}).", batch.size(), delay,
+                         attempt + 1, MAX_COMMIT_ATTEMPTS );
+            try
+            {
+                Thread.sleep( delay );
+            }
+            catch ( final InterruptedException e )
+            {
+                // stopping: one last try, then let the run loop see the interrupt
+                commit( batch );
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void fillBatch( final List<Change> batch )
+            throws InterruptedException
+    {
+        final int maxChanges = Math.max( 1, config.getCommitBatchMaxChanges() );
+        final long deadline = System.currentTimeMillis() + config.getCommitBatchWindowMillis();
+        while ( batch.size() < maxChanges )
+        {
+            final long remaining = deadline - System.currentTimeMillis();
+            final Change next = remaining > 0 ? queue.poll( remaining, TimeUnit.MILLISECONDS ) : queue.poll();
+            if ( next == null || next == FLUSH )
+            {
+                return;
+            }
+
+            batch.add( next );
+        }
+    }
+
+    /**
+     * Commit (and, if enabled, push) the batch. Returns false only if the commit itself failed; a failed push is left
+     * for the next batch's push to carry.
+     */
+    private boolean commit( final List<Change> batch )
+    {
+        // the working tree only holds the latest state of each file, so the last change to a file decides whether it
+        // is added or removed
+        final Map<File, DataFileEventType> files = new LinkedHashMap<>();
+        final Set<String> users = new LinkedHashSet<>();
+        for ( final Change change : batch )
+        {
+            files.remove( change.file );
+            files.put( change.file, change.type );
+            users.add( change.summary.getUser() );
+        }
+
+        final List<File> added = new ArrayList<>();
+        final List<File> deleted = new ArrayList<>();
+        files.forEach( ( file, type ) -> ( type == DataFileEventType.deleted ? deleted : added ).add( file ) );
+
+        final String user = users.size() == 1 ? users.iterator().next() : ChangeSummary.SYSTEM_USER;
+        final ChangeSummary summary = new ChangeSummary( user, buildChangelog( batch ) );
+
+        try
+        {
+            git.commitChanges( summary, added, deleted );
+        }
+        catch ( final GitSubsystemException e )
+        {
+            logger.error( String.format( "Failed to commit batch of %d data-file changes. Reason: %s", batch.size(),
+                                         e.getMessage() ), e );
+            return false;
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.error( "Unexpected error committing batch of data-file changes: " + e.getMessage(), e );
+            return false;
+        }
+
+        if ( config.isPushEnabled() )
+        {
+            try
+            {
+                git.pushUpdates();
+            }
+            catch ( final GitSubsystemException | RuntimeException e )
+            {
+                logger.error( "Failed to push data-file changes; they will go out with the next push. Reason: "
+                                      + e.getMessage(), e );
+            }
+        }
+
+        return true;
+    }
+
+    private String buildChangelog( final List<Change> batch )
+    {
+        if ( batch.size() == 1 )
+        {
+            return batch.get( 0 ).summary.getSummary();
+        }
+
+        final StringBuilder sb = new StringBuilder().append( "Batched " )
+                                                    .append( batch.size() )
+                                                    .append( " data-file changes:\n" );
+        for ( final Change change : batch )
+        {
+            sb.append( "\n* " )
+              .append( change.summary.getUser() )
+              .append( ": " )
+              .append( change.summary.getSummary() );
+        }
+
+        return sb.toString();
+    }
+
+    private static final class Change
+    {
+        private final File file;
+
+        private final DataFileEventType type;
+
+        private final ChangeSummary summary;
+
+        Change( final File file, final DataFileEventType type, final ChangeSummary summary )
+        {
+            this.file = file;
+            this.type = type;
+            this.summary = summary;
+        }
+    }
+}
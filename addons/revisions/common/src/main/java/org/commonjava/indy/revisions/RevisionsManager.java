@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
@@ -30,6 +31,10 @@ import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
 import org.apache.commons.io.FileUtils;
+import org.commonjava.cdi.util.weft.ExecutorConfig;
+import org.commonjava.cdi.util.weft.WeftManaged;
+import org.commonjava.indy.action.IndyLifecycleException;
+import org.commonjava.indy.action.ShutdownAction;
 import org.commonjava.indy.audit.ChangeSummary;
 import org.commonjava.indy.change.event.IndyLifecycleEvent;
 import org.commonjava.indy.flat.data.DataFileStoreDataManager;
@@ -47,6 +52,7 @@ import org.slf4j.LoggerFactory;
 
 @ApplicationScoped
 public class RevisionsManager
+    implements ShutdownAction
 {
 
     private static final String[] DATA_DIR_GITIGNORES = { "depgraph", "scheduler" };
@@ -57,6 +63,8 @@ public class RevisionsManager
 
     private GitManager dataFileGit;
 
+    private RevisionsCommitBatcher commitBatcher;
+
     private boolean started;
 
     @Inject
@@ -68,6 +76,11 @@ public class RevisionsManager
     @Inject
     private DataFileStoreDataManager storeManager;
 
+    @Inject
+    @WeftManaged
+    @ExecutorConfig( named = "revisions-committer", threads = 1, priority = 4, daemon = true )
+    private ExecutorService commitExecutor;
+
     protected RevisionsManager()
     {
     }
@@ -75,10 +88,18 @@ public class RevisionsManager
     public RevisionsManager( final RevisionsConfig revisionsConfig, final DataFileManager dataFileManager,
                              final DataFileStoreDataManager storeManager )
         throws GitSubsystemException, IOException
+    {
+        this( revisionsConfig, dataFileManager, storeManager, null );
+    }
+
+    public RevisionsManager( final RevisionsConfig revisionsConfig, final DataFileManager dataFileManager,
+                             final DataFileStoreDataManager storeManager, final ExecutorService commitExecutor )
+        throws GitSubsystemException, IOException
     {
         this.revisionsConfig = revisionsConfig;
         this.dataFileManager = dataFileManager;
         this.storeManager = storeManager;
+        this.commitExecutor = commitExecutor;
         setup();
     }
 
@@ -87,6 +108,12 @@ public class RevisionsManager
     {
         try
         {
+            if ( commitBatcher != null )
+            {
+                commitBatcher.stop();
+                commitBatcher = null;
+            }
+
             final File dataDir = dataFileManager.getDetachedDataBasedir();
             final File gitignore = new File( dataDir, ".gitignore" );
 
@@ -98,6 +125,23 @@ public class RevisionsManager
                                                                                     .setUserEmail( revisionsConfig.getUserEmail() );
 
             dataFileGit = new GitManager( dataConf );
+
+            if ( revisionsConfig.isCommitBatchEnabled() )
+            {
+                if ( commitExecutor == null )
+                {
+                    logger.warn( "No commit executor available; data-file changes will be committed one at a time." );
+                }
+                else
+                {
+                    commitBatcher = new RevisionsCommitBatcher( dataFileGit, revisionsConfig, commitExecutor );
+                }
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while restarting revisions manager", e );
         }
         catch ( GitSubsystemException | IOException e )
         {
@@ -159,6 +203,12 @@ public class RevisionsManager
                 return;
             }
 
+            if ( commitBatcher != null )
+            {
+                commitBatcher.submit( event );
+                return;
+            }
+
             if ( event.getType() == DataFileEventType.deleted )
             {
                 dataFileGit.deleteAndCommit( event.getSummary(), event.getFile() );
@@ -187,6 +237,7 @@ public class RevisionsManager
             return;
         }
 
+        flushCommits();
         dataFileGit.pullUpdates( revisionsConfig.getConflictStrategy() );
 
         // FIXME: fire events to signal data owners to reload...
@@ -201,6 +252,7 @@ public class RevisionsManager
             return;
         }
 
+        flushCommits();
         dataFileGit.pushUpdates();
         // FIXME: Return some sort of status
     }
@@ -213,6 +265,8 @@ public class RevisionsManager
             return Collections.emptyList();
         }
 
+        flushCommits();
+
         final DataFile dataFile = storeManager.getDataFile( key );
         return dataFileGit.getChangelog( dataFile.getDetachedFile(), start, count );
     }
@@ -225,6 +279,8 @@ public class RevisionsManager
             return Collections.emptyList();
         }
 
+        flushCommits();
+
         final File basedir = dataFileManager.getDetachedDataBasedir();
         if ( new File( path ).isAbsolute() )
         {
@@ -260,7 +316,66 @@ public class RevisionsManager
             return Collections.emptyList();
         }
 
+        flushCommits();
+
         return dataFileGit.getChangelog( f, start, count );
     }
 
+    /**
+     * Wait until every data-file change queued so far has been committed. This is a no-op unless commit batching is
+     * enabled.
+     */
+    public void flushCommits()
+        throws GitSubsystemException
+    {
+        if ( commitBatcher == null )
+        {
+            return;
+        }
+
+        try
+        {
+            commitBatcher.flush();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new GitSubsystemException( "Interrupted while waiting for pending commits", e );
+        }
+    }
+
+    @Override
+    public String getId()
+    {
+        return "Revisions commit flush";
+    }
+
+    @Override
+    public void stop()
+        throws IndyLifecycleException
+    {
+        if ( commitBatcher == null )
+        {
+            return;
+        }
+
+        logger.info( "Committing pending data-file changes before shutdown." );
+        try
+        {
+            commitBatcher.stop();
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IndyLifecycleException( "Interrupted while committing pending data-file changes", e );
+        }
+    }
+
+    @Override
+    public int getShutdownPriority()
+    {
+        // run before the data and storage subsystems go away
+        return 90;
+    }
+
 }
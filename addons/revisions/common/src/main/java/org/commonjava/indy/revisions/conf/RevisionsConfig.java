@@ -42,6 +42,14 @@ public class RevisionsConfig
 
     private String userEmail;
 
+    private boolean commitBatchEnabled = false;
+
+    private long commitBatchWindowMillis = 1000;
+
+    private int commitBatchMaxChanges = 500;
+
+    private int commitQueueSize = 10000;
+
     public boolean isEnabled()
     {
         return enabled;
@@ -129,6 +137,50 @@ public class RevisionsConfig
         this.userEmail = userEmail;
     }
 
+    public boolean isCommitBatchEnabled()
+    {
+        return commitBatchEnabled;
+    }
+
+    @ConfigName( "commit.batch.enabled" )
+    public void setCommitBatchEnabled( final boolean commitBatchEnabled )
+    {
+        this.commitBatchEnabled = commitBatchEnabled;
+    }
+
+    public long getCommitBatchWindowMillis()
+    {
+        return commitBatchWindowMillis;
+    }
+
+    @ConfigName( "commit.batch.window.millis" )
+    public void setCommitBatchWindowMillis( final long commitBatchWindowMillis )
+    {
+        this.commitBatchWindowMillis = commitBatchWindowMillis;
+    }
+
+    public int getCommitBatchMaxChanges()
+    {
+        return commitBatchMaxChanges;
+    }
+
+    @ConfigName( "commit.batch.max.changes" )
+    public void setCommitBatchMaxChanges( final int commitBatchMaxChanges )
+    {
+        this.commitBatchMaxChanges = commitBatchMaxChanges;
+    }
+
+    public int getCommitQueueSize()
+    {
+        return commitQueueSize;
+    }
+
+    @ConfigName( "commit.queue.size" )
+    public void setCommitQueueSize( final int commitQueueSize )
+    {
+        this.commitQueueSize = commitQueueSize;
+    }
+
     @Override
     public String getDefaultConfigFileName()
     {
@@ -194,6 +194,57 @@ public class RevisionsManagerTest
                            .startsWith( testSummary ), equalTo( true ) );
     }
 
+    @Test
+    public void batchedCommits_ThreeChangesToTwoFiles_OneCommitInEachChangelog()
+        throws Exception
+    {
+        config.setCommitBatchEnabled( true );
+        config.setCommitBatchWindowMillis( 60000 );
+        revManager.setup();
+        lcEvents.fireStarted();
+
+        final DataFile f1 = dfManager.getDataFile( "test/foo.txt" );
+        f1.writeString( "this is a test", "UTF-8", new ChangeSummary( "test-user", "test for first file." ) );
+
+        final DataFile f2 = dfManager.getDataFile( "test/bar.txt" );
+        f2.writeString( "this is a test", "UTF-8", new ChangeSummary( "test-user", "test for second file." ) );
+        f2.writeString( "this is another test", "UTF-8", new ChangeSummary( "test-user", "test (2) for second file." ) );
+
+        listener.waitForEvents( 3 );
+
+        // reading the changelog closes the pending batch and waits for it
+        final List<ChangeSummary> f1Log = revManager.getDataChangeLog( f1.getPath(), 0, -1 );
+        final List<ChangeSummary> f2Log = revManager.getDataChangeLog( f2.getPath(), 0, -1 );
+        assertThat( f1Log.size(), equalTo( 1 ) );
+        assertThat( f2Log.size(), equalTo( 1 ) );
+        assertThat( f1Log.get( 0 ).getRevisionId(), equalTo( f2Log.get( 0 ).getRevisionId() ) );
+
+        final String summary = f2Log.get( 0 ).getSummary();
+        assertThat( summary.contains( "test for first file." ), equalTo( true ) );
+        assertThat( summary.contains( "test for second file." ), equalTo( true ) );
+        assertThat( summary.contains( "test (2) for second file." ), equalTo( true ) );
+    }
+
+    @Test
+    public void batchedCommits_PendingChangesCommittedOnShutdown()
+        throws Exception
+    {
+        config.setCommitBatchEnabled( true );
+        config.setCommitBatchWindowMillis( 60000 );
+        revManager.setup();
+        lcEvents.fireStarted();
+
+        final DataFile f1 = dfManager.getDataFile( "test/foo.txt" );
+        f1.writeString( "this is a test", "UTF-8", new ChangeSummary( "test-user", "test for first file." ) );
+        listener.waitForEvents( 1 );
+
+        revManager.stop();
+
+        final List<ChangeSummary> changeLog = revManager.getDataChangeLog( f1.getPath(), 0, -1 );
+        assertThat( changeLog.size(), equalTo( 1 ) );
+        assertThat( changeLog.get( 0 ).getSummary().startsWith( "test for first file." ), equalTo( true ) );
+    }
+
     @ApplicationScoped
     static class DataFileTestEventListener
     {
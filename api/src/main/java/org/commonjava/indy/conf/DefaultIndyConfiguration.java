@@ -35,14 +35,38 @@ public class DefaultIndyConfiguration
 
     public static final int DEFAULT_NOT_FOUND_CACHE_TIMEOUT_SECONDS = 300;
 
+    public static final int DEFAULT_NOT_FOUND_CACHE_MAX_ENTRIES = 1000000;
+
+    public static final int DEFAULT_NOT_FOUND_CACHE_MAX_MEMORY_MB = 256;
+
+    public static final String DEFAULT_NOT_FOUND_CACHE_EVICTION_POLICY = "lru";
+
+    public static final int DEFAULT_INCREMENTAL_GROUP_METADATA_MAX_MEMORY_MB = 64;
+
     public static final int DEFAULT_REQUEST_TIMEOUT_SECONDS = 5;
 
+    public static final int DEFAULT_REMOTE_RETRIEVAL_COALESCE_WAIT_SECONDS = 600;
+
     public static final int DEFAULT_STORE_DISABLE_TIMEOUT_SECONDS = 1800; // 30 minutes
 
     private Integer passthroughTimeoutSeconds;
 
     private Integer notFoundCacheTimeoutSeconds;
 
+    private Integer notFoundCacheMaxEntries;
+
+    private Integer notFoundCacheMaxMemoryMb;
+
+    private String notFoundCacheEvictionPolicy;
+
+    private Boolean incrementalGroupMetadata;
+
+    private Integer incrementalGroupMetadataMaxMemoryMb;
+
+    private Boolean remoteRetrievalCoalescing;
+
+    private Integer remoteRetrievalCoalesceWaitSeconds;
+
     private Integer requestTimeoutSeconds;
 
     private Integer storeDisableTimeoutSeconds;
@@ -75,6 +99,96 @@ public class DefaultIndyConfiguration
         return notFoundCacheTimeoutSeconds == null ? DEFAULT_NOT_FOUND_CACHE_TIMEOUT_SECONDS : notFoundCacheTimeoutSeconds;
     }
 
+    @ConfigName( "nfc.max.entries" )
+    public void setNotFoundCacheMaxEntries( final Integer maxEntries )
+    {
+        notFoundCacheMaxEntries = maxEntries;
+    }
+
+    @Override
+    public int getNotFoundCacheMaxEntries()
+    {
+        return notFoundCacheMaxEntries == null ? DEFAULT_NOT_FOUND_CACHE_MAX_ENTRIES : notFoundCacheMaxEntries;
+    }
+
+    @ConfigName( "nfc.max.memory.mb" )
+    public void setNotFoundCacheMaxMemoryMb( final Integer maxMemoryMb )
+    {
+        notFoundCacheMaxMemoryMb = maxMemoryMb;
+    }
+
+    @Override
+    public int getNotFoundCacheMaxMemoryMb()
+    {
+        return notFoundCacheMaxMemoryMb == null ? DEFAULT_NOT_FOUND_CACHE_MAX_MEMORY_MB : notFoundCacheMaxMemoryMb;
+    }
+
+    @ConfigName( "nfc.eviction.policy" )
+    public void setNotFoundCacheEvictionPolicy( final String evictionPolicy )
+    {
+        notFoundCacheEvictionPolicy = evictionPolicy;
+    }
+
+    @Override
+    public String getNotFoundCacheEvictionPolicy()
+    {
+        return isEmpty( notFoundCacheEvictionPolicy ) ?
+                DEFAULT_NOT_FOUND_CACHE_EVICTION_POLICY :
+                notFoundCacheEvictionPolicy;
+    }
+
+    @ConfigName( "group.metadata.incremental" )
+    public void setIncrementalGroupMetadata( final Boolean incremental )
+    {
+        incrementalGroupMetadata = incremental;
+    }
+
+    @Override
+    public boolean isIncrementalGroupMetadata()
+    {
+        return incrementalGroupMetadata == null ? false : incrementalGroupMetadata;
+    }
+
+    @ConfigName( "group.metadata.incremental.max.memory.mb" )
+    public void setIncrementalGroupMetadataMaxMemoryMb( final Integer maxMemoryMb )
+    {
+        incrementalGroupMetadataMaxMemoryMb = maxMemoryMb;
+    }
+
+    @Override
+    public int getIncrementalGroupMetadataMaxMemoryMb()
+    {
+        return incrementalGroupMetadataMaxMemoryMb == null ?
+                DEFAULT_INCREMENTAL_GROUP_METADATA_MAX_MEMORY_MB :
+                incrementalGroupMetadataMaxMemoryMb;
+    }
+
+    @ConfigName( "remote.retrieval.coalesce" )
+    public void setRemoteRetrievalCoalescing( final Boolean coalesce )
+    {
+        remoteRetrievalCoalescing = coalesce;
+    }
+
+    @Override
+    public boolean isRemoteRetrievalCoalescing()
+    {
+        return remoteRetrievalCoalescing == null ? true : remoteRetrievalCoalescing;
+    }
+
+    @ConfigName( "remote.retrieval.coalesce.wait" )
+    public void setRemoteRetrievalCoalesceWaitSeconds( final Integer seconds )
+    {
+        remoteRetrievalCoalesceWaitSeconds = seconds;
+    }
+
+    @Override
+    public int getRemoteRetrievalCoalesceWaitSeconds()
+    {
+        return remoteRetrievalCoalesceWaitSeconds == null || remoteRetrievalCoalesceWaitSeconds < 1 ?
+                DEFAULT_REMOTE_RETRIEVAL_COALESCE_WAIT_SECONDS :
+                remoteRetrievalCoalesceWaitSeconds;
+    }
+
     @Override
     public int getRequestTimeoutSeconds()
     {
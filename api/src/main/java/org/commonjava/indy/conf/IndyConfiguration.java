@@ -40,6 +40,49 @@ public interface IndyConfiguration
      */
     int getNotFoundCacheTimeoutSeconds();
 
+    /**
+     * Maximum number of entries held in the not-found cache before the least valuable entries (according to
+     * {@link #getNotFoundCacheEvictionPolicy()}) are evicted. Values less than 1 mean unbounded.
+     */
+    int getNotFoundCacheMaxEntries();
+
+    /**
+     * Approximate maximum heap consumed by not-found cache entries, in megabytes. Values less than 1 mean unbounded.
+     */
+    int getNotFoundCacheMaxMemoryMb();
+
+    /**
+     * Eviction policy for the not-found cache once one of its limits is reached: 'lru' (least-recently used) or 'lfu'
+     * (least-frequently used).
+     */
+    String getNotFoundCacheEvictionPolicy();
+
+    /**
+     * If true, merged group metadata (maven-metadata.xml) is kept in memory as a per-member version set, and member
+     * changes are applied to it as deltas and re-serialized instead of deleting the merged file for regeneration.
+     */
+    boolean isIncrementalGroupMetadata();
+
+    /**
+     * Approximate memory (in MB) that group/path merged metadata sets may occupy when
+     * {@link #isIncrementalGroupMetadata()} is enabled. Beyond this, the least-used sets are evicted, and their
+     * group/paths fall back to delete-and-regenerate until they are merged again.
+     */
+    int getIncrementalGroupMetadataMaxMemoryMb();
+
+    /**
+     * If true, concurrent requests for the same path in the same remote repository share a single upstream download:
+     * the first request fetches the content, and the rest wait for it and then serve the cached copy.
+     */
+    boolean isRemoteRetrievalCoalescing();
+
+    /**
+     * How long (in seconds) a request waits for an in-flight download of the same path before retrieving on its own.
+     * This bounds the whole download, so unlike {@link #getRequestTimeoutSeconds()} (a socket timeout) it has to cover
+     * the slowest large file a remote is expected to serve.
+     */
+    int getRemoteRetrievalCoalesceWaitSeconds();
+
     int getRequestTimeoutSeconds();
 
     int getStoreDisableTimeoutSeconds();
@@ -15,6 +15,7 @@
  */
 package org.commonjava.indy.content;
 
+import java.io.Serializable;
 import java.util.Map;
 
 /**
@@ -22,7 +23,11 @@ import java.util.Map;
  * Date: 8/19/16
  * Time: 1:15 PM
  */
-public class ArtifactData {
+public class ArtifactData
+        implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
     private final Map<ContentDigest, String> digests;
     private final Long size;
 
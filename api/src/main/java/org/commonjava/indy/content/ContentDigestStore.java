@@ -0,0 +1,38 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content;
+
+import org.commonjava.maven.galley.model.Transfer;
+
+/**
+ * Sidecar store for the size and digests of stored content, keyed by store and path. Entries are recorded as content
+ * streams into storage, so {@link ContentManager#digest(org.commonjava.indy.model.core.StoreKey, String, ContentDigest...)}
+ * doesn't need to read the file again.
+ */
+public interface ContentDigestStore
+{
+
+    /**
+     * @return the size and digests recorded when the transfer was last written, or null if nothing was recorded or
+     * the recorded data no longer matches the file on disk.
+     */
+    ArtifactData get( Transfer transfer );
+
+    void put( Transfer transfer, ArtifactData data );
+
+    void remove( Transfer transfer );
+
+}
@@ -15,6 +15,10 @@
  */
 package org.commonjava.indy.data;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -25,7 +29,9 @@ import org.commonjava.indy.model.core.HostedRepository;
 import org.commonjava.indy.model.core.RemoteRepository;
 import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.indy.model.core.StoreType;
+import org.commonjava.indy.util.UrlNormalizer;
 import org.commonjava.maven.galley.event.EventMetadata;
+import org.slf4j.LoggerFactory;
 
 /**
  * Data manager used to access and manipulate the configurations for {@link ArtifactStore} instances.
@@ -129,6 +135,34 @@ public interface StoreDataManager
     Set<Group> getGroupsContaining( final StoreKey repo )
         throws IndyDataException;
 
+    /**
+     * Return the set of {@link Group}'s that contain the {@link ArtifactStore} corresponding to the given {@link StoreKey}
+     * anywhere in their flattened membership, either directly or through nested groups. Nearest groups come first.
+     */
+    default Set<Group> getGroupsAffectedBy( final StoreKey key )
+        throws IndyDataException
+    {
+        final Set<Group> result = new LinkedHashSet<>();
+        final Deque<StoreKey> queue = new ArrayDeque<>();
+        queue.add( key );
+        while ( !queue.isEmpty() )
+        {
+            final Set<Group> groups = getGroupsContaining( queue.poll() );
+            if ( groups != null )
+            {
+                for ( final Group group : groups )
+                {
+                    if ( !group.getKey().equals( key ) && result.add( group ) )
+                    {
+                        queue.add( group.getKey() );
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Store a modified or new {@link ArtifactStore} instance. This is equivalent to
      * {@link StoreDataManager#storeArtifactStore(ArtifactStore, boolean)} with skip flag <code>false</code>
@@ -231,10 +265,109 @@ public interface StoreDataManager
     boolean hasArtifactStore( StoreKey key );
 
     /**
-     * Find a remote repository with a URL that matches the given one, and return it...or null.
+     * Return the read-only {@link StoreView} of the store with the given type and name, or null if there is none. The
+     * default implementation takes a fresh view of the store definition; implementations that keep views of their
+     * stores return those instead.
+     */
+    default StoreView getStoreView( final StoreType type, final String name )
+    {
+        try
+        {
+            final ArtifactStore store = getArtifactStore( new StoreKey( type, name ) );
+            return store == null ? null : StoreView.of( store );
+        }
+        catch ( final IndyDataException e )
+        {
+            LoggerFactory.getLogger( getClass() ).warn( "Failed to look up store: {}:{}. Reason: {}", type, name,
+                                                        e.getMessage() );
+            return null;
+        }
+    }
+
+    /**
+     * Return the key instance of the defined store with the given type and name, so callers resolving keys from
+     * request paths or stored strings share it instead of keeping their own copies. If no such store is defined, a new
+     * key is returned.
+     */
+    default StoreKey canonicalKey( final StoreType type, final String name )
+    {
+        final StoreView view = getStoreView( type, name );
+        return view == null ? new StoreKey( type, name ) : view.getKey();
+    }
+
+    /**
+     * Parse a key string (format: '[remote|hosted|group]:name', or just a remote's name), as
+     * {@link StoreKey#fromString(String)} does, and return the key instance of the store it names (see
+     * {@link #canonicalKey(StoreType, String)}). Returns null if the store type is unknown.
+     */
+    default StoreKey canonicalKey( final String keyString )
+    {
+        final int idx = keyString.indexOf( ':' );
+        if ( idx < 1 )
+        {
+            return canonicalKey( StoreType.remote, keyString );
+        }
+
+        final StoreType type = StoreType.get( keyString.substring( 0, idx ) );
+        return type == null ? null : canonicalKey( type, keyString.substring( idx + 1 ) );
+    }
+
+    /**
+     * Find a remote repository with a URL that matches the given one, and return it...or null. URLs are compared in
+     * their {@link UrlNormalizer#normalize(String)} form, so scheme/host case, default ports and trailing slashes
+     * don't matter.
      */
     RemoteRepository findRemoteRepository( String url );
 
+    /**
+     * Return the {@link RemoteRepository} instances whose URL points at the given host (case-insensitive, any port).
+     */
+    default List<RemoteRepository> findRemoteRepositoriesByHost( final String host )
+        throws IndyDataException
+    {
+        final List<RemoteRepository> result = new ArrayList<>();
+        if ( host == null )
+        {
+            return result;
+        }
+
+        for ( final RemoteRepository repo : getAllRemoteRepositories() )
+        {
+            if ( host.equalsIgnoreCase( UrlNormalizer.host( repo.getUrl() ) ) )
+            {
+                result.add( repo );
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Return the {@link RemoteRepository} instances whose URL is the given one or lies beneath it, on a path-segment
+     * boundary (after normalization; see {@link UrlNormalizer#isUnder(String, String)}).
+     */
+    default List<RemoteRepository> findRemoteRepositoriesByUrlPrefix( final String urlPrefix )
+        throws IndyDataException
+    {
+        final List<RemoteRepository> result = new ArrayList<>();
+        final String prefix = UrlNormalizer.normalize( urlPrefix );
+        if ( prefix == null )
+        {
+            return result;
+        }
+
+        for ( final RemoteRepository repo : getAllRemoteRepositories() )
+        {
+            final String url = UrlNormalizer.normalize( repo.getUrl() );
+            if ( url != null && UrlNormalizer.isUnder( url, prefix ) )
+            {
+                result.add( repo );
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Return true once any post-construction code runs.
      */
@@ -0,0 +1,113 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.data;
+
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the parts of an {@link ArtifactStore} that request handling looks at: its key, whether it's
+ * disabled, a remote's URL and a group's members. Unlike the store definition, it carries no metadata map, and it can
+ * be handed out without copying since nothing can change it. A new view is taken each time the store is stored.
+ */
+public final class StoreView
+{
+    private final StoreKey key;
+
+    private final boolean disabled;
+
+    private final String url;
+
+    private final List<StoreKey> members;
+
+    private StoreView( final StoreKey key, final boolean disabled, final String url, final List<StoreKey> members )
+    {
+        this.key = key;
+        this.disabled = disabled;
+        this.url = url;
+        this.members = members;
+    }
+
+    /**
+     * Take a view of the store as it is now, sharing its key and (for a group) its member key instances.
+     */
+    public static StoreView of( final ArtifactStore store )
+    {
+        final String url = store instanceof RemoteRepository ? ( (RemoteRepository) store ).getUrl() : null;
+
+        List<StoreKey> members = Collections.emptyList();
+        if ( store instanceof Group )
+        {
+            final List<StoreKey> constituents = ( (Group) store ).getConstituents();
+            if ( constituents != null && !constituents.isEmpty() )
+            {
+                members = Collections.unmodifiableList(
+                        Arrays.asList( constituents.toArray( new StoreKey[constituents.size()] ) ) );
+            }
+        }
+
+        return new StoreView( store.getKey(), store.isDisabled(), url, members );
+    }
+
+    public StoreKey getKey()
+    {
+        return key;
+    }
+
+    public StoreType getType()
+    {
+        return key.getType();
+    }
+
+    public String getName()
+    {
+        return key.getName();
+    }
+
+    public boolean isDisabled()
+    {
+        return disabled;
+    }
+
+    /**
+     * The remote URL, or null if this isn't a remote repository.
+     */
+    public String getUrl()
+    {
+        return url;
+    }
+
+    /**
+     * The group's members in order (unmodifiable), or an empty list if this isn't a group.
+     */
+    public List<StoreKey> getConstituents()
+    {
+        return members;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "StoreView{" + key + ( disabled ? ", disabled" : "" ) + "}";
+    }
+}
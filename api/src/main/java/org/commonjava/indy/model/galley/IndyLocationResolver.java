@@ -53,7 +53,7 @@ public class IndyLocationResolver
         ArtifactStore store;
         try
         {
-            final StoreKey source = StoreKey.fromString( spec );
+            final StoreKey source = dataManager.canonicalKey( spec );
             if ( source == null )
             {
                 throw new TransferException(
@@ -29,7 +29,14 @@ public enum ApplicationHeader
     authorization( "Authorization" ),
     proxy_authenticate( "Proxy-Authenticate" ),
     proxy_authorization( "Proxy-Authorization" ),
-    cache_control( "Cache-Control" );
+    cache_control( "Cache-Control" ),
+    etag( "ETag" ),
+    if_none_match( "If-None-Match" ),
+    if_modified_since( "If-Modified-Since" ),
+    if_range( "If-Range" ),
+    range( "Range" ),
+    accept_ranges( "Accept-Ranges" ),
+    content_range( "Content-Range" );
 
     private final String key;
 
@@ -0,0 +1,198 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.util;
+
+import java.util.Locale;
+
+/**
+ * Canonical form of repository URLs, so lookups match a URL however it was spelled: the scheme and host are
+ * lower-cased, the default port for the scheme (or an explicit <code>-1</code>) is dropped, and trailing slashes are
+ * removed from the path. Credentials, path case and any query string are left as they are.
+ */
+public final class UrlNormalizer
+{
+    private UrlNormalizer()
+    {
+    }
+
+    /**
+     * Return the canonical form of the given URL, or null for null. Strings that don't look like URLs only have their
+     * trailing slashes removed.
+     */
+    public static String normalize( final String url )
+    {
+        if ( url == null )
+        {
+            return null;
+        }
+
+        final String trimmed = url.trim();
+        final int schemeEnd = trimmed.indexOf( "://" );
+        if ( schemeEnd < 1 )
+        {
+            return stripTrailingSlashes( trimmed );
+        }
+
+        final String scheme = trimmed.substring( 0, schemeEnd ).toLowerCase( Locale.ROOT );
+        final String rest = trimmed.substring( schemeEnd + 3 );
+
+        int pathStart = rest.length();
+        for ( int i = 0; i < rest.length(); i++ )
+        {
+            final char c = rest.charAt( i );
+            if ( c == '/' || c == '?' || c == '#' )
+            {
+                pathStart = i;
+                break;
+            }
+        }
+
+        String authority = rest.substring( 0, pathStart );
+        String path = rest.substring( pathStart );
+
+        final int fragment = path.indexOf( '#' );
+        if ( fragment > -1 )
+        {
+            path = path.substring( 0, fragment );
+        }
+
+        String userInfo = "";
+        final int at = authority.lastIndexOf( '@' );
+        if ( at > -1 )
+        {
+            userInfo = authority.substring( 0, at + 1 );
+            authority = authority.substring( at + 1 );
+        }
+
+        String host = authority;
+        String port = "";
+        final int colon = authority.lastIndexOf( ':' );
+        if ( colon > authority.lastIndexOf( ']' ) )
+        {
+            host = authority.substring( 0, colon );
+            port = authority.substring( colon + 1 );
+        }
+
+        final StringBuilder sb = new StringBuilder( trimmed.length() );
+        sb.append( scheme ).append( "://" ).append( userInfo ).append( host.toLowerCase( Locale.ROOT ) );
+        if ( !port.isEmpty() && !"-1".equals( port ) && !port.equals( defaultPort( scheme ) ) )
+        {
+            sb.append( ':' ).append( port );
+        }
+
+        final int query = path.indexOf( '?' );
+        if ( query > -1 )
+        {
+            sb.append( stripTrailingSlashes( path.substring( 0, query ) ) ).append( path.substring( query ) );
+        }
+        else
+        {
+            sb.append( stripTrailingSlashes( path ) );
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Return the lower-cased host of the given URL (without credentials or port), or null if it has none.
+     */
+    public static String host( final String url )
+    {
+        if ( url == null )
+        {
+            return null;
+        }
+
+        final String normalized = normalize( url );
+        final int schemeEnd = normalized.indexOf( "://" );
+        if ( schemeEnd < 1 )
+        {
+            return null;
+        }
+
+        String authority = normalized.substring( schemeEnd + 3 );
+        final int slash = authority.indexOf( '/' );
+        if ( slash > -1 )
+        {
+            authority = authority.substring( 0, slash );
+        }
+
+        final int query = authority.indexOf( '?' );
+        if ( query > -1 )
+        {
+            authority = authority.substring( 0, query );
+        }
+
+        final int at = authority.lastIndexOf( '@' );
+        if ( at > -1 )
+        {
+            authority = authority.substring( at + 1 );
+        }
+
+        final int colon = authority.lastIndexOf( ':' );
+        if ( colon > authority.lastIndexOf( ']' ) )
+        {
+            authority = authority.substring( 0, colon );
+        }
+
+        return authority.isEmpty() ? null : authority;
+    }
+
+    /**
+     * Return true if the normalized URL is the normalized prefix itself, or lies beneath it on a path-segment
+     * boundary (so <code>http://host/repo</code> contains <code>http://host/repo/sub</code> but not
+     * <code>http://host/repository</code>).
+     */
+    public static boolean isUnder( final String normalizedUrl, final String normalizedPrefix )
+    {
+        if ( !normalizedUrl.startsWith( normalizedPrefix ) )
+        {
+            return false;
+        }
+
+        if ( normalizedUrl.length() == normalizedPrefix.length() )
+        {
+            return true;
+        }
+
+        final char next = normalizedUrl.charAt( normalizedPrefix.length() );
+        return next == '/' || next == '?' || normalizedPrefix.endsWith( "/" );
+    }
+
+    private static String defaultPort( final String scheme )
+    {
+        switch ( scheme )
+        {
+            case "http":
+                return "80";
+            case "https":
+                return "443";
+            default:
+                return null;
+        }
+    }
+
+    private static String stripTrailingSlashes( final String s )
+    {
+        int end = s.length();
+        while ( end > 0 && s.charAt( end - 1 ) == '/' )
+        {
+            end--;
+        }
+
+        return s.substring( 0, end );
+    }
+}
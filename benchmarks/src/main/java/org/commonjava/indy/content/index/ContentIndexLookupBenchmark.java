@@ -0,0 +1,199 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.hibernate.search.annotations.Analyze;
+import org.hibernate.search.annotations.Store;
+import org.hibernate.search.cfg.Environment;
+import org.hibernate.search.cfg.SearchMapping;
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.cache.Index;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.query.Search;
+import org.infinispan.query.dsl.Query;
+import org.infinispan.query.dsl.QueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.annotation.ElementType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store-wide content-index lookups through {@link StorePathIndex} against the Infinispan Query DSL over a Lucene
+ * index, which is how {@link ContentIndexManager} used to find them. Half of the indexed entries are the own paths of
+ * 100 hosted repositories, the other half are entries of a group resolving to them; each benchmark fetches the
+ * entries of a single hosted repository.
+ * <br/>
+ * Indexing a million entries into Lucene takes a while, so expect a long setup.
+ * <br/>
+ * Run with: <code>java -jar benchmarks/target/indy-benchmarks.jar ContentIndexLookupBenchmark</code>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ContentIndexLookupBenchmark
+{
+    private static final int STORES = 100;
+
+    private static final int BATCH = 10000;
+
+    @Param( { "1000000" } )
+    public int entries;
+
+    private DefaultCacheManager cacheManager;
+
+    private Cache<String, IndexedStorePath> queryIndex;
+
+    private StorePathIndex storePaths;
+
+    private StoreKey target;
+
+    @Setup
+    public void setup()
+    {
+        final SearchMapping mapping = new SearchMapping();
+        mapping.entity( IndexedStorePath.class ).indexed().indexName( "indexedStorePath" )
+               .property( "storeType", ElementType.METHOD ).field()
+                   .name( "storeType" ).store( Store.YES ).analyze( Analyze.NO )
+               .property( "storeName", ElementType.METHOD ).field()
+                   .name( "storeName" ).store( Store.YES ).analyze( Analyze.NO )
+               .property( "originStoreType", ElementType.METHOD ).field()
+                   .name( "originStoreType" ).store( Store.YES ).analyze( Analyze.NO )
+               .property( "originStoreName", ElementType.METHOD ).field()
+                   .name( "originStoreName" ).store( Store.YES ).analyze( Analyze.NO )
+               .property( "path", ElementType.METHOD ).field()
+                   .name( "path" ).store( Store.YES ).analyze( Analyze.NO );
+
+        final Properties properties = new Properties();
+        properties.put( Environment.MODEL_MAPPING, mapping );
+        properties.put( "default.directory_provider", "ram" );
+
+        cacheManager = new DefaultCacheManager();
+        cacheManager.defineConfiguration( "content-index-query", new ConfigurationBuilder().indexing()
+                                                                                            .index( Index.LOCAL )
+                                                                                            .withProperties( properties )
+                                                                                            .build() );
+        queryIndex = cacheManager.getCache( "content-index-query" );
+        storePaths = new StorePathIndex( null );
+
+        final StoreKey group = new StoreKey( StoreType.group, "public" );
+        final int perStore = entries / STORES / 2;
+        final Map<String, IndexedStorePath> batch = new HashMap<>();
+        for ( int s = 0; s < STORES; s++ )
+        {
+            final StoreKey hosted = new StoreKey( StoreType.hosted, "hosted-" + s );
+            for ( int i = 0; i < perStore; i++ )
+            {
+                final String path = String.format( "org/foo/s%d/a%d/1.0/a%d-1.0.jar", s, i, i );
+
+                batch.put( hosted + path, new IndexedStorePath( hosted, hosted, path ) );
+                storePaths.add( hosted, hosted, path );
+
+                batch.put( group + path, new IndexedStorePath( group, hosted, path ) );
+                storePaths.add( group, hosted, path );
+
+                if ( batch.size() >= BATCH )
+                {
+                    queryIndex.putAll( batch );
+                    batch.clear();
+                }
+            }
+        }
+
+        queryIndex.putAll( batch );
+        target = new StoreKey( StoreType.hosted, "hosted-" + ( STORES / 2 ) );
+    }
+
+    @TearDown
+    public void teardown()
+    {
+        cacheManager.stop();
+    }
+
+    @Benchmark
+    public List<IndexedStorePath> queryPathsForStore()
+    {
+        final QueryFactory queryFactory = Search.getQueryFactory( queryIndex );
+        final Query query = queryFactory.from( IndexedStorePath.class )
+                                        .having( "storeType" )
+                                        .eq( target.getType() )
+                                        .and()
+                                        .having( "storeName" )
+                                        .eq( target.getName() )
+                                        .toBuilder()
+                                        .build();
+        return query.list();
+    }
+
+    @Benchmark
+    public List<IndexedStorePath> secondaryPathsForStore()
+    {
+        return storePaths.getPaths( target );
+    }
+
+    @Benchmark
+    public List<IndexedStorePath> queryOriginEntries()
+    {
+        final QueryFactory queryFactory = Search.getQueryFactory( queryIndex );
+        final Query query = queryFactory.from( IndexedStorePath.class )
+                                        .having( "originStoreType" )
+                                        .eq( target.getType() )
+                                        .and()
+                                        .having( "originStoreName" )
+                                        .eq( target.getName() )
+                                        .and()
+                                        .having( "storeType" )
+                                        .eq( StoreType.group )
+                                        .toBuilder()
+                                        .build();
+        return query.list();
+    }
+
+    @Benchmark
+    public List<IndexedStorePath> secondaryOriginEntries()
+    {
+        return storePaths.getOriginEntries( target );
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( ContentIndexLookupBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.content.index;
+
+import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.conf.DefaultIndyConfiguration;
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigest;
+import org.commonjava.indy.content.ContentGenerator;
+import org.commonjava.indy.content.ContentManager;
+import org.commonjava.indy.content.IndyLocationExpander;
+import org.commonjava.indy.content.StoreResource;
+import org.commonjava.indy.content.index.conf.ContentIndexConfig;
+import org.commonjava.indy.core.content.DefaultContentManager;
+import org.commonjava.indy.core.conf.MetricsConfig;
+import org.commonjava.indy.core.content.DefaultDownloadManager;
+import org.commonjava.indy.core.inject.IndexedMemoryNotFoundCache;
+import org.commonjava.indy.core.metrics.IndyMetrics;
+import org.commonjava.indy.data.StoreDataManager;
+import org.commonjava.indy.mem.data.MemoryStoreDataManager;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.HostedRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.io.IndyObjectMapper;
+import org.commonjava.indy.test.fixture.core.MockContentAdvisor;
+import org.commonjava.indy.test.fixture.core.MockInstance;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.io.SpecialPathManagerImpl;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
+import org.commonjava.maven.galley.spi.io.SpecialPathManager;
+import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
+import org.commonjava.maven.galley.testing.maven.GalleyMavenFixture;
+import org.commonjava.maven.galley.transport.htcli.model.HttpExchangeMetadata;
+import org.junit.rules.TemporaryFolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IndexingContentManagerDecorator#retrieve(ArtifactStore, String)} on a group of hosted repositories, where
+ * the content lives only in the last member, against the undecorated {@link DefaultContentManager} walking the
+ * membership. Indexing runs inline so the index is warm after the first call.
+ * <br/>
+ * Run with: <code>java -jar benchmarks/target/indy-benchmarks.jar IndexingContentManagerBenchmark</code>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class IndexingContentManagerBenchmark
+{
+    private static final String PATH = "org/foo/bar/1.0/bar-1.0.pom";
+
+    private static final String MISSING_PATH = "org/foo/bar/1.0/bar-1.0-missing.pom";
+
+    @Param( { "50", "500" } )
+    public int members;
+
+    private TemporaryFolder temp;
+
+    private ContentIndexManager indexManager;
+
+    private IndexedMemoryNotFoundCache nfc;
+
+    private ContentManager delegate;
+
+    private ContentManager indexed;
+
+    private Group group;
+
+    private HostedRepository last;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        temp = new TemporaryFolder();
+        temp.create();
+
+        final GalleyMavenFixture galley = new GalleyMavenFixture( true, temp );
+        galley.initMissingComponents();
+
+        final StoreDataManager storeManager = new MemoryStoreDataManager( true );
+        final ChangeSummary summary = new ChangeSummary( ChangeSummary.SYSTEM_USER, "benchmark setup" );
+
+        final List<StoreKey> keys = new ArrayList<>();
+        for ( int i = 0; i < members; i++ )
+        {
+            last = new HostedRepository( "hosted-" + i );
+            storeManager.storeArtifactStore( last, summary, false, false, new EventMetadata() );
+            keys.add( last.getKey() );
+        }
+
+        group = new Group( "bench", keys );
+        storeManager.storeArtifactStore( group, summary, false, false, new EventMetadata() );
+
+        delegate = new DefaultContentManager( storeManager, new DefaultDownloadManager( storeManager,
+                                                                                         galley.getTransferManager(),
+                                                                                         new IndyLocationExpander(
+                                                                                                 storeManager ),
+                                                                                         new MockInstance<>(
+                                                                                                 new MockContentAdvisor() ) ),
+                                              new IndyObjectMapper( true ), Collections.<ContentGenerator>emptySet() );
+
+        delegate.store( last, PATH, new ByteArrayInputStream( "<project/>".getBytes() ), TransferOperation.UPLOAD,
+                        new EventMetadata() );
+
+        final SpecialPathManager specialPathManager = new SpecialPathManagerImpl();
+        final TieredContentIndex contentIndex =
+                new TieredContentIndex( temp.newFolder( "content-index" ), new ContentIndexConfig(),
+                                        new IndyMetrics( new MetricsConfig() ) );
+        indexManager = new ContentIndexManager( storeManager, specialPathManager, contentIndex, Runnable::run );
+
+        nfc = new IndexedMemoryNotFoundCache( new DefaultIndyConfiguration() );
+        indexed = new BenchIndexingContentManager( delegate, storeManager, specialPathManager, indexManager, nfc );
+    }
+
+    @TearDown
+    public void teardown()
+    {
+        nfc.shutdown();
+        indexManager.shutdown();
+        temp.delete();
+    }
+
+    @Benchmark
+    public Transfer indexedGroupHit()
+            throws IndyWorkflowException
+    {
+        return indexed.retrieve( group, PATH );
+    }
+
+    @Benchmark
+    public Transfer indexedGroupMiss()
+            throws IndyWorkflowException
+    {
+        return indexed.retrieve( group, MISSING_PATH );
+    }
+
+    @Benchmark
+    public Transfer indexedHostedHit()
+            throws IndyWorkflowException
+    {
+        return indexed.retrieve( last, PATH );
+    }
+
+    @Benchmark
+    public Transfer unindexedGroupHit()
+            throws IndyWorkflowException
+    {
+        return delegate.retrieve( group, PATH );
+    }
+
+    @Benchmark
+    public Transfer unindexedGroupMiss()
+            throws IndyWorkflowException
+    {
+        return delegate.retrieve( group, MISSING_PATH );
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( IndexingContentManagerBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+    /**
+     * Outside a CDI container the decorator can't be applied, so the methods it doesn't override go straight to the
+     * delegate.
+     */
+    private static final class BenchIndexingContentManager
+            extends IndexingContentManagerDecorator
+    {
+        private final ContentManager delegate;
+
+        BenchIndexingContentManager( final ContentManager delegate, final StoreDataManager storeDataManager,
+                                     final SpecialPathManager specialPathManager,
+                                     final ContentIndexManager indexManager, final NotFoundCache nfc )
+        {
+            super( delegate, storeDataManager, specialPathManager, indexManager, nfc );
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void rescan( final ArtifactStore store )
+                throws IndyWorkflowException
+        {
+            delegate.rescan( store );
+        }
+
+        @Override
+        public void rescan( final ArtifactStore store, final EventMetadata eventMetadata )
+                throws IndyWorkflowException
+        {
+            delegate.rescan( store, eventMetadata );
+        }
+
+        @Override
+        public void rescanAll( final List<? extends ArtifactStore> stores )
+                throws IndyWorkflowException
+        {
+            delegate.rescanAll( stores );
+        }
+
+        @Override
+        public void rescanAll( final List<? extends ArtifactStore> stores, final EventMetadata eventMetadata )
+                throws IndyWorkflowException
+        {
+            delegate.rescanAll( stores, eventMetadata );
+        }
+
+        @Override
+        public List<StoreResource> list( final ArtifactStore store, final String path )
+                throws IndyWorkflowException
+        {
+            return delegate.list( store, path );
+        }
+
+        @Override
+        public List<StoreResource> list( final ArtifactStore store, final String path,
+                                         final EventMetadata eventMetadata )
+                throws IndyWorkflowException
+        {
+            return delegate.list( store, path, eventMetadata );
+        }
+
+        @Override
+        public List<StoreResource> list( final List<? extends ArtifactStore> stores, final String path )
+                throws IndyWorkflowException
+        {
+            return delegate.list( stores, path );
+        }
+
+        @Override
+        public ArtifactData digest( final StoreKey key, final String path, final ContentDigest... types )
+                throws IndyWorkflowException
+        {
+            return delegate.digest( key, path, types );
+        }
+
+        @Override
+        public HttpExchangeMetadata getHttpMetadata( final Transfer txfr )
+                throws IndyWorkflowException
+        {
+            return delegate.getHttpMetadata( txfr );
+        }
+
+        @Override
+        public HttpExchangeMetadata getHttpMetadata( final StoreKey storeKey, final String path )
+                throws IndyWorkflowException
+        {
+            return delegate.getHttpMetadata( storeKey, path );
+        }
+
+        @Override
+        public boolean exists( final ArtifactStore store, final String path )
+                throws IndyWorkflowException
+        {
+            return delegate.exists( store, path );
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.bind.jaxrs.util;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a stored file to the response with {@link TransferStreamingOutput}.
+ * <br/>
+ * Run with: <code>java -jar benchmarks/target/indy-benchmarks.jar TransferStreamingOutputBenchmark</code>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class TransferStreamingOutputBenchmark
+{
+    @Param( { "16384", "1048576", "33554432" } )
+    public int size;
+
+    private File dir;
+
+    private File source;
+
+    private File target;
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        dir = Files.createTempDirectory( "transfer-output-bench" ).toFile();
+        source = new File( dir, "source.jar" );
+        target = new File( dir, "target.jar" );
+
+        final byte[] data = new byte[size];
+        new Random( 42 ).nextBytes( data );
+        FileUtils.writeByteArrayToFile( source, data );
+    }
+
+    @TearDown
+    public void teardown()
+            throws IOException
+    {
+        FileUtils.forceDelete( dir );
+    }
+
+    @Benchmark
+    public long streamCopy()
+            throws IOException
+    {
+        try (OutputStream out = new FileOutputStream( target ))
+        {
+            new TransferStreamingOutput( new FileInputStream( source ) ).write( out );
+        }
+
+        return target.length();
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( TransferStreamingOutputBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
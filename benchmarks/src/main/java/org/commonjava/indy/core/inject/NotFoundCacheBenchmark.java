@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.inject;
+
+import org.commonjava.indy.conf.DefaultIndyConfiguration;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.test.fixture.core.StoreTopologyFixture;
+import org.commonjava.indy.util.LocationUtils;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link IndexedMemoryNotFoundCache} with the older {@link ExpiringMemoryNotFoundCache} on lookups, inserts
+ * and per-location clears, with entries spread over a thousand remote repository locations.
+ * <br/>
+ * Run with: <code>java -jar benchmarks/target/indy-benchmarks.jar NotFoundCacheBenchmark</code>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class NotFoundCacheBenchmark
+{
+    private static final int LOCATIONS = 1000;
+
+    @Param( { "indexed", "expiring" } )
+    public String impl;
+
+    @Param( { "10000", "100000" } )
+    public int entries;
+
+    private NotFoundCache nfc;
+
+    private Location[] locations;
+
+    private ConcreteResource[] missing;
+
+    private ConcreteResource[] present;
+
+    @Setup
+    public void setup()
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        nfc = "indexed".equals( impl ) ? new IndexedMemoryNotFoundCache( config ) : new ExpiringMemoryNotFoundCache( config );
+
+        locations = new Location[LOCATIONS];
+        for ( int i = 0; i < LOCATIONS; i++ )
+        {
+            locations[i] = LocationUtils.toLocation(
+                    new RemoteRepository( "remote-" + i, StoreTopologyFixture.getRemoteUrl( i ) ) );
+        }
+
+        missing = new ConcreteResource[entries];
+        present = new ConcreteResource[entries];
+        for ( int i = 0; i < entries; i++ )
+        {
+            final Location loc = locations[i % LOCATIONS];
+            final String path = "org/foo/artifact-" + i / LOCATIONS + "/1." + i % 97 + "/artifact-" + i + ".pom";
+            missing[i] = new ConcreteResource( loc, path );
+            present[i] = new ConcreteResource( loc, path + ".sha1" );
+            nfc.addMissing( missing[i] );
+        }
+    }
+
+    @TearDown
+    public void teardown()
+    {
+        if ( nfc instanceof IndexedMemoryNotFoundCache )
+        {
+            ( (IndexedMemoryNotFoundCache) nfc ).shutdown();
+        }
+    }
+
+    @Benchmark
+    public boolean isMissingHit()
+    {
+        return nfc.isMissing( missing[ThreadLocalRandom.current().nextInt( entries )] );
+    }
+
+    @Benchmark
+    public boolean isMissingMiss()
+    {
+        return nfc.isMissing( present[ThreadLocalRandom.current().nextInt( entries )] );
+    }
+
+    @Benchmark
+    @Threads( 4 )
+    public boolean isMissingContended()
+    {
+        return nfc.isMissing( missing[ThreadLocalRandom.current().nextInt( entries )] );
+    }
+
+    @Benchmark
+    public void addMissing()
+    {
+        nfc.addMissing( missing[ThreadLocalRandom.current().nextInt( entries )] );
+    }
+
+    /**
+     * Clears one location (as a store update does) and re-adds its entries, so the cache size stays stable.
+     */
+    @Benchmark
+    public void clearAndRefillLocation()
+    {
+        final int loc = ThreadLocalRandom.current().nextInt( LOCATIONS );
+        nfc.clearMissing( locations[loc] );
+        for ( int i = loc; i < entries; i += LOCATIONS )
+        {
+            nfc.addMissing( missing[i] );
+        }
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( NotFoundCacheBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.mem.data;
+
+import org.commonjava.indy.data.IndyDataException;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.test.fixture.core.StoreTopologyFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group resolution and store lookups in {@link MemoryStoreDataManager}, over a topology of thousands of concrete
+ * stores nested three groups deep (see {@link StoreTopologyFixture}).
+ * <br/>
+ * Run with: <code>java -jar benchmarks/target/indy-benchmarks.jar StoreDataManagerBenchmark</code>
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class StoreDataManagerBenchmark
+{
+    @Param( { "1000", "10000" } )
+    public int stores;
+
+    @Param( { "20" } )
+    public int membersPerGroup;
+
+    private MemoryStoreDataManager storeManager;
+
+    private StoreTopologyFixture topology;
+
+    private StoreKey[] concreteKeys;
+
+    private String[] remoteUrls;
+
+    private int next;
+
+    @Setup
+    public void setup()
+            throws IndyDataException
+    {
+        storeManager = new MemoryStoreDataManager( true );
+        topology = new StoreTopologyFixture( stores / 2, stores / 2, membersPerGroup, 10 ).populate( storeManager );
+
+        final List<RemoteRepository> remotes = topology.getRemoteRepositories();
+        remoteUrls = new String[remotes.size()];
+        concreteKeys = new StoreKey[remotes.size() + topology.getHostedRepositories().size()];
+        for ( int i = 0; i < remotes.size(); i++ )
+        {
+            remoteUrls[i] = remotes.get( i ).getUrl();
+            concreteKeys[i] = remotes.get( i ).getKey();
+        }
+
+        for ( int i = 0; i < topology.getHostedRepositories().size(); i++ )
+        {
+            concreteKeys[remotes.size() + i] = topology.getHostedRepositories().get( i ).getKey();
+        }
+    }
+
+    @Benchmark
+    public List<ArtifactStore> orderedConcreteStoresInTopGroup()
+            throws IndyDataException
+    {
+        return storeManager.getOrderedConcreteStoresInGroup( StoreTopologyFixture.TOP_GROUP, true );
+    }
+
+    @Benchmark
+    public List<ArtifactStore> orderedConcreteStoresInLeafGroup()
+            throws IndyDataException
+    {
+        final List<Group> leaves = topology.getLeafGroups();
+        return storeManager.getOrderedConcreteStoresInGroup( leaves.get( nextIndex( leaves.size() ) ).getName(),
+                                                             true );
+    }
+
+    @Benchmark
+    public Set<Group> groupsContaining()
+            throws IndyDataException
+    {
+        return storeManager.getGroupsContaining( concreteKeys[nextIndex( concreteKeys.length )] );
+    }
+
+    @Benchmark
+    public Set<Group> groupsAffectedBy()
+            throws IndyDataException
+    {
+        return storeManager.getGroupsAffectedBy( concreteKeys[nextIndex( concreteKeys.length )] );
+    }
+
+    @Benchmark
+    public ArtifactStore artifactStoreByKey()
+            throws IndyDataException
+    {
+        return storeManager.getArtifactStore( concreteKeys[nextIndex( concreteKeys.length )] );
+    }
+
+    @Benchmark
+    public RemoteRepository findRemoteRepositoryByUrl()
+    {
+        return storeManager.findRemoteRepository( remoteUrls[nextIndex( remoteUrls.length )] );
+    }
+
+    private int nextIndex( final int size )
+    {
+        next = ( next + 7919 ) % size;
+        return next;
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( StoreDataManagerBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
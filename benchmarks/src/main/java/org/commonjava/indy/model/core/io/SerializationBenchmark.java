@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.model.core.io;
+
+import com.fasterxml.jackson.databind.JavaType;
+import org.commonjava.indy.mem.data.MemoryStoreDataManager;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.dto.StoreListingDTO;
+import org.commonjava.indy.test.fixture.core.StoreTopologyFixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StoreKey#fromString(String)} and {@link IndyObjectMapper} (de)serialization of single stores, large groups and
+ * full store listings, as done on every admin API call and store definition load.
+ * <br/>
+ * Run with: <code>java -jar benchmarks/target/indy-benchmarks.jar SerializationBenchmark</code>
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class SerializationBenchmark
+{
+    @Param( { "2000" } )
+    public int stores;
+
+    private IndyObjectMapper mapper;
+
+    private String[] keyStrings;
+
+    private RemoteRepository remote;
+
+    private String remoteJson;
+
+    private Group group;
+
+    private String groupJson;
+
+    private StoreListingDTO<ArtifactStore> listing;
+
+    private String listingJson;
+
+    private JavaType listingType;
+
+    private int next;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        mapper = new IndyObjectMapper( true );
+
+        final MemoryStoreDataManager storeManager = new MemoryStoreDataManager( true );
+        final StoreTopologyFixture topology =
+                new StoreTopologyFixture( stores / 2, stores / 2, stores / 10, 10 ).populate( storeManager );
+
+        final List<ArtifactStore> all = storeManager.getAllArtifactStores();
+        keyStrings = new String[all.size()];
+        for ( int i = 0; i < all.size(); i++ )
+        {
+            keyStrings[i] = all.get( i ).getKey().toString();
+        }
+
+        remote = topology.getRemoteRepositories().get( 0 );
+        remoteJson = mapper.writeValueAsString( remote );
+
+        group = topology.getLeafGroups().get( 0 );
+        groupJson = mapper.writeValueAsString( group );
+
+        listing = new StoreListingDTO<>( all );
+        listingJson = mapper.writeValueAsString( listing );
+        listingType = mapper.getTypeFactory().constructParametricType( StoreListingDTO.class, ArtifactStore.class );
+    }
+
+    @Benchmark
+    public StoreKey storeKeyFromString()
+    {
+        next = ( next + 1 ) % keyStrings.length;
+        return StoreKey.fromString( keyStrings[next] );
+    }
+
+    @Benchmark
+    public String writeRemote()
+            throws IOException
+    {
+        return mapper.writeValueAsString( remote );
+    }
+
+    @Benchmark
+    public RemoteRepository readRemote()
+            throws IOException
+    {
+        return mapper.readValue( remoteJson, RemoteRepository.class );
+    }
+
+    @Benchmark
+    public String writeGroup()
+            throws IOException
+    {
+        return mapper.writeValueAsString( group );
+    }
+
+    @Benchmark
+    public Group readGroup()
+            throws IOException
+    {
+        return mapper.readValue( groupJson, Group.class );
+    }
+
+    @Benchmark
+    public String writeListing()
+            throws IOException
+    {
+        return mapper.writeValueAsString( listing );
+    }
+
+    @Benchmark
+    public StoreListingDTO<ArtifactStore> readListing()
+            throws IOException
+    {
+        return mapper.readValue( listingJson, listingType );
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( SerializationBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.pkg.maven.content.group;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Versioning;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Writer;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.HostedRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.util.LocationUtils;
+import org.commonjava.maven.atlas.ident.util.VersionUtils;
+import org.commonjava.maven.atlas.ident.version.SingleVersion;
+import org.commonjava.maven.galley.cache.FileCacheProvider;
+import org.commonjava.maven.galley.event.NoOpFileEventManager;
+import org.commonjava.maven.galley.io.HashedLocationPathGenerator;
+import org.commonjava.maven.galley.io.NoOpTransferDecorator;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the streaming {@link MavenMetadataMerger} against the previous read-to-String / Xpp3 DOM /
+ * {@link Metadata#merge(Metadata)} approach, on groups with many members and overlapping version lists.
+ * <br/>
+ * Run with: <code>java -jar benchmarks/target/indy-benchmarks.jar MavenMetadataMergerBenchmark</code>
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+public class MavenMetadataMergerBenchmark
+{
+    private static final String PATH = "org/foo/bar/maven-metadata.xml";
+
+    @Param( { "5", "30" } )
+    public int members;
+
+    @Param( { "100", "2000" } )
+    public int versionsPerMember;
+
+    private File dir;
+
+    private List<Transfer> sources;
+
+    private Group group;
+
+    private MavenMetadataMerger merger;
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        dir = Files.createTempDirectory( "metadata-merge-bench" ).toFile();
+        FileCacheProvider cacheProvider =
+                new FileCacheProvider( dir, new HashedLocationPathGenerator(), new NoOpFileEventManager(),
+                                       new NoOpTransferDecorator(), false );
+
+        Random rand = new Random( 42 );
+        List<StoreKey> keys = new ArrayList<>();
+        sources = new ArrayList<>();
+        for ( int i = 0; i < members; i++ )
+        {
+            HostedRepository repo = new HostedRepository( "member-" + i );
+            keys.add( repo.getKey() );
+
+            Transfer transfer = cacheProvider.getTransfer( new ConcreteResource( LocationUtils.toLocation( repo ), PATH ) );
+            try (OutputStream out = transfer.openOutputStream( TransferOperation.UPLOAD, false ))
+            {
+                new MetadataXpp3Writer().write( out, memberMetadata( rand ) );
+            }
+
+            sources.add( transfer );
+        }
+
+        group = new Group( "bench", keys );
+        merger = new MavenMetadataMerger( Collections.emptyList() );
+    }
+
+    @TearDown
+    public void teardown()
+            throws IOException
+    {
+        FileUtils.forceDelete( dir );
+    }
+
+    @Benchmark
+    public byte[] streaming()
+    {
+        return merger.merge( sources, group, PATH );
+    }
+
+    @Benchmark
+    public byte[] xpp3Dom()
+            throws Exception
+    {
+        final Metadata master = new Metadata();
+        final MetadataXpp3Reader reader = new MetadataXpp3Reader();
+        for ( final Transfer src : sources )
+        {
+            try (InputStream stream = src.openInputStream())
+            {
+                String content = IOUtils.toString( stream );
+                final Metadata md = reader.read( new StringReader( content ), false );
+                master.setGroupId( md.getGroupId() );
+                master.setArtifactId( md.getArtifactId() );
+                master.merge( md );
+            }
+        }
+
+        Versioning versioning = master.getVersioning();
+        List<SingleVersion> versionObjects = versioning.getVersions()
+                                                       .stream()
+                                                       .map( VersionUtils::createSingleVersion )
+                                                       .collect( Collectors.toList() );
+        Collections.sort( versionObjects );
+        versioning.setVersions( versionObjects.stream().map( SingleVersion::renderStandard ).collect( Collectors.toList() ) );
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new MetadataXpp3Writer().write( baos, master );
+        return baos.toByteArray();
+    }
+
+    private Metadata memberMetadata( final Random rand )
+    {
+        Versioning versioning = new Versioning();
+        int major = 0;
+        int minor = 0;
+        for ( int v = 0; v < versionsPerMember; v++ )
+        {
+            // overlapping, mostly-ascending version lists, like mirrors of the same upstream
+            minor += 1 + rand.nextInt( 3 );
+            if ( minor > 40 )
+            {
+                major++;
+                minor = rand.nextInt( 3 );
+            }
+
+            versioning.addVersion( major + "." + minor + ( rand.nextInt( 10 ) == 0 ? "-redhat-1" : "" ) );
+        }
+
+        String last = versioning.getVersions().get( versioning.getVersions().size() - 1 );
+        versioning.setLatest( last );
+        versioning.setRelease( last );
+        versioning.setLastUpdated( String.valueOf( 20170101000000L + rand.nextInt( 1000000 ) ) );
+
+        Metadata md = new Metadata();
+        md.setGroupId( "org.foo" );
+        md.setArtifactId( "bar" );
+        md.setVersioning( versioning );
+        return md;
+    }
+
+    public static void main( String[] args )
+            throws RunnerException
+    {
+        new Runner( new OptionsBuilder().include( MavenMetadataMergerBenchmark.class.getSimpleName() ).build() ).run();
+    }
+}
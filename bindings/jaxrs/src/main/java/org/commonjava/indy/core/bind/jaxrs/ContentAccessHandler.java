@@ -18,9 +18,17 @@ package org.commonjava.indy.core.bind.jaxrs;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.bind.jaxrs.IndyResources;
 import org.commonjava.indy.bind.jaxrs.util.JaxRsRequestHelper;
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigest;
+import org.commonjava.indy.content.ContentDigestStore;
 import org.commonjava.indy.content.ContentManager;
+import org.commonjava.indy.core.bind.jaxrs.util.ByteRange;
+import org.commonjava.indy.core.bind.jaxrs.util.ByteRangeStreamingOutput;
 import org.commonjava.indy.core.bind.jaxrs.util.TransferStreamingOutput;
+import org.commonjava.indy.core.conf.MetricsConfig;
 import org.commonjava.indy.core.ctl.ContentController;
+import org.commonjava.indy.core.metrics.IndyMetric;
+import org.commonjava.indy.core.metrics.IndyMetrics;
 import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.indy.model.core.StoreType;
 import org.commonjava.indy.model.util.HttpUtils;
@@ -37,17 +45,24 @@ import org.commonjava.maven.galley.transport.htcli.model.HttpExchangeMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.text.ParseException;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import java.util.function.Supplier;
 
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
 import static org.commonjava.indy.bind.jaxrs.util.ResponseUtils.formatOkResponseWithEntity;
 import static org.commonjava.indy.bind.jaxrs.util.ResponseUtils.formatResponse;
 import static org.commonjava.indy.bind.jaxrs.util.ResponseUtils.formatResponseFromMetadata;
@@ -69,6 +84,12 @@ public class ContentAccessHandler
     @Inject
     private JaxRsRequestHelper jaxRsRequestHelper;
 
+    @Inject
+    private Instance<ContentDigestStore> digestStore;
+
+    @Inject
+    private IndyMetrics metrics;
+
     protected ContentAccessHandler()
     {
     }
@@ -79,13 +100,28 @@ public class ContentAccessHandler
         this.contentController = controller;
         this.uriFormatter = uriFormatter;
         this.jaxRsRequestHelper = jaxRsRequestHelper;
+        this.metrics = new IndyMetrics( new MetricsConfig() );
     }
 
     public Response doCreate( final String type, final String name, final String path, final HttpServletRequest request,
                               EventMetadata eventMetadata, Supplier<URI> uriBuilder )
+    {
+        final long start = metrics.start();
+        try
+        {
+            return create( type, name, path, request, eventMetadata, uriBuilder );
+        }
+        finally
+        {
+            metrics.time( IndyMetric.CONTENT_CREATE, metricKey( type, name ), start );
+        }
+    }
+
+    private Response create( final String type, final String name, final String path, final HttpServletRequest request,
+                             EventMetadata eventMetadata, Supplier<URI> uriBuilder )
     {
         final StoreType st = StoreType.get( type );
-        StoreKey sk = new StoreKey( st, name );
+        StoreKey sk = contentController.canonicalKey( st, name );
 
         eventMetadata = eventMetadata.set( ContentManager.ENTRY_POINT_STORE, sk );
 
@@ -94,7 +130,7 @@ public class ContentAccessHandler
         try
         {
             transfer =
-                    contentController.store( new StoreKey( st, name ), path, request.getInputStream(), eventMetadata );
+                    contentController.store( sk, path, request.getInputStream(), eventMetadata );
 
             final StoreKey storageKey = LocationUtils.getKey( transfer );
             logger.info( "Key for storage location: {}", storageKey );
@@ -116,7 +152,7 @@ public class ContentAccessHandler
     public Response doDelete( String type, String name, String path, EventMetadata eventMetadata )
     {
         final StoreType st = StoreType.get( type );
-        StoreKey sk = new StoreKey( st, name );
+        StoreKey sk = contentController.canonicalKey( st, name );
 
         eventMetadata = eventMetadata.set( ContentManager.ENTRY_POINT_STORE, sk );
 
@@ -138,9 +174,23 @@ public class ContentAccessHandler
 
     public Response doHead( String type, String name, String path, Boolean cacheOnly, String baseUri,
                             HttpServletRequest request, EventMetadata eventMetadata )
+    {
+        final long start = metrics.start();
+        try
+        {
+            return head( type, name, path, cacheOnly, baseUri, request, eventMetadata );
+        }
+        finally
+        {
+            metrics.time( IndyMetric.CONTENT_HEAD, metricKey( type, name ), start );
+        }
+    }
+
+    private Response head( String type, String name, String path, Boolean cacheOnly, String baseUri,
+                           HttpServletRequest request, EventMetadata eventMetadata )
     {
         final StoreType st = StoreType.get( type );
-        final StoreKey sk = new StoreKey( st, name );
+        final StoreKey sk = contentController.canonicalKey( st, name );
 
         eventMetadata = eventMetadata.set( ContentManager.ENTRY_POINT_STORE, sk );
 
@@ -207,11 +257,17 @@ public class ContentAccessHandler
                 }
                 else
                 {
-                    final ResponseBuilder builder = Response.ok();
-                    setInfoHeaders( builder, item, sk, path, true, contentController.getContentType( path ),
-                                    contentController.getHttpMetadata( sk, path ) );
+                    final String etag = getETag( item );
+                    response = checkNotModified( request, item, etag );
+                    if ( response == null )
+                    {
+                        final ResponseBuilder builder = Response.ok();
+                        setInfoHeaders( builder, item, sk, path, true, contentController.getContentType( path ),
+                                        contentController.getHttpMetadata( sk, path ) );
+                        setValidatorHeaders( builder, etag );
 
-                    response = builder.build();
+                        response = builder.build();
+                    }
                 }
             }
             catch ( final IndyWorkflowException e )
@@ -226,9 +282,23 @@ public class ContentAccessHandler
 
     public Response doGet( String type, String name, String path, String baseUri, HttpServletRequest request,
                            EventMetadata eventMetadata )
+    {
+        final long start = metrics.start();
+        try
+        {
+            return get( type, name, path, baseUri, request, eventMetadata );
+        }
+        finally
+        {
+            metrics.time( IndyMetric.CONTENT_GET, metricKey( type, name ), start );
+        }
+    }
+
+    private Response get( String type, String name, String path, String baseUri, HttpServletRequest request,
+                          EventMetadata eventMetadata )
     {
         final StoreType st = StoreType.get( type );
-        final StoreKey sk = new StoreKey( st, name );
+        final StoreKey sk = contentController.canonicalKey( st, name );
 
         eventMetadata = eventMetadata.set( ContentManager.ENTRY_POINT_STORE, sk );
 
@@ -309,13 +379,12 @@ public class ContentAccessHandler
                     else
                     {
                         logger.info( "RETURNING: retrieval of content: {}:{}", sk, path );
-                        // open the stream here to prevent deletion while waiting for the transfer back to the user to start...
-                        InputStream in = item.openInputStream( true, eventMetadata );
-                        final ResponseBuilder builder = Response.ok( new TransferStreamingOutput( in ) );
-                        setInfoHeaders( builder, item, sk, path, true, contentController.getContentType( path ),
-                                        contentController.getHttpMetadata( sk, path ) );
-
-                        response = builder.build();
+                        final String etag = getETag( item );
+                        response = checkNotModified( request, item, etag );
+                        if ( response == null )
+                        {
+                            response = formatContentResponse( request, item, sk, path, etag, eventMetadata );
+                        }
                     }
                 }
                 finally
@@ -338,6 +407,215 @@ public class ContentAccessHandler
         return response;
     }
 
+    private StreamingOutput timedOutput( final StreamingOutput output, final StoreKey sk )
+    {
+        if ( !metrics.isEnabled() )
+        {
+            return output;
+        }
+
+        return ( out ) -> {
+            final long start = metrics.start();
+            try
+            {
+                output.write( out );
+            }
+            finally
+            {
+                metrics.time( IndyMetric.CONTENT_STREAM, sk, start );
+            }
+        };
+    }
+
+    /**
+     * Unknown store types (which fail the request anyway) are recorded without store labels.
+     */
+    private StoreKey metricKey( final String type, final String name )
+    {
+        final StoreType st = StoreType.get( type );
+        return st == null ? null : contentController.canonicalKey( st, name );
+    }
+
+    private Response formatContentResponse( final HttpServletRequest request, final Transfer item, final StoreKey sk,
+                                            final String path, final String etag, final EventMetadata eventMetadata )
+            throws IOException, IndyWorkflowException
+    {
+        final String contentType = contentController.getContentType( path );
+        final long length = item.length();
+
+        List<ByteRange> ranges = null;
+        if ( length > 0 && isRangeApplicable( request, item, etag ) )
+        {
+            ranges = ByteRange.parse( request.getHeader( ApplicationHeader.range.key() ), length );
+        }
+
+        if ( ranges != null && ranges.isEmpty() )
+        {
+            return Response.status( Status.REQUESTED_RANGE_NOT_SATISFIABLE )
+                           .header( ApplicationHeader.content_range.key(), "bytes */" + length )
+                           .build();
+        }
+
+        // open the stream here to prevent deletion while waiting for the transfer back to the user to start...
+        InputStream in = item.openInputStream( true, eventMetadata );
+        try
+        {
+            final ResponseBuilder builder;
+            if ( ranges == null )
+            {
+                builder = Response.ok( timedOutput( new TransferStreamingOutput( in ), sk ) );
+                setInfoHeaders( builder, item, sk, path, true, contentType, contentController.getHttpMetadata( sk, path ) );
+            }
+            else
+            {
+                final String boundary = ranges.size() > 1 ? UUID.randomUUID().toString().replace( "-", "" ) : null;
+                builder = Response.status( Status.PARTIAL_CONTENT )
+                                  .entity( timedOutput( new ByteRangeStreamingOutput( in, ranges, length, contentType,
+                                                                                      boundary ), sk ) );
+                setInfoHeaders( builder, item, sk, path, false, contentType, contentController.getHttpMetadata( sk, path ) );
+
+                if ( boundary == null )
+                {
+                    final ByteRange range = ranges.get( 0 );
+                    builder.header( ApplicationHeader.content_range.key(), range.toContentRange( length ) )
+                           .header( ApplicationHeader.content_length.key(), range.getLength() );
+                }
+                else
+                {
+                    builder.header( ApplicationHeader.content_type.key(), null )
+                           .header( ApplicationHeader.content_type.key(), "multipart/byteranges; boundary=" + boundary );
+                }
+            }
+
+            setValidatorHeaders( builder, etag );
+            return builder.build();
+        }
+        catch ( final IndyWorkflowException | RuntimeException e )
+        {
+            closeQuietly( in );
+            throw e;
+        }
+    }
+
+    /**
+     * Strong validator for the stored content: its SHA-1 (or MD5) if the digest store recorded one, otherwise its size
+     * and modification time.
+     */
+    private String getETag( final Transfer item )
+    {
+        if ( digestStore != null && !digestStore.isUnsatisfied() )
+        {
+            final ArtifactData data = digestStore.get().get( item );
+            if ( data != null && data.getDigests() != null )
+            {
+                String digest = data.getDigests().get( ContentDigest.SHA_1 );
+                if ( digest == null )
+                {
+                    digest = data.getDigests().get( ContentDigest.MD5 );
+                }
+
+                if ( digest != null )
+                {
+                    return "\"" + digest + "\"";
+                }
+            }
+        }
+
+        return "\"" + Long.toHexString( item.length() ) + "-" + Long.toHexString( item.lastModified() ) + "\"";
+    }
+
+    private void setValidatorHeaders( final ResponseBuilder builder, final String etag )
+    {
+        // replace any validator copied from the upstream response; ours describes the stored copy
+        builder.header( ApplicationHeader.etag.key(), null )
+               .header( ApplicationHeader.etag.key(), etag )
+               .header( ApplicationHeader.accept_ranges.key(), "bytes" );
+    }
+
+    /**
+     * Evaluate If-None-Match (or, without it, If-Modified-Since), returning a 304 response if the client's copy is
+     * current, or null to serve the content.
+     */
+    private Response checkNotModified( final HttpServletRequest request, final Transfer item, final String etag )
+    {
+        boolean notModified = false;
+
+        final String ifNoneMatch = request.getHeader( ApplicationHeader.if_none_match.key() );
+        if ( ifNoneMatch != null )
+        {
+            for ( final String candidate : ifNoneMatch.split( "," ) )
+            {
+                String tag = candidate.trim();
+                if ( tag.startsWith( "W/" ) )
+                {
+                    tag = tag.substring( 2 );
+                }
+
+                if ( "*".equals( tag ) || etag.equals( tag ) )
+                {
+                    notModified = true;
+                    break;
+                }
+            }
+        }
+        else
+        {
+            final Date since = parseDate( request.getHeader( ApplicationHeader.if_modified_since.key() ) );
+            notModified = since != null && item.lastModified() / 1000 <= since.getTime() / 1000;
+        }
+
+        if ( !notModified )
+        {
+            return null;
+        }
+
+        logger.debug( "Client copy of: {} is current; returning 304", item );
+        return Response.notModified()
+                       .header( ApplicationHeader.etag.key(), etag )
+                       .header( ApplicationHeader.last_modified.key(),
+                                HttpUtils.formatDateHeader( item.lastModified() ) )
+                       .build();
+    }
+
+    /**
+     * A Range header only applies if there's no If-Range, or If-Range still matches the current content.
+     */
+    private boolean isRangeApplicable( final HttpServletRequest request, final Transfer item, final String etag )
+    {
+        final String ifRange = request.getHeader( ApplicationHeader.if_range.key() );
+        if ( ifRange == null )
+        {
+            return true;
+        }
+
+        final String value = ifRange.trim();
+        if ( value.startsWith( "\"" ) || value.startsWith( "W/" ) )
+        {
+            return etag.equals( value );
+        }
+
+        final Date date = parseDate( value );
+        return date != null && item.lastModified() / 1000 == date.getTime() / 1000;
+    }
+
+    private Date parseDate( final String value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+
+        try
+        {
+            return HttpUtils.parseDateHeader( value.trim() );
+        }
+        catch ( final ParseException e )
+        {
+            logger.debug( "Ignoring unparseable date header: {}", value );
+            return null;
+        }
+    }
+
     private Response handleMissingContentQuery( StoreKey sk, String path )
     {
         Response response = null;
@@ -38,6 +38,7 @@ import org.commonjava.indy.core.ctl.NfcController;
 import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.indy.model.core.StoreType;
 import org.commonjava.indy.model.core.dto.NotFoundCacheDTO;
+import org.commonjava.indy.model.core.dto.NotFoundCacheStatsDTO;
 import org.commonjava.indy.util.ApplicationContent;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -106,6 +107,18 @@ public class NfcResource
         return formatOkResponseWithJsonEntity( dto, serializer );
     }
 
+    @Path( "/stats" )
+    @GET
+    @ApiOperation( "Retrieve hit, miss, eviction and expiration counters for the not-found cache" )
+    @ApiResponses( { @ApiResponse( code = 200, response = NotFoundCacheStatsDTO.class, message = "The not-found cache statistics" ) } )
+    @Produces( ApplicationContent.application_json )
+    public Response getStats()
+    {
+        final NotFoundCacheStatsDTO dto = controller.getStats();
+
+        return formatOkResponseWithJsonEntity( dto, serializer );
+    }
+
     @Path( "/{type: (hosted|group|remote)}/{name}" )
     @ApiOperation( "Retrieve all not-found cache entries currently tracked for a given store" )
     @ApiResponses( { @ApiResponse( code = 200, response = NotFoundCacheDTO.class, message = "The not-found cache for the specified artifact store" ) } )
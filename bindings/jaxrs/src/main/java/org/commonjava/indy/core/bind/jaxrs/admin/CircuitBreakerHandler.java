@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.bind.jaxrs.admin;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.commonjava.indy.bind.jaxrs.IndyResources;
+import org.commonjava.indy.core.content.breaker.CircuitBreakerStatus;
+import org.commonjava.indy.core.content.breaker.RemoteCircuitBreakers;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.commonjava.indy.util.ApplicationContent;
+
+import javax.inject.Inject;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.util.Map;
+
+@Api( value = "Remote Circuit Breakers",
+      description = "Inspect and reset the in-memory circuit breakers guarding remote repositories" )
+@Path( "/api/admin/circuit-breakers" )
+@Produces( ApplicationContent.application_json )
+public class CircuitBreakerHandler
+        implements IndyResources
+{
+    @Inject
+    private RemoteCircuitBreakers circuitBreakers;
+
+    @ApiOperation( "Retrieve the state and transition counts of every remote repository circuit breaker" )
+    @ApiResponse( code = 200, message = "Map of store key to circuit breaker status (empty if disabled)." )
+    @GET
+    public Map<String, CircuitBreakerStatus> getAll()
+    {
+        return circuitBreakers.getStatus();
+    }
+
+    @ApiOperation( "Retrieve the circuit breaker status of a remote repository" )
+    @ApiResponses( { @ApiResponse( code = 200, message = "Circuit breaker status retrieved successfully." ),
+                     @ApiResponse( code = 404, message = "No requests have been tracked for this repository." ) } )
+    @Path( "remote/{name}" )
+    @GET
+    public CircuitBreakerStatus get( @ApiParam( required = true ) @PathParam( "name" ) String name )
+    {
+        final CircuitBreakerStatus status = circuitBreakers.getStatus( new StoreKey( StoreType.remote, name ) );
+        if ( status == null )
+        {
+            throw new WebApplicationException( Response.Status.NOT_FOUND );
+        }
+
+        return status;
+    }
+
+    @ApiOperation( "Reset (close) the circuit breaker of a remote repository" )
+    @ApiResponses( { @ApiResponse( code = 204, message = "Circuit breaker reset." ),
+                     @ApiResponse( code = 404, message = "No requests have been tracked for this repository." ) } )
+    @Path( "remote/{name}" )
+    @DELETE
+    public Response reset( @ApiParam( required = true ) @PathParam( "name" ) String name )
+    {
+        if ( !circuitBreakers.reset( new StoreKey( StoreType.remote, name ) ) )
+        {
+            return Response.status( Response.Status.NOT_FOUND ).build();
+        }
+
+        return Response.noContent().build();
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.bind.jaxrs.admin;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import org.commonjava.indy.bind.jaxrs.IndyResources;
+import org.commonjava.indy.core.content.coalesce.RemoteRetrievalCoalescer;
+import org.commonjava.indy.core.content.coalesce.RetrievalCoalescingStats;
+import org.commonjava.indy.util.ApplicationContent;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+@Api( value = "Remote Retrieval Coalescing",
+      description = "Inspect how many concurrent remote retrievals share a single upstream download" )
+@Path( "/api/admin/coalescing" )
+@Produces( ApplicationContent.application_json )
+public class CoalescingHandler
+        implements IndyResources
+{
+    @Inject
+    private RemoteRetrievalCoalescer coalescer;
+
+    @ApiOperation( "Retrieve the leader, coalesced and failure counts of remote retrieval coalescing" )
+    @ApiResponse( code = 200, message = "Coalescing statistics retrieved successfully." )
+    @Path( "stats" )
+    @GET
+    public RetrievalCoalescingStats getStats()
+    {
+        return coalescer.getStats();
+    }
+}
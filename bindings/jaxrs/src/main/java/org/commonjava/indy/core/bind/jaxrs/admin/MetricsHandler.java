@@ -0,0 +1,59 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.bind.jaxrs.admin;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import org.commonjava.indy.bind.jaxrs.IndyResources;
+import org.commonjava.indy.core.metrics.IndyMetrics;
+import org.commonjava.indy.util.ApplicationContent;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+@Api( value = "Metrics", description = "Export request timings and hot-path counters for scraping by Prometheus" )
+@Path( "/api/admin/metrics" )
+public class MetricsHandler
+        implements IndyResources
+{
+    static final String PROMETHEUS_CONTENT_TYPE = ApplicationContent.text_plain + "; version=0.0.4; charset=utf-8";
+
+    @Inject
+    private IndyMetrics metrics;
+
+    @ApiOperation( "Retrieve all timers and counters, labelled by store type and name, in Prometheus text format" )
+    @ApiResponse( code = 200, message = "Metrics retrieved successfully." )
+    @Path( "prometheus" )
+    @Produces( ApplicationContent.text_plain )
+    @GET
+    public Response getPrometheusMetrics()
+    {
+        final StreamingOutput output = ( out ) -> {
+            final Writer writer = new OutputStreamWriter( out, StandardCharsets.UTF_8 );
+            metrics.writePrometheus( writer );
+        };
+
+        return Response.ok( output ).type( PROMETHEUS_CONTENT_TYPE ).build();
+    }
+}
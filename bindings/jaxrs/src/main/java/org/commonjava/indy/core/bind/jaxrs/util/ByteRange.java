@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.bind.jaxrs.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Inclusive byte range of a representation, as requested in an HTTP Range header.
+ */
+public final class ByteRange
+{
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    /**
+     * Requests for more ranges than this are served in full rather than as a multipart response.
+     */
+    private static final int MAX_RANGES = 16;
+
+    private final long start;
+
+    private final long end;
+
+    public ByteRange( final long start, final long end )
+    {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart()
+    {
+        return start;
+    }
+
+    public long getEnd()
+    {
+        return end;
+    }
+
+    public long getLength()
+    {
+        return end - start + 1;
+    }
+
+    public String toContentRange( final long totalLength )
+    {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+
+    /**
+     * Parse a Range header against a representation of the given length. Ranges are sorted and overlapping or adjacent
+     * ones are merged, so they can be served in one forward pass.
+     *
+     * @return null if the header is absent, malformed or asks for too many ranges (serve the full content), an empty
+     * list if no range is satisfiable (416), otherwise the ranges to serve (206).
+     */
+    public static List<ByteRange> parse( final String header, final long length )
+    {
+        if ( header == null || !header.trim().startsWith( BYTES_UNIT ) )
+        {
+            return null;
+        }
+
+        final String[] specs = header.trim().substring( BYTES_UNIT.length() ).split( "," );
+        if ( specs.length > MAX_RANGES )
+        {
+            return null;
+        }
+
+        final List<ByteRange> ranges = new ArrayList<>( specs.length );
+        for ( final String rawSpec : specs )
+        {
+            final String spec = rawSpec.trim();
+            final int dash = spec.indexOf( '-' );
+            if ( dash < 0 )
+            {
+                return null;
+            }
+
+            final long first;
+            final long last;
+            try
+            {
+                if ( dash == 0 )
+                {
+                    // suffix range: the last N bytes
+                    final long suffix = Long.parseLong( spec.substring( 1 ) );
+                    if ( suffix <= 0 )
+                    {
+                        continue;
+                    }
+
+                    first = Math.max( 0, length - suffix );
+                    last = length - 1;
+                }
+                else
+                {
+                    first = Long.parseLong( spec.substring( 0, dash ) );
+                    last = dash == spec.length() - 1 ?
+                            length - 1 :
+                            Math.min( Long.parseLong( spec.substring( dash + 1 ) ), length - 1 );
+
+                    if ( last < first && dash < spec.length() - 1 && first < length )
+                    {
+                        // syntactically invalid (last-byte-pos < first-byte-pos); ignore the header
+                        return null;
+                    }
+                }
+            }
+            catch ( final NumberFormatException e )
+            {
+                return null;
+            }
+
+            if ( first < length && first <= last )
+            {
+                ranges.add( new ByteRange( first, last ) );
+            }
+        }
+
+        if ( ranges.size() < 2 )
+        {
+            return ranges;
+        }
+
+        Collections.sort( ranges, ( a, b ) -> Long.compare( a.start, b.start ) );
+
+        final List<ByteRange> merged = new ArrayList<>( ranges.size() );
+        ByteRange current = ranges.get( 0 );
+        for ( int i = 1; i < ranges.size(); i++ )
+        {
+            final ByteRange next = ranges.get( i );
+            if ( next.start <= current.end + 1 )
+            {
+                current = new ByteRange( current.start, Math.max( current.end, next.end ) );
+            }
+            else
+            {
+                merged.add( current );
+                current = next;
+            }
+        }
+        merged.add( current );
+
+        return merged;
+    }
+
+    @Override
+    public boolean equals( final Object other )
+    {
+        if ( this == other )
+        {
+            return true;
+        }
+        if ( !( other instanceof ByteRange ) )
+        {
+            return false;
+        }
+
+        final ByteRange range = (ByteRange) other;
+        return start == range.start && end == range.end;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Long.hashCode( start ) + Long.hashCode( end );
+    }
+
+    @Override
+    public String toString()
+    {
+        return start + "-" + end;
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.bind.jaxrs.util;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes one or more {@link ByteRange}s of a transfer: a single range as the plain body of a 206 response, several
+ * as a multipart/byteranges body. Ranges must be sorted and non-overlapping (see {@link ByteRange#parse(String, long)}),
+ * so the transfer stream can be read forward only.
+ */
+public class ByteRangeStreamingOutput
+    implements StreamingOutput
+{
+
+    private static final String CRLF = "\r\n";
+
+    private final InputStream stream;
+
+    private final List<ByteRange> ranges;
+
+    private final long length;
+
+    private final String contentType;
+
+    private final String boundary;
+
+    /**
+     * @param boundary multipart boundary; ignored for a single range
+     */
+    public ByteRangeStreamingOutput( final InputStream stream, final List<ByteRange> ranges, final long length,
+                                     final String contentType, final String boundary )
+    {
+        this.stream = stream;
+        this.ranges = ranges;
+        this.length = length;
+        this.contentType = contentType;
+        this.boundary = boundary;
+    }
+
+    @Override
+    public void write( final OutputStream out )
+            throws IOException, WebApplicationException
+    {
+        try
+        {
+            if ( ranges.size() == 1 )
+            {
+                copy( ranges.get( 0 ), 0, out );
+                return;
+            }
+
+            long position = 0;
+            for ( final ByteRange range : ranges )
+            {
+                final StringBuilder part = new StringBuilder();
+                part.append( CRLF ).append( "--" ).append( boundary ).append( CRLF );
+                if ( contentType != null )
+                {
+                    part.append( "Content-Type: " ).append( contentType ).append( CRLF );
+                }
+                part.append( "Content-Range: " ).append( range.toContentRange( length ) ).append( CRLF ).append( CRLF );
+                out.write( part.toString().getBytes( StandardCharsets.US_ASCII ) );
+
+                copy( range, position, out );
+                position = range.getEnd() + 1;
+            }
+
+            out.write( ( CRLF + "--" + boundary + "--" + CRLF ).getBytes( StandardCharsets.US_ASCII ) );
+        }
+        finally
+        {
+            IOUtils.closeQuietly( stream );
+        }
+    }
+
+    private void copy( final ByteRange range, final long streamPosition, final OutputStream out )
+            throws IOException
+    {
+        IOUtils.skipFully( stream, range.getStart() - streamPosition );
+        IOUtils.copyLarge( stream, out, 0, range.getLength() );
+    }
+
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.bind.jaxrs.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ByteRangeTest
+{
+
+    @Test
+    public void parseSingleRanges()
+    {
+        assertThat( ByteRange.parse( "bytes=0-99", 1000 ), equalTo( Collections.singletonList( new ByteRange( 0, 99 ) ) ) );
+        assertThat( ByteRange.parse( "bytes=900-", 1000 ), equalTo( Collections.singletonList( new ByteRange( 900, 999 ) ) ) );
+        assertThat( ByteRange.parse( "bytes=-100", 1000 ), equalTo( Collections.singletonList( new ByteRange( 900, 999 ) ) ) );
+        assertThat( ByteRange.parse( "bytes=990-2000", 1000 ), equalTo( Collections.singletonList( new ByteRange( 990, 999 ) ) ) );
+    }
+
+    @Test
+    public void parseSortsAndMergesMultipleRanges()
+    {
+        assertThat( ByteRange.parse( "bytes=500-599, 0-49, 40-99", 1000 ),
+                    equalTo( Arrays.asList( new ByteRange( 0, 99 ), new ByteRange( 500, 599 ) ) ) );
+    }
+
+    @Test
+    public void unsatisfiableRangeIsEmpty()
+    {
+        assertThat( ByteRange.parse( "bytes=1000-1100", 1000 ).isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void malformedRangeIsIgnored()
+    {
+        assertThat( ByteRange.parse( null, 1000 ), nullValue() );
+        assertThat( ByteRange.parse( "items=0-1", 1000 ), nullValue() );
+        assertThat( ByteRange.parse( "bytes=abc", 1000 ), nullValue() );
+        assertThat( ByteRange.parse( "bytes=50-10", 1000 ), nullValue() );
+    }
+
+}
@@ -21,6 +21,7 @@ import org.commonjava.indy.change.event.ArtifactStoreEnablementEvent;
 import org.commonjava.indy.change.event.ArtifactStorePostUpdateEvent;
 import org.commonjava.indy.change.event.IndyStoreErrorEvent;
 import org.commonjava.indy.conf.IndyConfiguration;
+import org.commonjava.indy.core.content.breaker.RemoteCircuitBreakers;
 import org.commonjava.indy.core.expire.IndySchedulerException;
 import org.commonjava.indy.core.expire.ScheduleManager;
 import org.commonjava.indy.core.expire.SchedulerEvent;
@@ -29,6 +30,7 @@ import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
 import org.commonjava.indy.model.core.io.IndyObjectMapper;
 import org.commonjava.maven.galley.event.EventMetadata;
 import org.slf4j.Logger;
@@ -59,6 +61,9 @@ public class StoreEnablementManager
     @Inject
     private IndyConfiguration config;
 
+    @Inject
+    private RemoteCircuitBreakers circuitBreakers;
+
     //FIXME: Convert to using ArtifactStoreEnablementEvent.
     public void onStoreEnablementChange( @Observes ArtifactStoreEnablementEvent event )
     {
@@ -142,6 +147,13 @@ public class StoreEnablementManager
         Logger logger = LoggerFactory.getLogger( getClass() );
         StoreKey key = evt.getStoreKey();
         Throwable error = evt.getError();
+        if ( key.getType() == StoreType.remote && circuitBreakers != null && circuitBreakers.isEnabled() )
+        {
+            // the download manager has already counted this against the remote's circuit breaker
+            logger.debug( "Not disabling {} on error: {}; circuit breakers are enabled.", key, error );
+            return;
+        }
+
         try
         {
             ArtifactStore store = storeDataManager.getArtifactStore( key );
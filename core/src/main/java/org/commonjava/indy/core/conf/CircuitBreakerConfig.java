@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.conf;
+
+import org.commonjava.indy.conf.IndyConfigInfo;
+import org.commonjava.web.config.annotation.ConfigName;
+import org.commonjava.web.config.annotation.SectionName;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Configures the per-remote circuit breakers consulted before content requests go upstream. When enabled, store-level
+ * errors on remote repositories no longer disable (and persist) the repository; instead its breaker opens once the
+ * error or slow-call rate over the sliding window crosses a threshold, and lets a few probe requests through after
+ * the open interval to decide whether to close again.
+ */
+@SectionName( CircuitBreakerConfig.SECTION_NAME )
+@ApplicationScoped
+public class CircuitBreakerConfig
+    implements IndyConfigInfo
+{
+
+    public static final String SECTION_NAME = "circuit-breaker";
+
+    public static final boolean DEFAULT_ENABLED = false;
+
+    public static final int DEFAULT_WINDOW_SECONDS = 60;
+
+    public static final int DEFAULT_MIN_REQUESTS = 10;
+
+    public static final int DEFAULT_ERROR_RATE_PERCENT = 50;
+
+    public static final long DEFAULT_SLOW_CALL_MILLIS = 30000;
+
+    public static final int DEFAULT_SLOW_CALL_RATE_PERCENT = 80;
+
+    public static final int DEFAULT_OPEN_SECONDS = 30;
+
+    public static final int DEFAULT_MAX_OPEN_SECONDS = 1800;
+
+    public static final int DEFAULT_HALF_OPEN_PROBES = 3;
+
+    private Boolean enabled;
+
+    private Integer windowSeconds;
+
+    private Integer minRequests;
+
+    private Integer errorRatePercent;
+
+    private Long slowCallMillis;
+
+    private Integer slowCallRatePercent;
+
+    private Integer openSeconds;
+
+    private Integer maxOpenSeconds;
+
+    private Integer halfOpenProbes;
+
+    public CircuitBreakerConfig()
+    {
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled == null ? DEFAULT_ENABLED : enabled;
+    }
+
+    @ConfigName( "enabled" )
+    public void setEnabled( final Boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public int getWindowSeconds()
+    {
+        return windowSeconds == null || windowSeconds < 1 ? DEFAULT_WINDOW_SECONDS : windowSeconds;
+    }
+
+    @ConfigName( "window.seconds" )
+    public void setWindowSeconds( final Integer windowSeconds )
+    {
+        this.windowSeconds = windowSeconds;
+    }
+
+    public int getMinRequests()
+    {
+        return minRequests == null || minRequests < 1 ? DEFAULT_MIN_REQUESTS : minRequests;
+    }
+
+    @ConfigName( "min.requests" )
+    public void setMinRequests( final Integer minRequests )
+    {
+        this.minRequests = minRequests;
+    }
+
+    public int getErrorRatePercent()
+    {
+        return errorRatePercent == null ? DEFAULT_ERROR_RATE_PERCENT : errorRatePercent;
+    }
+
+    @ConfigName( "error.rate.percent" )
+    public void setErrorRatePercent( final Integer errorRatePercent )
+    {
+        this.errorRatePercent = errorRatePercent;
+    }
+
+    public long getSlowCallMillis()
+    {
+        return slowCallMillis == null ? DEFAULT_SLOW_CALL_MILLIS : slowCallMillis;
+    }
+
+    @ConfigName( "slow.call.millis" )
+    public void setSlowCallMillis( final Long slowCallMillis )
+    {
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    public int getSlowCallRatePercent()
+    {
+        return slowCallRatePercent == null ? DEFAULT_SLOW_CALL_RATE_PERCENT : slowCallRatePercent;
+    }
+
+    @ConfigName( "slow.call.rate.percent" )
+    public void setSlowCallRatePercent( final Integer slowCallRatePercent )
+    {
+        this.slowCallRatePercent = slowCallRatePercent;
+    }
+
+    public int getOpenSeconds()
+    {
+        return openSeconds == null || openSeconds < 1 ? DEFAULT_OPEN_SECONDS : openSeconds;
+    }
+
+    @ConfigName( "open.seconds" )
+    public void setOpenSeconds( final Integer openSeconds )
+    {
+        this.openSeconds = openSeconds;
+    }
+
+    public int getMaxOpenSeconds()
+    {
+        return maxOpenSeconds == null || maxOpenSeconds < getOpenSeconds() ? Math.max( DEFAULT_MAX_OPEN_SECONDS,
+                                                                                       getOpenSeconds() ) : maxOpenSeconds;
+    }
+
+    @ConfigName( "max.open.seconds" )
+    public void setMaxOpenSeconds( final Integer maxOpenSeconds )
+    {
+        this.maxOpenSeconds = maxOpenSeconds;
+    }
+
+    public int getHalfOpenProbes()
+    {
+        return halfOpenProbes == null || halfOpenProbes < 1 ? DEFAULT_HALF_OPEN_PROBES : halfOpenProbes;
+    }
+
+    @ConfigName( "half.open.probes" )
+    public void setHalfOpenProbes( final Integer halfOpenProbes )
+    {
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    @Override
+    public String getDefaultConfigFileName()
+    {
+        return new File( IndyConfigInfo.CONF_INCLUDES_DIR, "circuit-breaker.conf" ).getPath();
+    }
+
+    @Override
+    public InputStream getDefaultConfig()
+    {
+        return Thread.currentThread()
+                     .getContextClassLoader()
+                     .getResourceAsStream( "default-circuit-breaker.conf" );
+    }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.conf;
+
+import org.commonjava.indy.conf.IndyConfigInfo;
+import org.commonjava.web.config.ConfigurationException;
+import org.commonjava.web.config.annotation.SectionName;
+import org.commonjava.web.config.section.MapSectionListener;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Configures how content retrieval fans out across group members. When enabled, members are probed concurrently
+ * (up to the configured concurrency per group request), the highest-priority hit wins, and probes still outstanding
+ * when the deadline passes are abandoned. Concurrency and deadline can be overridden per group, using parameters of
+ * the form: '&lt;group-name&gt;.concurrency' and '&lt;group-name&gt;.timeout.millis'.
+ */
+@ApplicationScoped
+@SectionName( GroupRetrievalConfig.SECTION_NAME )
+public class GroupRetrievalConfig
+        extends MapSectionListener
+        implements IndyConfigInfo
+{
+
+    public static final String SECTION_NAME = "group-retrieval";
+
+    public static final String EXECUTOR_NAME = "group-retrieval";
+
+    public static final String ENABLED_PROP = "parallel.enabled";
+
+    public static final String CONCURRENCY_PROP = "concurrency";
+
+    public static final String TIMEOUT_MILLIS_PROP = "timeout.millis";
+
+    public static final boolean DEFAULT_ENABLED = false;
+
+    public static final int DEFAULT_CONCURRENCY = 8;
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+    // parsed as each parameter is read (see parameter()), so the per-request getters below are plain reads
+    private volatile Boolean enabled;
+
+    private volatile Integer concurrency;
+
+    private volatile Long timeoutMillis;
+
+    private final Map<String, Integer> groupConcurrency = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> groupTimeoutMillis = new ConcurrentHashMap<>();
+
+    public GroupRetrievalConfig()
+    {
+    }
+
+    public GroupRetrievalConfig( final Properties props )
+            throws ConfigurationException
+    {
+        this.sectionStarted( SECTION_NAME );
+        for ( final String key : props.stringPropertyNames() )
+        {
+            this.parameter( key, props.getProperty( key ) );
+        }
+    }
+
+    @Override
+    public void parameter( final String name, final String value )
+            throws ConfigurationException
+    {
+        super.parameter( name, value );
+
+        final String key = name.trim();
+        final String v = value.trim();
+        try
+        {
+            if ( ENABLED_PROP.equalsIgnoreCase( key ) )
+            {
+                enabled = Boolean.parseBoolean( v );
+            }
+            else if ( CONCURRENCY_PROP.equalsIgnoreCase( key ) )
+            {
+                concurrency = Integer.parseInt( v );
+            }
+            else if ( TIMEOUT_MILLIS_PROP.equalsIgnoreCase( key ) )
+            {
+                timeoutMillis = Long.parseLong( v );
+            }
+            else if ( key.endsWith( "." + CONCURRENCY_PROP ) )
+            {
+                final String group = key.substring( 0, key.length() - CONCURRENCY_PROP.length() - 1 );
+                groupConcurrency.put( group, Integer.parseInt( v ) );
+            }
+            else if ( key.endsWith( "." + TIMEOUT_MILLIS_PROP ) )
+            {
+                final String group = key.substring( 0, key.length() - TIMEOUT_MILLIS_PROP.length() - 1 );
+                groupTimeoutMillis.put( group, Long.parseLong( v ) );
+            }
+        }
+        catch ( final NumberFormatException e )
+        {
+            throw new ConfigurationException( "Non-numeric value for '{}' parameter: '{}' (value was: '{}')",
+                                              SECTION_NAME, name, value );
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled == null ? DEFAULT_ENABLED : enabled;
+    }
+
+    /**
+     * Maximum number of member probes in flight for one request against the given group (which may be null, for
+     * member lists that don't belong to a specific group).
+     */
+    public int getConcurrency( final String groupName )
+    {
+        Integer result = groupName == null ? null : groupConcurrency.get( groupName );
+        if ( result == null )
+        {
+            result = concurrency;
+        }
+
+        return result == null || result < 1 ? DEFAULT_CONCURRENCY : result;
+    }
+
+    /**
+     * Milliseconds to wait for member probes before giving up on a request against the given group (which may be
+     * null).
+     */
+    public long getTimeoutMillis( final String groupName )
+    {
+        Long result = groupName == null ? null : groupTimeoutMillis.get( groupName );
+        if ( result == null )
+        {
+            result = timeoutMillis;
+        }
+
+        return result == null || result < 1 ? DEFAULT_TIMEOUT_MILLIS : result;
+    }
+
+    @Override
+    public Map<String, String> getConfiguration()
+    {
+        Map<String, String> configuration = super.getConfiguration();
+        if ( configuration == null )
+        {
+            configuration = new HashMap<>();
+        }
+
+        return configuration;
+    }
+
+    @Override
+    public String getDefaultConfigFileName()
+    {
+        return "conf.d/group-retrieval.conf";
+    }
+
+    @Override
+    public InputStream getDefaultConfig()
+    {
+        return Thread.currentThread()
+                     .getContextClassLoader()
+                     .getResourceAsStream( "default-group-retrieval.conf" );
+    }
+
+}
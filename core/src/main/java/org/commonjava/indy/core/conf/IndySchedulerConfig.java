@@ -45,10 +45,22 @@ public class IndySchedulerConfig
 
     private static final String ENABLED_PROP = "enabled";
 
+    private static final String ENGINE_PROP = "engine";
+
+    private static final String WHEEL_LOG_PROP = "wheel.log";
+
+    public static final String QUARTZ_ENGINE = "quartz";
+
+    public static final String WHEEL_ENGINE = "wheel";
+
     private static final String DEFAULT_DB_URL =
         String.format( "jdbc:derby:%s/var/lib/indy/data/scheduler",
                        System.getProperty( "indy.home", System.getProperty( "java.io.tmpdir" ) ) );
 
+    private static final String DEFAULT_WHEEL_LOG =
+        String.format( "%s/var/lib/indy/data/scheduler-wheel.log",
+                       System.getProperty( "indy.home", System.getProperty( "java.io.tmpdir" ) ) );
+
     private static final String DEFAULT_DB_DRIVER = "org.apache.derby.jdbc.EmbeddedDriver";
 
     private static final boolean DEFAULT_ENABLED = true;
@@ -63,6 +75,10 @@ public class IndySchedulerConfig
 
     private transient String dbDriver;
 
+    private transient String engine;
+
+    private transient String wheelLog;
+
     public IndySchedulerConfig()
     {
     }
@@ -96,6 +112,14 @@ public class IndySchedulerConfig
                 {
                     enabled = Boolean.parseBoolean( entry.getValue().toLowerCase() );
                 }
+                else if ( ENGINE_PROP.equalsIgnoreCase( key ) )
+                {
+                    engine = entry.getValue().trim().toLowerCase();
+                }
+                else if ( WHEEL_LOG_PROP.equalsIgnoreCase( key ) )
+                {
+                    wheelLog = entry.getValue().trim();
+                }
                 else if ( DDL_PROP.equalsIgnoreCase( key ) )
                 {
                     ddlFile = entry.getValue();
@@ -121,6 +145,27 @@ public class IndySchedulerConfig
         return enabled == null ? DEFAULT_ENABLED : enabled;
     }
 
+    /**
+     * Expiration engine: {@link #QUARTZ_ENGINE} (default; Quartz with a JDBC job store) or {@link #WHEEL_ENGINE}
+     * (in-process timing wheel persisted to an append-only log, see {@link #getWheelLogFile()}).
+     */
+    public String getEngine()
+    {
+        parseDatabaseDetails();
+        return engine == null ? QUARTZ_ENGINE : engine;
+    }
+
+    public boolean isWheelEngine()
+    {
+        return WHEEL_ENGINE.equals( getEngine() );
+    }
+
+    public String getWheelLogFile()
+    {
+        parseDatabaseDetails();
+        return wheelLog == null ? DEFAULT_WHEEL_LOG : wheelLog;
+    }
+
     public String getDdlFile()
     {
         parseDatabaseDetails();
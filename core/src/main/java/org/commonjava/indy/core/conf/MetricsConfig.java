@@ -0,0 +1,121 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.conf;
+
+import org.commonjava.indy.conf.IndyConfigInfo;
+import org.commonjava.web.config.annotation.ConfigName;
+import org.commonjava.web.config.annotation.SectionName;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Configures the in-process timers and counters kept by {@link org.commonjava.indy.core.metrics.IndyMetrics} and
+ * exported in Prometheus text format. Latency quantiles are computed from HdrHistograms over a rolling window; sums
+ * and counts are cumulative.
+ */
+@SectionName( MetricsConfig.SECTION_NAME )
+@ApplicationScoped
+public class MetricsConfig
+    implements IndyConfigInfo
+{
+
+    public static final String SECTION_NAME = "metrics";
+
+    public static final boolean DEFAULT_ENABLED = true;
+
+    public static final int DEFAULT_MAX_STORES_PER_METRIC = 500;
+
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+    public static final int DEFAULT_QUANTILE_WINDOW_SECONDS = 60;
+
+    private Boolean enabled;
+
+    private Integer maxStoresPerMetric;
+
+    private Integer significantDigits;
+
+    private Integer quantileWindowSeconds;
+
+    public MetricsConfig()
+    {
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled == null ? DEFAULT_ENABLED : enabled;
+    }
+
+    @ConfigName( "enabled" )
+    public void setEnabled( final Boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public int getMaxStoresPerMetric()
+    {
+        return maxStoresPerMetric == null || maxStoresPerMetric < 1 ? DEFAULT_MAX_STORES_PER_METRIC : maxStoresPerMetric;
+    }
+
+    @ConfigName( "max.stores.per.metric" )
+    public void setMaxStoresPerMetric( final Integer maxStoresPerMetric )
+    {
+        this.maxStoresPerMetric = maxStoresPerMetric;
+    }
+
+    public int getSignificantDigits()
+    {
+        return significantDigits == null || significantDigits < 1 || significantDigits > 5 ?
+                DEFAULT_SIGNIFICANT_DIGITS :
+                significantDigits;
+    }
+
+    @ConfigName( "histogram.significant.digits" )
+    public void setSignificantDigits( final Integer significantDigits )
+    {
+        this.significantDigits = significantDigits;
+    }
+
+    public int getQuantileWindowSeconds()
+    {
+        return quantileWindowSeconds == null || quantileWindowSeconds < 1 ?
+                DEFAULT_QUANTILE_WINDOW_SECONDS :
+                quantileWindowSeconds;
+    }
+
+    @ConfigName( "quantile.window.seconds" )
+    public void setQuantileWindowSeconds( final Integer quantileWindowSeconds )
+    {
+        this.quantileWindowSeconds = quantileWindowSeconds;
+    }
+
+    @Override
+    public String getDefaultConfigFileName()
+    {
+        return new File( IndyConfigInfo.CONF_INCLUDES_DIR, "metrics.conf" ).getPath();
+    }
+
+    @Override
+    public InputStream getDefaultConfig()
+    {
+        return Thread.currentThread()
+                     .getContextClassLoader()
+                     .getResourceAsStream( "default-metrics.conf" );
+    }
+
+}
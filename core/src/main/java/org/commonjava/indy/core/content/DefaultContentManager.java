@@ -20,10 +20,12 @@ import org.apache.commons.lang.StringUtils;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.content.ArtifactData;
 import org.commonjava.indy.content.ContentDigest;
+import org.commonjava.indy.content.ContentDigestStore;
 import org.commonjava.indy.content.ContentGenerator;
 import org.commonjava.indy.content.ContentManager;
 import org.commonjava.indy.content.DownloadManager;
 import org.commonjava.indy.content.StoreResource;
+import org.commonjava.indy.core.content.group.GroupMemberRetriever;
 import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.model.core.ArtifactStore;
@@ -52,6 +54,7 @@ import java.io.InputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -84,6 +87,14 @@ public class DefaultContentManager
     @Inject
     private IndyObjectMapper mapper;
 
+    @Inject
+    private GroupMemberRetriever groupRetriever;
+
+    @Inject
+    private Instance<ContentDigestStore> digestStoreInstance;
+
+    private ContentDigestStore digestStore;
+
     protected DefaultContentManager()
     {
     }
@@ -95,6 +106,15 @@ public class DefaultContentManager
         this.downloadManager = downloadManager;
         this.mapper = mapper;
         this.contentGenerators = contentProducers == null ? new HashSet<ContentGenerator>() : contentProducers;
+        this.groupRetriever = new GroupMemberRetriever( null, null );
+    }
+
+    public DefaultContentManager( final StoreDataManager storeManager, final DownloadManager downloadManager,
+                                  final IndyObjectMapper mapper, final Set<ContentGenerator> contentProducers,
+                                  final GroupMemberRetriever groupRetriever )
+    {
+        this( storeManager, downloadManager, mapper, contentProducers );
+        this.groupRetriever = groupRetriever;
     }
 
     @PostConstruct
@@ -108,6 +128,11 @@ public class DefaultContentManager
                 contentGenerators.add( producer );
             }
         }
+
+        if ( digestStoreInstance != null && !digestStoreInstance.isUnsatisfied() )
+        {
+            digestStore = digestStoreInstance.get();
+        }
     }
 
     @Override
@@ -122,17 +147,8 @@ public class DefaultContentManager
                                    final EventMetadata eventMetadata )
             throws IndyWorkflowException
     {
-        Transfer txfr = null;
-        for ( final ArtifactStore store : stores )
-        {
-            txfr = doRetrieve( store, path, eventMetadata );
-            if ( txfr != null )
-            {
-                break;
-            }
-        }
-
-        return txfr;
+        return groupRetriever.retrieveFirst( GroupMemberRetriever.groupKey( eventMetadata ), stores,
+                                             ( store ) -> doRetrieve( store, path, eventMetadata ) );
     }
 
     @Override
@@ -178,15 +194,10 @@ public class DefaultContentManager
                 // ...if it's generated, it's merged in this case.
                 if ( storeTransfers.isEmpty() )
                 {
-                    for ( final ArtifactStore member : members )
-                    {
-                        // NOTE: This is only safe to call because we're concrete ordered stores, so anything passing through here is concrete.
-                        final Transfer txfr = doRetrieve( member, path, eventMetadata );
-                        if ( txfr != null )
-                        {
-                            storeTransfers.add( txfr );
-                        }
-                    }
+                    // NOTE: This is only safe to call because we're concrete ordered stores, so anything passing through here is concrete.
+                    storeTransfers.addAll( groupRetriever.retrieveAll( store.getKey(), members,
+                                                                       ( member ) -> doRetrieve( member, path,
+                                                                                                 eventMetadata ) ) );
                 }
 
                 txfrs.addAll( storeTransfers );
@@ -249,14 +260,8 @@ public class DefaultContentManager
 
             if ( !generated )
             {
-                for ( final ArtifactStore member : members )
-                {
-                    item = doRetrieve( member, path, eventMetadata );
-                    if ( item != null )
-                    {
-                        break;
-                    }
-                }
+                item = groupRetriever.retrieveFirst( store.getKey(), members,
+                                                     ( member ) -> doRetrieve( member, path, eventMetadata ) );
             }
         }
         else
@@ -647,11 +652,21 @@ public class DefaultContentManager
             return new ArtifactData(Collections.emptyMap(), 0L);
         }
 
+        if ( digestStore != null )
+        {
+            // normally recorded while the content was streamed into storage
+            final ArtifactData recorded = digestStore.get( txfr );
+            if ( recorded != null && recorded.getDigests().keySet().containsAll( Arrays.asList( types ) ) )
+            {
+                logger.debug( "Using recorded digests for: {}", txfr );
+                return recorded;
+            }
+        }
+
         InputStream stream = null;
         try
         {
             long artifactSize = 0L;
-            // TODO: Compute it as the file is uploaded/downloaded into cache.
             stream = txfr.openInputStream( false );
 
             final Map<ContentDigest, MessageDigest> digests = new HashMap<>();
@@ -688,7 +703,13 @@ public class DefaultContentManager
                 digestResultMap.put( entry.getKey(), sb.toString() );
             }
 
-            return new ArtifactData( digestResultMap, artifactSize );
+            final ArtifactData result = new ArtifactData( digestResultMap, artifactSize );
+            if ( digestStore != null )
+            {
+                digestStore.put( txfr, result );
+            }
+
+            return result;
         }
         catch ( IOException | NoSuchAlgorithmException e )
         {
@@ -19,6 +19,7 @@ import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.content.DirectContentAccess;
 import org.commonjava.indy.content.DownloadManager;
 import org.commonjava.indy.content.StoreResource;
+import org.commonjava.indy.core.content.group.GroupMemberRetriever;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.maven.galley.event.EventMetadata;
@@ -27,7 +28,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -40,28 +40,28 @@ public class DefaultDirectContentAccess
     @Inject
     private DownloadManager downloadManager;
 
+    @Inject
+    private GroupMemberRetriever groupRetriever;
+
     public DefaultDirectContentAccess(){}
 
     public DefaultDirectContentAccess( DownloadManager downloadManager )
+    {
+        this( downloadManager, new GroupMemberRetriever( null, null ) );
+    }
+
+    public DefaultDirectContentAccess( DownloadManager downloadManager, GroupMemberRetriever groupRetriever )
     {
         this.downloadManager = downloadManager;
+        this.groupRetriever = groupRetriever;
     }
 
     public List<Transfer> retrieveAllRaw( final List<? extends ArtifactStore> stores, final String path,
                                           final EventMetadata eventMetadata )
             throws IndyWorkflowException
     {
-        final List<Transfer> txfrs = new ArrayList<Transfer>();
-        for ( final ArtifactStore store : stores )
-        {
-            final Transfer txfr = retrieveRaw( store, path, eventMetadata );
-            if ( txfr != null )
-            {
-                txfrs.add( txfr );
-            }
-        }
-
-        return txfrs;
+        return groupRetriever.retrieveAll( GroupMemberRetriever.groupKey( eventMetadata ), stores,
+                                           ( store ) -> retrieveRaw( store, path, eventMetadata ) );
     }
 
     public Transfer retrieveRaw( final ArtifactStore store, final String path, final EventMetadata eventMetadata )
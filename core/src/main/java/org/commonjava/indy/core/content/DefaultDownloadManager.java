@@ -23,6 +23,12 @@ import org.commonjava.indy.core.change.event.IndyFileEventManager;
 import org.commonjava.indy.change.event.IndyStoreErrorEvent;
 import org.commonjava.indy.content.DownloadManager;
 import org.commonjava.indy.content.StoreResource;
+import org.commonjava.indy.core.conf.CircuitBreakerConfig;
+import org.commonjava.indy.core.conf.MetricsConfig;
+import org.commonjava.indy.core.content.breaker.RemoteCircuitBreakers;
+import org.commonjava.indy.core.content.coalesce.RemoteRetrievalCoalescer;
+import org.commonjava.indy.core.metrics.IndyMetric;
+import org.commonjava.indy.core.metrics.IndyMetrics;
 import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.model.core.ArtifactStore;
@@ -107,6 +113,15 @@ public class DefaultDownloadManager
     @Any
     private Instance<ContentAdvisor> contentAdvisor;
 
+    @Inject
+    private RemoteCircuitBreakers circuitBreakers;
+
+    @Inject
+    private RemoteRetrievalCoalescer coalescer;
+
+    @Inject
+    private IndyMetrics metrics;
+
     protected DefaultDownloadManager()
     {
     }
@@ -118,6 +133,9 @@ public class DefaultDownloadManager
         this.transfers = transfers;
         this.locationExpander = locationExpander;
         this.fileEventManager = new IndyFileEventManager();
+        this.circuitBreakers = new RemoteCircuitBreakers( new CircuitBreakerConfig() );
+        this.coalescer = new RemoteRetrievalCoalescer( true );
+        this.metrics = new IndyMetrics( new MetricsConfig() );
         executor = Executors.newFixedThreadPool( 10 );
     }
 
@@ -159,7 +177,7 @@ public class DefaultDownloadManager
                 Location location = e.getLocation();
                 KeyedLocation kl = (KeyedLocation) location;
 
-                fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+                fireStoreError( kl.getKey(), e );
                 logger.warn( "Bad gateway: " + e.getMessage(), e );
             }
             catch ( final TransferTimeoutException e )
@@ -167,7 +185,7 @@ public class DefaultDownloadManager
                 Location location = e.getLocation();
                 KeyedLocation kl = (KeyedLocation) location;
 
-                fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+                fireStoreError( kl.getKey(), e );
                 logger.warn( "Timeout: " + e.getMessage(), e );
             }
             catch ( final TransferLocationException e )
@@ -175,7 +193,7 @@ public class DefaultDownloadManager
                 Location location = e.getLocation();
                 KeyedLocation kl = (KeyedLocation) location;
 
-                fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+                fireStoreError( kl.getKey(), e );
                 logger.warn( "Location Error: " + e.getMessage(), e );
             }
             catch ( final TransferException e )
@@ -191,9 +209,17 @@ public class DefaultDownloadManager
             final StoreResource res = new StoreResource( loc, path );
             if ( store instanceof RemoteRepository )
             {
+                if ( !circuitBreakers.tryAcquire( store.getKey() ) )
+                {
+                    return result;
+                }
+
+                final long start = System.currentTimeMillis();
+                boolean completed = false;
                 try
                 {
                     final ListingResult lr = transfers.list( res );
+                    completed = true;
                     if ( lr != null && lr.getListing() != null )
                     {
                         for ( final String file : lr.getListing() )
@@ -207,7 +233,7 @@ public class DefaultDownloadManager
                     Location location = e.getLocation();
                     KeyedLocation kl = (KeyedLocation) location;
 
-                    fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+                    fireStoreError( kl.getKey(), e );
                     logger.warn( "Bad gateway: " + e.getMessage(), e );
                 }
                 catch ( final TransferTimeoutException e )
@@ -215,7 +241,7 @@ public class DefaultDownloadManager
                     Location location = e.getLocation();
                     KeyedLocation kl = (KeyedLocation) location;
 
-                    fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+                    fireStoreError( kl.getKey(), e );
                     logger.warn( "Timeout: " + e.getMessage(), e );
                 }
                 catch ( final TransferLocationException e )
@@ -223,7 +249,7 @@ public class DefaultDownloadManager
                     Location location = e.getLocation();
                     KeyedLocation kl = (KeyedLocation) location;
 
-                    fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+                    fireStoreError( kl.getKey(), e );
                     logger.warn( "Location Error: " + e.getMessage(), e );
                 }
                 catch ( final TransferException e )
@@ -232,6 +258,10 @@ public class DefaultDownloadManager
                     throw new IndyWorkflowException( "Failed to list path: {} from: {}. Reason: {}", e, path,
                                                      store.getKey(), e.getMessage() );
                 }
+                finally
+                {
+                    completeCall( store.getKey(), completed, start );
+                }
             }
             else
             {
@@ -252,7 +282,7 @@ public class DefaultDownloadManager
                     KeyedLocation kl = (KeyedLocation) location;
 
                     logger.warn( "Timeout  / bad gateway: " + e.getMessage(), e );
-                    fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+                    fireStoreError( kl.getKey(), e );
                 }
                 catch ( final TransferException e )
                 {
@@ -273,10 +303,14 @@ public class DefaultDownloadManager
         final String dir = PathUtils.dirname( path );
 
         final List<StoreResource> result = new ArrayList<>();
+        final List<? extends ArtifactStore> admitted = circuitBreakers.acquireAll( stores );
+        StoreKey last = null;
+        boolean failed = true;
         try
         {
             final List<ListingResult> results = transfers.listAll(
-                    locationExpander.expand( new VirtualResource( LocationUtils.toLocations( stores ), path ) ) );
+                    locationExpander.expand( new VirtualResource( LocationUtils.toLocations( admitted ), path ) ) );
+            failed = false;
 
             for ( final ListingResult lr : results )
             {
@@ -294,7 +328,8 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            last = kl.getKey();
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Bad gateway: " + e.getMessage(), e );
         }
         catch ( final TransferTimeoutException e )
@@ -302,7 +337,8 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            last = kl.getKey();
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Timeout: " + e.getMessage(), e );
         }
         catch ( final TransferLocationException e )
@@ -310,7 +346,8 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            last = kl.getKey();
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Location Error: " + e.getMessage(), e );
         }
         catch ( final TransferException e )
@@ -319,6 +356,10 @@ public class DefaultDownloadManager
             throw new IndyWorkflowException( "Failed to list ALL paths: {} from: {}. Reason: {}", e, path, stores,
                                              e.getMessage() );
         }
+        finally
+        {
+            circuitBreakers.completeAll( admitted, last, failed );
+        }
 
         return dedupeListing( result );
     }
@@ -335,18 +376,31 @@ public class DefaultDownloadManager
                                    final EventMetadata eventMetadata )
             throws IndyWorkflowException
     {
+        final List<? extends ArtifactStore> admitted = circuitBreakers.acquireAll( stores );
+        StoreKey last = null;
+        boolean failed = true;
         try
         {
-            return transfers.retrieveFirst(
-                    locationExpander.expand( new VirtualResource( LocationUtils.toLocations( stores ), path ) ),
+            final Transfer transfer = transfers.retrieveFirst(
+                    locationExpander.expand( new VirtualResource( LocationUtils.toLocations( admitted ), path ) ),
                     eventMetadata );
+            failed = false;
+
+            // stores after the one that answered were never asked
+            if ( transfer != null && transfer.getLocation() instanceof KeyedLocation )
+            {
+                last = ( (KeyedLocation) transfer.getLocation() ).getKey();
+            }
+
+            return transfer;
         }
         catch ( final BadGatewayException e )
         {
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            last = kl.getKey();
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Bad gateway: " + e.getMessage(), e );
         }
         catch ( final TransferTimeoutException e )
@@ -354,7 +408,8 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            last = kl.getKey();
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Timeout: " + e.getMessage(), e );
         }
         catch ( final TransferLocationException e )
@@ -362,7 +417,8 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            last = kl.getKey();
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Location Error: " + e.getMessage(), e );
         }
         catch ( final TransferException e )
@@ -371,6 +427,10 @@ public class DefaultDownloadManager
             throw new IndyWorkflowException( "Failed to retrieve first path: {} from: {}. Reason: {}", e, path, stores,
                                              e.getMessage() );
         }
+        finally
+        {
+            circuitBreakers.completeAll( admitted, last, failed );
+        }
 
         return null;
     }
@@ -395,11 +455,15 @@ public class DefaultDownloadManager
                                        final EventMetadata eventMetadata )
             throws IndyWorkflowException
     {
+        final List<? extends ArtifactStore> admitted = circuitBreakers.acquireAll( stores );
+        boolean failed = true;
         try
         {
-            return transfers.retrieveAll(
-                    locationExpander.expand( new VirtualResource( LocationUtils.toLocations( stores ), path ) ),
+            final List<Transfer> result = transfers.retrieveAll(
+                    locationExpander.expand( new VirtualResource( LocationUtils.toLocations( admitted ), path ) ),
                     eventMetadata );
+            failed = false;
+            return result;
         }
         catch ( final TransferException e )
         {
@@ -407,6 +471,10 @@ public class DefaultDownloadManager
             throw new IndyWorkflowException( "Failed to retrieve ALL paths: {} from: {}. Reason: {}", e, path, stores,
                                              e.getMessage() );
         }
+        finally
+        {
+            circuitBreakers.completeAll( admitted, null, failed );
+        }
     }
 
     /*
@@ -443,12 +511,17 @@ public class DefaultDownloadManager
         }
 
         Transfer target = null;
+        final long start = metrics.start();
         try
         {
             final ConcreteResource res = new ConcreteResource( LocationUtils.toLocation( store ), path );
             if ( store instanceof RemoteRepository )
             {
-                target = transfers.retrieve( res, suppressFailures, eventMetadata );
+                target = coalescer.coalesce( store.getKey(), path,
+                                             () -> retrieveUpstream( store.getKey(), res, suppressFailures,
+                                                                     eventMetadata ),
+                                             leaderResult -> retrieveCoalesced( store.getKey(), res,
+                                                                                suppressFailures, eventMetadata ) );
             }
             else
             {
@@ -471,25 +544,76 @@ public class DefaultDownloadManager
             //                return null;
             //            }
         }
-        catch ( final TransferLocationException e )
-        {
-            fileEventManager.fire( new IndyStoreErrorEvent( store.getKey(), e ) );
-            logger.warn( "Timeout / bad gateway: " + e.getMessage(), e );
-            target = null;
-            //            throw new IndyWorkflowException( ApplicationStatus.NOT_FOUND.code(),
-            //                                              "Failed to retrieve path: {} from: {}. Reason: {}", e, path, store,
-            //                                              e.getMessage() );
-        }
         catch ( final TransferException e )
         {
             logger.error( e.getMessage(), e );
             throw new IndyWorkflowException( "Failed to retrieve path: {} from: {}. Reason: {}", e, path, store,
                                              e.getMessage() );
         }
+        finally
+        {
+            metrics.time( IndyMetric.DOWNLOAD_RETRIEVE, store.getKey(), start );
+        }
 
         return target;
     }
 
+    /**
+     * Retrieve content from a remote repository through its circuit breaker. This is the leader side of a coalesced
+     * retrieval, so store-level errors are recorded (and swallowed) here exactly once, not once per waiting request.
+     */
+    private Transfer retrieveUpstream( final StoreKey key, final ConcreteResource res, final boolean suppressFailures,
+                                       final EventMetadata eventMetadata )
+            throws TransferException
+    {
+        if ( !circuitBreakers.tryAcquire( key ) )
+        {
+            return null;
+        }
+
+        final long start = System.currentTimeMillis();
+        final long timer = metrics.start();
+        boolean completed = false;
+        try
+        {
+            final Transfer target = transfers.retrieve( res, suppressFailures, eventMetadata );
+            completed = true;
+            return target;
+        }
+        catch ( final TransferLocationException e )
+        {
+            fireStoreError( key, e );
+            logger.warn( "Timeout / bad gateway: " + e.getMessage(), e );
+            return null;
+        }
+        finally
+        {
+            completeCall( key, completed, start );
+            metrics.time( IndyMetric.REMOTE_TRANSFER, key, timer );
+        }
+    }
+
+    /**
+     * Follower side of a coalesced retrieval: the leader has cached the content, so this normally resolves locally. If
+     * it does reach the remote and fails there, the follower gets the same result as the leader would (nothing),
+     * rather than an error. Store-level errors are left to the leader, which records them once.
+     */
+    private Transfer retrieveCoalesced( final StoreKey key, final ConcreteResource res, final boolean suppressFailures,
+                                        final EventMetadata eventMetadata )
+            throws TransferException
+    {
+        try
+        {
+            return transfers.retrieve( res, suppressFailures, eventMetadata );
+        }
+        catch ( final TransferLocationException e )
+        {
+            logger.warn( "Timeout / bad gateway (following in-flight retrieval from: " + key + "): " + e.getMessage(),
+                         e );
+            return null;
+        }
+    }
+
     @Override
     public boolean exists(final ArtifactStore store, String path)
             throws IndyWorkflowException
@@ -497,11 +621,26 @@ public class DefaultDownloadManager
         final ConcreteResource res = new ConcreteResource( LocationUtils.toLocation( store ), path );
         if ( store instanceof RemoteRepository )
         {
+            if ( !circuitBreakers.tryAcquire( store.getKey() ) )
+            {
+                return false;
+            }
+
+            final long start = System.currentTimeMillis();
+            boolean completed = false;
             try {
-                return transfers.exists( res );
+                final boolean result = transfers.exists( res );
+                completed = true;
+                return result;
+            } catch (TransferLocationException e) {
+                circuitBreakers.recordFailure( store.getKey(), e );
+                logger.warn( "Existence check: " + e.getMessage(), e );
+                return false;
             } catch (TransferException e) {
                 logger.warn( "Existence check: " + e.getMessage(), e );
                 return false;
+            } finally {
+                completeCall( store.getKey(), completed, start );
             }
         }
         else
@@ -584,6 +723,7 @@ public class DefaultDownloadManager
         // Response.status( Status.BAD_REQUEST ).entity( "Deployment path already exists." ).build() );
         // }
 
+        final long start = metrics.start();
         try
         {
             return transfers.store( new ConcreteResource( LocationUtils.toLocation( store ), path ), stream,
@@ -594,7 +734,7 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Bad gateway: " + e.getMessage(), e );
             throw new IndyWorkflowException( "Failed to store path: {} in: {}. Reason: {}", e, path, store,
                                              e.getMessage() );
@@ -604,7 +744,7 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Timeout: " + e.getMessage(), e );
             throw new IndyWorkflowException( "Failed to store path: {} in: {}. Reason: {}", e, path, store,
                                              e.getMessage() );
@@ -614,7 +754,7 @@ public class DefaultDownloadManager
             Location location = e.getLocation();
             KeyedLocation kl = (KeyedLocation) location;
 
-            fileEventManager.fire( new IndyStoreErrorEvent( kl.getKey(), e ) );
+            fireStoreError( kl.getKey(), e );
             logger.warn( "Location Error: " + e.getMessage(), e );
             throw new IndyWorkflowException( "Failed to store path: {} in: {}. Reason: {}", e, path, store,
                                              e.getMessage() );
@@ -628,6 +768,10 @@ public class DefaultDownloadManager
             throw new IndyWorkflowException( "Failed to store: %s in: %s. Reason: %s", e, path, store.getKey(),
                                              e.getMessage() );
         }
+        finally
+        {
+            metrics.time( IndyMetric.DOWNLOAD_STORE, store.getKey(), start );
+        }
     }
 
     /*
@@ -1053,6 +1197,28 @@ public class DefaultDownloadManager
         }
     }
 
+    /**
+     * Report the end of an upstream call admitted by the circuit breaker. Calls that didn't complete release their
+     * probe slot here; if they failed with a store-level error, that is recorded through {@link #fireStoreError}.
+     */
+    private void completeCall( final StoreKey key, final boolean completed, final long start )
+    {
+        if ( completed )
+        {
+            circuitBreakers.recordSuccess( key, System.currentTimeMillis() - start );
+        }
+        else
+        {
+            circuitBreakers.release( key );
+        }
+    }
+
+    private void fireStoreError( final StoreKey key, final Throwable error )
+    {
+        circuitBreakers.recordFailure( key, error );
+        fileEventManager.fire( new IndyStoreErrorEvent( key, error ) );
+    }
+
     private ContentQuality getQuality( String path )
     {
         final ContentAdvisor advisor = StreamSupport.stream(
@@ -0,0 +1,295 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.breaker;
+
+import org.commonjava.indy.core.conf.CircuitBreakerConfig;
+import org.commonjava.indy.model.core.StoreKey;
+
+/**
+ * Circuit breaker for a single remote repository. Calls are counted in a ring of buckets covering the configured
+ * window; once enough calls have been seen and the error or slow-call rate crosses its threshold, the breaker opens
+ * and rejects calls until the open interval passes. It then goes half-open and admits a limited number of probes:
+ * if they all succeed (and aren't slow) it closes, otherwise it opens again with the interval doubled.
+ * <br/>
+ * All state is guarded by the instance monitor; every operation is O(buckets) at worst.
+ */
+public final class CircuitBreaker
+{
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int BUCKETS = 10;
+
+    private final StoreKey key;
+
+    private final CircuitBreakerConfig config;
+
+    private final long bucketMillis;
+
+    private final long[] bucketEpochs = new long[BUCKETS];
+
+    private final int[] calls = new int[BUCKETS];
+
+    private final int[] failures = new int[BUCKETS];
+
+    private final int[] slowCalls = new int[BUCKETS];
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private long openMillis;
+
+    private int probesInFlight;
+
+    private int probeSuccesses;
+
+    private long tripCount;
+
+    private long halfOpenCount;
+
+    private long closeCount;
+
+    private long rejectedCount;
+
+    private String lastError;
+
+    private long lastErrorAt;
+
+    CircuitBreaker( final StoreKey key, final CircuitBreakerConfig config )
+    {
+        this.key = key;
+        this.config = config;
+        this.bucketMillis = Math.max( 1, config.getWindowSeconds() * 1000L / BUCKETS );
+        this.openMillis = config.getOpenSeconds() * 1000L;
+    }
+
+    /**
+     * Check whether a call may go upstream. In the half-open state this reserves one of the probe slots, so callers
+     * that get <code>true</code> must report the outcome through {@link #onSuccess(long, long)} or
+     * {@link #onFailure(long, String)}.
+     */
+    synchronized boolean tryAcquire( final long now )
+    {
+        if ( state == State.OPEN )
+        {
+            if ( now - openedAt < openMillis )
+            {
+                rejectedCount++;
+                return false;
+            }
+
+            state = State.HALF_OPEN;
+            halfOpenCount++;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+
+        if ( state == State.HALF_OPEN )
+        {
+            if ( probesInFlight + probeSuccesses >= config.getHalfOpenProbes() )
+            {
+                rejectedCount++;
+                return false;
+            }
+
+            probesInFlight++;
+        }
+
+        return true;
+    }
+
+    synchronized void onSuccess( final long now, final long elapsedMillis )
+    {
+        final boolean slow = elapsedMillis >= config.getSlowCallMillis();
+        switch ( state )
+        {
+            case HALF_OPEN:
+            {
+                probesInFlight = Math.max( 0, probesInFlight - 1 );
+                if ( slow )
+                {
+                    reopen( now );
+                }
+                else if ( ++probeSuccesses >= config.getHalfOpenProbes() )
+                {
+                    close();
+                }
+                break;
+            }
+            case CLOSED:
+            {
+                record( now, false, slow );
+                break;
+            }
+            default:
+                // late completion of a call admitted before the breaker opened
+        }
+    }
+
+    synchronized void onFailure( final long now, final String error )
+    {
+        lastError = error;
+        lastErrorAt = now;
+
+        switch ( state )
+        {
+            case HALF_OPEN:
+            {
+                probesInFlight = Math.max( 0, probesInFlight - 1 );
+                reopen( now );
+                break;
+            }
+            case CLOSED:
+            {
+                record( now, true, false );
+                break;
+            }
+            default:
+        }
+    }
+
+    /**
+     * Give back a probe slot for a call that ended without a usable outcome (neither a response nor a store-level
+     * error).
+     */
+    synchronized void release()
+    {
+        if ( state == State.HALF_OPEN )
+        {
+            probesInFlight = Math.max( 0, probesInFlight - 1 );
+        }
+    }
+
+    synchronized CircuitBreakerStatus getStatus( final long now )
+    {
+        final CircuitBreakerStatus status = new CircuitBreakerStatus();
+        status.setKey( key.toString() );
+        status.setState( state.name() );
+
+        int windowCalls = 0;
+        int windowFailures = 0;
+        int windowSlow = 0;
+        final long epoch = now / bucketMillis;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            if ( epoch - bucketEpochs[i] < BUCKETS )
+            {
+                windowCalls += calls[i];
+                windowFailures += failures[i];
+                windowSlow += slowCalls[i];
+            }
+        }
+
+        status.setWindowCalls( windowCalls );
+        status.setWindowFailures( windowFailures );
+        status.setWindowSlowCalls( windowSlow );
+        if ( state != State.CLOSED )
+        {
+            status.setOpenedAt( openedAt );
+            status.setRetryAt( openedAt + openMillis );
+        }
+
+        status.setTripCount( tripCount );
+        status.setHalfOpenCount( halfOpenCount );
+        status.setCloseCount( closeCount );
+        status.setRejectedCount( rejectedCount );
+        status.setLastError( lastError );
+        status.setLastErrorAt( lastErrorAt );
+        return status;
+    }
+
+    synchronized State getState()
+    {
+        return state;
+    }
+
+    private void record( final long now, final boolean failure, final boolean slow )
+    {
+        final long epoch = now / bucketMillis;
+        final int idx = (int) ( epoch % BUCKETS );
+        if ( bucketEpochs[idx] != epoch )
+        {
+            bucketEpochs[idx] = epoch;
+            calls[idx] = 0;
+            failures[idx] = 0;
+            slowCalls[idx] = 0;
+        }
+
+        calls[idx]++;
+        if ( failure )
+        {
+            failures[idx]++;
+        }
+        if ( slow )
+        {
+            slowCalls[idx]++;
+        }
+
+        int windowCalls = 0;
+        int windowFailures = 0;
+        int windowSlow = 0;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            if ( epoch - bucketEpochs[i] < BUCKETS )
+            {
+                windowCalls += calls[i];
+                windowFailures += failures[i];
+                windowSlow += slowCalls[i];
+            }
+        }
+
+        if ( windowCalls < config.getMinRequests() )
+        {
+            return;
+        }
+
+        final int errorRate = config.getErrorRatePercent();
+        final int slowRate = config.getSlowCallRatePercent();
+        if ( ( errorRate > 0 && windowFailures * 100L >= errorRate * (long) windowCalls ) || ( slowRate > 0
+                && windowSlow * 100L >= slowRate * (long) windowCalls ) )
+        {
+            state = State.OPEN;
+            openedAt = now;
+            openMillis = config.getOpenSeconds() * 1000L;
+            tripCount++;
+        }
+    }
+
+    private void reopen( final long now )
+    {
+        state = State.OPEN;
+        openedAt = now;
+        openMillis = Math.min( openMillis * 2, config.getMaxOpenSeconds() * 1000L );
+        tripCount++;
+    }
+
+    private void close()
+    {
+        state = State.CLOSED;
+        closeCount++;
+        openMillis = config.getOpenSeconds() * 1000L;
+        for ( int i = 0; i < BUCKETS; i++ )
+        {
+            bucketEpochs[i] = 0;
+            calls[i] = 0;
+            failures[i] = 0;
+            slowCalls[i] = 0;
+        }
+    }
+}
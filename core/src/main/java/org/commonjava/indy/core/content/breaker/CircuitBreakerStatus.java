@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.breaker;
+
+/**
+ * Snapshot of a remote repository's {@link CircuitBreaker}. Times are in milliseconds since the epoch; the window
+ * counts cover the configured sliding window (they are reset whenever the breaker closes).
+ */
+public class CircuitBreakerStatus
+{
+    private String key;
+
+    private String state;
+
+    private int windowCalls;
+
+    private int windowFailures;
+
+    private int windowSlowCalls;
+
+    private Long openedAt;
+
+    private Long retryAt;
+
+    private long tripCount;
+
+    private long halfOpenCount;
+
+    private long closeCount;
+
+    private long rejectedCount;
+
+    private String lastError;
+
+    private long lastErrorAt;
+
+    public String getKey()
+    {
+        return key;
+    }
+
+    public void setKey( final String key )
+    {
+        this.key = key;
+    }
+
+    public String getState()
+    {
+        return state;
+    }
+
+    public void setState( final String state )
+    {
+        this.state = state;
+    }
+
+    public int getWindowCalls()
+    {
+        return windowCalls;
+    }
+
+    public void setWindowCalls( final int windowCalls )
+    {
+        this.windowCalls = windowCalls;
+    }
+
+    public int getWindowFailures()
+    {
+        return windowFailures;
+    }
+
+    public void setWindowFailures( final int windowFailures )
+    {
+        this.windowFailures = windowFailures;
+    }
+
+    public int getWindowSlowCalls()
+    {
+        return windowSlowCalls;
+    }
+
+    public void setWindowSlowCalls( final int windowSlowCalls )
+    {
+        this.windowSlowCalls = windowSlowCalls;
+    }
+
+    public Long getOpenedAt()
+    {
+        return openedAt;
+    }
+
+    public void setOpenedAt( final Long openedAt )
+    {
+        this.openedAt = openedAt;
+    }
+
+    public Long getRetryAt()
+    {
+        return retryAt;
+    }
+
+    public void setRetryAt( final Long retryAt )
+    {
+        this.retryAt = retryAt;
+    }
+
+    public long getTripCount()
+    {
+        return tripCount;
+    }
+
+    public void setTripCount( final long tripCount )
+    {
+        this.tripCount = tripCount;
+    }
+
+    public long getHalfOpenCount()
+    {
+        return halfOpenCount;
+    }
+
+    public void setHalfOpenCount( final long halfOpenCount )
+    {
+        this.halfOpenCount = halfOpenCount;
+    }
+
+    public long getCloseCount()
+    {
+        return closeCount;
+    }
+
+    public void setCloseCount( final long closeCount )
+    {
+        this.closeCount = closeCount;
+    }
+
+    public long getRejectedCount()
+    {
+        return rejectedCount;
+    }
+
+    public void setRejectedCount( final long rejectedCount )
+    {
+        this.rejectedCount = rejectedCount;
+    }
+
+    public String getLastError()
+    {
+        return lastError;
+    }
+
+    public void setLastError( final String lastError )
+    {
+        this.lastError = lastError;
+    }
+
+    public long getLastErrorAt()
+    {
+        return lastErrorAt;
+    }
+
+    public void setLastErrorAt( final long lastErrorAt )
+    {
+        this.lastErrorAt = lastErrorAt;
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.breaker;
+
+import org.commonjava.indy.change.event.ArtifactStoreDeletePostEvent;
+import org.commonjava.indy.core.conf.CircuitBreakerConfig;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the in-memory {@link CircuitBreaker}s for remote repositories, created on first use. Nothing here touches the
+ * store definitions, so an unhealthy upstream doesn't cause store updates, events, or re-enablement jobs. When the
+ * breakers are disabled in {@link CircuitBreakerConfig}, every method is a no-op that admits all calls.
+ */
+@ApplicationScoped
+public class RemoteCircuitBreakers
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private CircuitBreakerConfig config;
+
+    private final Map<StoreKey, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    protected RemoteCircuitBreakers()
+    {
+    }
+
+    public RemoteCircuitBreakers( final CircuitBreakerConfig config )
+    {
+        this.config = config;
+    }
+
+    RemoteCircuitBreakers( final CircuitBreakerConfig config, final LongSupplier clock )
+    {
+        this.config = config;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled()
+    {
+        return config != null && config.isEnabled();
+    }
+
+    /**
+     * Whether a call to the given store may go upstream. For a half-open breaker this admits the call as a probe, so
+     * every <code>true</code> result must be followed by {@link #recordSuccess(StoreKey, long)},
+     * {@link #recordFailure(StoreKey, Throwable)} or {@link #release(StoreKey)}.
+     */
+    public boolean tryAcquire( final StoreKey key )
+    {
+        if ( !applies( key ) )
+        {
+            return true;
+        }
+
+        final CircuitBreaker breaker = breakers.computeIfAbsent( key, ( k ) -> new CircuitBreaker( k, config ) );
+        final boolean result = breaker.tryAcquire( clock.getAsLong() );
+        if ( !result )
+        {
+            logger.debug( "Circuit breaker for: {} is {}; skipping upstream request.", key, breaker.getState() );
+        }
+
+        return result;
+    }
+
+    public void recordSuccess( final StoreKey key, final long elapsedMillis )
+    {
+        final CircuitBreaker breaker = applies( key ) ? breakers.get( key ) : null;
+        if ( breaker != null )
+        {
+            breaker.onSuccess( clock.getAsLong(), elapsedMillis );
+        }
+    }
+
+    public void recordFailure( final StoreKey key, final Throwable error )
+    {
+        if ( !applies( key ) )
+        {
+            return;
+        }
+
+        final CircuitBreaker breaker = breakers.computeIfAbsent( key, ( k ) -> new CircuitBreaker( k, config ) );
+        final CircuitBreaker.State before = breaker.getState();
+        breaker.onFailure( clock.getAsLong(), String.valueOf( error ) );
+
+        if ( before != CircuitBreaker.State.OPEN && breaker.getState() == CircuitBreaker.State.OPEN )
+        {
+            logger.warn( "Circuit breaker for: {} opened after store-level error: {}", key, error );
+        }
+    }
+
+    /**
+     * Release a call admitted by {@link #tryAcquire(StoreKey)} that ended without a response or a store-level error.
+     */
+    public void release( final StoreKey key )
+    {
+        final CircuitBreaker breaker = applies( key ) ? breakers.get( key ) : null;
+        if ( breaker != null )
+        {
+            breaker.release();
+        }
+    }
+
+    /**
+     * Admit the given stores for a call spanning several of them, dropping the remote repositories whose breakers
+     * refuse it. Each remote goes through {@link #tryAcquire(StoreKey)}, so an open breaker whose interval has passed
+     * is admitted as a half-open probe, just like on the single-store path. The outcome must be reported through
+     * {@link #completeAll(List, StoreKey, boolean)}.
+     */
+    public <T extends ArtifactStore> List<T> acquireAll( final List<T> stores )
+    {
+        if ( !isEnabled() )
+        {
+            return stores;
+        }
+
+        List<T> result = null;
+        for ( int i = 0; i < stores.size(); i++ )
+        {
+            final T store = stores.get( i );
+            if ( !tryAcquire( store.getKey() ) )
+            {
+                if ( result == null )
+                {
+                    result = new ArrayList<>( stores.subList( 0, i ) );
+                }
+            }
+            else if ( result != null )
+            {
+                result.add( store );
+            }
+        }
+
+        return result == null ? stores : result;
+    }
+
+    /**
+     * Report the outcome of a call admitted by {@link #acquireAll(List)}. Stores are consulted in order, and
+     * <code>last</code> is the one where the call stopped (the hit, or the store that failed). Stores before it count as
+     * successes, and so does <code>last</code> unless <code>failed</code> is set; a store-level failure there has
+     * already been recorded. Stores after it were never reached, so their probe slots are released. With no
+     * <code>last</code>, every store succeeded, or, if <code>failed</code>, none can be credited and all are released.
+     * The elapsed time can't be split between the stores, so these calls never count as slow.
+     */
+    public void completeAll( final List<? extends ArtifactStore> admitted, final StoreKey last, final boolean failed )
+    {
+        if ( !isEnabled() )
+        {
+            return;
+        }
+
+        int stop = -1;
+        if ( last != null )
+        {
+            for ( int i = 0; i < admitted.size(); i++ )
+            {
+                if ( admitted.get( i ).getKey().equals( last ) )
+                {
+                    stop = i;
+                    break;
+                }
+            }
+        }
+
+        for ( int i = 0; i < admitted.size(); i++ )
+        {
+            final StoreKey key = admitted.get( i ).getKey();
+            if ( stop < 0 ? !failed : i < stop || ( i == stop && !failed ) )
+            {
+                recordSuccess( key, 0 );
+            }
+            else if ( i != stop )
+            {
+                release( key );
+            }
+        }
+    }
+
+    public Map<String, CircuitBreakerStatus> getStatus()
+    {
+        final long now = clock.getAsLong();
+        final Map<String, CircuitBreakerStatus> result = new TreeMap<>();
+        breakers.forEach( ( key, breaker ) -> result.put( key.toString(), breaker.getStatus( now ) ) );
+        return result;
+    }
+
+    public CircuitBreakerStatus getStatus( final StoreKey key )
+    {
+        final CircuitBreaker breaker = breakers.get( key );
+        return breaker == null ? null : breaker.getStatus( clock.getAsLong() );
+    }
+
+    /**
+     * Forget the breaker for the given store, closing it. Returns false if there was none.
+     */
+    public boolean reset( final StoreKey key )
+    {
+        return breakers.remove( key ) != null;
+    }
+
+    public void onStoreDeletion( @Observes final ArtifactStoreDeletePostEvent event )
+    {
+        for ( final ArtifactStore store : event )
+        {
+            breakers.remove( store.getKey() );
+        }
+    }
+
+    private boolean applies( final StoreKey key )
+    {
+        return isEnabled() && key != null && key.getType() == StoreType.remote;
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.coalesce;
+
+import org.commonjava.indy.conf.DefaultIndyConfiguration;
+import org.commonjava.indy.conf.IndyConfiguration;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.maven.galley.TransferException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight layer for upstream retrievals from remote repositories. The first request for a given store and path
+ * (the leader) performs the upstream call; concurrent requests for the same store and path (followers) wait for it
+ * instead of starting their own download. Once the leader has finished, each follower resolves the now-cached content
+ * through its own call, so that per-request event metadata (content tracking, etc.) is still honored. If the leader
+ * found nothing, followers get nothing without going upstream again; if it failed, they fail with the same cause. A
+ * follower waits for the leader at most the configured coalescing wait, which covers a whole download (the remote's
+ * timeout only bounds socket reads, so a large file legitimately takes longer); after that it stops waiting and
+ * retrieves on its own, so a hung leader can't pin every follower thread.
+ */
+@ApplicationScoped
+public class RemoteRetrievalCoalescer
+{
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private IndyConfiguration config;
+
+    private boolean enabled;
+
+    private int waitSeconds = DefaultIndyConfiguration.DEFAULT_REMOTE_RETRIEVAL_COALESCE_WAIT_SECONDS;
+
+    private final Map<Flight, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    protected RemoteRetrievalCoalescer()
+    {
+    }
+
+    public RemoteRetrievalCoalescer( final boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public RemoteRetrievalCoalescer( final IndyConfiguration config )
+    {
+        this.config = config;
+        init();
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        enabled = config.isRemoteRetrievalCoalescing();
+        waitSeconds = config.getRemoteRetrievalCoalesceWaitSeconds();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Run the upstream call for the given store and path, unless another thread is already running it. In that case,
+     * wait for the in-flight call and, if it produced a result, pass that to the follower call. If the in-flight call
+     * hasn't finished within the configured coalescing wait, run the upstream call independently instead.
+     */
+    public <T> T coalesce( final StoreKey key, final String path, final UpstreamCall<T> upstream,
+                           final FollowerCall<T> follower )
+            throws TransferException
+    {
+        if ( !enabled )
+        {
+            return upstream.call();
+        }
+
+        final Flight flight = new Flight( key, path );
+        final CompletableFuture<Object> mine = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = inFlight.putIfAbsent( flight, mine );
+        if ( existing == null )
+        {
+            leaders.increment();
+            try
+            {
+                final T result = upstream.call();
+                mine.complete( result );
+                return result;
+            }
+            catch ( TransferException | RuntimeException | Error e )
+            {
+                failures.increment();
+                mine.completeExceptionally( e );
+                throw e;
+            }
+            finally
+            {
+                inFlight.remove( flight, mine );
+            }
+        }
+
+        coalesced.increment();
+        logger.debug( "Joining in-flight retrieval of: {} from: {}", path, key );
+
+        final T leaderResult;
+        try
+        {
+            leaderResult = await( key, path, existing, waitSeconds );
+        }
+        catch ( final TimeoutException e )
+        {
+            timeouts.increment();
+            logger.warn( "In-flight retrieval of: {} from: {} didn't finish within {}s; retrieving independently.", path,
+                         key, waitSeconds );
+            return upstream.call();
+        }
+
+        return leaderResult == null ? null : follower.follow( leaderResult );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private <T> T await( final StoreKey key, final String path, final CompletableFuture<Object> future,
+                         final int timeoutSeconds )
+            throws TransferException, TimeoutException
+    {
+        try
+        {
+            return (T) future.get( timeoutSeconds, TimeUnit.SECONDS );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new TransferException( "Interrupted while waiting for in-flight retrieval of: %s from: %s", e, path,
+                                         key );
+        }
+        catch ( final ExecutionException e )
+        {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+
+            throw new TransferException( "In-flight retrieval of: %s from: %s failed. Reason: %s", cause, path, key,
+                                         cause.getMessage() );
+        }
+    }
+
+    public RetrievalCoalescingStats getStats()
+    {
+        return new RetrievalCoalescingStats( enabled, inFlight.size(), leaders.sum(), coalesced.sum(),
+                                             failures.sum(), timeouts.sum() );
+    }
+
+    @FunctionalInterface
+    public interface UpstreamCall<T>
+    {
+        T call()
+                throws TransferException;
+    }
+
+    @FunctionalInterface
+    public interface FollowerCall<T>
+    {
+        T follow( T leaderResult )
+                throws TransferException;
+    }
+
+    private static final class Flight
+    {
+        private final StoreKey key;
+
+        private final String path;
+
+        private final int hashCode;
+
+        Flight( final StoreKey key, final String path )
+        {
+            this.key = key;
+            this.path = path;
+            this.hashCode = Objects.hash( key, path );
+        }
+
+        @Override
+        public boolean equals( final Object o )
+        {
+            if ( this == o )
+            {
+                return true;
+            }
+            if ( !( o instanceof Flight ) )
+            {
+                return false;
+            }
+
+            final Flight other = (Flight) o;
+            return key.equals( other.key ) && path.equals( other.path );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.coalesce;
+
+/**
+ * Snapshot of {@link RemoteRetrievalCoalescer} counters. <code>leaders</code> counts retrievals that went upstream
+ * through the coalescer, <code>coalesced</code> counts requests that joined one of them instead, and
+ * <code>failures</code> counts leader retrievals that ended with an error (shared with all of their followers), and
+ * <code>timeouts</code> counts followers that gave up waiting for a leader and retrieved independently.
+ */
+public class RetrievalCoalescingStats
+{
+    private boolean enabled;
+
+    private int inFlight;
+
+    private long leaders;
+
+    private long coalesced;
+
+    private long failures;
+
+    private long timeouts;
+
+    public RetrievalCoalescingStats()
+    {
+    }
+
+    public RetrievalCoalescingStats( final boolean enabled, final int inFlight, final long leaders,
+                                     final long coalesced, final long failures, final long timeouts )
+    {
+        this.enabled = enabled;
+        this.inFlight = inFlight;
+        this.leaders = leaders;
+        this.coalesced = coalesced;
+        this.failures = failures;
+        this.timeouts = timeouts;
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled( final boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+
+    public int getInFlight()
+    {
+        return inFlight;
+    }
+
+    public void setInFlight( final int inFlight )
+    {
+        this.inFlight = inFlight;
+    }
+
+    public long getLeaders()
+    {
+        return leaders;
+    }
+
+    public void setLeaders( final long leaders )
+    {
+        this.leaders = leaders;
+    }
+
+    public long getCoalesced()
+    {
+        return coalesced;
+    }
+
+    public void setCoalesced( final long coalesced )
+    {
+        this.coalesced = coalesced;
+    }
+
+    public long getFailures()
+    {
+        return failures;
+    }
+
+    public void setFailures( final long failures )
+    {
+        this.failures = failures;
+    }
+
+    public long getTimeouts()
+    {
+        return timeouts;
+    }
+
+    public void setTimeouts( final long timeouts )
+    {
+        this.timeouts = timeouts;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "RetrievalCoalescingStats [enabled=%s, inFlight=%d, leaders=%d, coalesced=%d, failures=%d, timeouts=%d]",
+                enabled, inFlight, leaders, coalesced, failures, timeouts );
+    }
+}
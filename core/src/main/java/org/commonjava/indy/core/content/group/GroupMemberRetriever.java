@@ -0,0 +1,384 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.group;
+
+import org.commonjava.cdi.util.weft.ExecutorConfig;
+import org.commonjava.cdi.util.weft.WeftManaged;
+import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.content.ContentManager;
+import org.commonjava.indy.core.conf.GroupRetrievalConfig;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.commonjava.indy.util.ApplicationStatus;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.model.Transfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Retrieves content from an ordered list of group members. By default, members are probed one at a time, in order.
+ * When parallel retrieval is enabled in {@link GroupRetrievalConfig}, members are probed concurrently on a bounded
+ * executor, using a sliding window that always starts the highest-priority pending members first. Results are still
+ * resolved in member order: a hit is only returned once every higher-priority member has answered with a miss, and
+ * at that point probes which haven't started yet are cancelled. If the deadline passes while a higher-priority member
+ * is still pending, the retrieval fails with 502 (Bad Gateway) rather than returning a lower-priority hit.
+ * <br/>
+ * Probes that are already running when a winner is found are allowed to finish (they only populate the cache of the
+ * lower-priority member), since interrupting an in-progress transfer can leave partial content behind.
+ */
+@ApplicationScoped
+public class GroupMemberRetriever
+{
+
+    /**
+     * Retrieval of a path from a single (concrete) member store. Implementations return null for a miss.
+     */
+    @FunctionalInterface
+    public interface MemberRetrieval
+    {
+        Transfer retrieve( ArtifactStore member )
+                throws IndyWorkflowException;
+    }
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private GroupRetrievalConfig config;
+
+    @Inject
+    @WeftManaged
+    @ExecutorConfig( named = GroupRetrievalConfig.EXECUTOR_NAME, threads = 32, priority = 6, daemon = true )
+    private ExecutorService executor;
+
+    protected GroupMemberRetriever()
+    {
+    }
+
+    public GroupMemberRetriever( final GroupRetrievalConfig config, final ExecutorService executor )
+    {
+        this.config = config;
+        this.executor = executor;
+    }
+
+    /**
+     * Retrieve the path from the first member (in list order) that has it.
+     *
+     * @param groupKey The group the members belong to, used to look up per-group limits. May be null.
+     */
+    public Transfer retrieveFirst( final StoreKey groupKey, final List<? extends ArtifactStore> members,
+                                   final MemberRetrieval retrieval )
+            throws IndyWorkflowException
+    {
+        if ( !isParallel( members ) )
+        {
+            for ( final ArtifactStore member : members )
+            {
+                final Transfer txfr = retrieval.retrieve( member );
+                if ( txfr != null )
+                {
+                    return txfr;
+                }
+            }
+
+            return null;
+        }
+
+        final Probes probes = new Probes( groupKey, members, retrieval );
+        try
+        {
+            int resolved = 0;
+            while ( true )
+            {
+                probes.fill();
+
+                while ( resolved < probes.size && probes.complete[resolved] )
+                {
+                    if ( probes.errors[resolved] != null )
+                    {
+                        throw probes.errors[resolved];
+                    }
+                    else if ( probes.results[resolved] != null )
+                    {
+                        logger.debug( "Parallel retrieval in: {} resolved to member: {}", groupKey,
+                                      members.get( resolved ).getKey() );
+                        return probes.results[resolved];
+                    }
+
+                    resolved++;
+                }
+
+                if ( resolved >= probes.size )
+                {
+                    return null;
+                }
+
+                if ( !probes.awaitNext() )
+                {
+                    // a lower-priority hit can't be served while this member might still have the path
+                    throw new IndyWorkflowException( ApplicationStatus.BAD_GATEWAY.code(),
+                                                     "Timed out after %d ms waiting for: %s (member of: %s) to respond.",
+                                                     probes.timeoutMillis, members.get( resolved ).getKey(),
+                                                     groupKey );
+                }
+            }
+        }
+        finally
+        {
+            probes.cancel();
+        }
+    }
+
+    /**
+     * Retrieve the path from every member that has it. Results are returned in member order. If the deadline passes
+     * before every member has answered, this fails (502) rather than returning a partial list.
+     *
+     * @param groupKey The group the members belong to, used to look up per-group limits. May be null.
+     */
+    public List<Transfer> retrieveAll( final StoreKey groupKey, final List<? extends ArtifactStore> members,
+                                       final MemberRetrieval retrieval )
+            throws IndyWorkflowException
+    {
+        final List<Transfer> txfrs = new ArrayList<>();
+        if ( !isParallel( members ) )
+        {
+            for ( final ArtifactStore member : members )
+            {
+                final Transfer txfr = retrieval.retrieve( member );
+                if ( txfr != null )
+                {
+                    txfrs.add( txfr );
+                }
+            }
+
+            return txfrs;
+        }
+
+        final Probes probes = new Probes( groupKey, members, retrieval );
+        try
+        {
+            while ( probes.pending() )
+            {
+                probes.fill();
+                if ( !probes.awaitNext() )
+                {
+                    // callers merge what comes back (e.g. group metadata), so a partial list would be served as if it
+                    // were complete
+                    int i = 0;
+                    while ( probes.complete[i] )
+                    {
+                        i++;
+                    }
+
+                    throw new IndyWorkflowException( ApplicationStatus.BAD_GATEWAY.code(),
+                                                     "Timed out after %d ms waiting for: %s (member of: %s) to respond.",
+                                                     probes.timeoutMillis, members.get( i ).getKey(), groupKey );
+                }
+            }
+
+            for ( int i = 0; i < probes.size; i++ )
+            {
+                if ( probes.errors[i] != null )
+                {
+                    throw probes.errors[i];
+                }
+                else if ( probes.results[i] != null )
+                {
+                    txfrs.add( probes.results[i] );
+                }
+            }
+
+            return txfrs;
+        }
+        finally
+        {
+            probes.cancel();
+        }
+    }
+
+    /**
+     * The group whose members are being retrieved, as recorded under {@link ContentManager#ENTRY_POINT_STORE} in the
+     * request's metadata, or null if that isn't a group.
+     */
+    public static StoreKey groupKey( final EventMetadata eventMetadata )
+    {
+        final Object entryPoint = eventMetadata == null ? null : eventMetadata.get( ContentManager.ENTRY_POINT_STORE );
+        if ( entryPoint instanceof StoreKey && ( (StoreKey) entryPoint ).getType() == StoreType.group )
+        {
+            return (StoreKey) entryPoint;
+        }
+
+        return null;
+    }
+
+    private boolean isParallel( final List<? extends ArtifactStore> members )
+    {
+        return config != null && executor != null && config.isEnabled() && members.size() > 1;
+    }
+
+    /**
+     * State of one fanned-out retrieval: probe futures, per-member outcomes, and the sliding submission window.
+     */
+    private final class Probes
+    {
+        private final StoreKey groupKey;
+
+        private final List<? extends ArtifactStore> members;
+
+        private final MemberRetrieval retrieval;
+
+        private final int size;
+
+        private final int concurrency;
+
+        private final long timeoutMillis;
+
+        private final long deadline;
+
+        private final CompletionService<Transfer> completion = new ExecutorCompletionService<>( executor );
+
+        private final Map<Future<Transfer>, Integer> indexes = new HashMap<>();
+
+        private final AtomicBoolean cancelled = new AtomicBoolean( false );
+
+        private final Transfer[] results;
+
+        private final IndyWorkflowException[] errors;
+
+        private final boolean[] complete;
+
+        private int next;
+
+        private int inFlight;
+
+        private Probes( final StoreKey groupKey, final List<? extends ArtifactStore> members,
+                        final MemberRetrieval retrieval )
+        {
+            this.groupKey = groupKey;
+            this.members = members;
+            this.retrieval = retrieval;
+            this.size = members.size();
+
+            final String groupName = groupKey == null ? null : groupKey.getName();
+            this.concurrency = config.getConcurrency( groupName );
+            this.timeoutMillis = config.getTimeoutMillis( groupName );
+            this.deadline = System.currentTimeMillis() + timeoutMillis;
+
+            this.results = new Transfer[size];
+            this.errors = new IndyWorkflowException[size];
+            this.complete = new boolean[size];
+        }
+
+        private boolean pending()
+        {
+            return next < size || inFlight > 0;
+        }
+
+        private void fill()
+        {
+            while ( inFlight < concurrency && next < size )
+            {
+                final ArtifactStore member = members.get( next );
+                final Future<Transfer> future = completion.submit( () -> cancelled.get() ? null : retrieval.retrieve( member ) );
+                indexes.put( future, next );
+                next++;
+                inFlight++;
+            }
+        }
+
+        /**
+         * Wait for the next probe to finish, and record its outcome.
+         *
+         * @return false if the deadline passed first
+         */
+        private boolean awaitNext()
+                throws IndyWorkflowException
+        {
+            final long remaining = deadline - System.currentTimeMillis();
+            if ( remaining <= 0 )
+            {
+                return false;
+            }
+
+            Future<Transfer> future;
+            try
+            {
+                future = completion.poll( remaining, TimeUnit.MILLISECONDS );
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new IndyWorkflowException( "Interrupted while retrieving content from members of: %s", e,
+                                                 groupKey );
+            }
+
+            if ( future == null )
+            {
+                return false;
+            }
+
+            inFlight--;
+            final int idx = indexes.remove( future );
+            complete[idx] = true;
+            try
+            {
+                results[idx] = future.get();
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new IndyWorkflowException( "Interrupted while retrieving content from members of: %s", e,
+                                                 groupKey );
+            }
+            catch ( final ExecutionException e )
+            {
+                final Throwable cause = e.getCause();
+                if ( cause instanceof IndyWorkflowException )
+                {
+                    errors[idx] = (IndyWorkflowException) cause;
+                }
+                else
+                {
+                    errors[idx] = new IndyWorkflowException( "Failed to retrieve content from: %s. Reason: %s", cause,
+                                                             members.get( idx ).getKey(), cause.getMessage() );
+                }
+            }
+
+            return true;
+        }
+
+        private void cancel()
+        {
+            cancelled.set( true );
+            indexes.keySet().forEach( ( future ) -> future.cancel( false ) );
+        }
+    }
+
+}
@@ -21,6 +21,8 @@ import static org.commonjava.indy.util.LocationUtils.getKey;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -84,6 +86,17 @@ public class GroupMergeHelper
 
     public final void writeMergeInfo( final byte[] data, final List<Transfer> sources, final Group group,
                                       final String path )
+    {
+        final List<StoreKey> keys = new ArrayList<>( sources.size() );
+        for ( final Transfer source : sources )
+        {
+            keys.add( getKey( source ) );
+        }
+
+        writeMergeInfo( group, path, keys );
+    }
+
+    public final void writeMergeInfo( final Group group, final String path, final Collection<StoreKey> sources )
     {
         final Transfer targetInfo = downloadManager.getStorageReference( group, path + MERGEINFO_SUFFIX );
 
@@ -91,9 +104,8 @@ public class GroupMergeHelper
         try
         {
             fw = new OutputStreamWriter( targetInfo.openOutputStream( TransferOperation.GENERATE ) );
-            for ( final Transfer source : sources )
+            for ( final StoreKey key : sources )
             {
-                final StoreKey key = getKey( source );
                 fw.write( key.toString() );
                 fw.write( "\n" );
             }
@@ -106,6 +106,15 @@ public class ContentController
         this.mimeTyper = mimeTyper;
     }
 
+    /**
+     * Resolve a store type and name from a request to the key instance the store manager holds, so per-request keys
+     * aren't allocated for stores that exist. Unknown stores still get a fresh key.
+     */
+    public StoreKey canonicalKey( final StoreType type, final String name )
+    {
+        return storeManager.canonicalKey( type, name );
+    }
+
     public ApplicationStatus delete( final StoreType type, final String name, final String path )
         throws IndyWorkflowException
     {
@@ -116,7 +125,7 @@ public class ContentController
                                      final EventMetadata eventMetadata )
         throws IndyWorkflowException
     {
-        return delete( new StoreKey( type, name ), path, eventMetadata );
+        return delete( canonicalKey( type, name ), path, eventMetadata );
     }
 
     public ApplicationStatus delete( final StoreKey key, final String path )
@@ -164,7 +173,7 @@ public class ContentController
                            final EventMetadata eventMetadata )
         throws IndyWorkflowException
     {
-        return store( new StoreKey( type, name ), path, stream, eventMetadata );
+        return store( canonicalKey( type, name ), path, stream, eventMetadata );
     }
 
     public Transfer store( final StoreKey key, final String path, final InputStream stream )
@@ -268,7 +277,7 @@ public class ContentController
                                  final String serviceUrl, final UriFormatter uriFormatter )
         throws IndyWorkflowException
     {
-        final StoreKey key = new StoreKey( type, name );
+        final StoreKey key = canonicalKey( type, name );
         return renderListing( acceptHeader, key, path, serviceUrl, uriFormatter );
     }
 
@@ -411,7 +420,7 @@ public class ContentController
     public List<StoreResource> getListing( final StoreType type, final String name, final String path )
         throws IndyWorkflowException
     {
-        return getListing( new StoreKey( type, name ), path );
+        return getListing( canonicalKey( type, name ), path );
     }
 
     public List<StoreResource> getListing( final StoreKey key, final String path )
@@ -34,7 +34,9 @@ import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.core.inject.IndexedMemoryNotFoundCache;
 import org.commonjava.indy.model.core.dto.NotFoundCacheDTO;
+import org.commonjava.indy.model.core.dto.NotFoundCacheStatsDTO;
 import org.commonjava.indy.model.galley.KeyedLocation;
 import org.commonjava.maven.galley.model.ConcreteResource;
 import org.commonjava.maven.galley.model.Location;
@@ -133,6 +135,20 @@ public class NfcController
         return dto;
     }
 
+    /**
+     * Retrieve hit, miss, eviction and expiration counters for the not-found cache. If the cache implementation in use
+     * doesn't track these, the returned counters are all zero.
+     */
+    public NotFoundCacheStatsDTO getStats()
+    {
+        if ( cache instanceof IndexedMemoryNotFoundCache )
+        {
+            return ( (IndexedMemoryNotFoundCache) cache ).getStats();
+        }
+
+        return new NotFoundCacheStatsDTO();
+    }
+
     public void clear()
     {
         cache.clearAllMissing();
@@ -88,6 +88,12 @@ public class DatabaseLifecycleActions
             return;
         }
 
+        if ( schedulerConfig.isWheelEngine() )
+        {
+            logger.info( "Scheduler uses the in-process expiration wheel. Skipping database initialization" );
+            return;
+        }
+
         final CharSequence violations = schedulerConfig.validate();
         if ( violations != null )
         {
@@ -310,6 +316,11 @@ public class DatabaseLifecycleActions
             return;
         }
 
+        if ( schedulerConfig.isWheelEngine() )
+        {
+            return;
+        }
+
         final String dbDriver = schedulerConfig.getDbDriver();
         if ( dbDriver.startsWith( APACHEDB_DRIVER_SUPER_PACKAGE ) )
         {
@@ -0,0 +1,737 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.expire;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process alternative to the Quartz job store for {@link ScheduleManager}: a hierarchical timing wheel with one
+ * second resolution (256 one-second slots, then three levels of 64 slots each, covering roughly two years before
+ * entries are parked in the farthest slot and re-cascaded).
+ * <br/>
+ * Entries are also indexed by group (store key + job type) and name (path), so per-store bulk operations such as
+ * {@link #cancelAllBefore(String, long)} only touch that store's entries. All wheel state is guarded by one short,
+ * I/O-free lock; persistence happens on the tick thread, which appends the changes made since the last tick to an
+ * append-only log in one batch. The log is replayed (and compacted) on {@link #start()}.
+ * <br/>
+ * The given listener receives the same {@link SchedulerEvent}s the Quartz listeners produce: SCHEDULE for every
+ * schedule, CANCEL when a {@link ScheduleManager#CONTENT_JOB_TYPE} entry is cancelled, and TRIGGER when an entry
+ * fires. TRIGGER events are delivered on the tick thread, so the listener should hand them off.
+ */
+public class ExpirationWheel
+{
+    private static final long TICK_MILLIS = 1000;
+
+    private static final int[] LEVEL_BITS = { 8, 6, 6, 6 };
+
+    private static final byte SCHEDULE_RECORD = 'S';
+
+    private static final byte CANCEL_RECORD = 'C';
+
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final File logFile;
+
+    private final Consumer<SchedulerEvent> listener;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Set<Entry>[][] wheel;
+
+    private final int[] shifts = new int[LEVEL_BITS.length];
+
+    private final Map<String, Map<String, Entry>> index = new HashMap<>();
+
+    private List<Entry> pending = new ArrayList<>();
+
+    private long currentTick;
+
+    private int size;
+
+    private long recordsSinceCompaction;
+
+    private DataOutputStream out;
+
+    private ScheduledExecutorService ticker;
+
+    @SuppressWarnings( "unchecked" )
+    public ExpirationWheel( final File logFile, final Consumer<SchedulerEvent> listener )
+    {
+        this.logFile = logFile;
+        this.listener = listener;
+
+        wheel = new Set[LEVEL_BITS.length][];
+        int shift = 0;
+        for ( int level = 0; level < LEVEL_BITS.length; level++ )
+        {
+            wheel[level] = new Set[1 << LEVEL_BITS[level]];
+            shifts[level] = shift;
+            shift += LEVEL_BITS[level];
+        }
+
+        currentTick = System.currentTimeMillis() / TICK_MILLIS;
+    }
+
+    public void start()
+            throws IOException
+    {
+        if ( logFile != null )
+        {
+            replay();
+            compact();
+        }
+
+        ticker = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "indy-expiration-wheel" );
+            t.setDaemon( true );
+            return t;
+        } );
+
+        ticker.scheduleAtFixedRate( this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS );
+    }
+
+    public void stop()
+    {
+        if ( ticker != null )
+        {
+            ticker.shutdownNow();
+            try
+            {
+                ticker.awaitTermination( 5, TimeUnit.SECONDS );
+            }
+            catch ( final InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flush();
+        synchronized ( this )
+        {
+            closeLog();
+        }
+    }
+
+    /**
+     * Schedule (or replace) the entry with the given group and name to fire after the given delay, and then every
+     * repeatMillis if that is positive.
+     */
+    public void schedule( final String group, final String name, final String jobType, final String payload,
+                          final long delayMillis, final long repeatMillis )
+    {
+        final Entry entry = new Entry( group, name, jobType, payload,
+                                       System.currentTimeMillis() + Math.max( 0, delayMillis ), repeatMillis );
+        lock.lock();
+        try
+        {
+            remove( group, name );
+            insert( entry );
+            pending.add( entry );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        listener.accept( new SchedulerEvent( SchedulerEventType.SCHEDULE, jobType, payload ) );
+    }
+
+    public boolean cancel( final String group, final String name )
+    {
+        final Entry removed;
+        lock.lock();
+        try
+        {
+            removed = remove( group, name );
+            if ( removed != null )
+            {
+                pending.add( Entry.cancellation( group, name ) );
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        if ( removed == null )
+        {
+            return false;
+        }
+
+        fireCancelled( Collections.singletonList( removed ) );
+        return true;
+    }
+
+    /**
+     * Cancel all entries in the group, returning their names.
+     */
+    public Set<String> cancelAll( final String group )
+    {
+        return cancelAllBefore( group, Long.MAX_VALUE );
+    }
+
+    /**
+     * Cancel all entries in the group that would fire at or before the given time, returning their names.
+     */
+    public Set<String> cancelAllBefore( final String group, final long deadlineMillis )
+    {
+        final List<Entry> removed = new ArrayList<>();
+        lock.lock();
+        try
+        {
+            final Map<String, Entry> entries = index.get( group );
+            if ( entries == null )
+            {
+                return Collections.emptySet();
+            }
+
+            for ( final Entry entry : new ArrayList<>( entries.values() ) )
+            {
+                if ( entry.fireAt <= deadlineMillis )
+                {
+                    remove( group, entry.name );
+                    pending.add( Entry.cancellation( group, entry.name ) );
+                    removed.add( entry );
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        fireCancelled( removed );
+
+        final Set<String> names = new HashSet<>( removed.size() );
+        removed.forEach( e -> names.add( e.name ) );
+        return names;
+    }
+
+    /**
+     * Return the groups that currently have scheduled entries.
+     */
+    public Set<String> getGroups()
+    {
+        lock.lock();
+        try
+        {
+            return new HashSet<>( index.keySet() );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return name -> next fire time (millis) for all entries of the given group.
+     */
+    public Map<String, Long> getExpirations( final String group )
+    {
+        lock.lock();
+        try
+        {
+            final Map<String, Entry> entries = index.get( group );
+            if ( entries == null )
+            {
+                return Collections.emptyMap();
+            }
+
+            final Map<String, Long> result = new LinkedHashMap<>( entries.size() );
+            entries.forEach( ( name, entry ) -> result.put( name, entry.fireAt ) );
+            return result;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advance the wheel up to the current time, firing everything that came due, then persist the batch of changes.
+     * Package-private for tests.
+     */
+    void tick()
+    {
+        try
+        {
+            advanceTo( System.currentTimeMillis() / TICK_MILLIS );
+            flush();
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.error( "Expiration wheel tick failed: " + e.getMessage(), e );
+        }
+    }
+
+    void advanceTo( final long targetTick )
+    {
+        final List<Entry> fired = new ArrayList<>();
+        lock.lock();
+        try
+        {
+            while ( currentTick < targetTick )
+            {
+                currentTick++;
+
+                for ( int level = LEVEL_BITS.length - 1; level > 0; level-- )
+                {
+                    if ( ( currentTick & ( ( 1L << shifts[level] ) - 1 ) ) == 0 )
+                    {
+                        final Set<Entry> bucket = detach( level, slot( level, currentTick ) );
+                        if ( bucket != null )
+                        {
+                            bucket.forEach( this::place );
+                        }
+                    }
+                }
+
+                final Set<Entry> due = detach( 0, slot( 0, currentTick ) );
+                if ( due != null )
+                {
+                    for ( final Entry entry : due )
+                    {
+                        if ( entry.tick > currentTick )
+                        {
+                            place( entry );
+                            continue;
+                        }
+
+                        remove( entry.group, entry.name );
+                        fired.add( entry );
+
+                        if ( entry.repeatMillis > 0 )
+                        {
+                            final Entry next = new Entry( entry.group, entry.name, entry.jobType, entry.payload,
+                                                          entry.fireAt + entry.repeatMillis, entry.repeatMillis );
+                            insert( next );
+                            pending.add( next );
+                        }
+                        else
+                        {
+                            pending.add( Entry.cancellation( entry.group, entry.name ) );
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        for ( final Entry entry : fired )
+        {
+            logger.debug( "EXPIRED: {}/{}", entry.group, entry.name );
+            try
+            {
+                listener.accept( new SchedulerEvent( SchedulerEventType.TRIGGER, entry.jobType, entry.payload ) );
+            }
+            catch ( final RuntimeException e )
+            {
+                logger.error( String.format( "Failed to dispatch expiration of: %s/%s. Reason: %s", entry.group,
+                                             entry.name, e.getMessage() ), e );
+            }
+        }
+    }
+
+    private void fireCancelled( final List<Entry> removed )
+    {
+        for ( final Entry entry : removed )
+        {
+            if ( ScheduleManager.CONTENT_JOB_TYPE.equals( entry.jobType ) )
+            {
+                listener.accept( new SchedulerEvent( SchedulerEventType.CANCEL, entry.jobType, entry.payload ) );
+            }
+        }
+    }
+
+    // wheel structure; callers hold the lock
+
+    private void insert( final Entry entry )
+    {
+        index.computeIfAbsent( entry.group, g -> new HashMap<>() ).put( entry.name, entry );
+        size++;
+
+        if ( entry.tick <= currentTick )
+        {
+            entry.tick = currentTick + 1;
+        }
+
+        place( entry );
+    }
+
+    private Entry remove( final String group, final String name )
+    {
+        final Map<String, Entry> entries = index.get( group );
+        if ( entries == null )
+        {
+            return null;
+        }
+
+        final Entry entry = entries.remove( name );
+        if ( entries.isEmpty() )
+        {
+            index.remove( group );
+        }
+
+        if ( entry != null )
+        {
+            size--;
+            if ( entry.bucket != null )
+            {
+                entry.bucket.remove( entry );
+                entry.bucket = null;
+            }
+        }
+
+        return entry;
+    }
+
+    private void place( final Entry entry )
+    {
+        final long delta = Math.max( 0, entry.tick - currentTick );
+        int level = 0;
+        long tick = entry.tick;
+        while ( level < LEVEL_BITS.length && delta >= ( 1L << ( shifts[level] + LEVEL_BITS[level] ) ) )
+        {
+            level++;
+        }
+
+        if ( level == LEVEL_BITS.length )
+        {
+            // beyond the wheel's horizon; park in the farthest top-level slot and re-cascade from there
+            level = LEVEL_BITS.length - 1;
+            tick = currentTick + ( 1L << ( shifts[level] + LEVEL_BITS[level] ) ) - 1;
+        }
+
+        final int slot = slot( level, tick );
+        Set<Entry> bucket = wheel[level][slot];
+        if ( bucket == null )
+        {
+            bucket = new HashSet<>();
+            wheel[level][slot] = bucket;
+        }
+
+        bucket.add( entry );
+        entry.bucket = bucket;
+    }
+
+    private Set<Entry> detach( final int level, final int slot )
+    {
+        final Set<Entry> bucket = wheel[level][slot];
+        wheel[level][slot] = null;
+        if ( bucket != null )
+        {
+            bucket.forEach( e -> e.bucket = null );
+        }
+
+        return bucket;
+    }
+
+    private int slot( final int level, final long tick )
+    {
+        return (int) ( ( tick >>> shifts[level] ) & ( ( 1 << LEVEL_BITS[level] ) - 1 ) );
+    }
+
+    // persistence
+
+    private void flush()
+    {
+        if ( logFile == null )
+        {
+            return;
+        }
+
+        final List<Entry> batch;
+        final boolean compact;
+        lock.lock();
+        try
+        {
+            if ( pending.isEmpty() )
+            {
+                return;
+            }
+
+            batch = pending;
+            pending = new ArrayList<>();
+            recordsSinceCompaction += batch.size();
+            compact = recordsSinceCompaction > Math.max( MIN_RECORDS_BEFORE_COMPACTION, 2L * size );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        synchronized ( this )
+        {
+            try
+            {
+                if ( out == null )
+                {
+                    out = openLog();
+                }
+
+                for ( final Entry entry : batch )
+                {
+                    write( out, entry );
+                }
+                out.flush();
+            }
+            catch ( final IOException e )
+            {
+                logger.error( String.format( "Failed to persist %d expiration changes to: %s. Reason: %s",
+                                             batch.size(), logFile, e.getMessage() ), e );
+                closeLog();
+            }
+        }
+
+        if ( compact )
+        {
+            try
+            {
+                compact();
+            }
+            catch ( final IOException e )
+            {
+                logger.error( String.format( "Failed to compact expiration log: %s. Reason: %s", logFile,
+                                             e.getMessage() ), e );
+            }
+        }
+    }
+
+    private void replay()
+            throws IOException
+    {
+        if ( !logFile.exists() )
+        {
+            return;
+        }
+
+        final Map<String, Entry> live = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream( new FileInputStream( logFile ) ) ))
+        {
+            while ( true )
+            {
+                final byte op = in.readByte();
+                final String group = in.readUTF();
+                final String name = in.readUTF();
+                if ( op == SCHEDULE_RECORD )
+                {
+                    final String jobType = in.readUTF();
+                    final String payload = in.readUTF();
+                    final long fireAt = in.readLong();
+                    final long repeat = in.readLong();
+                    live.put( group + '\n' + name, new Entry( group, name, jobType, payload, fireAt, repeat ) );
+                }
+                else
+                {
+                    live.remove( group + '\n' + name );
+                }
+            }
+        }
+        catch ( final EOFException | UTFDataFormatException e )
+        {
+            // end of log, or a torn record from an unclean shutdown
+        }
+
+        lock.lock();
+        try
+        {
+            live.values().forEach( this::insert );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        logger.info( "Restored {} scheduled expirations from: {}", live.size(), logFile );
+    }
+
+    private void compact()
+            throws IOException
+    {
+        final List<Entry> snapshot = new ArrayList<>();
+        synchronized ( this )
+        {
+            lock.lock();
+            try
+            {
+                index.values().forEach( entries -> snapshot.addAll( entries.values() ) );
+                pending = new ArrayList<>();
+                recordsSinceCompaction = 0;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            closeLog();
+
+            final File dir = logFile.getAbsoluteFile().getParentFile();
+            if ( dir != null )
+            {
+                dir.mkdirs();
+            }
+
+            final File tmp = new File( logFile.getPath() + ".tmp" );
+            try (DataOutputStream tmpOut = new DataOutputStream(
+                    new BufferedOutputStream( new FileOutputStream( tmp ) ) ))
+            {
+                for ( final Entry entry : snapshot )
+                {
+                    write( tmpOut, entry );
+                }
+            }
+
+            Files.move( tmp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+
+            out = openLog();
+        }
+    }
+
+    private DataOutputStream openLog()
+            throws IOException
+    {
+        final File dir = logFile.getAbsoluteFile().getParentFile();
+        if ( dir != null )
+        {
+            dir.mkdirs();
+        }
+
+        return new DataOutputStream( new BufferedOutputStream( new FileOutputStream( logFile, true ) ) );
+    }
+
+    private void closeLog()
+    {
+        if ( out != null )
+        {
+            try
+            {
+                out.close();
+            }
+            catch ( final IOException e )
+            {
+                logger.warn( "Failed to close expiration log: {}. Reason: {}", logFile, e.getMessage() );
+            }
+            out = null;
+        }
+    }
+
+    private static void write( final DataOutputStream out, final Entry entry )
+            throws IOException
+    {
+        if ( entry.jobType == null )
+        {
+            out.writeByte( CANCEL_RECORD );
+            out.writeUTF( entry.group );
+            out.writeUTF( entry.name );
+        }
+        else
+        {
+            out.writeByte( SCHEDULE_RECORD );
+            out.writeUTF( entry.group );
+            out.writeUTF( entry.name );
+            out.writeUTF( entry.jobType );
+            out.writeUTF( entry.payload == null ? "" : entry.payload );
+            out.writeLong( entry.fireAt );
+            out.writeLong( entry.repeatMillis );
+        }
+    }
+
+    private static final class Entry
+    {
+        private final String group;
+
+        private final String name;
+
+        private final String jobType;
+
+        private final String payload;
+
+        private final long fireAt;
+
+        private final long repeatMillis;
+
+        private long tick;
+
+        private Set<Entry> bucket;
+
+        Entry( final String group, final String name, final String jobType, final String payload, final long fireAt,
+               final long repeatMillis )
+        {
+            this.group = group;
+            this.name = name;
+            this.jobType = jobType;
+            this.payload = payload;
+            this.fireAt = fireAt;
+            this.repeatMillis = repeatMillis;
+            this.tick = ( fireAt + TICK_MILLIS - 1 ) / TICK_MILLIS;
+        }
+
+        /**
+         * Log record for a cancelled or completed entry; never placed in the wheel.
+         */
+        static Entry cancellation( final String group, final String name )
+        {
+            return new Entry( group, name, null, null, 0, 0 );
+        }
+    }
+}
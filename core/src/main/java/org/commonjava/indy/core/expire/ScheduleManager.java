@@ -15,6 +15,9 @@
  */
 package org.commonjava.indy.core.expire;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -67,6 +70,7 @@ import org.quartz.TriggerBuilder;
 import org.quartz.TriggerKey;
 import org.quartz.impl.StdSchedulerFactory;
 import org.quartz.impl.matchers.GroupMatcher;
+import org.quartz.impl.matchers.StringMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -112,6 +116,9 @@ public class ScheduleManager
 
     private Scheduler scheduler;
 
+    // thread-safe on its own, so calls routed to the wheel don't lock; Quartz calls are serialized on this monitor
+    private ExpirationWheel wheel;
+
     @Inject
     @Any
     private Instance<ContentAdvisor> contentAdvisor;
@@ -126,6 +133,24 @@ public class ScheduleManager
             return;
         }
 
+        if ( schedulerConfig.isWheelEngine() )
+        {
+            final File logFile = new File( schedulerConfig.getWheelLogFile() );
+            logger.info( "Starting in-process expiration wheel, persisted to: {}", logFile );
+
+            wheel = new ExpirationWheel( logFile, this::dispatch );
+            try
+            {
+                wheel.start();
+            }
+            catch ( final IOException e )
+            {
+                throw new IndyLifecycleException( "Failed to start expiration wheel from: %s", e, logFile );
+            }
+
+            return;
+        }
+
         try
         {
             final Properties props = new Properties();
@@ -172,6 +197,23 @@ public class ScheduleManager
         }
     }
 
+    private void dispatch( final SchedulerEvent event )
+    {
+        if ( eventDispatcher == null )
+        {
+            return;
+        }
+
+        if ( event.getEventType() == SchedulerEventType.TRIGGER )
+        {
+            executor.execute( () -> eventDispatcher.fire( event ) );
+        }
+        else
+        {
+            eventDispatcher.fire( event );
+        }
+    }
+
     public static SchedulerEvent createEvent( final SchedulerEventType eventType, final JobDetail jobDetail )
     {
         final JobDataMap dataMap = jobDetail.getJobDataMap();
@@ -182,7 +224,22 @@ public class ScheduleManager
         return new SchedulerEvent( eventType, type, data );
     }
 
-    public synchronized void rescheduleSnapshotTimeouts( final HostedRepository deploy )
+    public void rescheduleSnapshotTimeouts( final HostedRepository deploy )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            doRescheduleSnapshotTimeouts( deploy );
+            return;
+        }
+
+        synchronized ( this )
+        {
+            doRescheduleSnapshotTimeouts( deploy );
+        }
+    }
+
+    private void doRescheduleSnapshotTimeouts( final HostedRepository deploy )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -212,7 +269,22 @@ public class ScheduleManager
         }
     }
 
-    public synchronized void rescheduleProxyTimeouts( final RemoteRepository repo )
+    public void rescheduleProxyTimeouts( final RemoteRepository repo )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            doRescheduleProxyTimeouts( repo );
+            return;
+        }
+
+        synchronized ( this )
+        {
+            doRescheduleProxyTimeouts( repo );
+        }
+    }
+
+    private void doRescheduleProxyTimeouts( final RemoteRepository repo )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -245,7 +317,22 @@ public class ScheduleManager
         }
     }
 
-    public synchronized void setProxyTimeouts( final StoreKey key, final String path )
+    public void setProxyTimeouts( final StoreKey key, final String path )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            doSetProxyTimeouts( key, path );
+            return;
+        }
+
+        synchronized ( this )
+        {
+            doSetProxyTimeouts( key, path );
+        }
+    }
+
+    private void doSetProxyTimeouts( final StoreKey key, final String path )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -304,9 +391,25 @@ public class ScheduleManager
         }
     }
 
-    public synchronized void scheduleForStore( final StoreKey key, final String jobType, final String jobName, final Object payload,
+    public void scheduleForStore( final StoreKey key, final String jobType, final String jobName, final Object payload,
                                   final int startSeconds, final int repeatSeconds )
         throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            doScheduleForStore( key, jobType, jobName, payload, startSeconds, repeatSeconds );
+            return;
+        }
+
+        synchronized ( this )
+        {
+            doScheduleForStore( key, jobType, jobName, payload, startSeconds, repeatSeconds );
+        }
+    }
+
+    private void doScheduleForStore( final StoreKey key, final String jobType, final String jobName,
+                                     final Object payload, final int startSeconds, final int repeatSeconds )
+        throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
         {
@@ -325,6 +428,13 @@ public class ScheduleManager
             throw new IndySchedulerException( "Failed to serialize JSON payload: " + payload, e );
         }
 
+        if ( wheel != null )
+        {
+            wheel.schedule( groupName( key, jobType ), jobName, jobType, dataMap.getString( PAYLOAD ),
+                            startSeconds * 1000L, repeatSeconds > 0 ? repeatSeconds * 1000L : -1 );
+            return;
+        }
+
         final JobKey jk = new JobKey( jobName, groupName( key, jobType ) );
         try
         {
@@ -360,7 +470,7 @@ public class ScheduleManager
         }
     }
 
-    public synchronized void scheduleContentExpiration( final StoreKey key, final String path, final int timeoutSeconds )
+    public void scheduleContentExpiration( final StoreKey key, final String path, final int timeoutSeconds )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -375,7 +485,22 @@ public class ScheduleManager
         scheduleForStore( key, CONTENT_JOB_TYPE, path, new ContentExpiration( key, path ), timeoutSeconds, -1 );
     }
 
-    public synchronized void setSnapshotTimeouts( final StoreKey key, final String path )
+    public void setSnapshotTimeouts( final StoreKey key, final String path )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            doSetSnapshotTimeouts( key, path );
+            return;
+        }
+
+        synchronized ( this )
+        {
+            doSetSnapshotTimeouts( key, path );
+        }
+    }
+
+    private void doSetSnapshotTimeouts( final StoreKey key, final String path )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -460,7 +585,21 @@ public class ScheduleManager
         return null;
     }
 
-    public synchronized Set<TriggerKey> cancelAllBefore( final GroupMatcher<TriggerKey> matcher, final long timeout )
+    public Set<TriggerKey> cancelAllBefore( final GroupMatcher<TriggerKey> matcher, final long timeout )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            return doCancelAllBefore( matcher, timeout );
+        }
+
+        synchronized ( this )
+        {
+            return doCancelAllBefore( matcher, timeout );
+        }
+    }
+
+    private Set<TriggerKey> doCancelAllBefore( final GroupMatcher<TriggerKey> matcher, final long timeout )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -470,6 +609,17 @@ public class ScheduleManager
         }
 
         final Set<TriggerKey> canceled = new HashSet<>();
+        if ( wheel != null )
+        {
+            final long to = System.currentTimeMillis() + ( timeout * 1000 );
+            for ( final String group : wheelGroups( matcher ) )
+            {
+                wheel.cancelAllBefore( group, to ).forEach( name -> canceled.add( new TriggerKey( name, group ) ) );
+            }
+
+            return canceled;
+        }
+
         try
         {
             final Set<TriggerKey> keys = scheduler.getTriggerKeys( matcher );
@@ -498,13 +648,27 @@ public class ScheduleManager
         return canceled;
     }
 
-    public synchronized Set<TriggerKey> cancelAll( final GroupMatcher<TriggerKey> matcher )
+    public Set<TriggerKey> cancelAll( final GroupMatcher<TriggerKey> matcher )
         throws IndySchedulerException
     {
         return cancel( matcher, ANY );
     }
 
-    public synchronized Set<TriggerKey> cancel( final GroupMatcher<TriggerKey> matcher, final String name )
+    public Set<TriggerKey> cancel( final GroupMatcher<TriggerKey> matcher, final String name )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            return doCancel( matcher, name );
+        }
+
+        synchronized ( this )
+        {
+            return doCancel( matcher, name );
+        }
+    }
+
+    private Set<TriggerKey> doCancel( final GroupMatcher<TriggerKey> matcher, final String name )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -514,6 +678,26 @@ public class ScheduleManager
         }
 
         Set<TriggerKey> canceled = new HashSet<>();
+        if ( wheel != null )
+        {
+            for ( final String group : wheelGroups( matcher ) )
+            {
+                if ( name == ANY )
+                {
+                    for ( final String n : wheel.cancelAll( group ) )
+                    {
+                        canceled.add( new TriggerKey( n, group ) );
+                    }
+                }
+                else if ( wheel.cancel( group, name ) )
+                {
+                    canceled.add( new TriggerKey( name, group ) );
+                }
+            }
+
+            return canceled;
+        }
+
         try
         {
             final Set<TriggerKey> keys = scheduler.getTriggerKeys( matcher );
@@ -564,7 +748,21 @@ public class ScheduleManager
         return canceled;
     }
 
-    public synchronized Expiration findSingleExpiration( final GroupMatcher<TriggerKey> matcher )
+    public Expiration findSingleExpiration( final GroupMatcher<TriggerKey> matcher )
+            throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            return doFindSingleExpiration( matcher );
+        }
+
+        synchronized ( this )
+        {
+            return doFindSingleExpiration( matcher );
+        }
+    }
+
+    private Expiration doFindSingleExpiration( final GroupMatcher<TriggerKey> matcher )
             throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -573,6 +771,19 @@ public class ScheduleManager
             return null;
         }
 
+        if ( wheel != null )
+        {
+            for ( final String group : wheelGroups( matcher ) )
+            {
+                for ( final Map.Entry<String, Long> entry : wheel.getExpirations( group ).entrySet() )
+                {
+                    return new Expiration( group, entry.getKey(), new Date( entry.getValue() ) );
+                }
+            }
+
+            return null;
+        }
+
         try
         {
             final Set<TriggerKey> keys = scheduler.getTriggerKeys( matcher );
@@ -590,7 +801,21 @@ public class ScheduleManager
         return null;
     }
 
-    public synchronized ExpirationSet findMatchingExpirations( final GroupMatcher<TriggerKey> matcher )
+    public ExpirationSet findMatchingExpirations( final GroupMatcher<TriggerKey> matcher )
+            throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            return doFindMatchingExpirations( matcher );
+        }
+
+        synchronized ( this )
+        {
+            return doFindMatchingExpirations( matcher );
+        }
+    }
+
+    private ExpirationSet doFindMatchingExpirations( final GroupMatcher<TriggerKey> matcher )
             throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -599,6 +824,19 @@ public class ScheduleManager
             return null;
         }
 
+        if ( wheel != null )
+        {
+            final Set<Expiration> expirations = new HashSet<>();
+            for ( final String group : wheelGroups( matcher ) )
+            {
+                wheel.getExpirations( group )
+                     .forEach( ( name, fireAt ) -> expirations.add(
+                             new Expiration( group, name, new Date( fireAt ) ) ) );
+            }
+
+            return new ExpirationSet( expirations );
+        }
+
         try
         {
             final Set<TriggerKey> keys = scheduler.getTriggerKeys( matcher );
@@ -628,7 +866,21 @@ public class ScheduleManager
                                trigger.getNextFireTime() );
     }
 
-    public synchronized TriggerKey findFirstMatchingTrigger( final GroupMatcher<TriggerKey> matcher )
+    public TriggerKey findFirstMatchingTrigger( final GroupMatcher<TriggerKey> matcher )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            return doFindFirstMatchingTrigger( matcher );
+        }
+
+        synchronized ( this )
+        {
+            return doFindFirstMatchingTrigger( matcher );
+        }
+    }
+
+    private TriggerKey doFindFirstMatchingTrigger( final GroupMatcher<TriggerKey> matcher )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -637,6 +889,19 @@ public class ScheduleManager
             return null;
         }
 
+        if ( wheel != null )
+        {
+            for ( final String group : wheelGroups( matcher ) )
+            {
+                for ( final String name : wheel.getExpirations( group ).keySet() )
+                {
+                    return new TriggerKey( name, group );
+                }
+            }
+
+            return null;
+        }
+
         try
         {
             final Set<TriggerKey> keys = scheduler.getTriggerKeys( matcher );
@@ -654,6 +919,29 @@ public class ScheduleManager
         return null;
     }
 
+    /**
+     * Resolve a trigger-group matcher against the groups in the expiration wheel. {@link StoreKeyMatcher} (EQUALS)
+     * resolves directly, without scanning every group.
+     */
+    private Collection<String> wheelGroups( final GroupMatcher<TriggerKey> matcher )
+    {
+        if ( matcher.getCompareWithOperator() == StringMatcher.StringOperatorName.EQUALS )
+        {
+            return Collections.singleton( matcher.getCompareToValue() );
+        }
+
+        final Set<String> groups = new HashSet<>();
+        for ( final String group : wheel.getGroups() )
+        {
+            if ( matcher.isMatch( new TriggerKey( ANY, group ) ) )
+            {
+                groups.add( group );
+            }
+        }
+
+        return groups;
+    }
+
     public static String groupName( final StoreKey key, final String jobType )
     {
         return key.toString() + groupNameSuffix( jobType );
@@ -679,7 +967,21 @@ public class ScheduleManager
         return null;
     }
 
-    public synchronized boolean deleteJobs( final Set<TriggerKey> keys )
+    public boolean deleteJobs( final Set<TriggerKey> keys )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            return doDeleteJobs( keys );
+        }
+
+        synchronized ( this )
+        {
+            return doDeleteJobs( keys );
+        }
+    }
+
+    private boolean doDeleteJobs( final Set<TriggerKey> keys )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -690,6 +992,11 @@ public class ScheduleManager
 
         for ( final TriggerKey key : keys )
         {
+            if ( wheel != null )
+            {
+                return wheel.cancel( key.getGroup(), key.getName() );
+            }
+
             try
             {
                 final JobKey jk = new JobKey( key.getName(), key.getGroup() );
@@ -704,7 +1011,21 @@ public class ScheduleManager
         return false;
     }
 
-    public synchronized boolean deleteJob( final String group, final String name )
+    public boolean deleteJob( final String group, final String name )
+        throws IndySchedulerException
+    {
+        if ( wheel != null )
+        {
+            return doDeleteJob( group, name );
+        }
+
+        synchronized ( this )
+        {
+            return doDeleteJob( group, name );
+        }
+    }
+
+    private boolean doDeleteJob( final String group, final String name )
         throws IndySchedulerException
     {
         if ( !schedulerConfig.isEnabled() )
@@ -713,6 +1034,11 @@ public class ScheduleManager
             return false;
         }
 
+        if ( wheel != null )
+        {
+            return wheel.cancel( group, name );
+        }
+
         final JobKey jk = new JobKey( name, group );
         try
         {
@@ -752,6 +1078,11 @@ public class ScheduleManager
             return;
         }
 
+        if ( wheel != null )
+        {
+            wheel.stop();
+        }
+
         if ( scheduler != null )
         {
             try
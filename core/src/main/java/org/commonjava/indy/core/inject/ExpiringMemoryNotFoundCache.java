@@ -25,8 +25,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-import javax.enterprise.context.ApplicationScoped;
-import javax.enterprise.inject.Default;
+import javax.enterprise.inject.Alternative;
 import javax.inject.Inject;
 
 import org.commonjava.indy.conf.IndyConfiguration;
@@ -38,9 +37,10 @@ import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-@ApplicationScoped
-@Default
-//@Production
+/**
+ * Simple, unbounded {@link NotFoundCache}. Superseded by {@link IndexedMemoryNotFoundCache}; kept as an alternative.
+ */
+@Alternative
 public class ExpiringMemoryNotFoundCache
     implements NotFoundCache
 {
@@ -0,0 +1,570 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.inject;
+
+import static org.commonjava.maven.galley.util.PathUtils.normalize;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Default;
+import javax.inject.Inject;
+
+import org.commonjava.indy.conf.IndyConfiguration;
+import org.commonjava.indy.core.conf.MetricsConfig;
+import org.commonjava.indy.core.metrics.IndyMetric;
+import org.commonjava.indy.core.metrics.IndyMetrics;
+import org.commonjava.indy.model.core.dto.NotFoundCacheStatsDTO;
+import org.commonjava.indy.model.galley.KeyedLocation;
+import org.commonjava.indy.model.galley.RepositoryLocation;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.spi.nfc.NotFoundCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Concurrent, bounded {@link NotFoundCache}. Lookups are lock-free reads against a {@link ConcurrentHashMap}, entries
+ * are indexed by {@link Location} so that clearing a repository only touches that repository's entries, and timeouts
+ * are processed by a hashed timing wheel rather than by scanning the whole cache. When the configured entry count or
+ * memory limit is exceeded, batches of the least valuable entries (by LRU or LFU) are evicted on the cache's maintenance
+ * thread, so {@link #addMissing(ConcreteResource)} never pays for the scan; the cache may briefly run over its limit
+ * while that happens.
+ */
+@ApplicationScoped
+@Default
+public class IndexedMemoryNotFoundCache
+    implements NotFoundCache
+{
+
+    public enum EvictionPolicy
+    {
+        LRU, LFU;
+
+        public static EvictionPolicy get( final String policy )
+        {
+            if ( policy != null )
+            {
+                for ( final EvictionPolicy p : values() )
+                {
+                    if ( p.name()
+                          .equalsIgnoreCase( policy.trim() ) )
+                    {
+                        return p;
+                    }
+                }
+            }
+
+            return LRU;
+        }
+    }
+
+    private static final String TIMEOUT_FORMAT = "yyyy-MM-dd hh:mm:ss z";
+
+    // rough per-entry cost of the map nodes, index nodes, wheel nodes and entry object; path chars are added on top.
+    private static final long ENTRY_OVERHEAD_BYTES = 256;
+
+    private static final int WHEEL_SIZE = 512;
+
+    private static final long TICK_MILLIS = 1000;
+
+    private static final double EVICTION_BATCH_RATIO = 0.05;
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    protected IndyConfiguration config;
+
+    @Inject
+    private IndyMetrics metrics;
+
+    private final ConcurrentHashMap<ConcreteResource, NfcEntry> missing = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<Location, Set<ConcreteResource>> missingByLocation = new ConcurrentHashMap<>();
+
+    private final List<Set<ConcreteResource>> wheel = new ArrayList<>( WHEEL_SIZE );
+
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+    // runs the expiration wheel and batch eviction; a single thread, so neither needs further locking.
+    private ScheduledExecutorService maintenance;
+
+    private long lastTick;
+
+    private long maxEntries;
+
+    private long maxBytes;
+
+    private EvictionPolicy evictionPolicy;
+
+    protected IndexedMemoryNotFoundCache()
+    {
+    }
+
+    public IndexedMemoryNotFoundCache( final IndyConfiguration config )
+    {
+        this.config = config;
+        this.metrics = new IndyMetrics( new MetricsConfig() );
+        init();
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        maxEntries = config.getNotFoundCacheMaxEntries();
+        maxBytes = config.getNotFoundCacheMaxMemoryMb() * 1024L * 1024L;
+        evictionPolicy = EvictionPolicy.get( config.getNotFoundCacheEvictionPolicy() );
+
+        for ( int i = 0; i < WHEEL_SIZE; i++ )
+        {
+            wheel.add( ConcurrentHashMap.newKeySet() );
+        }
+
+        lastTick = System.currentTimeMillis() / TICK_MILLIS;
+        maintenance = Executors.newSingleThreadScheduledExecutor( ( r ) -> {
+            final Thread t = new Thread( r, "indy-nfc-maintenance" );
+            t.setDaemon( true );
+            return t;
+        } );
+
+        maintenance.scheduleWithFixedDelay( this::advanceWheel, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS );
+
+        logger.info( "[NFC] Initialized with max entries: {}, max bytes: {}, eviction policy: {}", maxEntries, maxBytes,
+                     evictionPolicy );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( maintenance != null )
+        {
+            maintenance.shutdownNow();
+        }
+    }
+
+    @Override
+    public void addMissing( final ConcreteResource resource )
+    {
+        long timeout = Long.MAX_VALUE;
+        if ( config.getNotFoundCacheTimeoutSeconds() > 0 )
+        {
+            timeout = System.currentTimeMillis() + config.getNotFoundCacheTimeoutSeconds() * 1000;
+        }
+
+        final Location loc = resource.getLocation();
+        final Integer to = loc.getAttribute( RepositoryLocation.ATTR_NFC_TIMEOUT_SECONDS, Integer.class );
+        if ( to != null && to > 0 )
+        {
+            timeout = System.currentTimeMillis() + ( to * 1000 );
+        }
+
+        final long tstamp = timeout;
+        logger.info( "[NFC] '{}' will not be checked again until: {}", new Object()
+        {
+            @Override
+            public String toString()
+            {
+                return normalize( resource.getLocationUri(), resource.getPath() );
+            }
+        }, new Object()
+        {
+            @Override
+            public String toString()
+            {
+                return new SimpleDateFormat( TIMEOUT_FORMAT ).format( new Date( tstamp ) );
+            }
+        } );
+
+        final NfcEntry entry = new NfcEntry( timeout, estimateSize( resource ) );
+        final NfcEntry old = missing.put( resource, entry );
+
+        missingByLocation.compute( loc, ( l, resources ) -> {
+            final Set<ConcreteResource> result = resources == null ? ConcurrentHashMap.newKeySet() : resources;
+            result.add( resource );
+            return result;
+        } );
+
+        estimatedBytes.addAndGet( entry.size - ( old == null ? 0 : old.size ) );
+
+        if ( timeout != Long.MAX_VALUE )
+        {
+            wheel.get( bucketOf( timeout ) )
+                 .add( resource );
+        }
+
+        if ( isOverLimit() )
+        {
+            scheduleEviction();
+        }
+    }
+
+    @Override
+    public boolean isMissing( final ConcreteResource resource )
+    {
+        final NfcEntry entry = missing.get( resource );
+        boolean result = false;
+        if ( entry != null )
+        {
+            if ( System.currentTimeMillis() < entry.timeout )
+            {
+                entry.touch();
+                result = true;
+            }
+            else if ( remove( resource, entry ) )
+            {
+                expirations.increment();
+            }
+        }
+
+        if ( result )
+        {
+            hits.increment();
+        }
+        else
+        {
+            misses.increment();
+        }
+
+        final Location location = resource.getLocation();
+        metrics.count( result ? IndyMetric.NFC_HITS : IndyMetric.NFC_MISSES,
+                       location instanceof KeyedLocation ? ( (KeyedLocation) location ).getKey() : null );
+
+        logger.debug( "NFC check: {} result is: {}", resource, result );
+        return result;
+    }
+
+    @Override
+    public void clearMissing( final Location location )
+    {
+        final Set<ConcreteResource> resources = missingByLocation.remove( location );
+        if ( resources != null )
+        {
+            resources.forEach( ( resource ) -> {
+                final NfcEntry entry = missing.remove( resource );
+                if ( entry != null )
+                {
+                    estimatedBytes.addAndGet( -entry.size );
+                }
+            } );
+        }
+    }
+
+    @Override
+    public void clearMissing( final ConcreteResource resource )
+    {
+        final NfcEntry entry = missing.get( resource );
+        if ( entry != null )
+        {
+            remove( resource, entry );
+        }
+    }
+
+    @Override
+    public void clearAllMissing()
+    {
+        missing.clear();
+        missingByLocation.clear();
+        wheel.forEach( Set::clear );
+        estimatedBytes.set( 0 );
+    }
+
+    @Override
+    public Map<Location, Set<String>> getAllMissing()
+    {
+        final long now = System.currentTimeMillis();
+        final Map<Location, Set<String>> result = new HashMap<>();
+        missingByLocation.forEach( ( loc, resources ) -> {
+            final Set<String> paths = collectPaths( resources, now );
+            if ( !paths.isEmpty() )
+            {
+                result.put( loc, paths );
+            }
+        } );
+
+        return result;
+    }
+
+    @Override
+    public Set<String> getMissing( final Location location )
+    {
+        final Set<ConcreteResource> resources = missingByLocation.get( location );
+        if ( resources == null )
+        {
+            return new HashSet<>();
+        }
+
+        return collectPaths( resources, System.currentTimeMillis() );
+    }
+
+    public NotFoundCacheStatsDTO getStats()
+    {
+        final NotFoundCacheStatsDTO stats = new NotFoundCacheStatsDTO();
+        stats.setSize( missing.mappingCount() );
+        stats.setEstimatedBytes( estimatedBytes.get() );
+        stats.setHits( hits.sum() );
+        stats.setMisses( misses.sum() );
+        stats.setEvictions( evictions.sum() );
+        stats.setExpirations( expirations.sum() );
+        stats.setMaxEntries( maxEntries );
+        stats.setMaxBytes( maxBytes );
+        stats.setEvictionPolicy( evictionPolicy.name()
+                                               .toLowerCase() );
+
+        return stats;
+    }
+
+    private Set<String> collectPaths( final Set<ConcreteResource> resources, final long now )
+    {
+        final Set<String> paths = new HashSet<>();
+        resources.forEach( ( resource ) -> {
+            final NfcEntry entry = missing.get( resource );
+            if ( entry != null && now < entry.timeout )
+            {
+                paths.add( resource.getPath() );
+            }
+        } );
+
+        return paths;
+    }
+
+    /**
+     * Process every wheel bucket whose tick has passed since the last run. Entries whose timeout lies in a later
+     * rotation of the wheel stay in place; entries that were re-added with a different timeout (or removed) are
+     * dropped from the bucket.
+     */
+    private void advanceWheel()
+    {
+        try
+        {
+            final long now = System.currentTimeMillis();
+            final long currentTick = now / TICK_MILLIS;
+            long tick = Math.max( lastTick, currentTick - WHEEL_SIZE + 1 );
+            for ( ; tick <= currentTick; tick++ )
+            {
+                final int bucketIdx = (int) ( tick % WHEEL_SIZE );
+                final Set<ConcreteResource> bucket = wheel.get( bucketIdx );
+                bucket.removeIf( ( resource ) -> {
+                    final NfcEntry entry = missing.get( resource );
+                    if ( entry == null || entry.timeout == Long.MAX_VALUE || bucketOf( entry.timeout ) != bucketIdx )
+                    {
+                        return true;
+                    }
+                    else if ( entry.timeout <= now )
+                    {
+                        if ( remove( resource, entry ) )
+                        {
+                            expirations.increment();
+                        }
+                        return true;
+                    }
+
+                    return false;
+                } );
+            }
+
+            lastTick = currentTick;
+
+            // catches anything added while the last eviction pass was finishing up.
+            if ( isOverLimit() )
+            {
+                scheduleEviction();
+            }
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.error( "[NFC] Failed to process expired entries: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Queue an eviction pass on the maintenance thread, unless one is already queued or running.
+     */
+    private void scheduleEviction()
+    {
+        if ( evictionScheduled.compareAndSet( false, true ) )
+        {
+            try
+            {
+                maintenance.execute( this::evictOverLimit );
+            }
+            catch ( final RejectedExecutionException e )
+            {
+                // shutting down.
+                evictionScheduled.set( false );
+            }
+        }
+    }
+
+    /**
+     * Evict batches of the least valuable entries until the cache is back within its limits. Each batch is found with
+     * one scan of the cache, keeping the candidates in a bounded heap.
+     */
+    private void evictOverLimit()
+    {
+        try
+        {
+            while ( isOverLimit() )
+            {
+                final int batchSize = Math.max( 1, (int) ( missing.mappingCount() * EVICTION_BATCH_RATIO ) );
+                final Comparator<Map.Entry<ConcreteResource, NfcEntry>> byValue =
+                        ( e1, e2 ) -> compareForEviction( e1.getValue(), e2.getValue() );
+
+                // keep the batchSize least valuable entries; the most valuable of them sits at the head.
+                final PriorityQueue<Map.Entry<ConcreteResource, NfcEntry>> candidates =
+                        new PriorityQueue<>( batchSize + 1, byValue.reversed() );
+
+                for ( final Map.Entry<ConcreteResource, NfcEntry> e : missing.entrySet() )
+                {
+                    candidates.offer( e );
+                    if ( candidates.size() > batchSize )
+                    {
+                        candidates.poll();
+                    }
+                }
+
+                if ( candidates.isEmpty() )
+                {
+                    break;
+                }
+
+                candidates.forEach( ( e ) -> {
+                    if ( remove( e.getKey(), e.getValue() ) )
+                    {
+                        evictions.increment();
+                    }
+                } );
+
+                logger.debug( "[NFC] Evicted {} entries. Size is now: {}, estimated bytes: {}", candidates.size(),
+                              missing.mappingCount(), estimatedBytes.get() );
+            }
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.error( "[NFC] Failed to evict entries: " + e.getMessage(), e );
+        }
+        finally
+        {
+            evictionScheduled.set( false );
+        }
+    }
+
+    private int compareForEviction( final NfcEntry first, final NfcEntry second )
+    {
+        if ( evictionPolicy == EvictionPolicy.LFU )
+        {
+            final int comp = Integer.compare( first.frequency, second.frequency );
+            if ( comp != 0 )
+            {
+                return comp;
+            }
+        }
+
+        return Long.compare( first.lastAccess, second.lastAccess );
+    }
+
+    private boolean isOverLimit()
+    {
+        return ( maxEntries > 0 && missing.mappingCount() > maxEntries ) || ( maxBytes > 0
+                && estimatedBytes.get() > maxBytes );
+    }
+
+    private boolean remove( final ConcreteResource resource, final NfcEntry entry )
+    {
+        if ( missing.remove( resource, entry ) )
+        {
+            estimatedBytes.addAndGet( -entry.size );
+
+            missingByLocation.computeIfPresent( resource.getLocation(), ( l, resources ) -> {
+                // a concurrent addMissing() may already have re-added this resource; keep it indexed if so.
+                if ( !missing.containsKey( resource ) )
+                {
+                    resources.remove( resource );
+                }
+                return resources.isEmpty() ? null : resources;
+            } );
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private static int bucketOf( final long timeout )
+    {
+        return (int) ( ( timeout / TICK_MILLIS ) % WHEEL_SIZE );
+    }
+
+    private static long estimateSize( final ConcreteResource resource )
+    {
+        final String path = resource.getPath();
+        return ENTRY_OVERHEAD_BYTES + ( path == null ? 0 : path.length() * 2 );
+    }
+
+    private static final class NfcEntry
+    {
+        private final long timeout;
+
+        private final long size;
+
+        private volatile long lastAccess;
+
+        // approximate; racing increments may be lost, which is fine for eviction ranking.
+        private volatile int frequency;
+
+        private NfcEntry( final long timeout, final long size )
+        {
+            this.timeout = timeout;
+            this.size = size;
+            this.lastAccess = System.nanoTime();
+        }
+
+        private void touch()
+        {
+            lastAccess = System.nanoTime();
+            frequency++;
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.metrics;
+
+/**
+ * The timers and counters kept by {@link IndyMetrics}, with the name and help text they are exported under. Timers are
+ * exported as Prometheus summaries in seconds, counters as Prometheus counters.
+ */
+public enum IndyMetric
+{
+    CONTENT_GET( "indy_content_get_seconds", Kind.TIMER,
+                 "Time to resolve a content GET request, up to the point where the response body starts streaming." ),
+
+    CONTENT_HEAD( "indy_content_head_seconds", Kind.TIMER, "Time to answer a content HEAD request." ),
+
+    CONTENT_CREATE( "indy_content_create_seconds", Kind.TIMER,
+                    "Time to accept a content upload, including writing it to storage." ),
+
+    CONTENT_STREAM( "indy_content_stream_seconds", Kind.TIMER,
+                    "Time spent streaming content bodies back to clients." ),
+
+    DOWNLOAD_RETRIEVE( "indy_download_retrieve_seconds", Kind.TIMER,
+                       "Time to retrieve a path from a single concrete store, including any upstream transfer." ),
+
+    DOWNLOAD_STORE( "indy_download_store_seconds", Kind.TIMER, "Time to write a path into a hosted store." ),
+
+    REMOTE_TRANSFER( "indy_remote_transfer_seconds", Kind.TIMER,
+                     "Time spent transferring a path from a remote repository's upstream server." ),
+
+    GROUP_METADATA_MERGE( "indy_group_metadata_merge_seconds", Kind.TIMER,
+                          "Time to retrieve and merge member metadata into a group metadata file." ),
+
+    CONTENT_INDEX_LOOKUP( "indy_content_index_lookup_seconds", Kind.TIMER, "Time to look up a path in the content index." ),
+
+    CONTENT_INDEX_HITS( "indy_content_index_hits_total", Kind.COUNTER,
+                        "Content-index lookups that found an indexed path." ),
+
+    CONTENT_INDEX_MISSES( "indy_content_index_misses_total", Kind.COUNTER,
+                          "Content-index lookups that found nothing." ),
+
+    CONTENT_INDEX_MEMORY_HITS( "indy_content_index_memory_hits_total", Kind.COUNTER,
+                               "Content-index lookups answered by the on-heap tier." ),
+
+    CONTENT_INDEX_MEMORY_MISSES( "indy_content_index_memory_misses_total", Kind.COUNTER,
+                                 "Content-index lookups that missed the on-heap tier." ),
+
+    CONTENT_INDEX_MAPPED_HITS( "indy_content_index_mapped_hits_total", Kind.COUNTER,
+                               "Content-index lookups that missed the on-heap tier but were found in the mapped tier." ),
+
+    CONTENT_INDEX_MAPPED_MISSES( "indy_content_index_mapped_misses_total", Kind.COUNTER,
+                                 "Content-index lookups that missed both tiers." ),
+
+    CONTENT_INDEX_MAPPED_REJECTED( "indy_content_index_mapped_rejected_total", Kind.COUNTER,
+                                   "Content-index writes the mapped tier refused because its table is full." ),
+
+    NFC_HITS( "indy_nfc_hits_total", Kind.COUNTER, "Not-found-cache checks that found the path marked missing." ),
+
+    NFC_MISSES( "indy_nfc_misses_total", Kind.COUNTER, "Not-found-cache checks that did not find the path." );
+
+    public enum Kind
+    {
+        TIMER, COUNTER
+    }
+
+    private final String metricName;
+
+    private final Kind kind;
+
+    private final String help;
+
+    IndyMetric( final String metricName, final Kind kind, final String help )
+    {
+        this.metricName = metricName;
+        this.kind = kind;
+        this.help = help;
+    }
+
+    public String getMetricName()
+    {
+        return metricName;
+    }
+
+    public Kind getKind()
+    {
+        return kind;
+    }
+
+    public String getHelp()
+    {
+        return help;
+    }
+}
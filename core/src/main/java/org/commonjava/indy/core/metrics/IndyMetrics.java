@@ -0,0 +1,363 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.commonjava.indy.core.conf.MetricsConfig;
+import org.commonjava.indy.model.core.StoreKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead timers and counters for the content hot path, labelled by store. Recording a timing costs a map lookup
+ * and a lock-free HdrHistogram {@link Recorder} write; the histograms are only read (and their quantiles computed)
+ * when {@link #writePrometheus(Writer)} is called.
+ * <br/>
+ * Usage for timers:
+ * <pre>
+ * final long start = metrics.start();
+ * try { ... } finally { metrics.time( IndyMetric.DOWNLOAD_RETRIEVE, store.getKey(), start ); }
+ * </pre>
+ */
+@ApplicationScoped
+public class IndyMetrics
+{
+    static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    static final String OTHER_STORES = "_other";
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private MetricsConfig config;
+
+    private final Map<IndyMetric, MetricFamily> families = new EnumMap<>( IndyMetric.class );
+
+    private boolean enabled;
+
+    private int maxStores;
+
+    private int significantDigits;
+
+    private long windowNanos;
+
+    protected IndyMetrics()
+    {
+    }
+
+    public IndyMetrics( final MetricsConfig config )
+    {
+        this.config = config;
+        init();
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        enabled = config.isEnabled();
+        maxStores = config.getMaxStoresPerMetric();
+        significantDigits = config.getSignificantDigits();
+        windowNanos = TimeUnit.SECONDS.toNanos( config.getQuantileWindowSeconds() );
+
+        for ( final IndyMetric metric : IndyMetric.values() )
+        {
+            families.put( metric, new MetricFamily( metric ) );
+        }
+
+        logger.info( "[METRICS] Enabled: {}, max stores per metric: {}, significant digits: {}", enabled, maxStores,
+                     significantDigits );
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Start a timer; pass the result to {@link #time(IndyMetric, StoreKey, long)} when the timed operation ends.
+     */
+    public long start()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time elapsed since <code>start</code> against the given timer. A null key records to the series
+     * without store labels.
+     */
+    public void time( final IndyMetric metric, final StoreKey key, final long start )
+    {
+        if ( enabled )
+        {
+            series( metric, key ).record( Math.max( 0, System.nanoTime() - start ) );
+        }
+    }
+
+    /**
+     * Increment the given counter. A null key records to the series without store labels.
+     */
+    public void count( final IndyMetric metric, final StoreKey key )
+    {
+        if ( enabled )
+        {
+            series( metric, key ).count.increment();
+        }
+    }
+
+    /**
+     * Return the number of timings or increments recorded so far for the given metric and store.
+     */
+    public long getCount( final IndyMetric metric, final StoreKey key )
+    {
+        final MetricFamily family = families.get( metric );
+        final Series series = key == null ? family.unlabeled : family.byStore.get( key );
+        return series == null ? 0 : series.count.sum();
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format (version 0.0.4). Timers become summaries in seconds
+     * with {@link #QUANTILES} over the current quantile window, plus cumulative <code>_sum</code> and
+     * <code>_count</code>; counters become counters.
+     */
+    public void writePrometheus( final Writer writer )
+            throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        for ( final MetricFamily family : families.values() )
+        {
+            final IndyMetric metric = family.metric;
+            final String name = metric.getMetricName();
+            final boolean timer = metric.getKind() == IndyMetric.Kind.TIMER;
+
+            sb.append( "# HELP " ).append( name ).append( ' ' ).append( metric.getHelp() ).append( '\n' );
+            sb.append( "# TYPE " ).append( name ).append( ' ' ).append( timer ? "summary" : "counter" ).append( '\n' );
+
+            final List<Map.Entry<StoreKey, Series>> entries = new ArrayList<>( family.byStore.entrySet() );
+            entries.sort( Comparator.comparing( e -> e.getKey().toString() ) );
+
+            if ( family.unlabeled.count.sum() > 0 )
+            {
+                writeSeries( sb, name, timer, null, family.unlabeled );
+            }
+
+            for ( final Map.Entry<StoreKey, Series> entry : entries )
+            {
+                writeSeries( sb, name, timer, entry.getKey(), entry.getValue() );
+            }
+
+            writer.write( sb.toString() );
+            sb.setLength( 0 );
+        }
+
+        writer.flush();
+    }
+
+    private void writeSeries( final StringBuilder sb, final String name, final boolean timer, final StoreKey key,
+                              final Series series )
+    {
+        final String labels = labels( key );
+        if ( !timer )
+        {
+            sample( sb, name, labels, null, Long.toString( series.count.sum() ) );
+            return;
+        }
+
+        final Histogram window = series.snapshot( windowNanos );
+        final boolean empty = window.getTotalCount() == 0;
+        for ( final double q : QUANTILES )
+        {
+            final String value = empty ? "NaN" : Double.toString( window.getValueAtPercentile( q * 100 ) / NANOS_PER_SECOND );
+            sample( sb, name, labels, "quantile=\"" + q + "\"", value );
+        }
+
+        sample( sb, name + "_sum", labels, null, Double.toString( series.sum.sum() / NANOS_PER_SECOND ) );
+        sample( sb, name + "_count", labels, null, Long.toString( series.count.sum() ) );
+    }
+
+    private static void sample( final StringBuilder sb, final String name, final String labels, final String extra,
+                                final String value )
+    {
+        sb.append( name );
+        if ( labels != null || extra != null )
+        {
+            sb.append( '{' );
+            if ( labels != null )
+            {
+                sb.append( labels );
+            }
+            if ( extra != null )
+            {
+                if ( labels != null )
+                {
+                    sb.append( ',' );
+                }
+                sb.append( extra );
+            }
+            sb.append( '}' );
+        }
+
+        sb.append( ' ' ).append( value ).append( '\n' );
+    }
+
+    private static String labels( final StoreKey key )
+    {
+        if ( key == null )
+        {
+            return null;
+        }
+
+        return "store_type=\"" + key.getType().name() + "\",store_name=\"" + escape( key.getName() )
+                + "\"";
+    }
+
+    static String escape( final String value )
+    {
+        final StringBuilder sb = new StringBuilder( value.length() );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            final char c = value.charAt( i );
+            switch ( c )
+            {
+                case '\\':
+                    sb.append( "\\\\" );
+                    break;
+                case '"':
+                    sb.append( "\\\"" );
+                    break;
+                case '\n':
+                    sb.append( "\\n" );
+                    break;
+                default:
+                    sb.append( c );
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private Series series( final IndyMetric metric, final StoreKey key )
+    {
+        final MetricFamily family = families.get( metric );
+        if ( key == null )
+        {
+            return family.unlabeled;
+        }
+
+        Series series = family.byStore.get( key );
+        if ( series == null )
+        {
+            // cap the number of series per metric, so ad-hoc or deleted stores can't grow this without bound.
+            final StoreKey seriesKey =
+                    family.byStore.size() < maxStores ? key : new StoreKey( key.getType(), OTHER_STORES );
+
+            series = family.byStore.computeIfAbsent( seriesKey, k -> family.newSeries() );
+        }
+
+        return series;
+    }
+
+    private final class MetricFamily
+    {
+        private final IndyMetric metric;
+
+        private final ConcurrentHashMap<StoreKey, Series> byStore = new ConcurrentHashMap<>();
+
+        private final Series unlabeled;
+
+        private MetricFamily( final IndyMetric metric )
+        {
+            this.metric = metric;
+            this.unlabeled = newSeries();
+        }
+
+        private Series newSeries()
+        {
+            return new Series( metric.getKind() == IndyMetric.Kind.TIMER ? significantDigits : 0 );
+        }
+    }
+
+    private static final class Series
+    {
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder sum = new LongAdder();
+
+        private final Recorder recorder;
+
+        private final Histogram window;
+
+        private Histogram interval;
+
+        private long windowStart = System.nanoTime();
+
+        private Series( final int significantDigits )
+        {
+            if ( significantDigits > 0 )
+            {
+                recorder = new Recorder( significantDigits );
+                window = new Histogram( significantDigits );
+            }
+            else
+            {
+                recorder = null;
+                window = null;
+            }
+        }
+
+        private void record( final long nanos )
+        {
+            recorder.recordValue( nanos );
+            sum.add( nanos );
+            count.increment();
+        }
+
+        /**
+         * Fold everything recorded since the last call into the current quantile window (restarting the window first
+         * if it has expired), and return a copy of it.
+         */
+        private synchronized Histogram snapshot( final long windowNanos )
+        {
+            final long now = System.nanoTime();
+            if ( now - windowStart >= windowNanos )
+            {
+                window.reset();
+                windowStart = now;
+            }
+
+            interval = recorder.getIntervalHistogram( interval );
+            window.add( interval );
+
+            return window.copy();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.breaker;
+
+import org.commonjava.indy.core.conf.CircuitBreakerConfig;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.HostedRepository;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RemoteCircuitBreakersTest
+{
+    private static final StoreKey REMOTE = new StoreKey( StoreType.remote, "flaky" );
+
+    private final AtomicLong clock = new AtomicLong( 1000000 );
+
+    private CircuitBreakerConfig config;
+
+    private RemoteCircuitBreakers breakers;
+
+    @Before
+    public void setup()
+    {
+        config = new CircuitBreakerConfig();
+        config.setEnabled( true );
+        breakers = new RemoteCircuitBreakers( config, clock::get );
+    }
+
+    @Test
+    public void disabledBreakersAdmitEverything()
+    {
+        config.setEnabled( false );
+        for ( int i = 0; i < 20; i++ )
+        {
+            assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+            breakers.recordFailure( REMOTE, new IOException( "down" ) );
+        }
+
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        assertThat( breakers.getStatus().isEmpty(), equalTo( true ) );
+    }
+
+    @Test
+    public void opensOnceErrorRateIsReached()
+    {
+        for ( int i = 0; i < 5; i++ )
+        {
+            succeed( 10 );
+        }
+
+        for ( int i = 0; i < 4; i++ )
+        {
+            fail();
+        }
+
+        // nine calls is still under min.requests
+        assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "CLOSED" ) );
+
+        fail();
+
+        assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "OPEN" ) );
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( false ) );
+        assertThat( breakers.getStatus( REMOTE ).getTripCount(), equalTo( 1L ) );
+        assertThat( breakers.getStatus( REMOTE ).getRejectedCount(), equalTo( 1L ) );
+    }
+
+    @Test
+    public void opensOnSlowCalls()
+    {
+        for ( int i = 0; i < 10; i++ )
+        {
+            succeed( config.getSlowCallMillis() + 1 );
+        }
+
+        assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "OPEN" ) );
+    }
+
+    @Test
+    public void halfOpenAdmitsLimitedProbesThenCloses()
+    {
+        trip();
+        clock.addAndGet( config.getOpenSeconds() * 1000L );
+
+        for ( int i = 0; i < config.getHalfOpenProbes(); i++ )
+        {
+            assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        }
+
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( false ) );
+        assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "HALF_OPEN" ) );
+
+        for ( int i = 0; i < config.getHalfOpenProbes(); i++ )
+        {
+            breakers.recordSuccess( REMOTE, 10 );
+        }
+
+        final CircuitBreakerStatus status = breakers.getStatus( REMOTE );
+        assertThat( status.getState(), equalTo( "CLOSED" ) );
+        assertThat( status.getHalfOpenCount(), equalTo( 1L ) );
+        assertThat( status.getCloseCount(), equalTo( 1L ) );
+        assertThat( status.getWindowCalls(), equalTo( 0 ) );
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+    }
+
+    @Test
+    public void failedProbeReopensWithLongerInterval()
+    {
+        trip();
+        clock.addAndGet( config.getOpenSeconds() * 1000L );
+
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        breakers.recordFailure( REMOTE, new IOException( "still down" ) );
+        assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "OPEN" ) );
+
+        clock.addAndGet( config.getOpenSeconds() * 1000L );
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( false ) );
+
+        clock.addAndGet( config.getOpenSeconds() * 1000L );
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        assertThat( breakers.getStatus( REMOTE ).getTripCount(), equalTo( 2L ) );
+    }
+
+    @Test
+    public void releasedProbeFreesItsSlot()
+    {
+        trip();
+        clock.addAndGet( config.getOpenSeconds() * 1000L );
+
+        for ( int i = 0; i < config.getHalfOpenProbes(); i++ )
+        {
+            assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        }
+
+        breakers.release( REMOTE );
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+    }
+
+    @Test
+    public void acquireAllDropsOpenRemotesOnly()
+    {
+        trip();
+
+        final RemoteRepository flaky = new RemoteRepository( REMOTE.getName(), "http://flaky.example.com/" );
+        final RemoteRepository healthy = new RemoteRepository( "healthy", "http://healthy.example.com/" );
+        final HostedRepository hosted = new HostedRepository( "hosted" );
+
+        final List<ArtifactStore> result = breakers.acquireAll( Arrays.asList( hosted, flaky, healthy ) );
+        assertThat( result, equalTo( Arrays.<ArtifactStore>asList( hosted, healthy ) ) );
+    }
+
+    @Test
+    public void acquireAllProbesHalfOpenRemoteAndClosesOnSuccess()
+    {
+        trip();
+        clock.addAndGet( config.getOpenSeconds() * 1000L );
+
+        final RemoteRepository flaky = new RemoteRepository( REMOTE.getName(), "http://flaky.example.com/" );
+        final HostedRepository hosted = new HostedRepository( "hosted" );
+        final List<ArtifactStore> stores = Arrays.asList( hosted, flaky );
+
+        for ( int i = 0; i < config.getHalfOpenProbes(); i++ )
+        {
+            final List<ArtifactStore> admitted = breakers.acquireAll( stores );
+            assertThat( admitted, equalTo( stores ) );
+            assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "HALF_OPEN" ) );
+            breakers.completeAll( admitted, null, false );
+        }
+
+        assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "CLOSED" ) );
+    }
+
+    @Test
+    public void completeAllCreditsConsultedStoresAndReleasesTheRest()
+    {
+        final StoreKey otherKey = new StoreKey( StoreType.remote, "other" );
+        final RemoteRepository first = new RemoteRepository( "other", "http://other.example.com/" );
+        final RemoteRepository second = new RemoteRepository( REMOTE.getName(), "http://flaky.example.com/" );
+        final List<ArtifactStore> stores = Arrays.asList( first, second );
+
+        // the call stopped at the first store, so the second gets neither a success nor a failure
+        breakers.completeAll( breakers.acquireAll( stores ), otherKey, false );
+        assertThat( breakers.getStatus( otherKey ).getWindowCalls(), equalTo( 1 ) );
+        assertThat( breakers.getStatus( REMOTE ).getWindowCalls(), equalTo( 0 ) );
+
+        // the second store failed: its failure is recorded by the caller, and the first store is still credited
+        final List<ArtifactStore> admitted = breakers.acquireAll( stores );
+        breakers.recordFailure( REMOTE, new IOException( "down" ) );
+        breakers.completeAll( admitted, REMOTE, true );
+        assertThat( breakers.getStatus( otherKey ).getWindowCalls(), equalTo( 2 ) );
+        assertThat( breakers.getStatus( REMOTE ).getWindowCalls(), equalTo( 1 ) );
+        assertThat( breakers.getStatus( REMOTE ).getWindowFailures(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void hostedStoresAreNeverTracked()
+    {
+        final StoreKey hosted = new StoreKey( StoreType.hosted, "local" );
+        for ( int i = 0; i < 20; i++ )
+        {
+            breakers.recordFailure( hosted, new IOException( "disk" ) );
+        }
+
+        assertThat( breakers.tryAcquire( hosted ), equalTo( true ) );
+        assertThat( breakers.getStatus( hosted ), nullValue() );
+    }
+
+    @Test
+    public void resetClosesBreaker()
+    {
+        trip();
+        assertThat( breakers.reset( REMOTE ), equalTo( true ) );
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        assertThat( breakers.reset( new StoreKey( StoreType.remote, "unknown" ) ), equalTo( false ) );
+    }
+
+    private void trip()
+    {
+        for ( int i = 0; i < config.getMinRequests(); i++ )
+        {
+            fail();
+        }
+
+        assertThat( breakers.getStatus( REMOTE ).getState(), equalTo( "OPEN" ) );
+    }
+
+    private void succeed( final long elapsed )
+    {
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        breakers.recordSuccess( REMOTE, elapsed );
+    }
+
+    private void fail()
+    {
+        assertThat( breakers.tryAcquire( REMOTE ), equalTo( true ) );
+        breakers.recordFailure( REMOTE, new IOException( "connection refused" ) );
+    }
+}
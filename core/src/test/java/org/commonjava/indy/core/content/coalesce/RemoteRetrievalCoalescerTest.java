@@ -0,0 +1,301 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.coalesce;
+
+import org.commonjava.indy.conf.DefaultIndyConfiguration;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.commonjava.maven.galley.TransferException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RemoteRetrievalCoalescerTest
+{
+    private static final StoreKey REMOTE = new StoreKey( StoreType.remote, "central" );
+
+    private static final String PATH = "org/foo/bar/1/bar-1.jar";
+
+    private static final int FOLLOWERS = 5;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool( FOLLOWERS + 1 );
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private final AtomicInteger followerCalls = new AtomicInteger();
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentRetrievalsShareOneUpstreamCall()
+            throws Exception
+    {
+        final RemoteRetrievalCoalescer coalescer = new RemoteRetrievalCoalescer( true );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        final List<Future<String>> results = startRetrievals( coalescer, () -> {
+            await( release );
+            return "content";
+        } );
+
+        release.countDown();
+        for ( final Future<String> result : results )
+        {
+            assertThat( result.get( 5, TimeUnit.SECONDS ), equalTo( "content" ) );
+        }
+
+        assertThat( upstreamCalls.get(), equalTo( 1 ) );
+        assertThat( followerCalls.get(), equalTo( FOLLOWERS ) );
+
+        final RetrievalCoalescingStats stats = coalescer.getStats();
+        assertThat( stats.getLeaders(), equalTo( 1L ) );
+        assertThat( stats.getCoalesced(), equalTo( (long) FOLLOWERS ) );
+        assertThat( stats.getFailures(), equalTo( 0L ) );
+        assertThat( stats.getInFlight(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void followersSkipRetrievalWhenLeaderFindsNothing()
+            throws Exception
+    {
+        final RemoteRetrievalCoalescer coalescer = new RemoteRetrievalCoalescer( true );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        final List<Future<String>> results = startRetrievals( coalescer, () -> {
+            await( release );
+            return null;
+        } );
+
+        release.countDown();
+        for ( final Future<String> result : results )
+        {
+            assertThat( result.get( 5, TimeUnit.SECONDS ), nullValue() );
+        }
+
+        assertThat( upstreamCalls.get(), equalTo( 1 ) );
+        assertThat( followerCalls.get(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void followersShareLeaderFailure()
+            throws Exception
+    {
+        final RemoteRetrievalCoalescer coalescer = new RemoteRetrievalCoalescer( true );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        final List<Future<String>> results = startRetrievals( coalescer, () -> {
+            await( release );
+            throw new TransferException( "upstream failed" );
+        } );
+
+        release.countDown();
+        for ( final Future<String> result : results )
+        {
+            try
+            {
+                result.get( 5, TimeUnit.SECONDS );
+                fail( "Expected retrieval to fail" );
+            }
+            catch ( final ExecutionException e )
+            {
+                assertThat( e.getCause(), instanceOf( TransferException.class ) );
+            }
+        }
+
+        assertThat( upstreamCalls.get(), equalTo( 1 ) );
+        assertThat( coalescer.getStats().getFailures(), equalTo( 1L ) );
+
+        // the failed flight is gone, so the next request goes upstream again
+        assertThat( retrieve( coalescer, () -> "content" ), equalTo( "content" ) );
+        assertThat( upstreamCalls.get(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void followerRetrievesIndependentlyWhenLeaderHangs()
+            throws Exception
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        config.setRemoteRetrievalCoalesceWaitSeconds( 1 );
+
+        final RemoteRetrievalCoalescer coalescer = new RemoteRetrievalCoalescer( config );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        final Future<String> leader = executor.submit( () -> retrieve( coalescer, () -> {
+            await( release );
+            return "leader";
+        } ) );
+        waitFor( () -> coalescer.getStats().getInFlight() == 1 );
+
+        // the leader is still blocked, so this one gives up on it after 1s and goes upstream itself
+        assertThat( retrieve( coalescer, () -> "independent" ), equalTo( "independent" ) );
+        assertThat( upstreamCalls.get(), equalTo( 2 ) );
+        assertThat( followerCalls.get(), equalTo( 0 ) );
+        assertThat( coalescer.getStats().getTimeouts(), equalTo( 1L ) );
+
+        release.countDown();
+        assertThat( leader.get( 5, TimeUnit.SECONDS ), equalTo( "leader" ) );
+    }
+
+    @Test
+    public void followersOutwaitLeaderSlowerThanRequestTimeout()
+            throws Exception
+    {
+        // a large download can outlast the (socket) request timeout without anything being wrong with it
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        config.setRequestTimeoutSeconds( 1 );
+
+        final RemoteRetrievalCoalescer coalescer = new RemoteRetrievalCoalescer( config );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        final List<Future<String>> results = startRetrievals( coalescer, () -> {
+            await( release );
+            return "content";
+        } );
+
+        Thread.sleep( 2500 );
+        release.countDown();
+        for ( final Future<String> result : results )
+        {
+            assertThat( result.get( 5, TimeUnit.SECONDS ), equalTo( "content" ) );
+        }
+
+        assertThat( upstreamCalls.get(), equalTo( 1 ) );
+        assertThat( followerCalls.get(), equalTo( FOLLOWERS ) );
+        assertThat( coalescer.getStats().getTimeouts(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void sequentialRetrievalsAreNotCoalesced()
+            throws Exception
+    {
+        final RemoteRetrievalCoalescer coalescer = new RemoteRetrievalCoalescer( true );
+        assertThat( retrieve( coalescer, () -> "content" ), equalTo( "content" ) );
+        assertThat( retrieve( coalescer, () -> "content" ), equalTo( "content" ) );
+
+        assertThat( upstreamCalls.get(), equalTo( 2 ) );
+        assertThat( coalescer.getStats().getCoalesced(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void disabledCoalescerAlwaysGoesUpstream()
+            throws Exception
+    {
+        final RemoteRetrievalCoalescer coalescer = new RemoteRetrievalCoalescer( false );
+        final CountDownLatch started = new CountDownLatch( 2 );
+        final CountDownLatch release = new CountDownLatch( 1 );
+
+        final List<Future<String>> results = new ArrayList<>();
+        for ( int i = 0; i < 2; i++ )
+        {
+            results.add( executor.submit( () -> retrieve( coalescer, () -> {
+                started.countDown();
+                await( release );
+                return "content";
+            } ) ) );
+        }
+
+        assertThat( started.await( 5, TimeUnit.SECONDS ), equalTo( true ) );
+        release.countDown();
+        for ( final Future<String> result : results )
+        {
+            assertThat( result.get( 5, TimeUnit.SECONDS ), equalTo( "content" ) );
+        }
+
+        assertThat( upstreamCalls.get(), equalTo( 2 ) );
+        assertThat( coalescer.getStats().getLeaders(), equalTo( 0L ) );
+    }
+
+    /**
+     * Start a leader blocked in the given upstream call, then {@link #FOLLOWERS} more retrievals of the same path, and
+     * wait until all of them have joined the leader's flight.
+     */
+    private List<Future<String>> startRetrievals( final RemoteRetrievalCoalescer coalescer,
+                                                  final RemoteRetrievalCoalescer.UpstreamCall<String> upstream )
+            throws InterruptedException
+    {
+        final List<Future<String>> results = new ArrayList<>();
+        results.add( executor.submit( () -> retrieve( coalescer, upstream ) ) );
+        waitFor( () -> coalescer.getStats().getInFlight() == 1 );
+
+        for ( int i = 0; i < FOLLOWERS; i++ )
+        {
+            results.add( executor.submit( () -> retrieve( coalescer, upstream ) ) );
+        }
+        waitFor( () -> coalescer.getStats().getCoalesced() == FOLLOWERS );
+
+        return results;
+    }
+
+    private String retrieve( final RemoteRetrievalCoalescer coalescer,
+                             final RemoteRetrievalCoalescer.UpstreamCall<String> upstream )
+            throws TransferException
+    {
+        return coalescer.coalesce( REMOTE, PATH, () -> {
+            upstreamCalls.incrementAndGet();
+            return upstream.call();
+        }, leaderResult -> {
+            followerCalls.incrementAndGet();
+            return leaderResult;
+        } );
+    }
+
+    private static void await( final CountDownLatch latch )
+            throws TransferException
+    {
+        try
+        {
+            latch.await();
+        }
+        catch ( final InterruptedException e )
+        {
+            throw new TransferException( "Interrupted", e );
+        }
+    }
+
+    private static void waitFor( final BooleanSupplier condition )
+            throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while ( !condition.getAsBoolean() )
+        {
+            if ( System.currentTimeMillis() > deadline )
+            {
+                fail( "Timed out waiting for retrievals to start" );
+            }
+            Thread.sleep( 10 );
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.content.group;
+
+import org.commonjava.indy.IndyWorkflowException;
+import org.commonjava.indy.content.ContentManager;
+import org.commonjava.indy.core.conf.GroupRetrievalConfig;
+import org.commonjava.indy.fixture.GalleyFixture;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.commonjava.indy.util.ApplicationStatus;
+import org.commonjava.indy.util.LocationUtils;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Transfer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class GroupMemberRetrieverTest
+{
+
+    private static final String PATH = "/org/foo/bar/1/bar-1.pom";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private GalleyFixture fixture;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        fixture = new GalleyFixture( temp.newFolder( "storage" ) );
+        executor = Executors.newFixedThreadPool( 4 );
+    }
+
+    @After
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void returnHighestPriorityHitEvenWhenLowerPriorityAnswersFirst()
+            throws Exception
+    {
+        final List<ArtifactStore> members =
+                Arrays.asList( new RemoteRepository( "first", "http://first" ), new RemoteRepository( "second", "http://second" ),
+                               new RemoteRepository( "third", "http://third" ) );
+
+        final GroupMemberRetriever retriever = new GroupMemberRetriever( config( "60000" ), executor );
+
+        final Transfer result = retriever.retrieveFirst( new StoreKey( StoreType.group, "test" ), members, ( member ) -> {
+            switch ( member.getName() )
+            {
+                case "first":
+                    sleep( 200 );
+                    return null;
+                case "second":
+                    sleep( 100 );
+                    return transferFor( member );
+                default:
+                    return transferFor( member );
+            }
+        } );
+
+        assertThat( result.getLocation().getName(), equalTo( LocationUtils.toLocation( members.get( 1 ) ).getName() ) );
+    }
+
+    @Test
+    public void retrieveAllKeepsMemberOrder()
+            throws Exception
+    {
+        final List<ArtifactStore> members =
+                Arrays.asList( new RemoteRepository( "first", "http://first" ), new RemoteRepository( "second", "http://second" ),
+                               new RemoteRepository( "third", "http://third" ) );
+
+        final GroupMemberRetriever retriever = new GroupMemberRetriever( config( "60000" ), executor );
+
+        final List<Transfer> results = retriever.retrieveAll( null, members, ( member ) -> {
+            if ( "first".equals( member.getName() ) )
+            {
+                sleep( 100 );
+            }
+
+            return "second".equals( member.getName() ) ? null : transferFor( member );
+        } );
+
+        assertThat( results.size(), equalTo( 2 ) );
+        assertThat( results.get( 0 ).getLocation().getName(),
+                    equalTo( LocationUtils.toLocation( members.get( 0 ) ).getName() ) );
+        assertThat( results.get( 1 ).getLocation().getName(),
+                    equalTo( LocationUtils.toLocation( members.get( 2 ) ).getName() ) );
+    }
+
+    @Test
+    public void allMissesReturnNull()
+            throws Exception
+    {
+        final List<ArtifactStore> members =
+                Arrays.asList( new RemoteRepository( "first", "http://first" ), new RemoteRepository( "second", "http://second" ) );
+
+        final GroupMemberRetriever retriever = new GroupMemberRetriever( config( "60000" ), executor );
+
+        final Transfer result = retriever.retrieveFirst( null, members, ( member ) -> null );
+        assertThat( result, nullValue() );
+    }
+
+    @Test
+    public void deadlineFailsWhileHigherPriorityMemberIsPending()
+            throws Exception
+    {
+        final List<ArtifactStore> members =
+                Arrays.asList( new RemoteRepository( "slow", "http://slow" ), new RemoteRepository( "fast", "http://fast" ) );
+
+        final GroupMemberRetriever retriever = new GroupMemberRetriever( config( "200" ), executor );
+
+        try
+        {
+            retriever.retrieveFirst( new StoreKey( StoreType.group, "public" ), members, ( member ) -> {
+                if ( "slow".equals( member.getName() ) )
+                {
+                    sleep( 2000 );
+                }
+
+                return transferFor( member );
+            } );
+
+            fail( "Should not return a lower-priority hit while a higher-priority member is pending" );
+        }
+        catch ( final IndyWorkflowException e )
+        {
+            assertThat( e.getStatus(), equalTo( ApplicationStatus.BAD_GATEWAY.code() ) );
+        }
+    }
+
+    @Test
+    public void lowerPriorityHitIsReturnedOnceHigherPriorityMembersMiss()
+            throws Exception
+    {
+        final List<ArtifactStore> members =
+                Arrays.asList( new RemoteRepository( "miss", "http://miss" ), new RemoteRepository( "hit", "http://hit" ),
+                               new RemoteRepository( "slow", "http://slow" ) );
+
+        final GroupMemberRetriever retriever = new GroupMemberRetriever( config( "500" ), executor );
+
+        final Transfer result = retriever.retrieveFirst( null, members, ( member ) -> {
+            if ( "slow".equals( member.getName() ) )
+            {
+                sleep( 2000 );
+            }
+
+            return "miss".equals( member.getName() ) ? null : transferFor( member );
+        } );
+
+        assertThat( result.getLocation().getName(), equalTo( LocationUtils.toLocation( members.get( 1 ) ).getName() ) );
+    }
+
+    @Test
+    public void groupKeyComesFromTheEntryPointStore()
+    {
+        final StoreKey group = new StoreKey( StoreType.group, "public" );
+        assertThat( GroupMemberRetriever.groupKey( new EventMetadata().set( ContentManager.ENTRY_POINT_STORE, group ) ),
+                    equalTo( group ) );
+
+        final StoreKey remote = new StoreKey( StoreType.remote, "central" );
+        assertThat( GroupMemberRetriever.groupKey( new EventMetadata().set( ContentManager.ENTRY_POINT_STORE, remote ) ),
+                    nullValue() );
+        assertThat( GroupMemberRetriever.groupKey( new EventMetadata() ), nullValue() );
+        assertThat( GroupMemberRetriever.groupKey( null ), nullValue() );
+    }
+
+    private GroupRetrievalConfig config( final String timeoutMillis )
+            throws Exception
+    {
+        final Properties props = new Properties();
+        props.setProperty( GroupRetrievalConfig.ENABLED_PROP, "true" );
+        props.setProperty( GroupRetrievalConfig.CONCURRENCY_PROP, "4" );
+        props.setProperty( GroupRetrievalConfig.TIMEOUT_MILLIS_PROP, timeoutMillis );
+
+        return new GroupRetrievalConfig( props );
+    }
+
+    private void sleep( final long millis )
+    {
+        try
+        {
+            Thread.sleep( millis );
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Transfer transferFor( final ArtifactStore store )
+    {
+        return fixture.getCache().getTransfer( new ConcreteResource( LocationUtils.toLocation( store ), PATH ) );
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.expire;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExpirationWheelTest
+{
+
+    private static final String GROUP = "remote:central:" + ScheduleManager.CONTENT_JOB_TYPE;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final List<SchedulerEvent> events = Collections.synchronizedList( new ArrayList<>() );
+
+    @Test
+    public void firesEntriesAcrossWheelLevels()
+    {
+        final ExpirationWheel wheel = new ExpirationWheel( null, events::add );
+        final long now = System.currentTimeMillis() / 1000;
+
+        wheel.schedule( GROUP, "/a", ScheduleManager.CONTENT_JOB_TYPE, "a", 2000, -1 );
+        wheel.schedule( GROUP, "/b", ScheduleManager.CONTENT_JOB_TYPE, "b", 300000, -1 );
+        wheel.schedule( GROUP, "/c", ScheduleManager.CONTENT_JOB_TYPE, "c", 70000000, -1 );
+        events.clear();
+
+        wheel.advanceTo( now + 5 );
+        assertThat( triggered(), equalTo( Collections.singletonList( "a" ) ) );
+
+        wheel.advanceTo( now + 305 );
+        assertThat( triggered(), equalTo( Collections.singletonList( "b" ) ) );
+
+        wheel.advanceTo( now + 69999 );
+        assertThat( triggered().isEmpty(), equalTo( true ) );
+
+        wheel.advanceTo( now + 70005 );
+        assertThat( triggered(), equalTo( Collections.singletonList( "c" ) ) );
+        assertThat( wheel.size(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void cancelAllBeforeOnlyRemovesEarlierEntries()
+    {
+        final ExpirationWheel wheel = new ExpirationWheel( null, events::add );
+        final long now = System.currentTimeMillis();
+
+        wheel.schedule( GROUP, "/early", ScheduleManager.CONTENT_JOB_TYPE, "early", 10000, -1 );
+        wheel.schedule( GROUP, "/late", ScheduleManager.CONTENT_JOB_TYPE, "late", 1000000, -1 );
+        events.clear();
+
+        assertThat( wheel.cancelAllBefore( GROUP, now + 60000 ), equalTo( Collections.singleton( "/early" ) ) );
+        assertThat( events.size(), equalTo( 1 ) );
+        assertThat( events.get( 0 ).getEventType(), equalTo( SchedulerEventType.CANCEL ) );
+        assertThat( wheel.getExpirations( GROUP ).keySet(), equalTo( Collections.singleton( "/late" ) ) );
+    }
+
+    @Test
+    public void restoresLiveEntriesFromLog()
+        throws Exception
+    {
+        final File log = new File( temp.newFolder(), "wheel.log" );
+
+        final ExpirationWheel wheel = new ExpirationWheel( log, events::add );
+        wheel.start();
+        wheel.schedule( GROUP, "/kept", ScheduleManager.CONTENT_JOB_TYPE, "kept", 600000, -1 );
+        wheel.schedule( GROUP, "/dropped", ScheduleManager.CONTENT_JOB_TYPE, "dropped", 600000, -1 );
+        wheel.cancel( GROUP, "/dropped" );
+        wheel.stop();
+
+        final ExpirationWheel restored = new ExpirationWheel( log, events::add );
+        restored.start();
+        try
+        {
+            assertThat( restored.getExpirations( GROUP ).keySet(), equalTo( Collections.singleton( "/kept" ) ) );
+        }
+        finally
+        {
+            restored.stop();
+        }
+    }
+
+    private List<String> triggered()
+    {
+        final List<String> payloads = new ArrayList<>();
+        synchronized ( events )
+        {
+            events.stream()
+                  .filter( e -> e.getEventType() == SchedulerEventType.TRIGGER )
+                  .forEach( e -> payloads.add( e.getPayload() ) );
+            events.clear();
+        }
+
+        return payloads;
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.inject;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.commonjava.indy.conf.DefaultIndyConfiguration;
+import org.commonjava.indy.model.core.dto.NotFoundCacheStatsDTO;
+import org.commonjava.maven.galley.model.ConcreteResource;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.SimpleLocation;
+import org.junit.After;
+import org.junit.Test;
+
+public class IndexedMemoryNotFoundCacheTest
+{
+
+    private IndexedMemoryNotFoundCache nfc;
+
+    @After
+    public void shutdown()
+    {
+        if ( nfc != null )
+        {
+            nfc.shutdown();
+        }
+    }
+
+    @Test
+    public void expireUsingConfiguredValue()
+        throws Exception
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        config.setNotFoundCacheTimeoutSeconds( 1 );
+
+        nfc = new IndexedMemoryNotFoundCache( config );
+
+        final ConcreteResource res = new ConcreteResource( new SimpleLocation( "test:uri" ), "/path/to/expired/object" );
+
+        nfc.addMissing( res );
+        assertThat( nfc.isMissing( res ), equalTo( true ) );
+
+        Thread.sleep( TimeUnit.SECONDS.toMillis( 1 ) );
+
+        final Set<String> locMissing = nfc.getMissing( res.getLocation() );
+        assertThat( locMissing == null || locMissing.isEmpty(), equalTo( true ) );
+
+        final Map<Location, Set<String>> allMissing = nfc.getAllMissing();
+        assertThat( allMissing == null || allMissing.isEmpty(), equalTo( true ) );
+
+        assertThat( nfc.isMissing( res ), equalTo( false ) );
+    }
+
+    @Test
+    public void expirationWheelRemovesEntriesWithoutLookup()
+        throws Exception
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        config.setNotFoundCacheTimeoutSeconds( 1 );
+
+        nfc = new IndexedMemoryNotFoundCache( config );
+
+        final ConcreteResource res = new ConcreteResource( new SimpleLocation( "test:uri" ), "/path/to/expired/object" );
+        nfc.addMissing( res );
+
+        Thread.sleep( TimeUnit.SECONDS.toMillis( 3 ) );
+
+        final NotFoundCacheStatsDTO stats = nfc.getStats();
+        assertThat( stats.getSize(), equalTo( 0L ) );
+        assertThat( stats.getExpirations(), equalTo( 1L ) );
+        assertThat( stats.getEstimatedBytes(), equalTo( 0L ) );
+    }
+
+    @Test
+    public void clearMissingForLocationLeavesOtherLocations()
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        nfc = new IndexedMemoryNotFoundCache( config );
+
+        final Location first = new SimpleLocation( "first:uri" );
+        final Location second = new SimpleLocation( "second:uri" );
+
+        final ConcreteResource firstRes = new ConcreteResource( first, "/path/to/first" );
+        final ConcreteResource secondRes = new ConcreteResource( second, "/path/to/second" );
+
+        nfc.addMissing( firstRes );
+        nfc.addMissing( new ConcreteResource( first, "/path/to/other" ) );
+        nfc.addMissing( secondRes );
+
+        assertThat( nfc.getMissing( first ).size(), equalTo( 2 ) );
+
+        nfc.clearMissing( first );
+
+        assertThat( nfc.isMissing( firstRes ), equalTo( false ) );
+        assertThat( nfc.getMissing( first ).isEmpty(), equalTo( true ) );
+        assertThat( nfc.isMissing( secondRes ), equalTo( true ) );
+        assertThat( nfc.getAllMissing().size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedWhenOverMaxEntries()
+        throws Exception
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        config.setNotFoundCacheMaxEntries( 2 );
+        config.setNotFoundCacheEvictionPolicy( "lru" );
+
+        nfc = new IndexedMemoryNotFoundCache( config );
+
+        final Location loc = new SimpleLocation( "test:uri" );
+        final ConcreteResource first = new ConcreteResource( loc, "/first" );
+        final ConcreteResource second = new ConcreteResource( loc, "/second" );
+        final ConcreteResource third = new ConcreteResource( loc, "/third" );
+
+        nfc.addMissing( first );
+        nfc.addMissing( second );
+
+        // make 'second' the least recently used
+        assertThat( nfc.isMissing( first ), equalTo( true ) );
+
+        nfc.addMissing( third );
+
+        final NotFoundCacheStatsDTO stats = awaitEvictions( 1 );
+        assertThat( stats.getSize(), equalTo( 2L ) );
+        assertThat( stats.getEvictions(), equalTo( 1L ) );
+
+        assertThat( nfc.isMissing( first ), equalTo( true ) );
+        assertThat( nfc.isMissing( second ), equalTo( false ) );
+        assertThat( nfc.isMissing( third ), equalTo( true ) );
+        assertThat( nfc.getMissing( loc ).size(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void evictionCatchesUpAfterBurstOfAdds()
+        throws Exception
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        config.setNotFoundCacheMaxEntries( 100 );
+
+        nfc = new IndexedMemoryNotFoundCache( config );
+
+        final Location loc = new SimpleLocation( "test:uri" );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            nfc.addMissing( new ConcreteResource( loc, "/path/" + i ) );
+        }
+
+        final NotFoundCacheStatsDTO stats = awaitEvictions( 900 );
+        assertThat( stats.getEvictions() >= 900L, equalTo( true ) );
+        assertThat( nfc.getMissing( loc ).size() <= 100, equalTo( true ) );
+    }
+
+    @Test
+    public void countHitsAndMisses()
+    {
+        final DefaultIndyConfiguration config = new DefaultIndyConfiguration();
+        nfc = new IndexedMemoryNotFoundCache( config );
+
+        final ConcreteResource res = new ConcreteResource( new SimpleLocation( "test:uri" ), "/path/to/missing" );
+
+        assertThat( nfc.isMissing( res ), equalTo( false ) );
+        nfc.addMissing( res );
+        assertThat( nfc.isMissing( res ), equalTo( true ) );
+        assertThat( nfc.isMissing( res ), equalTo( true ) );
+
+        final NotFoundCacheStatsDTO stats = nfc.getStats();
+        assertThat( stats.getHits(), equalTo( 2L ) );
+        assertThat( stats.getMisses(), equalTo( 1L ) );
+    }
+
+    /**
+     * Eviction runs on the cache's maintenance thread; wait (briefly) for it to catch up.
+     */
+    private NotFoundCacheStatsDTO awaitEvictions( final long count )
+        throws InterruptedException
+    {
+        final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( 5 );
+        NotFoundCacheStatsDTO stats = nfc.getStats();
+        while ( stats.getEvictions() < count && System.currentTimeMillis() < end )
+        {
+            Thread.sleep( 10 );
+            stats = nfc.getStats();
+        }
+
+        return stats;
+    }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.core.metrics;
+
+import org.commonjava.indy.core.conf.MetricsConfig;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class IndyMetricsTest
+{
+    private static final StoreKey CENTRAL = new StoreKey( StoreType.remote, "central" );
+
+    private static final StoreKey DEPLOYS = new StoreKey( StoreType.hosted, "local-deployments" );
+
+    @Test
+    public void timersAreExportedAsSummariesPerStore()
+            throws Exception
+    {
+        final IndyMetrics metrics = new IndyMetrics( new MetricsConfig() );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            metrics.time( IndyMetric.DOWNLOAD_RETRIEVE, CENTRAL, metrics.start() );
+        }
+        metrics.time( IndyMetric.DOWNLOAD_RETRIEVE, DEPLOYS, metrics.start() );
+
+        assertThat( metrics.getCount( IndyMetric.DOWNLOAD_RETRIEVE, CENTRAL ), equalTo( 3L ) );
+        assertThat( metrics.getCount( IndyMetric.DOWNLOAD_RETRIEVE, DEPLOYS ), equalTo( 1L ) );
+
+        final String text = export( metrics );
+        assertThat( text, containsString( "# TYPE indy_download_retrieve_seconds summary\n" ) );
+        assertThat( text, containsString(
+                "indy_download_retrieve_seconds{store_type=\"remote\",store_name=\"central\",quantile=\"0.99\"} " ) );
+        assertThat( text, containsString(
+                "indy_download_retrieve_seconds_count{store_type=\"remote\",store_name=\"central\"} 3\n" ) );
+        assertThat( text, containsString(
+                "indy_download_retrieve_seconds_count{store_type=\"hosted\",store_name=\"local-deployments\"} 1\n" ) );
+        assertThat( text, containsString( "indy_download_retrieve_seconds_sum{store_type=\"remote\",store_name=\"central\"} " ) );
+    }
+
+    @Test
+    public void countersAreExportedAsCounters()
+            throws Exception
+    {
+        final IndyMetrics metrics = new IndyMetrics( new MetricsConfig() );
+
+        metrics.count( IndyMetric.NFC_HITS, CENTRAL );
+        metrics.count( IndyMetric.NFC_HITS, CENTRAL );
+        metrics.count( IndyMetric.NFC_MISSES, null );
+
+        final String text = export( metrics );
+        assertThat( text, containsString( "# TYPE indy_nfc_hits_total counter\n" ) );
+        assertThat( text, containsString( "indy_nfc_hits_total{store_type=\"remote\",store_name=\"central\"} 2\n" ) );
+        assertThat( text, containsString( "indy_nfc_misses_total 1\n" ) );
+    }
+
+    @Test
+    public void storesBeyondTheLimitAreFoldedTogether()
+            throws Exception
+    {
+        final MetricsConfig config = new MetricsConfig();
+        config.setMaxStoresPerMetric( 2 );
+        final IndyMetrics metrics = new IndyMetrics( config );
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            metrics.count( IndyMetric.CONTENT_INDEX_HITS, new StoreKey( StoreType.remote, "remote-" + i ) );
+        }
+
+        assertThat( metrics.getCount( IndyMetric.CONTENT_INDEX_HITS, new StoreKey( StoreType.remote, "remote-1" ) ),
+                    equalTo( 1L ) );
+        assertThat( metrics.getCount( IndyMetric.CONTENT_INDEX_HITS,
+                                      new StoreKey( StoreType.remote, IndyMetrics.OTHER_STORES ) ), equalTo( 3L ) );
+
+        final String text = export( metrics );
+        assertThat( text, not( containsString( "remote-4" ) ) );
+    }
+
+    @Test
+    public void labelValuesAreEscaped()
+            throws Exception
+    {
+        final IndyMetrics metrics = new IndyMetrics( new MetricsConfig() );
+        metrics.count( IndyMetric.NFC_HITS, new StoreKey( StoreType.remote, "odd\"name\\" ) );
+
+        assertThat( export( metrics ), containsString( "store_name=\"odd\\\"name\\\\\"" ) );
+    }
+
+    @Test
+    public void nothingIsRecordedWhenDisabled()
+            throws Exception
+    {
+        final MetricsConfig config = new MetricsConfig();
+        config.setEnabled( false );
+        final IndyMetrics metrics = new IndyMetrics( config );
+
+        metrics.time( IndyMetric.CONTENT_GET, CENTRAL, metrics.start() );
+        metrics.count( IndyMetric.NFC_HITS, CENTRAL );
+
+        assertThat( metrics.getCount( IndyMetric.CONTENT_GET, CENTRAL ), equalTo( 0L ) );
+        assertThat( export( metrics ), not( containsString( "central" ) ) );
+    }
+
+    private String export( final IndyMetrics metrics )
+            throws Exception
+    {
+        final StringWriter writer = new StringWriter();
+        metrics.writePrometheus( writer );
+        return writer.toString();
+    }
+}
@@ -15,28 +15,49 @@
  */
 package org.commonjava.indy.flat.data;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Alternative;
 import javax.inject.Inject;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.commonjava.indy.audit.ChangeSummary;
 import org.commonjava.indy.conf.IndyConfiguration;
 import org.commonjava.indy.data.IndyDataException;
-import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.data.StoreEventDispatcher;
 import org.commonjava.indy.mem.data.MemoryStoreDataManager;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.Group;
-import org.commonjava.indy.model.core.HostedRepository;
 import org.commonjava.indy.model.core.RemoteRepository;
 import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.indy.model.core.StoreType;
 import org.commonjava.indy.model.core.io.IndyObjectMapper;
 import org.commonjava.indy.subsys.datafile.DataFile;
 import org.commonjava.indy.subsys.datafile.DataFileManager;
+import org.commonjava.indy.subsys.datafile.conf.DataFileConfiguration;
 import org.commonjava.maven.galley.event.EventMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +71,8 @@ public class DataFileStoreDataManager
 
     public static final String LOAD_FROM_DISK = "load-from-disk";
 
+    public static final String SNAPSHOT_FILE = "indy-stores.snapshot.json.gz";
+
     private final Logger logger = LoggerFactory.getLogger( getClass() );
 
     @Inject
@@ -58,6 +81,9 @@ public class DataFileStoreDataManager
     @Inject
     private IndyObjectMapper serializer;
 
+    @Inject
+    private DataFileConfiguration fileConfig;
+
     private boolean started;
 
     protected DataFileStoreDataManager()
@@ -66,112 +92,291 @@ public class DataFileStoreDataManager
 
     public DataFileStoreDataManager( final DataFileManager manager, final IndyObjectMapper serializer,
                                         final StoreEventDispatcher dispatcher, IndyConfiguration config )
+    {
+        this( manager, serializer, dispatcher, config, new DataFileConfiguration() );
+    }
+
+    public DataFileStoreDataManager( final DataFileManager manager, final IndyObjectMapper serializer,
+                                     final StoreEventDispatcher dispatcher, IndyConfiguration config,
+                                     final DataFileConfiguration fileConfig )
     {
         super( dispatcher, config );
         this.manager = manager;
         this.serializer = serializer;
+        this.fileConfig = fileConfig;
     }
 
     @PostConstruct
     public void readDefinitions()
     {
+        loadDefinitions( fileConfig.isStoreSnapshotEnabled() );
+    }
+
+    /**
+     * Bulk-load every store definition, either from the snapshot (if allowed, enabled and up to date) or by reading
+     * and parsing the definition files in parallel. Stores are added to memory in one batch, without the per-store
+     * hooks (which would otherwise write every definition straight back to disk).
+     */
+    private void loadDefinitions( final boolean useSnapshot )
+    {
+        final long start = System.currentTimeMillis();
+
+        List<ArtifactStore> loaded = useSnapshot ? readSnapshot() : null;
+        final boolean fromSnapshot = loaded != null;
+        if ( loaded == null )
+        {
+            loaded = readDefinitionFiles();
+        }
+
+        loadArtifactStores( loaded );
+        started = true;
+
+        logger.info( "Loaded {} store definitions from {} in {}ms", loaded.size(),
+                     fromSnapshot ? "snapshot" : "definition files", System.currentTimeMillis() - start );
+
+        if ( fileConfig.isStoreSnapshotEnabled() && !fromSnapshot )
+        {
+            writeSnapshot();
+        }
+    }
+
+    private List<ArtifactStore> readDefinitionFiles()
+    {
+        final List<DataFile> files = new ArrayList<>();
+        final List<Class<? extends ArtifactStore>> types = new ArrayList<>();
+        for ( final StoreType type : StoreType.values() )
+        {
+            final DataFile dir = manager.getDataFile( INDY_STORE, type.singularEndpointName() );
+            final String[] names = dir.list();
+            if ( names != null )
+            {
+                for ( final String name : names )
+                {
+                    files.add( dir.getChild( name ) );
+                    types.add( type.getStoreClass() );
+                }
+            }
+        }
+
+        final List<DataFile> culled = Collections.synchronizedList( new ArrayList<>() );
+        final int threads = Math.max( 1, Math.min( fileConfig.getStoreLoadThreads(), files.size() ) );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads, ( r ) -> {
+            final Thread t = new Thread( r, "store-definition-loader" );
+            t.setDaemon( true );
+            return t;
+        } );
+
+        final List<ArtifactStore> loaded = new ArrayList<>( files.size() );
         try
         {
-            DataFile dir = manager.getDataFile( INDY_STORE, StoreType.hosted.singularEndpointName() );
+            final List<Future<ArtifactStore>> futures = new ArrayList<>( files.size() );
+            for ( int i = 0; i < files.size(); i++ )
+            {
+                final DataFile f = files.get( i );
+                final Class<? extends ArtifactStore> type = types.get( i );
+                futures.add( executor.submit( () -> readDefinition( f, type, culled ) ) );
+            }
+
+            for ( final Future<ArtifactStore> future : futures )
+            {
+                final ArtifactStore store = future.get();
+                if ( store != null )
+                {
+                    loaded.add( store );
+                }
+            }
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Interrupted while reading store definitions from disk", e );
+        }
+        catch ( final ExecutionException e )
+        {
+            throw new IllegalStateException( "Failed to read store definitions: " + e.getCause().getMessage(),
+                                             e.getCause() );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        if ( !culled.isEmpty() )
+        {
             final ChangeSummary summary =
                 new ChangeSummary( ChangeSummary.SYSTEM_USER,
                                    "Reading definitions from disk, culling invalid definition files." );
+            for ( final DataFile f : culled )
+            {
+                try
+                {
+                    f.delete( summary );
+                }
+                catch ( final IOException e )
+                {
+                    logger.error( String.format( "Failed to delete invalid store definition: %s. Reason: %s", f,
+                                                 e.getMessage() ), e );
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+    private ArtifactStore readDefinition( final DataFile f, final Class<? extends ArtifactStore> type,
+                                          final List<DataFile> culled )
+    {
+        try
+        {
+            // parse straight from the file, without building an intermediate string
+            final ArtifactStore store = serializer.readValue( f.getDetachedFile(), type );
+            if ( store == null )
+            {
+                culled.add( f );
+            }
+
+            return store;
+        }
+        catch ( final IOException e )
+        {
+            logger.error( String.format( "Failed to load store definition: %s. Reason: %s", f, e.getMessage() ), e );
+            return null;
+        }
+    }
+
+    private File getSnapshotFile()
+    {
+        return new File( manager.getDetachedWorkBasedir(), SNAPSHOT_FILE );
+    }
+
+    /**
+     * Read the store snapshot, or return null if it's missing, unreadable, or older than any definition file or
+     * definition directory (which covers additions, modifications and deletions made since it was written).
+     */
+    private List<ArtifactStore> readSnapshot()
+    {
+        final File snapshot = getSnapshotFile();
+        if ( !snapshot.isFile() )
+        {
+            return null;
+        }
 
-            String[] files = dir.list();
+        final long snapshotTime = snapshot.lastModified();
+        for ( final StoreType type : StoreType.values() )
+        {
+            final File dir = manager.getDataFile( INDY_STORE, type.singularEndpointName() ).getDetachedFile();
+            if ( dir.lastModified() >= snapshotTime )
+            {
+                logger.info( "Store snapshot is older than {}. Reading definition files instead.", dir );
+                return null;
+            }
+
+            final File[] files = dir.listFiles();
             if ( files != null )
             {
-                for ( final String file : files )
+                for ( final File f : files )
                 {
-                    final DataFile f = dir.getChild( file );
-                    try
+                    if ( f.lastModified() >= snapshotTime )
                     {
-                        final String json = f.readString();
-                        final HostedRepository h = serializer.readValue( json, HostedRepository.class );
-                        if ( h == null )
-                        {
-                            f.delete( summary );
-                        }
-                        else
-                        {
-                            storeArtifactStore( h, summary, false, false,
-                                                new EventMetadata().set( StoreDataManager.EVENT_ORIGIN, LOAD_FROM_DISK ) );
-                        }
-                    }
-                    catch ( final IOException e )
-                    {
-                        logger.error( String.format( "Failed to load deploy point: %s. Reason: %s", f, e.getMessage() ),
-                                      e );
+                        logger.info( "Store snapshot is older than {}. Reading definition files instead.", f );
+                        return null;
                     }
                 }
             }
+        }
+
+        final List<ArtifactStore> loaded = new ArrayList<>();
+        try (JsonParser parser = serializer.getFactory()
+                                           .createParser( new GZIPInputStream(
+                                                   new BufferedInputStream( new FileInputStream( snapshot ) ) ) ))
+        {
+            if ( parser.nextToken() != JsonToken.START_OBJECT )
+            {
+                throw new IOException( "Snapshot does not start with a JSON object" );
+            }
 
-            dir = manager.getDataFile( INDY_STORE, StoreType.remote.singularEndpointName() );
-            files = dir.list();
-            if ( files != null )
+            while ( parser.nextToken() == JsonToken.FIELD_NAME )
             {
-                for ( final String file : files )
+                final StoreType type = StoreType.get( parser.getCurrentName() );
+                if ( type == null || parser.nextToken() != JsonToken.START_ARRAY )
                 {
-                    final DataFile f = dir.getChild( file );
-                    try
-                    {
-                        final String json = f.readString();
-                        final RemoteRepository r = serializer.readValue( json, RemoteRepository.class );
-                        if ( r == null )
-                        {
-                            f.delete( summary );
-                        }
-                        else
-                        {
-                            storeArtifactStore( r, summary, false, false,
-                                                new EventMetadata().set( StoreDataManager.EVENT_ORIGIN, LOAD_FROM_DISK ) );
-                        }
-                    }
-                    catch ( final IOException e )
-                    {
-                        logger.error( String.format( "Failed to load repository: %s. Reason: %s", f, e.getMessage() ),
-                                      e );
-                    }
+                    throw new IOException( "Invalid snapshot section: " + parser.getCurrentName() );
+                }
+
+                while ( parser.nextToken() == JsonToken.START_OBJECT )
+                {
+                    loaded.add( serializer.readValue( parser, type.getStoreClass() ) );
                 }
             }
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( String.format( "Failed to read store snapshot: %s. Reading definition files instead. Reason: %s",
+                                        snapshot, e.getMessage() ), e );
+            return null;
+        }
 
-            dir = manager.getDataFile( INDY_STORE, StoreType.group.singularEndpointName() );
-            files = dir.list();
-            if ( files != null )
+        return loaded;
+    }
+
+    /**
+     * Write every store currently in memory to the snapshot file, grouped by store type. The file is written next to
+     * the snapshot and then moved over it, so a partially written snapshot is never read.
+     */
+    private void writeSnapshot()
+    {
+        final File snapshot = getSnapshotFile();
+        final File tmp = new File( snapshot.getPath() + ".tmp" );
+        snapshot.getParentFile().mkdirs();
+
+        final ObjectWriter writer = serializer.writer().without( SerializationFeature.INDENT_OUTPUT );
+        try (JsonGenerator generator = serializer.getFactory()
+                                                 .createGenerator( new GZIPOutputStream(
+                                                         new BufferedOutputStream( new FileOutputStream( tmp ) ) ) ))
+        {
+            generator.writeStartObject();
+            for ( final StoreType type : StoreType.values() )
             {
-                for ( final String file : files )
+                generator.writeArrayFieldStart( type.singularEndpointName() );
+                for ( final ArtifactStore store : getAllArtifactStores( type ) )
                 {
-                    final DataFile f = dir.getChild( file );
-                    try
-                    {
-                        final String json = f.readString();
-                        final Group g = serializer.readValue( json, Group.class );
-                        if ( g == null )
-                        {
-                            f.delete( summary );
-                        }
-                        else
-                        {
-                            storeArtifactStore( g, summary, false, false,
-                                                new EventMetadata().set( StoreDataManager.EVENT_ORIGIN, LOAD_FROM_DISK ) );
-                        }
-                    }
-                    catch ( final IOException e )
-                    {
-                        logger.error( String.format( "Failed to load group: %s. Reason: %s", f, e.getMessage() ), e );
-                    }
+                    writer.writeValue( generator, store );
                 }
+                generator.writeEndArray();
             }
+            generator.writeEndObject();
+        }
+        catch ( final IOException | IndyDataException e )
+        {
+            logger.warn( String.format( "Failed to write store snapshot: %s. Reason: %s", snapshot, e.getMessage() ),
+                         e );
+            tmp.delete();
+            return;
+        }
 
-            started = true;
+        try
+        {
+            Files.move( tmp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE );
+            logger.info( "Wrote store snapshot: {}", snapshot );
+        }
+        catch ( final IOException e )
+        {
+            logger.warn( String.format( "Failed to move store snapshot into place: %s. Reason: %s", snapshot,
+                                        e.getMessage() ), e );
+            tmp.delete();
         }
-        catch ( final IndyDataException e )
+    }
+
+    /**
+     * Refresh the snapshot on the way down, so the next startup can use it.
+     */
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( started && fileConfig.isStoreSnapshotEnabled() )
         {
-            throw new IllegalStateException( "Failed to start store data manager: " + e.getMessage(), e );
+            writeSnapshot();
         }
     }
 
@@ -283,7 +488,7 @@ public class DataFileStoreDataManager
     {
         // NOTE: Call to super for this, because the local implementation DELETES THE DB DIR!!!
         super.clear( new ChangeSummary( ChangeSummary.SYSTEM_USER, "Reloading from storage" ) );
-        readDefinitions();
+        loadDefinitions( false );
     }
 
     public DataFile getDataFile( final StoreKey key )
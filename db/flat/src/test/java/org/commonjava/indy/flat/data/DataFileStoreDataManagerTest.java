@@ -16,13 +16,20 @@
 package org.commonjava.indy.flat.data;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
 
 import org.commonjava.indy.audit.ChangeSummary;
 import org.commonjava.indy.conf.DefaultIndyConfiguration;
 import org.commonjava.indy.core.data.testutil.StoreEventDispatcherStub;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.HostedRepository;
 import org.commonjava.indy.model.core.RemoteRepository;
 import org.commonjava.indy.model.core.StoreKey;
 import org.commonjava.indy.model.core.StoreType;
@@ -47,13 +54,15 @@ public class DataFileStoreDataManagerTest
 
     private DataFileConfiguration fileCfg;
 
+    private DataFileManager fileMgr;
+
     @Before
     public void setup()
             throws Exception
     {
         fileCfg = new DataFileConfiguration( temp.newFolder( "data" ), temp.newFolder( "work" ) );
 
-        final DataFileManager fileMgr = new DataFileManager( fileCfg, new DataFileEventManager() );
+        fileMgr = new DataFileManager( fileCfg, new DataFileEventManager() );
 
         mgr = new DataFileStoreDataManager( fileMgr, new IndyObjectMapper( false ), new StoreEventDispatcherStub(),
                                             new DefaultIndyConfiguration() );
@@ -74,4 +83,105 @@ public class DataFileStoreDataManagerTest
                 new File( fileCfg.getDataBasedir(), "indy/remote/" + name + ".json" ).getAbsolutePath() ) );
     }
 
+
+    @Test
+    public void readDefinitionsLoadsAllStoresAndIndexesGroups()
+            throws Exception
+    {
+        storeDefinitions();
+
+        final DataFile invalid = mgr.getDataFile( new StoreKey( StoreType.hosted, "invalid" ) );
+        invalid.writeString( "null", "UTF-8", new ChangeSummary( "test-user", "invalid" ) );
+
+        final DataFileStoreDataManager loaded = newManager();
+        loaded.readDefinitions();
+
+        assertThat( loaded.getAllArtifactStores().size(), equalTo( 3 ) );
+        assertThat( loaded.getRemoteRepository( "central" ).getUrl(), equalTo( "http://repo.example.com/" ) );
+
+        final Set<Group> containing = loaded.getGroupsContaining( new StoreKey( StoreType.hosted, "local" ) );
+        assertThat( containing.size(), equalTo( 1 ) );
+        assertThat( containing.iterator().next().getName(), equalTo( "public" ) );
+        assertThat( loaded.getOrderedConcreteStoresInGroup( "public", false ).size(), equalTo( 2 ) );
+
+        assertThat( invalid.exists(), equalTo( false ) );
+    }
+
+    @Test
+    public void readDefinitionsUsesUpToDateSnapshot()
+            throws Exception
+    {
+        fileCfg.setStoreSnapshotEnabled( true );
+        storeDefinitions();
+
+        newManager().readDefinitions();
+
+        final File snapshot = new File( fileCfg.getWorkBasedir(), DataFileStoreDataManager.SNAPSHOT_FILE );
+        assertThat( snapshot.isFile(), equalTo( true ) );
+
+        // break a definition file, but keep all definitions (and their directories) older than the snapshot
+        final File remoteFile = mgr.getDataFile( new StoreKey( StoreType.remote, "central" ) ).getDetachedFile();
+        Files.write( remoteFile.toPath(), "{ broken".getBytes( StandardCharsets.UTF_8 ) );
+        for ( final StoreType type : StoreType.values() )
+        {
+            final File dir = fileMgr.getDataFile( DataFileStoreDataManager.INDY_STORE, type.singularEndpointName() )
+                                    .getDetachedFile();
+            for ( final File f : dir.listFiles() )
+            {
+                f.setLastModified( snapshot.lastModified() - 60000 );
+            }
+            dir.setLastModified( snapshot.lastModified() - 60000 );
+        }
+
+        final DataFileStoreDataManager loaded = newManager();
+        loaded.readDefinitions();
+
+        assertThat( loaded.getAllArtifactStores().size(), equalTo( 3 ) );
+        assertThat( loaded.getRemoteRepository( "central" ).getUrl(), equalTo( "http://repo.example.com/" ) );
+        assertThat( loaded.getGroupsContaining( new StoreKey( StoreType.remote, "central" ) ).size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void readDefinitionsIgnoresStaleSnapshot()
+            throws Exception
+    {
+        fileCfg.setStoreSnapshotEnabled( true );
+        storeDefinitions();
+
+        newManager().readDefinitions();
+
+        final File snapshot = new File( fileCfg.getWorkBasedir(), DataFileStoreDataManager.SNAPSHOT_FILE );
+        snapshot.setLastModified( snapshot.lastModified() - 60000 );
+
+        mgr.storeArtifactStore( new RemoteRepository( "central", "http://mirror.example.com/" ),
+                                new ChangeSummary( "test-user", "change url" ), new EventMetadata() );
+        mgr.deleteArtifactStore( new StoreKey( StoreType.hosted, "local" ), new ChangeSummary( "test-user", "delete" ),
+                                 new EventMetadata() );
+
+        final DataFileStoreDataManager loaded = newManager();
+        loaded.readDefinitions();
+
+        assertThat( loaded.getRemoteRepository( "central" ).getUrl(), equalTo( "http://mirror.example.com/" ) );
+        assertThat( loaded.getHostedRepository( "local" ), nullValue() );
+        assertThat( loaded.getGroup( "public" ), notNullValue() );
+    }
+
+    private void storeDefinitions()
+            throws Exception
+    {
+        final ChangeSummary summary = new ChangeSummary( "test-user", "init" );
+        mgr.storeArtifactStore( new HostedRepository( "local" ), summary, new EventMetadata() );
+        mgr.storeArtifactStore( new RemoteRepository( "central", "http://repo.example.com/" ), summary,
+                                new EventMetadata() );
+        mgr.storeArtifactStore( new Group( "public", new StoreKey( StoreType.hosted, "local" ),
+                                           new StoreKey( StoreType.remote, "central" ) ), summary,
+                                new EventMetadata() );
+    }
+
+    private DataFileStoreDataManager newManager()
+    {
+        return new DataFileStoreDataManager( fileMgr, new IndyObjectMapper( false ), new StoreEventDispatcherStub(),
+                                             new DefaultIndyConfiguration(), fileCfg );
+    }
+
 }
@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.mem.data;
+
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Precomputed view of group membership over the stores held by {@link MemoryStoreDataManager}. It keeps a reverse
+ * index of direct parents for every member key (whether or not that member exists yet), and lazily caches immutable
+ * flattened orderings and containing-group sets, so repeated reads are a single map lookup.
+ * <br/>
+ * Writers call {@link #storeUpdated(ArtifactStore, ArtifactStore)} right after changing the backing map. That
+ * updates the reverse index and drops the cached orderings of the changed store and every group that transitively
+ * contains it. Cached containing-group sets are dropped on any group change, since those are rare compared to reads.
+ * <br/>
+ * Readers fill the caches without locking. Every write bumps a generation counter, and a reader that sees the
+ * generation move while it was computing removes its own (possibly stale) entry again.
+ */
+final class GroupMembershipGraph
+{
+    enum Ordering
+    {
+        CONCRETE_ALL( false, true, false ),
+        CONCRETE_ENABLED( false, true, true ),
+        STORES_ALL( true, false, false ),
+        STORES_ENABLED( true, false, true );
+
+        private final boolean includeGroups;
+
+        private final boolean recurseGroups;
+
+        private final boolean enabledOnly;
+
+        Ordering( final boolean includeGroups, final boolean recurseGroups, final boolean enabledOnly )
+        {
+            this.includeGroups = includeGroups;
+            this.recurseGroups = recurseGroups;
+            this.enabledOnly = enabledOnly;
+        }
+
+        static Ordering concrete( final boolean enabledOnly )
+        {
+            return enabledOnly ? CONCRETE_ENABLED : CONCRETE_ALL;
+        }
+
+        static Ordering stores( final boolean enabledOnly )
+        {
+            return enabledOnly ? STORES_ENABLED : STORES_ALL;
+        }
+    }
+
+    private final Map<StoreKey, ArtifactStore> stores;
+
+    private final Map<StoreKey, Set<StoreKey>> parents = new ConcurrentHashMap<>();
+
+    private final Map<Ordering, Map<StoreKey, List<ArtifactStore>>> orderings = new EnumMap<>( Ordering.class );
+
+    private final Map<StoreKey, Set<Group>> directContaining = new ConcurrentHashMap<>();
+
+    private final Map<StoreKey, Set<Group>> transitiveContaining = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    GroupMembershipGraph( final Map<StoreKey, ArtifactStore> stores )
+    {
+        this.stores = stores;
+        for ( final Ordering ordering : Ordering.values() )
+        {
+            orderings.put( ordering, new ConcurrentHashMap<>() );
+        }
+    }
+
+    /**
+     * Return the cached, unmodifiable membership ordering for the given group, computing it if necessary.
+     */
+    List<ArtifactStore> getOrdering( final StoreKey groupKey, final Ordering ordering )
+    {
+        final Map<StoreKey, List<ArtifactStore>> cache = orderings.get( ordering );
+        List<ArtifactStore> result = cache.get( groupKey );
+        if ( result != null )
+        {
+            return result;
+        }
+
+        final long gen = generation.get();
+        final ArtifactStore master = stores.get( groupKey );
+        if ( !( master instanceof Group ) )
+        {
+            return Collections.emptyList();
+        }
+
+        final List<ArtifactStore> computed = new ArrayList<>();
+        recurseGroup( (Group) master, computed, new HashSet<>(), ordering.includeGroups, ordering.recurseGroups,
+                      ordering.enabledOnly );
+
+        result = Collections.unmodifiableList( computed );
+        return cache( cache, groupKey, result, gen );
+    }
+
+    /**
+     * Return the groups listing the given key directly in their constituents.
+     */
+    Set<Group> getGroupsContaining( final StoreKey key )
+    {
+        Set<Group> result = directContaining.get( key );
+        if ( result != null )
+        {
+            return result;
+        }
+
+        final long gen = generation.get();
+        final Set<Group> computed = new HashSet<>();
+        final Set<StoreKey> direct = parents.get( key );
+        if ( direct != null )
+        {
+            for ( final StoreKey parent : direct )
+            {
+                final ArtifactStore group = stores.get( parent );
+                if ( group instanceof Group )
+                {
+                    computed.add( (Group) group );
+                }
+            }
+        }
+
+        result = Collections.unmodifiableSet( computed );
+        return cache( directContaining, key, result, gen );
+    }
+
+    /**
+     * Return every group whose flattened membership includes the given key, nearest parents first.
+     */
+    Set<Group> getGroupsAffectedBy( final StoreKey key )
+    {
+        Set<Group> result = transitiveContaining.get( key );
+        if ( result != null )
+        {
+            return result;
+        }
+
+        final long gen = generation.get();
+        final Set<Group> computed = new LinkedHashSet<>();
+        for ( final StoreKey ancestor : ancestorsOf( key ) )
+        {
+            final ArtifactStore group = stores.get( ancestor );
+            if ( group instanceof Group )
+            {
+                computed.add( (Group) group );
+            }
+        }
+
+        result = Collections.unmodifiableSet( computed );
+        return cache( transitiveContaining, key, result, gen );
+    }
+
+    /**
+     * Record a change to the backing store map. Either argument may be null, for additions and deletions.
+     */
+    void storeUpdated( final ArtifactStore original, final ArtifactStore store )
+    {
+        final ArtifactStore current = store == null ? original : store;
+        if ( current == null )
+        {
+            return;
+        }
+
+        final StoreKey key = current.getKey();
+        if ( key.getType() == StoreType.group )
+        {
+            final List<StoreKey> oldMembers = constituentsOf( original );
+            final List<StoreKey> newMembers = constituentsOf( store );
+
+            for ( final StoreKey member : oldMembers )
+            {
+                if ( !newMembers.contains( member ) )
+                {
+                    parents.computeIfPresent( member, ( k, s ) -> {
+                        s.remove( key );
+                        return s.isEmpty() ? null : s;
+                    } );
+                }
+            }
+
+            for ( final StoreKey member : newMembers )
+            {
+                parents.compute( member, ( k, s ) -> {
+                    final Set<StoreKey> result = s == null ? ConcurrentHashMap.newKeySet() : s;
+                    result.add( key );
+                    return result;
+                } );
+            }
+        }
+
+        generation.incrementAndGet();
+
+        if ( key.getType() == StoreType.group )
+        {
+            directContaining.clear();
+            transitiveContaining.clear();
+        }
+
+        final Set<StoreKey> affected = ancestorsOf( key );
+        affected.add( key );
+        for ( final Map<StoreKey, List<ArtifactStore>> cache : orderings.values() )
+        {
+            affected.forEach( cache::remove );
+        }
+    }
+
+    /**
+     * Rebuild the membership index from scratch out of the current contents of the backing store map. Used after bulk
+     * loads, instead of calling {@link #storeUpdated(ArtifactStore, ArtifactStore)} once per store.
+     */
+    void rebuild()
+    {
+        clear();
+        for ( final ArtifactStore store : stores.values() )
+        {
+            final StoreKey key = store.getKey();
+            for ( final StoreKey member : constituentsOf( store ) )
+            {
+                parents.computeIfAbsent( member, k -> ConcurrentHashMap.newKeySet() ).add( key );
+            }
+        }
+
+        generation.incrementAndGet();
+    }
+
+    void clear()
+    {
+        parents.clear();
+        generation.incrementAndGet();
+        orderings.values().forEach( Map::clear );
+        directContaining.clear();
+        transitiveContaining.clear();
+    }
+
+    private <T> T cache( final Map<StoreKey, T> cache, final StoreKey key, final T value, final long gen )
+    {
+        cache.put( key, value );
+        if ( generation.get() != gen )
+        {
+            // a writer raced with us; we may have computed from a stale view, so don't keep it.
+            cache.remove( key, value );
+        }
+
+        return value;
+    }
+
+    private Set<StoreKey> ancestorsOf( final StoreKey key )
+    {
+        final Set<StoreKey> seen = new LinkedHashSet<>();
+        final Deque<StoreKey> queue = new ArrayDeque<>();
+        queue.add( key );
+        while ( !queue.isEmpty() )
+        {
+            final Set<StoreKey> direct = parents.get( queue.poll() );
+            if ( direct != null )
+            {
+                for ( final StoreKey parent : direct )
+                {
+                    if ( !parent.equals( key ) && seen.add( parent ) )
+                    {
+                        queue.add( parent );
+                    }
+                }
+            }
+        }
+
+        return seen;
+    }
+
+    private static List<StoreKey> constituentsOf( final ArtifactStore store )
+    {
+        if ( store instanceof Group )
+        {
+            final List<StoreKey> constituents = ( (Group) store ).getConstituents();
+            if ( constituents != null )
+            {
+                return new ArrayList<>( constituents );
+            }
+        }
+
+        return Collections.emptyList();
+    }
+
+    private void recurseGroup( final Group master, final List<ArtifactStore> result, final Set<StoreKey> seen,
+                               final boolean includeGroups, final boolean recurseGroups, final boolean enabledOnly )
+    {
+        if ( master == null || master.isDisabled() && enabledOnly )
+        {
+            return;
+        }
+
+        List<StoreKey> members = new ArrayList<>( master.getConstituents() );
+        if ( includeGroups )
+        {
+            result.add( master );
+        }
+
+        members.forEach( ( key ) -> {
+            if ( !seen.contains( key ) )
+            {
+                seen.add( key );
+                final StoreType type = key.getType();
+                if ( recurseGroups && type == StoreType.group )
+                {
+                    // if we're here, we're definitely recursing groups...
+                    recurseGroup( (Group) stores.get( key ), result, seen, includeGroups, true, enabledOnly );
+                }
+                else
+                {
+                    final ArtifactStore store = stores.get( key );
+                    if ( store != null && !( store.isDisabled() && enabledOnly ) )
+                    {
+                        result.add( store );
+                    }
+                }
+            }
+        } );
+    }
+}
@@ -23,6 +23,7 @@ import org.commonjava.indy.data.IndyDataException;
 import org.commonjava.indy.data.NoOpStoreEventDispatcher;
 import org.commonjava.indy.data.StoreDataManager;
 import org.commonjava.indy.data.StoreEventDispatcher;
+import org.commonjava.indy.data.StoreView;
 import org.commonjava.indy.model.core.ArtifactStore;
 import org.commonjava.indy.model.core.Group;
 import org.commonjava.indy.model.core.HostedRepository;
@@ -38,12 +39,12 @@ import javax.enterprise.inject.Alternative;
 import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
@@ -61,6 +62,17 @@ public class MemoryStoreDataManager
 
     private final Map<StoreKey, ArtifactStore> stores = new ConcurrentHashMap<>();
 
+    /**
+     * Read-only views of the stores, by type and name. Besides serving {@link #getStoreView(StoreType, String)}, this
+     * is the registry behind {@link #canonicalKey(StoreType, String)}: names resolve to the key instances in the store
+     * map without allocating a key for the lookup.
+     */
+    private final Map<StoreType, Map<String, StoreView>> views = newViewIndex();
+
+    private final GroupMembershipGraph membership = new GroupMembershipGraph( stores );
+
+    private final RemoteUrlIndex remoteUrls = new RemoteUrlIndex( stores );
+
     private final Map<StoreKey, ReentrantLock> opLocks = new WeakHashMap<>();
 
     //    private final Logger logger = LoggerFactory.getLogger( getClass() );
@@ -91,7 +103,7 @@ public class MemoryStoreDataManager
     public HostedRepository getHostedRepository( final String name )
             throws IndyDataException
     {
-        return (HostedRepository) stores.get( new StoreKey( StoreType.hosted, name ) );
+        return (HostedRepository) getByName( StoreType.hosted, name );
     }
 
     @Override
@@ -105,9 +117,7 @@ public class MemoryStoreDataManager
     public RemoteRepository getRemoteRepository( final String name )
             throws IndyDataException
     {
-        final StoreKey key = new StoreKey( remote, name );
-
-        RemoteRepository repo = (RemoteRepository) stores.get( key );
+        RemoteRepository repo = (RemoteRepository) getByName( remote, name );
         if ( repo == null )
         {
             return null;
@@ -125,7 +135,7 @@ public class MemoryStoreDataManager
     public Group getGroup( final String name )
             throws IndyDataException
     {
-        return (Group) stores.get( new StoreKey( StoreType.group, name ) );
+        return (Group) getByName( StoreType.group, name );
     }
 
     @Override
@@ -153,14 +163,16 @@ public class MemoryStoreDataManager
     public List<ArtifactStore> getOrderedConcreteStoresInGroup( final String groupName, final boolean enabledOnly )
             throws IndyDataException
     {
-        return getGroupOrdering( groupName, false, true, enabledOnly );
+        return membership.getOrdering( canonicalKey( StoreType.group, groupName ),
+                                       GroupMembershipGraph.Ordering.concrete( enabledOnly ) );
     }
 
     @Override
     public List<ArtifactStore> getOrderedStoresInGroup( final String groupName, final boolean enabledOnly )
             throws IndyDataException
     {
-        return getGroupOrdering( groupName, true, false, enabledOnly );
+        return membership.getOrdering( canonicalKey( StoreType.group, groupName ),
+                                       GroupMembershipGraph.Ordering.stores( enabledOnly ) );
     }
 
     @Override
@@ -305,6 +317,9 @@ public class MemoryStoreDataManager
             preDelete( store, summary, true, eventMetadata );
 
             ArtifactStore removed = stores.remove( key );
+            membership.storeUpdated( removed, null );
+            remoteUrls.storeUpdated( removed, null );
+            updateView( removed, null );
 
             postDelete( store, summary, true, eventMetadata );
         }
@@ -325,38 +340,129 @@ public class MemoryStoreDataManager
             throws IndyDataException
     {
         stores.clear();
+        membership.clear();
+        remoteUrls.clear();
+        views.values().forEach( Map::clear );
+    }
+
+    /**
+     * Bulk-load store definitions (for instance, when reading them from disk at startup). Stores are put directly into
+     * the in-memory map without the pre/post store hooks or events, and group membership and remote URLs are indexed
+     * once at the end.
+     */
+    protected void loadArtifactStores( final Collection<? extends ArtifactStore> loaded )
+    {
+        for ( final ArtifactStore store : loaded )
+        {
+            stores.put( store.getKey(), store );
+        }
+
+        // now that every store is in the map, point group members at the shared key instances
+        loaded.forEach( this::shareMemberKeys );
+        loaded.forEach( ( store ) -> updateView( null, store ) );
+
+        membership.rebuild();
+        remoteUrls.rebuild();
+    }
+
+    /**
+     * Swap a group's members for the key instances held by the stores they name, so the keys in the store map are
+     * shared instead of each group keeping parsed copies. The map itself is the registry: keys come and go with their
+     * stores, and nothing outside this instance is affected.
+     */
+    private void shareMemberKeys( final ArtifactStore store )
+    {
+        if ( store instanceof Group )
+        {
+            final Group group = (Group) store;
+            final List<StoreKey> members = group.getConstituents();
+            final List<StoreKey> canonical = new ArrayList<>( members.size() );
+            boolean changed = false;
+            for ( final StoreKey member : members )
+            {
+                final ArtifactStore existing = stores.get( member );
+                final StoreKey c = existing == null ? member : existing.getKey();
+                changed |= c != member;
+                canonical.add( c );
+            }
+
+            if ( changed )
+            {
+                group.setConstituents( canonical );
+            }
+        }
+    }
+
+    @Override
+    public StoreView getStoreView( final StoreType type, final String name )
+    {
+        return type == null || name == null ? null : views.get( type ).get( name );
+    }
+
+    private ArtifactStore getByName( final StoreType type, final String name )
+    {
+        final StoreView view = getStoreView( type, name );
+        return view == null ? null : stores.get( view.getKey() );
+    }
+
+    /**
+     * Replace the view of a store that changed (or was added or removed, when one side is null). Views are snapshots,
+     * so they're retaken on every store, after group members have been swapped for shared keys.
+     */
+    private void updateView( final ArtifactStore old, final ArtifactStore store )
+    {
+        if ( store != null )
+        {
+            views.get( store.getType() ).put( store.getName(), StoreView.of( store ) );
+        }
+        else if ( old != null )
+        {
+            views.get( old.getType() ).remove( old.getName() );
+        }
+    }
+
+    private static Map<StoreType, Map<String, StoreView>> newViewIndex()
+    {
+        final Map<StoreType, Map<String, StoreView>> index = new EnumMap<>( StoreType.class );
+        for ( final StoreType type : StoreType.values() )
+        {
+            index.put( type, new ConcurrentHashMap<>() );
+        }
+
+        return index;
     }
 
     @Override
     public Set<Group> getGroupsContaining( final StoreKey repo )
             throws IndyDataException
     {
-        Logger logger = LoggerFactory.getLogger( getClass() );
         logger.debug( "Getting groups containing: {}", repo );
+        return membership.getGroupsContaining( repo );
+    }
 
-        Set<ArtifactStore> all = new HashSet<>( stores.values() );
-
-        Set<Group> result = all.parallelStream()
-                               .filter( ( store ) -> ( ( store instanceof Group ) && ( (Group) store ).getConstituents()
-                                                                                                      .contains(
-                                                                                                              repo ) ) )
-                               .map( ( store ) -> (Group) store )
-                               .collect( Collectors.toSet() );
-
-        return result;
+    @Override
+    public Set<Group> getGroupsAffectedBy( final StoreKey key )
+            throws IndyDataException
+    {
+        return membership.getGroupsAffectedBy( key );
     }
 
     @Override
     public RemoteRepository findRemoteRepository( final String url )
     {
-        List<Map.Entry<StoreKey, ArtifactStore>> copy = new ArrayList<>( stores.entrySet() );
+        return remoteUrls.find( url );
+    }
 
-        Optional<RemoteRepository> found = copy.stream()
-                                               .filter( e -> ( ( remote == e.getValue().getKey().getType() )
-                                                       && ( (RemoteRepository) e.getValue() ).getUrl().equals( url ) ) )
-                                               .map( ( e ) -> (RemoteRepository) e.getValue() )
-                                               .findFirst();
-        return found.isPresent() ? found.get() : null;
+    @Override
+    public List<RemoteRepository> findRemoteRepositoriesByHost( final String host )
+    {
+        return remoteUrls.findByHost( host );
+    }
+
+    @Override
+    public List<RemoteRepository> findRemoteRepositoriesByUrlPrefix( final String urlPrefix )
+    {
+        return remoteUrls.findByUrlPrefix( urlPrefix );
     }
 
     @Override
@@ -382,19 +488,19 @@ public class MemoryStoreDataManager
     @Override
     public boolean hasRemoteRepository( final String name )
     {
-        return hasArtifactStore( new StoreKey( remote, name ) );
+        return getStoreView( remote, name ) != null;
     }
 
     @Override
     public boolean hasGroup( final String name )
     {
-        return hasArtifactStore( new StoreKey( StoreType.group, name ) );
+        return getStoreView( StoreType.group, name ) != null;
     }
 
     @Override
     public boolean hasHostedRepository( final String name )
     {
-        return hasArtifactStore( new StoreKey( StoreType.hosted, name ) );
+        return getStoreView( StoreType.hosted, name ) != null;
     }
 
     @Override
@@ -437,7 +543,11 @@ public class MemoryStoreDataManager
             if ( !skipIfExists || original == null )
             {
                 preStore( store, original, summary, original != null, fireEvents, eventMetadata );
+                shareMemberKeys( store );
                 final ArtifactStore old = stores.put( store.getKey(), store );
+                membership.storeUpdated( old, store );
+                remoteUrls.storeUpdated( old, store );
+                updateView( old, store );
                 try
                 {
                     postStore( store, original, summary, original != null, fireEvents, eventMetadata );
@@ -446,7 +556,17 @@ public class MemoryStoreDataManager
                 catch ( final IndyDataException e )
                 {
                     logger.error( "postStore() failed for: {}. Rolling back to old value: {}", store, old );
-                    stores.put( old.getKey(), old );
+                    if ( old == null )
+                    {
+                        stores.remove( store.getKey() );
+                    }
+                    else
+                    {
+                        stores.put( old.getKey(), old );
+                    }
+                    membership.storeUpdated( store, old );
+                    remoteUrls.storeUpdated( store, old );
+                    updateView( store, old );
                 }
             }
 
@@ -474,58 +594,6 @@ public class MemoryStoreDataManager
         return opLock;
     }
 
-    private List<ArtifactStore> getGroupOrdering( final String groupName, final boolean includeGroups,
-                                                  final boolean recurseGroups, final boolean enabledOnly )
-            throws IndyDataException
-    {
-        final Group master = (Group) stores.get( new StoreKey( StoreType.group, groupName ) );
-        if ( master == null )
-        {
-            return Collections.emptyList();
-        }
-
-        final List<ArtifactStore> result = new ArrayList<ArtifactStore>();
-        recurseGroup( master, result, new HashSet<>(), includeGroups, recurseGroups, enabledOnly );
-
-        return result;
-    }
-
-    private void recurseGroup( final Group master, final List<ArtifactStore> result, final Set<StoreKey> seen,
-                               final boolean includeGroups, final boolean recurseGroups, final boolean enabledOnly )
-    {
-        if ( master == null || master.isDisabled() && enabledOnly )
-        {
-            return;
-        }
-
-        List<StoreKey> members = new ArrayList<>( master.getConstituents() );
-        if ( includeGroups )
-        {
-            result.add( master );
-        }
-
-        members.forEach( ( key ) -> {
-            if ( !seen.contains( key ) )
-            {
-                seen.add( key );
-                final StoreType type = key.getType();
-                if ( recurseGroups && type == StoreType.group )
-                {
-                    // if we're here, we're definitely recursing groups...
-                    recurseGroup( (Group) stores.get( key ), result, seen, includeGroups, true, enabledOnly );
-                }
-                else
-                {
-                    final ArtifactStore store = stores.get( key );
-                    if ( store != null && !( store.isDisabled() && enabledOnly ) )
-                    {
-                        result.add( store );
-                    }
-                }
-            }
-        } );
-    }
-
     private <T extends ArtifactStore> List<T> getAll( final StoreType storeType, final Class<T> type )
     {
         List<Map.Entry<StoreKey, ArtifactStore>> copy = new ArrayList<>( stores.entrySet() );
@@ -0,0 +1,208 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.mem.data;
+
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.util.UrlNormalizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary index of the remote repositories held by {@link MemoryStoreDataManager}, by normalized URL (see
+ * {@link UrlNormalizer}) and by host, so URL lookups cost a hash lookup instead of a scan over every store.
+ * <br/>
+ * Like {@link GroupMembershipGraph}, writers call {@link #storeUpdated(ArtifactStore, ArtifactStore)} right after
+ * changing the backing map. The index remembers the URL it filed each key under, so an entry is moved correctly even
+ * when the old instance was modified in place. Buckets are ordered by key, so when several remotes share a URL, the
+ * same one always wins.
+ */
+final class RemoteUrlIndex
+{
+    private final Map<StoreKey, ArtifactStore> stores;
+
+    private final Map<StoreKey, String> indexedUrls = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<StoreKey>> byUrl = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<StoreKey>> byHost = new ConcurrentHashMap<>();
+
+    RemoteUrlIndex( final Map<StoreKey, ArtifactStore> stores )
+    {
+        this.stores = stores;
+    }
+
+    /**
+     * Re-file the store after it was added, changed or (with a null <code>current</code>) removed.
+     */
+    void storeUpdated( final ArtifactStore old, final ArtifactStore current )
+    {
+        final StoreKey key = current != null ? current.getKey() : old == null ? null : old.getKey();
+        if ( key == null )
+        {
+            return;
+        }
+
+        final String next = current instanceof RemoteRepository ?
+                UrlNormalizer.normalize( ( (RemoteRepository) current ).getUrl() ) :
+                null;
+        final String previous = indexedUrls.get( key );
+        if ( Objects.equals( previous, next ) )
+        {
+            return;
+        }
+
+        if ( previous != null )
+        {
+            indexedUrls.remove( key );
+            removeFrom( byUrl, previous, key );
+            removeFrom( byHost, UrlNormalizer.host( previous ), key );
+        }
+
+        if ( next != null )
+        {
+            indexedUrls.put( key, next );
+            addTo( byUrl, next, key );
+            addTo( byHost, UrlNormalizer.host( next ), key );
+        }
+    }
+
+    void rebuild()
+    {
+        clear();
+        stores.values().forEach( store -> storeUpdated( null, store ) );
+    }
+
+    void clear()
+    {
+        indexedUrls.clear();
+        byUrl.clear();
+        byHost.clear();
+    }
+
+    RemoteRepository find( final String url )
+    {
+        final String normalized = UrlNormalizer.normalize( url );
+        if ( normalized == null )
+        {
+            return null;
+        }
+
+        final Set<StoreKey> keys = byUrl.get( normalized );
+        if ( keys != null )
+        {
+            for ( final StoreKey key : keys )
+            {
+                final ArtifactStore store = stores.get( key );
+                if ( store instanceof RemoteRepository )
+                {
+                    return (RemoteRepository) store;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    List<RemoteRepository> findByHost( final String host )
+    {
+        if ( host == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final Set<StoreKey> keys = byHost.get( host.toLowerCase() );
+        return keys == null ? Collections.emptyList() : resolve( keys, null );
+    }
+
+    List<RemoteRepository> findByUrlPrefix( final String urlPrefix )
+    {
+        final String prefix = UrlNormalizer.normalize( urlPrefix );
+        if ( prefix == null )
+        {
+            return Collections.emptyList();
+        }
+
+        final String host = UrlNormalizer.host( prefix );
+        if ( host == null )
+        {
+            return resolve( indexedUrls.keySet(), prefix );
+        }
+
+        final Set<StoreKey> keys = byHost.get( host );
+        return keys == null ? Collections.emptyList() : resolve( keys, prefix );
+    }
+
+    private List<RemoteRepository> resolve( final Collection<StoreKey> keys, final String prefix )
+    {
+        final List<RemoteRepository> result = new ArrayList<>( keys.size() );
+        for ( final StoreKey key : keys )
+        {
+            if ( prefix != null )
+            {
+                final String url = indexedUrls.get( key );
+                if ( url == null || !UrlNormalizer.isUnder( url, prefix ) )
+                {
+                    continue;
+                }
+            }
+
+            final ArtifactStore store = stores.get( key );
+            if ( store instanceof RemoteRepository )
+            {
+                result.add( (RemoteRepository) store );
+            }
+        }
+
+        return result;
+    }
+
+    private static void addTo( final Map<String, Set<StoreKey>> index, final String value, final StoreKey key )
+    {
+        if ( value == null )
+        {
+            return;
+        }
+
+        index.compute( value, ( v, keys ) -> {
+            final Set<StoreKey> result = keys == null ? new ConcurrentSkipListSet<>() : keys;
+            result.add( key );
+            return result;
+        } );
+    }
+
+    private static void removeFrom( final Map<String, Set<StoreKey>> index, final String value, final StoreKey key )
+    {
+        if ( value == null )
+        {
+            return;
+        }
+
+        index.computeIfPresent( value, ( v, keys ) -> {
+            keys.remove( key );
+            return keys.isEmpty() ? null : keys;
+        } );
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.mem.data;
+
+import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.HostedRepository;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class GroupMembershipGraphTest
+{
+    private final ChangeSummary summary = new ChangeSummary( ChangeSummary.SYSTEM_USER, "test" );
+
+    private MemoryStoreDataManager data;
+
+    private HostedRepository hosted;
+
+    private RemoteRepository central;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        data = new MemoryStoreDataManager( true );
+
+        hosted = new HostedRepository( "local" );
+        central = new RemoteRepository( "central", "http://repo.maven.apache.org/maven2/" );
+
+        data.storeArtifactStore( hosted, summary );
+        data.storeArtifactStore( central, summary );
+        data.storeArtifactStore( new Group( "inner", hosted.getKey(), central.getKey() ), summary );
+        data.storeArtifactStore( new Group( "outer", new StoreKey( StoreType.group, "inner" ) ), summary );
+    }
+
+    @Test
+    public void orderingIsCachedUntilMembershipChanges()
+            throws Exception
+    {
+        List<ArtifactStore> first = data.getOrderedConcreteStoresInGroup( "outer", false );
+        assertThat( keys( first ), equalTo( Arrays.asList( hosted.getKey(), central.getKey() ) ) );
+        assertThat( data.getOrderedConcreteStoresInGroup( "outer", false ), sameInstance( first ) );
+
+        Group inner = data.getGroup( "inner" ).copyOf();
+        inner.removeConstituent( hosted.getKey() );
+        data.storeArtifactStore( inner, summary );
+
+        assertThat( keys( data.getOrderedConcreteStoresInGroup( "outer", false ) ),
+                    equalTo( Arrays.asList( central.getKey() ) ) );
+    }
+
+    @Test
+    public void disablingMemberInvalidatesEnabledOrderingOfAncestors()
+            throws Exception
+    {
+        assertThat( data.getOrderedConcreteStoresInGroup( "outer", true ).size(), equalTo( 2 ) );
+
+        RemoteRepository disabled = central.copyOf();
+        disabled.setDisabled( true );
+        data.storeArtifactStore( disabled, summary );
+
+        assertThat( keys( data.getOrderedConcreteStoresInGroup( "outer", true ) ),
+                    equalTo( Arrays.asList( hosted.getKey() ) ) );
+        assertThat( data.getOrderedConcreteStoresInGroup( "outer", false ).size(), equalTo( 2 ) );
+    }
+
+    @Test
+    public void containingGroupsAreDirectAndAffectedGroupsAreTransitive()
+            throws Exception
+    {
+        assertThat( names( data.getGroupsContaining( hosted.getKey() ) ),
+                    equalTo( new HashSet<>( Arrays.asList( "inner" ) ) ) );
+        assertThat( names( data.getGroupsAffectedBy( hosted.getKey() ) ),
+                    equalTo( new HashSet<>( Arrays.asList( "inner", "outer" ) ) ) );
+
+        data.deleteArtifactStore( new StoreKey( StoreType.group, "outer" ), summary );
+
+        assertThat( names( data.getGroupsAffectedBy( hosted.getKey() ) ),
+                    equalTo( new HashSet<>( Arrays.asList( "inner" ) ) ) );
+    }
+
+    @Test
+    public void memberAddedAfterGroupIsPickedUp()
+            throws Exception
+    {
+        data.storeArtifactStore( new Group( "later", new StoreKey( StoreType.hosted, "not-yet" ) ),
+                                 summary );
+        assertThat( data.getOrderedConcreteStoresInGroup( "later", false ).isEmpty(), equalTo( true ) );
+
+        data.storeArtifactStore( new HostedRepository( "not-yet" ), summary );
+        assertThat( data.getOrderedConcreteStoresInGroup( "later", false ).size(), equalTo( 1 ) );
+    }
+
+    private static List<StoreKey> keys( final List<ArtifactStore> stores )
+    {
+        return stores.stream().map( ArtifactStore::getKey ).collect( Collectors.toList() );
+    }
+
+    private static Set<String> names( final Set<Group> groups )
+    {
+        return groups.stream().map( Group::getName ).collect( Collectors.toSet() );
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.mem.data;
+
+import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.data.StoreView;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.HostedRepository;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.indy.model.core.StoreType;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MemoryStoreKeySharingTest
+{
+    private final ChangeSummary summary = new ChangeSummary( ChangeSummary.SYSTEM_USER, "test" );
+
+    @Test
+    public void groupMembersShareTheStoredKeys()
+            throws Exception
+    {
+        final MemoryStoreDataManager data = new MemoryStoreDataManager( true );
+        final RemoteRepository central = new RemoteRepository( "central", "http://repo.maven.apache.org/maven2/" );
+        data.storeArtifactStore( central, summary );
+
+        data.storeArtifactStore( new Group( "public", new StoreKey( StoreType.remote, "central" ),
+                                            new StoreKey( StoreType.hosted, "local" ) ), summary );
+
+        final Group group = data.getGroup( "public" );
+        assertThat( group.getConstituents().get( 0 ), sameInstance( central.getKey() ) );
+    }
+
+    @Test
+    public void managersDoNotShareKeys()
+            throws Exception
+    {
+        final MemoryStoreDataManager first = new MemoryStoreDataManager( true );
+        final MemoryStoreDataManager second = new MemoryStoreDataManager( true );
+        final HostedRepository local = new HostedRepository( "local" );
+        first.storeArtifactStore( local, summary );
+        second.storeArtifactStore( new HostedRepository( "local" ), summary );
+
+        // deleting from one manager leaves the other's groups pointing at its own key
+        first.deleteArtifactStore( local.getKey(), summary );
+        second.storeArtifactStore( new Group( "public", new StoreKey( StoreType.hosted, "local" ) ), summary );
+
+        final StoreKey member = second.getGroup( "public" ).getConstituents().get( 0 );
+        assertThat( member, sameInstance( second.getHostedRepository( "local" ).getKey() ) );
+        assertThat( member, not( sameInstance( local.getKey() ) ) );
+    }
+
+    @Test
+    public void canonicalKeysResolveToTheStoredKey()
+            throws Exception
+    {
+        final MemoryStoreDataManager data = new MemoryStoreDataManager( true );
+        final HostedRepository local = new HostedRepository( "local" );
+        data.storeArtifactStore( local, summary );
+
+        assertThat( data.canonicalKey( StoreType.hosted, "local" ), sameInstance( local.getKey() ) );
+        assertThat( data.canonicalKey( "hosted:local" ), sameInstance( local.getKey() ) );
+        assertThat( data.canonicalKey( "bogus:local" ), nullValue() );
+
+        final StoreKey unknown = data.canonicalKey( StoreType.remote, "local" );
+        assertThat( unknown, equalTo( new StoreKey( StoreType.remote, "local" ) ) );
+
+        data.deleteArtifactStore( local.getKey(), summary );
+        assertThat( data.canonicalKey( StoreType.hosted, "local" ), not( sameInstance( local.getKey() ) ) );
+    }
+
+    @Test
+    public void storeViewsFollowStoreUpdates()
+            throws Exception
+    {
+        final MemoryStoreDataManager data = new MemoryStoreDataManager( true );
+        final RemoteRepository central = new RemoteRepository( "central", "http://repo.maven.apache.org/maven2/" );
+        data.storeArtifactStore( central, summary );
+        data.storeArtifactStore( new Group( "public", new StoreKey( StoreType.remote, "central" ) ), summary );
+
+        StoreView view = data.getStoreView( StoreType.group, "public" );
+        assertThat( view.getConstituents(), equalTo( Collections.singletonList( central.getKey() ) ) );
+        assertThat( view.getConstituents().get( 0 ), sameInstance( central.getKey() ) );
+        assertThat( data.getStoreView( StoreType.remote, "central" ).getUrl(), equalTo( central.getUrl() ) );
+
+        final Group updated = new Group( "public" );
+        updated.setDisabled( true );
+        data.storeArtifactStore( updated, summary );
+
+        view = data.getStoreView( StoreType.group, "public" );
+        assertThat( view.isDisabled(), equalTo( true ) );
+        assertThat( view.getConstituents().isEmpty(), equalTo( true ) );
+
+        data.deleteArtifactStore( updated.getKey(), summary );
+        assertThat( data.getStoreView( StoreType.group, "public" ), nullValue() );
+        assertThat( data.hasGroup( "public" ), equalTo( false ) );
+        assertThat( data.getGroup( "public" ), nullValue() );
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.mem.data;
+
+import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RemoteUrlIndexTest
+{
+    private final ChangeSummary summary = new ChangeSummary( ChangeSummary.SYSTEM_USER, "test" );
+
+    private MemoryStoreDataManager data;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        data = new MemoryStoreDataManager( true );
+
+        data.storeArtifactStore( new RemoteRepository( "central", "http://repo.maven.apache.org/maven2/" ), summary );
+        data.storeArtifactStore( new RemoteRepository( "httprox_repo-example-com", "https://Repo.Example.com:-1/" ),
+                                 summary );
+        data.storeArtifactStore( new RemoteRepository( "example-releases", "https://repo.example.com/releases" ),
+                                 summary );
+        data.storeArtifactStore( new RemoteRepository( "example-releases-old", "https://repo.example.com/releases-old" ),
+                                 summary );
+    }
+
+    @Test
+    public void findByEquivalentUrl()
+            throws Exception
+    {
+        assertThat( data.findRemoteRepository( "HTTP://repo.maven.apache.org:80/maven2" ).getName(),
+                    equalTo( "central" ) );
+        assertThat( data.findRemoteRepository( "https://repo.example.com:443" ).getName(),
+                    equalTo( "httprox_repo-example-com" ) );
+        assertThat( data.findRemoteRepository( "https://repo.example.com/releases/" ).getName(),
+                    equalTo( "example-releases" ) );
+        assertThat( data.findRemoteRepository( "http://repo.example.com/releases" ), nullValue() );
+    }
+
+    @Test
+    public void findByHostAndPrefix()
+            throws Exception
+    {
+        assertThat( names( data.findRemoteRepositoriesByHost( "REPO.example.com" ) ),
+                    equalTo( Arrays.asList( "example-releases", "example-releases-old", "httprox_repo-example-com" ) ) );
+
+        assertThat( names( data.findRemoteRepositoriesByUrlPrefix( "https://repo.example.com/releases/" ) ),
+                    equalTo( Arrays.asList( "example-releases" ) ) );
+    }
+
+    @Test
+    public void urlChangesAndDeletionsAreReindexed()
+            throws Exception
+    {
+        RemoteRepository moved = data.getRemoteRepository( "central" ).copyOf();
+        moved.setUrl( "https://repo1.maven.org/maven2/" );
+        data.storeArtifactStore( moved, summary );
+
+        assertThat( data.findRemoteRepository( "http://repo.maven.apache.org/maven2/" ), nullValue() );
+        assertThat( data.findRemoteRepository( "https://repo1.maven.org/maven2" ).getName(), equalTo( "central" ) );
+
+        data.deleteArtifactStore( moved.getKey(), summary );
+        assertThat( data.findRemoteRepository( "https://repo1.maven.org/maven2" ), nullValue() );
+        assertThat( data.findRemoteRepositoriesByHost( "repo1.maven.org" ).isEmpty(), equalTo( true ) );
+    }
+
+    private List<String> names( final List<RemoteRepository> repos )
+    {
+        return repos.stream().map( RemoteRepository::getKey ).map( StoreKey::getName ).sorted().collect(
+                Collectors.toList() );
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.filer.def;
+
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigest;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cached size and digests for one stored file, along with the file timestamp used to detect stale entries.
+ */
+public final class ContentDigestRecord
+        implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final HashMap<ContentDigest, String> digests;
+
+    private final long size;
+
+    private final long lastModified;
+
+    public ContentDigestRecord( final Map<ContentDigest, String> digests, final long size, final long lastModified )
+    {
+        this.digests = new HashMap<>( digests );
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public long getLastModified()
+    {
+        return lastModified;
+    }
+
+    public ArtifactData toArtifactData()
+    {
+        return new ArtifactData( new HashMap<>( digests ), size );
+    }
+}
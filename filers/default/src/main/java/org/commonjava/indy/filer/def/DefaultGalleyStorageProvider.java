@@ -17,6 +17,7 @@ package org.commonjava.indy.filer.def;
 
 import org.commonjava.cdi.util.weft.ExecutorConfig;
 import org.commonjava.cdi.util.weft.WeftManaged;
+import org.commonjava.indy.content.ContentDigestStore;
 import org.commonjava.indy.filer.def.conf.DefaultStorageProviderConfiguration;
 import org.commonjava.indy.model.galley.KeyedLocation;
 import org.commonjava.indy.subsys.infinispan.CacheHandle;
@@ -75,6 +76,9 @@ public class DefaultGalleyStorageProvider
     @Inject
     private SpecialPathManager specialPathManager;
 
+    @Inject
+    private ContentDigestStore digestStore;
+
     @ExecutorConfig( named = "indy-fast-local-executor", threads = 5, priority = 2, daemon = true )
     @WeftManaged
     @Inject
@@ -129,6 +133,11 @@ public class DefaultGalleyStorageProvider
                                                                new Sha1GeneratorFactory(),
                                                                new Sha256GeneratorFactory() );
         transferDecorator = new ContentsFilteringTransferDecorator( transferDecorator );
+        if ( digestStore != null )
+        {
+            // record size and digests inline as content is downloaded / uploaded, so they never need a second read
+            transferDecorator = new DigestingTransferDecorator( transferDecorator, digestStore );
+        }
 
         final File storeRoot = config.getStorageRootDirectory();
 
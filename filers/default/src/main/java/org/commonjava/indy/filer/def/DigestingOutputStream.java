@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.filer.def;
+
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigest;
+import org.commonjava.indy.content.ContentDigestStore;
+import org.commonjava.maven.galley.model.Transfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Computes the size and MD5, SHA-1 and SHA-256 digests of content as it streams into storage, and records them in
+ * the {@link ContentDigestStore} once the stream is closed successfully.
+ */
+public class DigestingOutputStream
+        extends FilterOutputStream
+{
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Transfer transfer;
+
+    private final ContentDigestStore digestStore;
+
+    private final Map<ContentDigest, MessageDigest> digests = new EnumMap<>( ContentDigest.class );
+
+    private long size;
+
+    private boolean failed;
+
+    private boolean closed;
+
+    public DigestingOutputStream( final OutputStream out, final Transfer transfer,
+                                  final ContentDigestStore digestStore )
+            throws IOException
+    {
+        super( out );
+        this.transfer = transfer;
+        this.digestStore = digestStore;
+
+        try
+        {
+            for ( final ContentDigest type : ContentDigest.values() )
+            {
+                digests.put( type, MessageDigest.getInstance( type.digestName() ) );
+            }
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            throw new IOException( "Cannot initialize content digests. Reason: " + e.getMessage(), e );
+        }
+
+        // anything recorded for the old content is invalid from this point.
+        digestStore.remove( transfer );
+    }
+
+    @Override
+    public void write( final int b )
+            throws IOException
+    {
+        try
+        {
+            out.write( b );
+        }
+        catch ( final IOException e )
+        {
+            failed = true;
+            throw e;
+        }
+
+        for ( final MessageDigest digest : digests.values() )
+        {
+            digest.update( (byte) b );
+        }
+        size++;
+    }
+
+    @Override
+    public void write( final byte[] b, final int off, final int len )
+            throws IOException
+    {
+        try
+        {
+            out.write( b, off, len );
+        }
+        catch ( final IOException e )
+        {
+            failed = true;
+            throw e;
+        }
+
+        for ( final MessageDigest digest : digests.values() )
+        {
+            digest.update( b, off, len );
+        }
+        size += len;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if ( closed )
+        {
+            return;
+        }
+
+        closed = true;
+        try
+        {
+            super.close();
+        }
+        catch ( final IOException e )
+        {
+            failed = true;
+            throw e;
+        }
+        finally
+        {
+            if ( !failed )
+            {
+                record();
+            }
+        }
+    }
+
+    private void record()
+    {
+        final Map<ContentDigest, String> result = new EnumMap<>( ContentDigest.class );
+        digests.forEach( ( type, digest ) -> result.put( type, toHex( digest.digest() ) ) );
+
+        try
+        {
+            digestStore.put( transfer, new ArtifactData( result, size ) );
+        }
+        catch ( final RuntimeException e )
+        {
+            // digests are an optimization; content.digest() will recompute them if they're missing.
+            logger.warn( "Failed to record digests for: " + transfer + ". Reason: " + e.getMessage(), e );
+        }
+    }
+
+    private static String toHex( final byte[] bytes )
+    {
+        final char[] chars = new char[bytes.length * 2];
+        for ( int i = 0; i < bytes.length; i++ )
+        {
+            chars[i * 2] = HEX[( bytes[i] >> 4 ) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+
+        return new String( chars );
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.filer.def;
+
+import org.commonjava.indy.content.ContentDigestStore;
+import org.commonjava.indy.model.galley.KeyedLocation;
+import org.commonjava.maven.galley.event.EventMetadata;
+import org.commonjava.maven.galley.io.AbstractTransferDecorator;
+import org.commonjava.maven.galley.model.Transfer;
+import org.commonjava.maven.galley.model.TransferOperation;
+import org.commonjava.maven.galley.spi.io.TransferDecorator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Wraps content being written into storage with a {@link DigestingOutputStream}, so size and digests are available
+ * from the {@link ContentDigestStore} without reading the file again. Deleting a file removes its entry.
+ */
+public class DigestingTransferDecorator
+        extends AbstractTransferDecorator
+{
+    private static final Set<TransferOperation> DIGEST_OPERATIONS =
+            EnumSet.of( TransferOperation.DOWNLOAD, TransferOperation.UPLOAD, TransferOperation.GENERATE );
+
+    private final ContentDigestStore digestStore;
+
+    public DigestingTransferDecorator( final TransferDecorator next, final ContentDigestStore digestStore )
+    {
+        super( next );
+        this.digestStore = digestStore;
+    }
+
+    @Override
+    public OutputStream decorateWrite( final OutputStream stream, final Transfer transfer, final TransferOperation op,
+                                       final EventMetadata eventMetadata )
+            throws IOException
+    {
+        final OutputStream decorated = super.decorateWrite( stream, transfer, op, eventMetadata );
+        if ( DIGEST_OPERATIONS.contains( op ) && transfer.getLocation() instanceof KeyedLocation )
+        {
+            return new DigestingOutputStream( decorated, transfer, digestStore );
+        }
+
+        return decorated;
+    }
+
+    @Override
+    public void decorateDelete( final Transfer transfer, final EventMetadata eventMetadata )
+            throws IOException
+    {
+        digestStore.remove( transfer );
+        super.decorateDelete( transfer, eventMetadata );
+    }
+}
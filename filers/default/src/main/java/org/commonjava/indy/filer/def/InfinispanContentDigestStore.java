@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.filer.def;
+
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigestStore;
+import org.commonjava.indy.model.galley.KeyedLocation;
+import org.commonjava.indy.subsys.infinispan.CacheHandle;
+import org.commonjava.indy.subsys.infinispan.CacheProducer;
+import org.commonjava.maven.galley.model.Location;
+import org.commonjava.maven.galley.model.Transfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * {@link ContentDigestStore} backed by the 'content-digests' Infinispan cache. Entries are keyed by
+ * '&lt;store-key&gt;#&lt;path&gt;', and are ignored if the size or timestamp of the file no longer matches.
+ */
+@ApplicationScoped
+public class InfinispanContentDigestStore
+        implements ContentDigestStore
+{
+    public static final String CACHE_NAME = "content-digests";
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    @Inject
+    private CacheProducer cacheProducer;
+
+    private CacheHandle<String, ContentDigestRecord> cache;
+
+    protected InfinispanContentDigestStore()
+    {
+    }
+
+    public InfinispanContentDigestStore( final CacheHandle<String, ContentDigestRecord> cache )
+    {
+        this.cache = cache;
+    }
+
+    @PostConstruct
+    public void init()
+    {
+        cache = cacheProducer.getCache( CACHE_NAME, String.class, ContentDigestRecord.class );
+    }
+
+    @Override
+    public ArtifactData get( final Transfer transfer )
+    {
+        final String key = keyOf( transfer );
+        if ( key == null )
+        {
+            return null;
+        }
+
+        final ContentDigestRecord record = cache.get( key );
+        if ( record == null )
+        {
+            return null;
+        }
+
+        if ( !transfer.exists() || record.getSize() != transfer.length()
+                || record.getLastModified() != transfer.lastModified() )
+        {
+            logger.debug( "Discarding stale digests for: {}", transfer );
+            cache.remove( key );
+            return null;
+        }
+
+        return record.toArtifactData();
+    }
+
+    @Override
+    public void put( final Transfer transfer, final ArtifactData data )
+    {
+        final String key = keyOf( transfer );
+        if ( key != null && data != null )
+        {
+            cache.put( key, new ContentDigestRecord( data.getDigests(), data.getSize(), transfer.lastModified() ) );
+        }
+    }
+
+    @Override
+    public void remove( final Transfer transfer )
+    {
+        final String key = keyOf( transfer );
+        if ( key != null )
+        {
+            cache.remove( key );
+        }
+    }
+
+    private String keyOf( final Transfer transfer )
+    {
+        final Location location = transfer == null ? null : transfer.getLocation();
+        if ( !( location instanceof KeyedLocation ) )
+        {
+            return null;
+        }
+
+        return ( (KeyedLocation) location ).getKey() + "#" + transfer.getPath();
+    }
+}
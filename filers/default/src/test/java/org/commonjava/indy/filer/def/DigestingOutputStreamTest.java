@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.filer.def;
+
+import org.commonjava.indy.content.ArtifactData;
+import org.commonjava.indy.content.ContentDigest;
+import org.commonjava.indy.content.ContentDigestStore;
+import org.commonjava.maven.galley.model.Transfer;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class DigestingOutputStreamTest
+{
+
+    @Test
+    public void recordSizeAndDigestsOnClose()
+            throws Exception
+    {
+        final RecordingStore store = new RecordingStore();
+        final ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (DigestingOutputStream out = new DigestingOutputStream( target, null, store ))
+        {
+            out.write( "hel".getBytes( StandardCharsets.UTF_8 ) );
+            out.write( 'l' );
+            out.write( "o".getBytes( StandardCharsets.UTF_8 ) );
+
+            assertThat( store.recorded.get(), nullValue() );
+        }
+
+        assertThat( new String( target.toByteArray(), StandardCharsets.UTF_8 ), equalTo( "hello" ) );
+
+        final ArtifactData data = store.recorded.get();
+        assertThat( data.getSize(), equalTo( 5L ) );
+        assertThat( data.getDigests().get( ContentDigest.MD5 ), equalTo( "5d41402abc4b2a76b9719d911017c592" ) );
+        assertThat( data.getDigests().get( ContentDigest.SHA_1 ),
+                    equalTo( "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d" ) );
+        assertThat( data.getDigests().get( ContentDigest.SHA_256 ),
+                    equalTo( "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824" ) );
+    }
+
+    @Test
+    public void nothingRecordedWhenWriteFails()
+            throws Exception
+    {
+        final RecordingStore store = new RecordingStore();
+        final OutputStream failing = new OutputStream()
+        {
+            @Override
+            public void write( final int b )
+                    throws IOException
+            {
+                throw new IOException( "disk full" );
+            }
+        };
+
+        final DigestingOutputStream out = new DigestingOutputStream( failing, null, store );
+        try
+        {
+            out.write( 'x' );
+        }
+        catch ( final IOException e )
+        {
+            // expected
+        }
+        finally
+        {
+            out.close();
+        }
+
+        assertThat( store.recorded.get(), nullValue() );
+        assertThat( store.removed, equalTo( true ) );
+    }
+
+    private static final class RecordingStore
+            implements ContentDigestStore
+    {
+        private final AtomicReference<ArtifactData> recorded = new AtomicReference<>();
+
+        private boolean removed;
+
+        @Override
+        public ArtifactData get( final Transfer transfer )
+        {
+            return recorded.get();
+        }
+
+        @Override
+        public void put( final Transfer transfer, final ArtifactData data )
+        {
+            recorded.set( data );
+        }
+
+        @Override
+        public void remove( final Transfer transfer )
+        {
+            removed = true;
+            recorded.set( null );
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.ftest.core.content;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.commonjava.indy.client.core.IndyClientHttp;
+import org.commonjava.indy.client.core.IndyClientModule;
+import org.commonjava.indy.client.core.module.IndyRawHttpModule;
+import org.commonjava.indy.ftest.core.AbstractContentManagementTest;
+import org.commonjava.indy.util.ApplicationHeader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.commonjava.indy.model.core.StoreType.hosted;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Conditional (If-None-Match, If-Modified-Since, If-Range) and ranged GET requests against stored content.
+ */
+public class ConditionalAndRangedContentRequestTest
+        extends AbstractContentManagementTest
+{
+
+    private static final String PATH = "/path/to/ranged.txt";
+
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    private static final String CRLF = "\r\n";
+
+    @Test
+    public void matchingETagReturnsNotModified()
+            throws Exception
+    {
+        store();
+
+        final String etag = header( get(), ApplicationHeader.etag );
+
+        final Result result = get( ApplicationHeader.if_none_match.key(), etag );
+        assertThat( result.status, equalTo( 304 ) );
+        assertThat( result.body, equalTo( "" ) );
+        assertThat( header( result, ApplicationHeader.etag ), equalTo( etag ) );
+    }
+
+    @Test
+    public void unmodifiedSinceLastModifiedReturnsNotModified()
+            throws Exception
+    {
+        store();
+
+        final String lastModified = header( get(), ApplicationHeader.last_modified );
+
+        final Result result = get( ApplicationHeader.if_modified_since.key(), lastModified );
+        assertThat( result.status, equalTo( 304 ) );
+        assertThat( result.body, equalTo( "" ) );
+    }
+
+    @Test
+    public void staleIfRangeReturnsFullContent()
+            throws Exception
+    {
+        store();
+
+        final String etag = header( get(), ApplicationHeader.etag );
+
+        Result result = get( ApplicationHeader.range.key(), "bytes=0-3", ApplicationHeader.if_range.key(), etag );
+        assertThat( result.status, equalTo( 206 ) );
+        assertThat( result.body, equalTo( "0123" ) );
+        assertThat( header( result, ApplicationHeader.content_range ),
+                    equalTo( "bytes 0-3/" + CONTENT.length() ) );
+
+        result = get( ApplicationHeader.range.key(), "bytes=0-3", ApplicationHeader.if_range.key(), "\"stale\"" );
+        assertThat( result.status, equalTo( 200 ) );
+        assertThat( result.body, equalTo( CONTENT ) );
+    }
+
+    @Test
+    public void unsatisfiableRangeReturns416()
+            throws Exception
+    {
+        store();
+
+        final Result result = get( ApplicationHeader.range.key(), "bytes=100-200" );
+        assertThat( result.status, equalTo( 416 ) );
+        assertThat( header( result, ApplicationHeader.content_range ), equalTo( "bytes */" + CONTENT.length() ) );
+    }
+
+    @Test
+    public void multipleRangesReturnMultipartByteranges()
+            throws Exception
+    {
+        store();
+
+        final Result result = get( ApplicationHeader.range.key(), "bytes=12-13,0-1" );
+        assertThat( result.status, equalTo( 206 ) );
+
+        final String contentType = header( result, ApplicationHeader.content_type );
+        final String prefix = "multipart/byteranges; boundary=";
+        assertThat( contentType, contentType.startsWith( prefix ), equalTo( true ) );
+
+        final String boundary = contentType.substring( prefix.length() );
+        final String[] parts = result.body.split( CRLF + "--" + boundary, -1 );
+
+        // preamble, two parts, then the closing "--" CRLF
+        assertThat( result.body, parts.length, equalTo( 4 ) );
+        assertThat( parts[0], equalTo( "" ) );
+        assertPart( parts[1], "bytes 0-1/" + CONTENT.length(), "01" );
+        assertPart( parts[2], "bytes 12-13/" + CONTENT.length(), "cd" );
+        assertThat( parts[3], equalTo( "--" + CRLF ) );
+    }
+
+    private void assertPart( final String part, final String contentRange, final String data )
+    {
+        assertThat( part, part.startsWith( CRLF ), equalTo( true ) );
+
+        final int bodyStart = part.indexOf( CRLF + CRLF );
+        assertThat( part, bodyStart > 0, equalTo( true ) );
+
+        final String headers = part.substring( CRLF.length(), bodyStart + CRLF.length() );
+        assertThat( headers, headers.contains( "Content-Range: " + contentRange + CRLF ), equalTo( true ) );
+        assertThat( part.substring( bodyStart + 2 * CRLF.length() ), equalTo( data ) );
+    }
+
+    private void store()
+            throws Exception
+    {
+        client.content().store( hosted, STORE, PATH, new ByteArrayInputStream( CONTENT.getBytes() ) );
+    }
+
+    private String header( final Result result, final ApplicationHeader header )
+    {
+        final String value = result.headers.get( header.key().toLowerCase() );
+        assertThat( header.key() + " missing", value, notNullValue() );
+        return value;
+    }
+
+    /**
+     * GET the stored content, sending the given header names and values (in pairs).
+     */
+    private Result get( final String... headers )
+            throws Exception
+    {
+        final IndyClientHttp http = client.module( IndyRawHttpModule.class ).getHttp();
+        final HttpGet request = http.newRawGet( client.content().contentUrl( hosted, STORE, PATH ) );
+        for ( int i = 0; i + 1 < headers.length; i += 2 )
+        {
+            request.addHeader( headers[i], headers[i + 1] );
+        }
+
+        try (CloseableHttpClient hc = http.newClient(); CloseableHttpResponse response = hc.execute( request ))
+        {
+            final Result result = new Result();
+            result.status = response.getStatusLine().getStatusCode();
+            for ( final Header header : response.getAllHeaders() )
+            {
+                result.headers.put( header.getName().toLowerCase(), header.getValue() );
+            }
+            result.body = response.getEntity() == null ? "" : IOUtils.toString( response.getEntity().getContent() );
+
+            return result;
+        }
+    }
+
+    @Override
+    protected Collection<IndyClientModule> getAdditionalClientModules()
+    {
+        return Collections.<IndyClientModule> singleton( new IndyRawHttpModule() );
+    }
+
+    private static final class Result
+    {
+        private int status;
+
+        private final Map<String, String> headers = new HashMap<>();
+
+        private String body;
+    }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.model.core.dto;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+@ApiModel( description = "Usage counters and limits for the not-found cache", value = "not-found cache statistics" )
+public class NotFoundCacheStatsDTO
+{
+
+    @ApiModelProperty( required = true, value = "Number of entries currently held in the cache" )
+    private long size;
+
+    @ApiModelProperty( required = true, value = "Approximate heap consumed by cache entries, in bytes" )
+    private long estimatedBytes;
+
+    @ApiModelProperty( required = true, value = "Number of lookups that found an unexpired not-found entry" )
+    private long hits;
+
+    @ApiModelProperty( required = true, value = "Number of lookups that found no (or only an expired) entry" )
+    private long misses;
+
+    @ApiModelProperty( required = true, value = "Number of entries removed to keep the cache within its limits" )
+    private long evictions;
+
+    @ApiModelProperty( required = true, value = "Number of entries removed because their timeout passed" )
+    private long expirations;
+
+    @ApiModelProperty( value = "Maximum number of entries (less than 1 means unbounded)" )
+    private long maxEntries;
+
+    @ApiModelProperty( value = "Maximum approximate heap consumption in bytes (less than 1 means unbounded)" )
+    private long maxBytes;
+
+    @ApiModelProperty( value = "Eviction policy in use ('lru' or 'lfu')" )
+    private String evictionPolicy;
+
+    public NotFoundCacheStatsDTO(){}
+
+    public long getSize()
+    {
+        return size;
+    }
+
+    public void setSize( long size )
+    {
+        this.size = size;
+    }
+
+    public long getEstimatedBytes()
+    {
+        return estimatedBytes;
+    }
+
+    public void setEstimatedBytes( long estimatedBytes )
+    {
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public void setHits( long hits )
+    {
+        this.hits = hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public void setMisses( long misses )
+    {
+        this.misses = misses;
+    }
+
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    public void setEvictions( long evictions )
+    {
+        this.evictions = evictions;
+    }
+
+    public long getExpirations()
+    {
+        return expirations;
+    }
+
+    public void setExpirations( long expirations )
+    {
+        this.expirations = expirations;
+    }
+
+    public long getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public void setMaxEntries( long maxEntries )
+    {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    public void setMaxBytes( long maxBytes )
+    {
+        this.maxBytes = maxBytes;
+    }
+
+    public String getEvictionPolicy()
+    {
+        return evictionPolicy;
+    }
+
+    public void setEvictionPolicy( String evictionPolicy )
+    {
+        this.evictionPolicy = evictionPolicy;
+    }
+
+}
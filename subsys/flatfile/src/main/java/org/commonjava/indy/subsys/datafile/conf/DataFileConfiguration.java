@@ -64,6 +64,10 @@ public class DataFileConfiguration
 
     private File workBasedir;
 
+    private Integer storeLoadThreads;
+
+    private Boolean storeSnapshotEnabled;
+
     public DataFileConfiguration()
     {
     }
@@ -122,6 +126,37 @@ public class DataFileConfiguration
         return this;
     }
 
+    /**
+     * Number of threads used to read and parse store definition files at startup.
+     */
+    public int getStoreLoadThreads()
+    {
+        return storeLoadThreads == null || storeLoadThreads < 1 ?
+                Runtime.getRuntime().availableProcessors() :
+                storeLoadThreads;
+    }
+
+    @ConfigName( "store.load.threads" )
+    public void setStoreLoadThreads( final Integer storeLoadThreads )
+    {
+        this.storeLoadThreads = storeLoadThreads;
+    }
+
+    /**
+     * If true, all store definitions are also kept in a single compact snapshot file in the work directory, which is
+     * used at startup instead of the individual definition files as long as none of them is newer.
+     */
+    public boolean isStoreSnapshotEnabled()
+    {
+        return storeSnapshotEnabled == null ? false : storeSnapshotEnabled;
+    }
+
+    @ConfigName( "store.snapshot.enabled" )
+    public void setStoreSnapshotEnabled( final Boolean storeSnapshotEnabled )
+    {
+        this.storeSnapshotEnabled = storeSnapshotEnabled;
+    }
+
     @Override
     public String getDefaultConfigFileName()
     {
@@ -428,6 +428,80 @@ public class GitManager
         return this;
     }
 
+    /**
+     * Add the given files and remove the deleted ones in a single commit. Used to commit a batch of data-file changes
+     * at once; the commit is skipped if none of the files actually changed.
+     */
+    public GitManager commitChanges( final ChangeSummary summary, final Collection<File> added,
+                                     final Collection<File> deleted )
+        throws GitSubsystemException
+    {
+        final Set<String> addPaths = relativizeAll( added );
+        final Set<String> deletePaths = relativizeAll( deleted );
+
+        final Set<String> paths = new HashSet<>( addPaths );
+        paths.addAll( deletePaths );
+
+        if ( paths.isEmpty() || !verifyChangesExist( paths ) )
+        {
+            logger.info( "No actual changes in:\n  {}\n\nSkipping commit.", join( paths, "\n  " ) );
+            return this;
+        }
+
+        try
+        {
+            if ( !addPaths.isEmpty() )
+            {
+                final AddCommand add = git.add();
+                for ( final String path : addPaths )
+                {
+                    add.addFilepattern( path );
+                }
+
+                add.call();
+            }
+
+            if ( !deletePaths.isEmpty() )
+            {
+                final RmCommand rm = git.rm();
+                for ( final String path : deletePaths )
+                {
+                    rm.addFilepattern( path );
+                }
+
+                rm.call();
+            }
+
+            logger.info( "Committing:\n  " + join( paths, "\n  " ) + "\n\nSummary: " + summary );
+
+            git.commit()
+               .setMessage( buildMessage( summary, paths ) )
+               .setAuthor( summary.getUser(), email )
+               .call();
+        }
+        catch ( final GitAPIException e )
+        {
+            throw new GitSubsystemException( "Cannot commit changes to git: " + e.getMessage(), e );
+        }
+
+        return this;
+    }
+
+    private Set<String> relativizeAll( final Collection<File> files )
+    {
+        final Set<String> paths = new HashSet<>();
+        for ( final File f : files )
+        {
+            final String path = relativize( f );
+            if ( path != null && path.length() > 0 )
+            {
+                paths.add( path );
+            }
+        }
+
+        return paths;
+    }
+
     public ChangeSummary getHeadCommit( final File f )
         throws GitSubsystemException
     {
@@ -53,7 +53,7 @@ public class IndySiteConfigLookup
     @Override
     public SiteConfig lookup( String siteId )
     {
-        StoreKey key = StoreKey.fromString( siteId );
+        StoreKey key = storeDataManager.canonicalKey( siteId );
         try
         {
             final RemoteRepository repository = storeDataManager.getRemoteRepository( key.getName() );
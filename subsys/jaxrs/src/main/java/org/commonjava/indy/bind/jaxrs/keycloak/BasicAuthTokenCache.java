@@ -0,0 +1,288 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.bind.jaxrs.keycloak;
+
+import org.commonjava.indy.subsys.http.util.UserPass;
+import org.keycloak.representations.AccessTokenResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Caches bearer tokens obtained for BASIC credentials, keyed by a salted SHA-256 hash of user and password (the salt is
+ * random per JVM, and credentials themselves are never stored).
+ * <br/>
+ * A token is served until it expires. Once it is inside the refresh window, the first request using it triggers one
+ * background lookup (with that request's credentials) to replace it. Concurrent misses for the same credentials share
+ * a single lookup. Failed lookups are not cached.
+ */
+public class BasicAuthTokenCache
+{
+
+    private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+    private final Function<UserPass, AccessTokenResponse> lookup;
+
+    private final Executor refreshExecutor;
+
+    private final int maxEntries;
+
+    private final long refreshWindowMillis;
+
+    private final byte[] salt = new byte[16];
+
+    private final Map<String, CachedToken> tokens = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<CachedToken>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public BasicAuthTokenCache( final Function<UserPass, AccessTokenResponse> lookup, final Executor refreshExecutor,
+                                final int maxEntries, final long refreshWindowMillis )
+    {
+        this.lookup = lookup;
+        this.refreshExecutor = refreshExecutor;
+        this.maxEntries = maxEntries;
+        this.refreshWindowMillis = refreshWindowMillis;
+        new SecureRandom().nextBytes( salt );
+    }
+
+    /**
+     * Return a current token for the given credentials, from the cache if possible, or null if the lookup fails.
+     */
+    public AccessTokenResponse getToken( final UserPass userPass )
+    {
+        final String key = keyOf( userPass );
+        final long now = System.currentTimeMillis();
+
+        final CachedToken cached = tokens.get( key );
+        if ( cached != null && now < cached.expiresAt )
+        {
+            hits.increment();
+            if ( now >= cached.expiresAt - refreshWindowMillis && cached.refreshing.compareAndSet( false, true ) )
+            {
+                refreshes.increment();
+                refreshExecutor.execute( () -> load( key, userPass ) );
+            }
+
+            return cached.token;
+        }
+
+        misses.increment();
+
+        final CompletableFuture<CachedToken> mine = new CompletableFuture<>();
+        final CompletableFuture<CachedToken> existing = inFlight.putIfAbsent( key, mine );
+        if ( existing != null )
+        {
+            coalesced.increment();
+            return await( existing );
+        }
+
+        try
+        {
+            final CachedToken loaded = fetch( key, userPass );
+            mine.complete( loaded );
+            return loaded == null ? null : loaded.token;
+        }
+        catch ( final RuntimeException e )
+        {
+            mine.completeExceptionally( e );
+            throw e;
+        }
+        finally
+        {
+            inFlight.remove( key, mine );
+        }
+    }
+
+    public Map<String, Long> getStats()
+    {
+        final Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put( "size", (long) tokens.size() );
+        stats.put( "hits", hits.sum() );
+        stats.put( "misses", misses.sum() );
+        stats.put( "coalesced", coalesced.sum() );
+        stats.put( "refreshes", refreshes.sum() );
+        stats.put( "failures", failures.sum() );
+        stats.put( "evictions", evictions.sum() );
+        return stats;
+    }
+
+    public void clear()
+    {
+        tokens.clear();
+    }
+
+    private void load( final String key, final UserPass userPass )
+    {
+        try
+        {
+            fetch( key, userPass );
+        }
+        catch ( final RuntimeException e )
+        {
+            logger.warn( "Background token refresh failed: {}", e.getMessage() );
+        }
+        finally
+        {
+            final CachedToken cached = tokens.get( key );
+            if ( cached != null )
+            {
+                cached.refreshing.set( false );
+            }
+        }
+    }
+
+    private CachedToken fetch( final String key, final UserPass userPass )
+    {
+        final long requested = System.currentTimeMillis();
+        final AccessTokenResponse token = lookup.apply( userPass );
+        if ( token == null || token.getToken() == null )
+        {
+            failures.increment();
+            tokens.remove( key );
+            return null;
+        }
+
+        final CachedToken entry = new CachedToken( token, requested + token.getExpiresIn() * 1000 );
+        if ( token.getExpiresIn() > 0 )
+        {
+            tokens.put( key, entry );
+            if ( tokens.size() > maxEntries )
+            {
+                evict();
+            }
+        }
+
+        return entry;
+    }
+
+    private AccessTokenResponse await( final CompletableFuture<CachedToken> future )
+    {
+        try
+        {
+            final CachedToken loaded = future.get();
+            return loaded == null ? null : loaded.token;
+        }
+        catch ( final InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch ( final ExecutionException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Drop expired tokens, then (if still over the limit) the tenth of the cache closest to expiry.
+     */
+    private synchronized void evict()
+    {
+        if ( tokens.size() <= maxEntries )
+        {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        tokens.entrySet().removeIf( e -> {
+            final boolean expired = e.getValue().expiresAt <= now;
+            if ( expired )
+            {
+                evictions.increment();
+            }
+            return expired;
+        } );
+
+        final int excess = tokens.size() - maxEntries;
+        if ( excess > 0 )
+        {
+            tokens.entrySet()
+                  .stream()
+                  .sorted( Comparator.comparingLong( e -> e.getValue().expiresAt ) )
+                  .limit( excess + maxEntries / 10 )
+                  .map( Map.Entry::getKey )
+                  .forEach( k -> {
+                      tokens.remove( k );
+                      evictions.increment();
+                  } );
+        }
+    }
+
+    private String keyOf( final UserPass userPass )
+    {
+        try
+        {
+            final MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            digest.update( salt );
+            digest.update( nullToEmpty( userPass.getUser() ).getBytes( StandardCharsets.UTF_8 ) );
+            digest.update( (byte) 0 );
+            digest.update( nullToEmpty( userPass.getPassword() ).getBytes( StandardCharsets.UTF_8 ) );
+            return Base64.getEncoder().encodeToString( digest.digest() );
+        }
+        catch ( final NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-256 is not available", e );
+        }
+    }
+
+    private static String nullToEmpty( final String value )
+    {
+        return value == null ? "" : value;
+    }
+
+    private static final class CachedToken
+    {
+        private final AccessTokenResponse token;
+
+        private final long expiresAt;
+
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CachedToken( final AccessTokenResponse token, final long expiresAt )
+        {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+}
@@ -26,7 +26,11 @@ import java.io.InputStream;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
@@ -39,6 +43,8 @@ import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicNameValuePair;
+import org.commonjava.cdi.util.weft.ExecutorConfig;
+import org.commonjava.cdi.util.weft.WeftManaged;
 import org.commonjava.indy.subsys.http.IndyHttpException;
 import org.commonjava.indy.subsys.http.IndyHttpProvider;
 import org.commonjava.indy.subsys.keycloak.conf.KeycloakConfig;
@@ -86,8 +92,15 @@ public class BasicAuthenticationOAuthTranslator
     @Inject
     private IndyHttpProvider http;
 
+    @Inject
+    @WeftManaged
+    @ExecutorConfig( named = "keycloak-token-refresh", threads = 2, priority = 5, daemon = true )
+    private ExecutorService refreshExecutor;
+
     private boolean enabled;
 
+    private BasicAuthTokenCache tokenCache;
+
     protected BasicAuthenticationOAuthTranslator()
     {
     }
@@ -110,6 +123,13 @@ public class BasicAuthenticationOAuthTranslator
         {
             enabled = true;
         }
+
+        if ( config.isBasicTokenCacheEnabled() )
+        {
+            final Executor executor = refreshExecutor == null ? Runnable::run : refreshExecutor;
+            tokenCache = new BasicAuthTokenCache( this::lookupToken, executor, config.getBasicTokenCacheMaxEntries(),
+                                                  config.getBasicTokenCacheRefreshSeconds() * 1000L );
+        }
     }
 
     @Override
@@ -157,7 +177,7 @@ public class BasicAuthenticationOAuthTranslator
             logger.debug( "Parsed BASIC authorization: {}", userPass );
             if ( userPass != null )
             {
-                final AccessTokenResponse token = lookupToken( userPass );
+                final AccessTokenResponse token = getToken( userPass );
                 if ( token != null )
                 {
                     final String encodedToken = token.getToken();
@@ -184,6 +204,19 @@ public class BasicAuthenticationOAuthTranslator
         return AuthenticationMechanismOutcome.NOT_ATTEMPTED;
     }
 
+    /**
+     * @return hit/miss counters of the BASIC credential token cache; empty if the cache is disabled
+     */
+    public Map<String, Long> getTokenCacheStats()
+    {
+        return tokenCache == null ? Collections.emptyMap() : tokenCache.getStats();
+    }
+
+    AccessTokenResponse getToken( final UserPass userPass )
+    {
+        return tokenCache == null ? lookupToken( userPass ) : tokenCache.getToken( userPass );
+    }
+
     private AccessTokenResponse lookupToken( final UserPass userPass )
     {
         final URI uri = KeycloakUriBuilder.fromUri( config.getUrl() )
@@ -21,6 +21,7 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.commonjava.indy.IndyWorkflowException;
 import org.commonjava.indy.bind.jaxrs.IndyResources;
+import org.commonjava.indy.model.core.io.IndyObjectMapper;
 import org.commonjava.indy.subsys.keycloak.rest.SecurityController;
 import org.commonjava.indy.util.ApplicationHeader;
 import org.slf4j.Logger;
@@ -35,6 +36,7 @@ import javax.ws.rs.core.Response.Status;
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import static org.commonjava.indy.bind.jaxrs.util.ResponseUtils.formatOkResponseWithJsonEntity;
 import static org.commonjava.indy.bind.jaxrs.util.ResponseUtils.formatResponse;
 
 @Api( "Security Infrastructure" )
@@ -52,6 +54,12 @@ public class SecurityResource
     @Inject
     private SecurityController controller;
 
+    @Inject
+    private BasicAuthenticationOAuthTranslator basicAuthTranslator;
+
+    @Inject
+    private IndyObjectMapper objectMapper;
+
     @ApiOperation( "Retrieve the keycloak JSON configuration (for use by the UI)" )
     @ApiResponses( { @ApiResponse( code = 400, message = "Keycloak is disabled" ),
                            @ApiResponse( code = 200, message = "File retrieval successful" ) } )
@@ -144,4 +152,14 @@ public class SecurityResource
         return response;
     }
 
+    @ApiOperation( "Retrieve hit/miss statistics of the BASIC credential to bearer token cache" )
+    @ApiResponse( code = 200, message = "Token cache statistics (empty if the cache is disabled)" )
+    @Path( "/token-cache/stats" )
+    @Produces( "application/json" )
+    @GET
+    public Response getTokenCacheStats()
+    {
+        return formatOkResponseWithJsonEntity( basicAuthTranslator.getTokenCacheStats(), objectMapper );
+    }
+
 }
@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.bind.jaxrs.keycloak;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.commonjava.indy.subsys.http.IndyHttpProvider;
+import org.commonjava.indy.subsys.http.util.UserPass;
+import org.commonjava.indy.subsys.keycloak.conf.KeycloakConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.keycloak.representations.AccessTokenResponse;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BasicAuthenticationOAuthTranslatorTest
+{
+
+    private Undertow server;
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+
+    private volatile long expiresIn = 300;
+
+    private volatile long responseDelay = 0;
+
+    private BasicAuthenticationOAuthTranslator translator;
+
+    @Before
+    public void setup()
+            throws Exception
+    {
+        final int port;
+        try (ServerSocket socket = new ServerSocket( 0 ))
+        {
+            port = socket.getLocalPort();
+        }
+
+        server = Undertow.builder().addHttpListener( port, "localhost" ).setHandler( new StubTokenEndpoint() ).build();
+        server.start();
+
+        final KeycloakConfig config = new KeycloakConfig();
+        config.setUrl( "http://localhost:" + port + "/auth" );
+        config.setServerCredentialSecret( "secret" );
+
+        translator = new BasicAuthenticationOAuthTranslator( config, new IndyHttpProvider( null ) );
+    }
+
+    @After
+    public void teardown()
+    {
+        server.stop();
+    }
+
+    @Test
+    public void repeatedCredentialsReuseToken()
+    {
+        final AccessTokenResponse first = translator.getToken( new UserPass( "user", "pass" ) );
+        final AccessTokenResponse second = translator.getToken( new UserPass( "user", "pass" ) );
+
+        assertThat( second.getToken(), equalTo( first.getToken() ) );
+        assertThat( tokenRequests.get(), equalTo( 1 ) );
+
+        translator.getToken( new UserPass( "user", "other" ) );
+        assertThat( tokenRequests.get(), equalTo( 2 ) );
+
+        assertThat( translator.getTokenCacheStats().get( "hits" ), equalTo( 1L ) );
+        assertThat( translator.getTokenCacheStats().get( "misses" ), equalTo( 2L ) );
+    }
+
+    @Test
+    public void concurrentLookupsAreCoalesced()
+            throws Exception
+    {
+        responseDelay = 500;
+
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        final ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            final List<Future<AccessTokenResponse>> results = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                results.add( executor.submit( () -> {
+                    start.await();
+                    return translator.getToken( new UserPass( "user", "pass" ) );
+                } ) );
+            }
+
+            start.countDown();
+            for ( final Future<AccessTokenResponse> result : results )
+            {
+                assertThat( result.get().getToken(), equalTo( "token-1" ) );
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertThat( tokenRequests.get(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void tokenInRefreshWindowIsReplaced()
+    {
+        // default refresh window is 30s, so this token is due for refresh as soon as it's cached
+        expiresIn = 20;
+
+        assertThat( translator.getToken( new UserPass( "user", "pass" ) ).getToken(), equalTo( "token-1" ) );
+
+        // served from cache while the refresh runs (synchronously here, since there is no managed executor)
+        assertThat( translator.getToken( new UserPass( "user", "pass" ) ).getToken(), equalTo( "token-1" ) );
+        assertThat( tokenRequests.get(), equalTo( 2 ) );
+
+        expiresIn = 300;
+        assertThat( translator.getToken( new UserPass( "user", "pass" ) ).getToken(), equalTo( "token-2" ) );
+    }
+
+    private final class StubTokenEndpoint
+            implements HttpHandler
+    {
+        @Override
+        public void handleRequest( final HttpServerExchange exchange )
+                throws Exception
+        {
+            if ( exchange.isInIoThread() )
+            {
+                exchange.dispatch( this );
+                return;
+            }
+
+            final int count = tokenRequests.incrementAndGet();
+            if ( responseDelay > 0 )
+            {
+                Thread.sleep( responseDelay );
+            }
+
+            exchange.getResponseHeaders().put( Headers.CONTENT_TYPE, "application/json" );
+            exchange.getResponseSender()
+                    .send( "{\"access_token\":\"token-" + count + "\",\"expires_in\":" + expiresIn
+                                   + ",\"token_type\":\"bearer\"}" );
+        }
+    }
+
+}
@@ -46,6 +46,12 @@ public class KeycloakConfig
 
     private static final String DEFAULT_UI_RESOURCE = "indy-ui";
 
+    private static final boolean DEFAULT_BASIC_TOKEN_CACHE_ENABLED = true;
+
+    private static final int DEFAULT_BASIC_TOKEN_CACHE_MAX_ENTRIES = 10000;
+
+    private static final int DEFAULT_BASIC_TOKEN_CACHE_REFRESH_SECONDS = 30;
+
     public static final String KEYCLOAK_REALM = "keycloak.realm";
 
     public static final String KEYCLOAK_URL = "keycloak.url";
@@ -78,6 +84,12 @@ public class KeycloakConfig
 
     private String realmPublicKey;
 
+    private Boolean basicTokenCacheEnabled;
+
+    private Integer basicTokenCacheMaxEntries;
+
+    private Integer basicTokenCacheRefreshSeconds;
+
     public boolean isEnabled()
     {
         return enabled == null ? DEFAULT_ENABLED : enabled;
@@ -248,6 +260,41 @@ public class KeycloakConfig
         this.realmPublicKey = realmPublicKey;
     }
 
+    public boolean isBasicTokenCacheEnabled()
+    {
+        return basicTokenCacheEnabled == null ? DEFAULT_BASIC_TOKEN_CACHE_ENABLED : basicTokenCacheEnabled;
+    }
+
+    @ConfigName( "basic.token.cache.enabled" )
+    public void setBasicTokenCacheEnabled( final Boolean basicTokenCacheEnabled )
+    {
+        this.basicTokenCacheEnabled = basicTokenCacheEnabled;
+    }
+
+    public int getBasicTokenCacheMaxEntries()
+    {
+        return basicTokenCacheMaxEntries == null ? DEFAULT_BASIC_TOKEN_CACHE_MAX_ENTRIES : basicTokenCacheMaxEntries;
+    }
+
+    @ConfigName( "basic.token.cache.max.entries" )
+    public void setBasicTokenCacheMaxEntries( final Integer basicTokenCacheMaxEntries )
+    {
+        this.basicTokenCacheMaxEntries = basicTokenCacheMaxEntries;
+    }
+
+    public int getBasicTokenCacheRefreshSeconds()
+    {
+        return basicTokenCacheRefreshSeconds == null ?
+                DEFAULT_BASIC_TOKEN_CACHE_REFRESH_SECONDS :
+                basicTokenCacheRefreshSeconds;
+    }
+
+    @ConfigName( "basic.token.cache.refresh.seconds" )
+    public void setBasicTokenCacheRefreshSeconds( final Integer basicTokenCacheRefreshSeconds )
+    {
+        this.basicTokenCacheRefreshSeconds = basicTokenCacheRefreshSeconds;
+    }
+
     @Override
     public String getDefaultConfigFileName()
     {
@@ -0,0 +1,168 @@
+/**
+ * Copyright (C) 2011 Red Hat, Inc. (jdcasey@commonjava.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.commonjava.indy.test.fixture.core;
+
+import org.commonjava.indy.audit.ChangeSummary;
+import org.commonjava.indy.data.IndyDataException;
+import org.commonjava.indy.data.StoreDataManager;
+import org.commonjava.indy.model.core.ArtifactStore;
+import org.commonjava.indy.model.core.Group;
+import org.commonjava.indy.model.core.HostedRepository;
+import org.commonjava.indy.model.core.RemoteRepository;
+import org.commonjava.indy.model.core.StoreKey;
+import org.commonjava.maven.galley.event.EventMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds a large store topology like the ones seen in production: remote and hosted repositories in shuffled order,
+ * grouped into leaf groups, which are nested into mid-level groups under a single top-level group. The layout is
+ * deterministic for a given seed.
+ */
+public class StoreTopologyFixture
+{
+    public static final String TOP_GROUP = "public";
+
+    private final int remotes;
+
+    private final int hosted;
+
+    private final int membersPerLeafGroup;
+
+    private final int leafGroupsPerParent;
+
+    private final long seed;
+
+    private final List<RemoteRepository> remoteRepositories = new ArrayList<>();
+
+    private final List<HostedRepository> hostedRepositories = new ArrayList<>();
+
+    private final List<Group> leafGroups = new ArrayList<>();
+
+    private final List<Group> midGroups = new ArrayList<>();
+
+    private Group topGroup;
+
+    public StoreTopologyFixture( final int remotes, final int hosted, final int membersPerLeafGroup,
+                                 final int leafGroupsPerParent )
+    {
+        this( remotes, hosted, membersPerLeafGroup, leafGroupsPerParent, 42 );
+    }
+
+    public StoreTopologyFixture( final int remotes, final int hosted, final int membersPerLeafGroup,
+                                 final int leafGroupsPerParent, final long seed )
+    {
+        this.remotes = remotes;
+        this.hosted = hosted;
+        this.membersPerLeafGroup = membersPerLeafGroup;
+        this.leafGroupsPerParent = leafGroupsPerParent;
+        this.seed = seed;
+    }
+
+    public StoreTopologyFixture populate( final StoreDataManager storeManager )
+            throws IndyDataException
+    {
+        final List<ArtifactStore> concrete = new ArrayList<>();
+        for ( int i = 0; i < remotes; i++ )
+        {
+            final RemoteRepository remote = new RemoteRepository( "remote-" + i, getRemoteUrl( i ) );
+            remoteRepositories.add( remote );
+            concrete.add( remote );
+        }
+
+        for ( int i = 0; i < hosted; i++ )
+        {
+            final HostedRepository repo = new HostedRepository( "hosted-" + i );
+            hostedRepositories.add( repo );
+            concrete.add( repo );
+        }
+
+        Collections.shuffle( concrete, new Random( seed ) );
+        for ( final ArtifactStore store : concrete )
+        {
+            store( storeManager, store );
+        }
+
+        for ( int i = 0; i < concrete.size(); i += membersPerLeafGroup )
+        {
+            final Group group = new Group( "leaf-" + leafGroups.size(), keysOf(
+                    concrete.subList( i, Math.min( i + membersPerLeafGroup, concrete.size() ) ) ) );
+            leafGroups.add( group );
+            store( storeManager, group );
+        }
+
+        for ( int i = 0; i < leafGroups.size(); i += leafGroupsPerParent )
+        {
+            final Group group = new Group( "mid-" + midGroups.size(),
+                                           keysOf( leafGroups.subList( i, Math.min( i + leafGroupsPerParent,
+                                                                                    leafGroups.size() ) ) ) );
+            midGroups.add( group );
+            store( storeManager, group );
+        }
+
+        topGroup = new Group( TOP_GROUP, keysOf( midGroups ) );
+        store( storeManager, topGroup );
+
+        return this;
+    }
+
+    public static String getRemoteUrl( final int index )
+    {
+        return "http://repo-" + index + ".example.com/maven2/";
+    }
+
+    public List<RemoteRepository> getRemoteRepositories()
+    {
+        return remoteRepositories;
+    }
+
+    public List<HostedRepository> getHostedRepositories()
+    {
+        return hostedRepositories;
+    }
+
+    public List<Group> getLeafGroups()
+    {
+        return leafGroups;
+    }
+
+    public List<Group> getMidGroups()
+    {
+        return midGroups;
+    }
+
+    public Group getTopGroup()
+    {
+        return topGroup;
+    }
+
+    private static List<StoreKey> keysOf( final List<? extends ArtifactStore> stores )
+    {
+        final List<StoreKey> keys = new ArrayList<>( stores.size() );
+        stores.forEach( ( store ) -> keys.add( store.getKey() ) );
+        return keys;
+    }
+
+    private static void store( final StoreDataManager storeManager, final ArtifactStore store )
+            throws IndyDataException
+    {
+        storeManager.storeArtifactStore( store, new ChangeSummary( ChangeSummary.SYSTEM_USER, "store topology fixture" ),
+                                         false, false, new EventMetadata() );
+    }
+}